@@ -50,6 +50,7 @@ public class ItemCollectionResponse implements LinkCollection<ItemCollectionResp
 
     TypeEnum type = TypeEnum.FEATURE_COLLECTION;
 
+    @With
     List<Item> features;
 
     @With
@@ -39,6 +39,7 @@ public enum StacFailureType {
     SORTBY_PARSING(HttpStatus.BAD_REQUEST),
     OFFSETDATETIME_PARSING(HttpStatus.BAD_REQUEST),
     ITEMSEARCHBODY_PARSING(HttpStatus.BAD_REQUEST),
+    SEARCH_AFTER_PARSING(HttpStatus.BAD_REQUEST),
     COLLECTIONSEARCHBODY_PARSING(HttpStatus.BAD_REQUEST),
     RESTDYNCOLLVAL_PARSING(HttpStatus.BAD_REQUEST),
     URN_PARSING(HttpStatus.BAD_REQUEST),
@@ -46,6 +46,13 @@ public final class StacRequestCorrelationId {
         return requestCorrelationId.get();
     }
 
+    /**
+     * Use the given correlation id in the current thread, to log the work done for a request in another thread.
+     */
+    public static void use(UUID cid) {
+        requestCorrelationId.set(cid);
+    }
+
     public static void clean() {
         requestCorrelationId.remove();
     }
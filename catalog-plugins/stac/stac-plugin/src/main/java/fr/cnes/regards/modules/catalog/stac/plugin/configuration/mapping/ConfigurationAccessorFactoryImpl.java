@@ -36,13 +36,17 @@ import fr.cnes.regards.modules.catalog.stac.service.configuration.ConfigurationA
 import fr.cnes.regards.modules.indexer.dao.spatial.ProjectGeoSettings;
 import io.vavr.collection.List;
 import io.vavr.control.Option;
+import io.vavr.control.Try;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static fr.cnes.regards.modules.catalog.stac.domain.error.StacRequestCorrelationId.trace;
 import static fr.cnes.regards.modules.catalog.stac.domain.error.StacRequestCorrelationId.warn;
@@ -51,6 +55,12 @@ import static fr.cnes.regards.modules.catalog.stac.domain.utils.TryDSL.trying;
 /**
  * Allows to transform property configuration to domain properties, and access
  * configuration in its "domain" form.
+ * <p>
+ * The configuration accessor of each tenant is compiled once from the active STAC plugin configuration and kept
+ * until {@link #evictConfigurationAccessor(String)} is called on plugin configuration or attribute model changes.
+ * As the plugin and attribute caches may be refreshed after the eviction, an accessor compiled less than
+ * {@code regards.stac.configuration.settle.delay.ms} after an eviction is not kept, and a kept accessor expires after
+ * {@code regards.stac.configuration.ttl.ms} whatever the events received.
  */
 @Component
 public class ConfigurationAccessorFactoryImpl extends AbstractConfigurationAccessor
@@ -64,16 +74,42 @@ public class ConfigurationAccessorFactoryImpl extends AbstractConfigurationAcces
 
     private final ProjectGeoSettings geoSettings;
 
+    /**
+     * Compiled configuration accessor by tenant
+     */
+    private final ConcurrentMap<String, CompiledAccessor> accessorsByTenant = new ConcurrentHashMap<>();
+
+    /**
+     * Date of the last eviction by tenant, so that an accessor compiled concurrently to or just after an eviction is
+     * not kept
+     */
+    private final ConcurrentMap<String, Long> lastEvictionByTenant = new ConcurrentHashMap<>();
+
+    /**
+     * Duration after which a kept accessor is compiled again
+     */
+    private final long ttlInMs;
+
+    /**
+     * Duration after an eviction during which the compiled accessors are not kept
+     */
+    private final long settleDelayInMs;
+
     @Autowired
     public ConfigurationAccessorFactoryImpl(PropertyConverterFactory propertyConverterFactory,
                                             IPluginService pluginService,
                                             RegardsPropertyAccessorFactory regardsPropertyAccessorFactory,
                                             IRuntimeTenantResolver runtimeTenantResolver,
-                                            ProjectGeoSettings geoSettings) {
+                                            ProjectGeoSettings geoSettings,
+                                            @Value("${regards.stac.configuration.ttl.ms:300000}") long ttlInMs,
+                                            @Value("${regards.stac.configuration.settle.delay.ms:10000}")
+                                            long settleDelayInMs) {
         super(pluginService, regardsPropertyAccessorFactory);
         this.propertyConverterFactory = propertyConverterFactory;
         this.runtimeTenantResolver = runtimeTenantResolver;
         this.geoSettings = geoSettings;
+        this.ttlInMs = ttlInMs;
+        this.settleDelayInMs = settleDelayInMs;
     }
 
     public ProjectGeoSettings getGeoSettings() {
@@ -82,7 +118,57 @@ public class ConfigurationAccessorFactoryImpl extends AbstractConfigurationAcces
 
     @Override
     public ConfigurationAccessor makeConfigurationAccessor() {
-        return new CustomConfigurationAccessor(runtimeTenantResolver, getPlugin(StacSearchEngine.PLUGIN_ID), this);
+        String tenant = runtimeTenantResolver.getTenant();
+        long compilationDate = System.currentTimeMillis();
+        CompiledAccessor compiled = accessorsByTenant.get(tenant);
+        if (compiled != null && compilationDate - compiled.compilationDate() < ttlInMs) {
+            return compiled.accessor();
+        }
+        CustomConfigurationAccessor accessor = compileConfigurationAccessor(tenant);
+        // Plugin loading failures may be transient, the default configuration is not kept
+        if (accessor.isPluginLoaded() && isSettled(tenant, compilationDate)) {
+            CompiledAccessor newCompiled = new CompiledAccessor(accessor, compilationDate);
+            if (compiled == null) {
+                accessorsByTenant.putIfAbsent(tenant, newCompiled);
+            } else {
+                accessorsByTenant.replace(tenant, compiled, newCompiled);
+            }
+            if (!isSettled(tenant, compilationDate)) {
+                // Configuration may have changed during compilation
+                accessorsByTenant.remove(tenant, newCompiled);
+            }
+        }
+        return accessor;
+    }
+
+    /**
+     * @return true if the last eviction of the tenant is old enough for an accessor compiled at the given date to
+     * be kept
+     */
+    private boolean isSettled(String tenant, long compilationDate) {
+        Long lastEviction = lastEvictionByTenant.get(tenant);
+        return lastEviction == null || compilationDate > lastEviction + settleDelayInMs;
+    }
+
+    /**
+     * Compile a new configuration accessor from the active STAC plugin configuration of the given tenant
+     */
+    public CustomConfigurationAccessor compileConfigurationAccessor(String tenant) {
+        Try<StacSearchEngine> plugin = getPlugin(StacSearchEngine.PLUGIN_ID);
+        trace(LOGGER, "Compiling STAC configuration of tenant {}", tenant);
+        return new CustomConfigurationAccessor(tenant, plugin, this);
+    }
+
+    /**
+     * Forget the compiled configuration accessor of the given tenant, the next call to
+     * {@link #makeConfigurationAccessor()} compiles it again from the current plugin configuration and attribute
+     * models.
+     */
+    public void evictConfigurationAccessor(String tenant) {
+        lastEvictionByTenant.put(tenant, System.currentTimeMillis());
+        if (accessorsByTenant.remove(tenant) != null) {
+            LOGGER.debug("STAC configuration of tenant {} evicted", tenant);
+        }
     }
 
     public Provider getProvider(ProviderConfiguration pc) {
@@ -162,4 +248,9 @@ public class ConfigurationAccessorFactoryImpl extends AbstractConfigurationAcces
                                 null,
                                 Boolean.FALSE);
     }
+
+    private record CompiledAccessor(CustomConfigurationAccessor accessor,
+                                    long compilationDate) {
+
+    }
 }
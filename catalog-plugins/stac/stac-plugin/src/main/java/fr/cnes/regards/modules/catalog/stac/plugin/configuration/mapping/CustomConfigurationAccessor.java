@@ -18,7 +18,6 @@
  */
 package fr.cnes.regards.modules.catalog.stac.plugin.configuration.mapping;
 
-import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
 import fr.cnes.regards.modules.catalog.stac.domain.DefaultSourceProperties;
 import fr.cnes.regards.modules.catalog.stac.domain.StacProperties;
 import fr.cnes.regards.modules.catalog.stac.domain.properties.StacProperty;
@@ -27,6 +26,7 @@ import fr.cnes.regards.modules.catalog.stac.domain.spec.collection.Provider;
 import fr.cnes.regards.modules.catalog.stac.plugin.StacSearchEngine;
 import fr.cnes.regards.modules.catalog.stac.plugin.configuration.CollectionConfiguration;
 import fr.cnes.regards.modules.catalog.stac.plugin.configuration.EODAGConfiguration;
+import fr.cnes.regards.modules.catalog.stac.plugin.configuration.StacSourcePropertyConfiguration;
 import fr.cnes.regards.modules.catalog.stac.service.configuration.ConfigurationAccessor;
 import io.vavr.collection.List;
 import io.vavr.control.Option;
@@ -38,73 +38,96 @@ import org.locationtech.spatial4j.io.GeoJSONReader;
 
 /**
  * Provides access to the values present in the STAC plugin configuration.
+ * <p>
+ * The accessor is an immutable snapshot of the configuration of a tenant : the STAC properties, with their
+ * converters and REGARDS property accessors, are compiled once at creation so that searches and conversions
+ * only read them.
  *
  * @author Sébastien Binda
  **/
 public class CustomConfigurationAccessor implements ConfigurationAccessor {
 
-    private final IRuntimeTenantResolver runtimeTenantResolver;
-
     private final Try<StacSearchEngine> plugin;
 
     private final ConfigurationAccessorFactoryImpl configurationAccessorFactoryImpl;
 
-    public CustomConfigurationAccessor(IRuntimeTenantResolver runtimeTenantResolver,
+    private final String defaultTitle;
+
+    private final List<StacProperty> stacProperties;
+
+    private final StacProperty datetimeStacProperty;
+
+    private final StacProperty linksStacProperty;
+
+    private final StacProperty assetsStacProperty;
+
+    public CustomConfigurationAccessor(String tenant,
                                        Try<StacSearchEngine> plugin,
                                        ConfigurationAccessorFactoryImpl configurationAccessorFactoryImpl) {
-        this.runtimeTenantResolver = runtimeTenantResolver;
         this.plugin = plugin;
         this.configurationAccessorFactoryImpl = configurationAccessorFactoryImpl;
+        this.defaultTitle = "STAC Catalog " + tenant;
+        this.stacProperties = plugin.map(configurationAccessorFactoryImpl::getConfiguredProperties)
+                                    .getOrElse(List.empty());
+        this.datetimeStacProperty = plugin.map(p -> p.getStacDatetimeProperty().toStacPropertyConfiguration())
+                                          .map(spc -> configurationAccessorFactoryImpl.getConfiguredProperties(List.of(
+                                              spc)).head())
+                                          .getOrNull();
+        this.linksStacProperty = makeJsonObjectStacProperty(plugin.map(StacSearchEngine::getStacLinksProperty),
+                                                            StacProperties.STAC_LINKS_PROPERTY_NAME,
+                                                            DefaultSourceProperties.STAC_LINKS_SOURCE_PROPERTY_NAME);
+        this.assetsStacProperty = makeJsonObjectStacProperty(plugin.map(StacSearchEngine::getStacAssetsProperty),
+                                                             StacProperties.STAC_ASSETS_PROPERTY_NAME,
+                                                             DefaultSourceProperties.STAC_ASSETS_SOURCE_PROPERTY_NAME);
+    }
+
+    private StacProperty makeJsonObjectStacProperty(Try<StacSourcePropertyConfiguration> sourcePropertyConfiguration,
+                                                    String stacPropertyName,
+                                                    String defaultSourcePropertyPath) {
+        return sourcePropertyConfiguration.map(spc -> configurationAccessorFactoryImpl.makeStacProperty(spc,
+                                                                                                        stacPropertyName,
+                                                                                                        StacPropertyType.JSON_OBJECT))
+                                          .getOrElse(() -> configurationAccessorFactoryImpl.makeDefaultStacProperty(
+                                              defaultSourcePropertyPath,
+                                              stacPropertyName,
+                                              StacPropertyType.JSON_OBJECT));
+    }
+
+    /**
+     * @return false if the STAC plugin could not be loaded and the default configuration is used
+     */
+    public boolean isPluginLoaded() {
+        return plugin.isSuccess();
     }
 
     @Override
     public String getTitle() {
-        return plugin.map(StacSearchEngine::getStacTitle).getOrElse(() -> {
-            String tenant = runtimeTenantResolver.getTenant();
-            return "STAC Catalog " + tenant;
-        });
+        return plugin.map(StacSearchEngine::getStacTitle).getOrElse(defaultTitle);
     }
 
     @Override
     public String getDescription() {
-        return plugin.map(StacSearchEngine::getStacDescription).getOrElse(() -> {
-            String tenant = runtimeTenantResolver.getTenant();
-            return "STAC Catalog " + tenant;
-        });
+        return plugin.map(StacSearchEngine::getStacDescription).getOrElse(defaultTitle);
     }
 
     @Override
     public List<StacProperty> getStacProperties() {
-        return plugin.map(configurationAccessorFactoryImpl::getConfiguredProperties).getOrElse(List.empty());
+        return stacProperties;
     }
 
     @Override
     public StacProperty getDatetimeStacProperty() {
-        return plugin.map(p -> p.getStacDatetimeProperty().toStacPropertyConfiguration())
-                     .map(spc -> configurationAccessorFactoryImpl.getConfiguredProperties(List.of(spc)).head())
-                     .getOrNull();
+        return datetimeStacProperty;
     }
 
     @Override
     public StacProperty getLinksStacProperty() {
-        String stacPropertyName = StacProperties.STAC_LINKS_PROPERTY_NAME;
-        return plugin.map(p -> configurationAccessorFactoryImpl.makeStacProperty(p.getStacLinksProperty(),
-                                                                                 stacPropertyName,
-                                                                                 StacPropertyType.JSON_OBJECT))
-                     .getOrElse(configurationAccessorFactoryImpl.makeDefaultStacProperty(DefaultSourceProperties.STAC_LINKS_SOURCE_PROPERTY_NAME,
-                                                                                         stacPropertyName,
-                                                                                         StacPropertyType.JSON_OBJECT));
+        return linksStacProperty;
     }
 
     @Override
     public StacProperty getAssetsStacProperty() {
-        String stacPropertyName = StacProperties.STAC_ASSETS_PROPERTY_NAME;
-        return plugin.map(p -> configurationAccessorFactoryImpl.makeStacProperty(p.getStacAssetsProperty(),
-                                                                                 stacPropertyName,
-                                                                                 StacPropertyType.JSON_OBJECT))
-                     .getOrElse(configurationAccessorFactoryImpl.makeDefaultStacProperty(DefaultSourceProperties.STAC_ASSETS_SOURCE_PROPERTY_NAME,
-                                                                                         stacPropertyName,
-                                                                                         StacPropertyType.JSON_OBJECT));
+        return assetsStacProperty;
     }
 
     @Override
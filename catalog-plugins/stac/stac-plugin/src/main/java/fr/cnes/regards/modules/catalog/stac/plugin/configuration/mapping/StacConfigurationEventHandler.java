@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.catalog.stac.plugin.configuration.mapping;
+
+import fr.cnes.regards.framework.amqp.ISubscriber;
+import fr.cnes.regards.framework.amqp.domain.IHandler;
+import fr.cnes.regards.framework.modules.plugins.domain.event.BroadcastPluginConfEvent;
+import fr.cnes.regards.modules.model.domain.event.AttributeModelCreated;
+import fr.cnes.regards.modules.model.domain.event.AttributeModelDeleted;
+import fr.cnes.regards.modules.model.domain.event.AttributeModelUpdated;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evict the compiled STAC configuration of a tenant when its plugin configurations or attribute models change.
+ * These events may be handled before the plugin and attribute caches are refreshed, the accessors compiled just
+ * after the eviction are therefore not kept by {@link ConfigurationAccessorFactoryImpl}.
+ * Component can be disabled using spring profile for testing purpose.
+ */
+@Component
+@Profile("!noStacHandler")
+public class StacConfigurationEventHandler implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final ISubscriber subscriber;
+
+    private final ConfigurationAccessorFactoryImpl configurationAccessorFactory;
+
+    public StacConfigurationEventHandler(ISubscriber subscriber,
+                                         ConfigurationAccessorFactoryImpl configurationAccessorFactory) {
+        this.subscriber = subscriber;
+        this.configurationAccessorFactory = configurationAccessorFactory;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        subscriber.subscribeTo(BroadcastPluginConfEvent.class, new EvictionHandler<>());
+        subscriber.subscribeTo(AttributeModelCreated.class, new EvictionHandler<>());
+        subscriber.subscribeTo(AttributeModelUpdated.class, new EvictionHandler<>());
+        subscriber.subscribeTo(AttributeModelDeleted.class, new EvictionHandler<>());
+    }
+
+    private class EvictionHandler<T> implements IHandler<T> {
+
+        @Override
+        public void handle(String tenant, T message) {
+            configurationAccessorFactory.evictConfigurationAccessor(tenant);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package fr.cnes.regards.modules.catalog.stac.plugin.configuration.mapping;
+
+import com.google.gson.Gson;
+import fr.cnes.regards.framework.modules.plugins.domain.PluginConfiguration;
+import fr.cnes.regards.framework.modules.plugins.service.IPluginService;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.modules.catalog.stac.domain.properties.StacProperty;
+import fr.cnes.regards.modules.catalog.stac.domain.properties.StacPropertyType;
+import fr.cnes.regards.modules.catalog.stac.domain.properties.conversion.PropertyConverterFactoryImpl;
+import fr.cnes.regards.modules.catalog.stac.plugin.StacSearchEngine;
+import fr.cnes.regards.modules.catalog.stac.plugin.configuration.StacDatetimePropertyConfiguration;
+import fr.cnes.regards.modules.catalog.stac.plugin.configuration.StacPropertyConfiguration;
+import fr.cnes.regards.modules.catalog.stac.plugin.configuration.StacSourcePropertyConfiguration;
+import fr.cnes.regards.modules.catalog.stac.service.configuration.ConfigurationAccessor;
+import fr.cnes.regards.modules.catalog.stac.testutils.gson.GsonAwareTest;
+import fr.cnes.regards.modules.indexer.dao.spatial.ProjectGeoSettings;
+import fr.cnes.regards.modules.model.domain.attributes.AttributeModel;
+import fr.cnes.regards.modules.model.domain.attributes.AttributeModelBuilder;
+import fr.cnes.regards.modules.model.dto.properties.PropertyType;
+import fr.cnes.regards.modules.opensearch.service.cache.attributemodel.IAttributeFinder;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConfigurationAccessorFactoryImplTest implements GsonAwareTest {
+
+    private static final int EXTRA_PROPERTY_COUNT = 50;
+
+    private static final String TENANT = "theTenant";
+
+    private static final String BUSINESS_ID = "stacBusinessId";
+
+    Gson gson = gson();
+
+    IPluginService pluginService = Mockito.mock(IPluginService.class);
+
+    IAttributeFinder finder = Mockito.mock(IAttributeFinder.class);
+
+    IRuntimeTenantResolver runtimeTenantResolver = Mockito.mock(IRuntimeTenantResolver.class);
+
+    ConfigurationAccessorFactoryImpl factory = createFactory(300_000, 0);
+
+    @Before
+    public void init() throws Exception {
+        when(runtimeTenantResolver.getTenant()).thenReturn(TENANT);
+
+        List<AttributeModel> attributes = new ArrayList<>();
+        List<StacPropertyConfiguration> extraProperties = new ArrayList<>();
+        for (int i = 0; i < EXTRA_PROPERTY_COUNT; i++) {
+            String name = "prop" + i;
+            AttributeModel attribute = new AttributeModelBuilder(name, PropertyType.STRING, "").build();
+            attributes.add(attribute);
+            when(finder.findByNameOptional(name)).thenReturn(Optional.of(attribute));
+            extraProperties.add(new StacPropertyConfiguration(name,
+                                                              null,
+                                                              null,
+                                                              "regards",
+                                                              "regards:" + name,
+                                                              null,
+                                                              StacPropertyType.STRING.name(),
+                                                              null,
+                                                              false,
+                                                              null,
+                                                              null));
+        }
+        when(finder.findAll()).thenReturn(attributes);
+
+        StacSearchEngine engine = new StacSearchEngine();
+        engine.setStacTitle("theTitle");
+        engine.setStacDatetimeProperty(new StacDatetimePropertyConfiguration("creationDate", null, null, null));
+        engine.setStacLinksProperty(new StacSourcePropertyConfiguration("links", null, null));
+        engine.setStacAssetsProperty(new StacSourcePropertyConfiguration("assets", null, null));
+        engine.setStacExtraProperties(extraProperties);
+
+        PluginConfiguration pluginConfiguration = Mockito.mock(PluginConfiguration.class);
+        when(pluginConfiguration.getBusinessId()).thenReturn(BUSINESS_ID);
+        when(pluginService.getActivePluginConfigurations(StacSearchEngine.PLUGIN_ID)).thenReturn(List.of(
+            pluginConfiguration));
+        Mockito.doReturn(Optional.of(engine)).when(pluginService).getOptionalPlugin(BUSINESS_ID);
+    }
+
+    @Test
+    public void accessor_is_compiled_once_until_eviction() {
+        ConfigurationAccessor accessor = factory.makeConfigurationAccessor();
+
+        assertThat(accessor.getTitle()).isEqualTo("theTitle");
+        assertThat(accessor.getStacProperties()).hasSize(EXTRA_PROPERTY_COUNT + 1);
+        assertThat(factory.makeConfigurationAccessor()).isSameAs(accessor);
+        assertThat(accessor.getStacProperties()).isSameAs(accessor.getStacProperties());
+        assertThat(accessor.getLinksStacProperty()).isSameAs(accessor.getLinksStacProperty());
+        verify(pluginService, times(1)).getActivePluginConfigurations(StacSearchEngine.PLUGIN_ID);
+
+        // Eviction of another tenant does not change the compiled configuration
+        factory.evictConfigurationAccessor("anotherTenant");
+        assertThat(factory.makeConfigurationAccessor()).isSameAs(accessor);
+
+        factory.evictConfigurationAccessor(TENANT);
+        ConfigurationAccessor newAccessor = factory.makeConfigurationAccessor();
+        assertThat(newAccessor).isNotSameAs(accessor);
+        assertThat(newAccessor.getStacProperties()).hasSize(EXTRA_PROPERTY_COUNT + 1);
+        verify(pluginService, times(2)).getActivePluginConfigurations(StacSearchEngine.PLUGIN_ID);
+    }
+
+    @Test
+    public void accessor_expires_after_ttl() throws InterruptedException {
+        factory = createFactory(50, 0);
+        ConfigurationAccessor accessor = factory.makeConfigurationAccessor();
+        assertThat(factory.makeConfigurationAccessor()).isSameAs(accessor);
+
+        Thread.sleep(100);
+
+        ConfigurationAccessor newAccessor = factory.makeConfigurationAccessor();
+        assertThat(newAccessor).isNotSameAs(accessor);
+        assertThat(factory.makeConfigurationAccessor()).isSameAs(newAccessor);
+    }
+
+    @Test
+    public void accessor_compiled_just_after_eviction_is_not_kept() throws InterruptedException {
+        factory = createFactory(300_000, 100);
+        ConfigurationAccessor accessor = factory.makeConfigurationAccessor();
+        assertThat(factory.makeConfigurationAccessor()).isSameAs(accessor);
+
+        // Caches of the plugin or attribute models may not be refreshed yet, the accessors are compiled at each call
+        factory.evictConfigurationAccessor(TENANT);
+        ConfigurationAccessor accessorAfterEviction = factory.makeConfigurationAccessor();
+        assertThat(accessorAfterEviction).isNotSameAs(accessor);
+        assertThat(factory.makeConfigurationAccessor()).isNotSameAs(accessorAfterEviction);
+
+        Thread.sleep(150);
+
+        ConfigurationAccessor settledAccessor = factory.makeConfigurationAccessor();
+        assertThat(factory.makeConfigurationAccessor()).isSameAs(settledAccessor);
+    }
+
+    @Test
+    public void default_configuration_is_not_kept() {
+        when(pluginService.getActivePluginConfigurations(anyString())).thenReturn(List.of());
+
+        ConfigurationAccessor accessor = factory.makeConfigurationAccessor();
+
+        assertThat(accessor.getTitle()).isEqualTo("STAC Catalog " + TENANT);
+        assertThat(accessor.getStacProperties()).isEmpty();
+        assertThat(accessor.getLinksStacProperty()).isNotNull();
+        assertThat(factory.makeConfigurationAccessor()).isNotSameAs(accessor);
+    }
+
+    @Test
+    public void cached_accessor_equals_compiled_accessor() {
+        ConfigurationAccessor compiled = factory.compileConfigurationAccessor(TENANT);
+        ConfigurationAccessor cached = factory.makeConfigurationAccessor();
+
+        assertThat(cached.getTitle()).isEqualTo(compiled.getTitle());
+        assertThat(cached.getStacProperties().map(StacProperty::getStacPropertyName)).isEqualTo(compiled.getStacProperties()
+                                                                                                       .map(StacProperty::getStacPropertyName));
+        assertThat(cached.getStacProperties().map(StacProperty::getStacType)).isEqualTo(compiled.getStacProperties()
+                                                                                               .map(StacProperty::getStacType));
+        assertThat(cached.getDatetimeStacProperty().getStacPropertyName()).isEqualTo(compiled.getDatetimeStacProperty()
+                                                                                             .getStacPropertyName());
+    }
+
+    private ConfigurationAccessorFactoryImpl createFactory(long ttlInMs, long settleDelayInMs) {
+        return new ConfigurationAccessorFactoryImpl(new PropertyConverterFactoryImpl(),
+                                                    pluginService,
+                                                    new RegardsPropertyAccessorFactory(finder, gson),
+                                                    runtimeTenantResolver,
+                                                    Mockito.mock(ProjectGeoSettings.class),
+                                                    ttlInMs,
+                                                    settleDelayInMs);
+    }
+}
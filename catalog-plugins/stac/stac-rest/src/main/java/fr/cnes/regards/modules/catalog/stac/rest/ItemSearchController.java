@@ -28,17 +28,22 @@ import fr.cnes.regards.modules.catalog.stac.domain.api.ItemSearchBodyFactory;
 import fr.cnes.regards.modules.catalog.stac.domain.spec.geo.BBox;
 import fr.cnes.regards.modules.catalog.stac.rest.link.LinkCreatorService;
 import fr.cnes.regards.modules.catalog.stac.rest.pagination.SearchOtherPageItemBodySerdeService;
+import fr.cnes.regards.modules.catalog.stac.rest.stream.ItemCollectionStreamWriter;
 import fr.cnes.regards.modules.catalog.stac.rest.utils.HeaderUtils;
 import fr.cnes.regards.modules.catalog.stac.rest.utils.TryToResponseEntity;
 import fr.cnes.regards.modules.catalog.stac.service.configuration.ConfigurationAccessorFactory;
 import fr.cnes.regards.modules.catalog.stac.service.item.ItemSearchService;
+import fr.cnes.regards.modules.catalog.stac.service.link.OGCFeatLinkCreator;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.vavr.collection.List;
+import io.vavr.control.Try;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Map;
 
@@ -48,7 +53,10 @@ import static fr.cnes.regards.modules.catalog.stac.rest.utils.StacApiConstants.*
  * Search API.
  * <p>
  * We add a non-standard 0-based <code>page</code> query param for pagination. Links to next/prev page are done using the
- * {@link #otherPage(Boolean, String, Integer)}  endpoint.
+ * {@link #otherPage(String, Integer, String, Map)} endpoint.
+ * <p>
+ * With the non-standard <code>stream</code> query param, items are written as soon as they are converted : as an
+ * ItemCollection document, or as newline-delimited GeoJSON with <code>stream=ndjson</code>.
  *
  * @see <a href="https://github.com/radiantearth/stac-api-spec/tree/release/v1.0.0/item-search">Description</a>>
  */
@@ -67,17 +75,21 @@ public class ItemSearchController implements TryToResponseEntity {
 
     private final ConfigurationAccessorFactory configFactory;
 
+    private final ItemCollectionStreamWriter streamWriter;
+
     @Autowired
     public ItemSearchController(ItemSearchBodyFactory itemSearchBodyFactory,
                                 SearchOtherPageItemBodySerdeService searchTokenSerde,
                                 LinkCreatorService linkCreatorService,
                                 ItemSearchService itemSearchService,
-                                ConfigurationAccessorFactory configFactory) {
+                                ConfigurationAccessorFactory configFactory,
+                                ItemCollectionStreamWriter streamWriter) {
         this.itemSearchBodyFactory = itemSearchBodyFactory;
         this.searchTokenSerde = searchTokenSerde;
         this.linkCreatorService = linkCreatorService;
         this.itemSearchService = itemSearchService;
         this.configFactory = configFactory;
+        this.streamWriter = streamWriter;
     }
 
     @Operation(summary = "search with simple filtering",
@@ -148,19 +160,22 @@ public class ItemSearchController implements TryToResponseEntity {
     @Operation(summary = "continue to next/previous search page",
                description =
                    "Pagination for search in STAC is done through links, this endpoint provides the way to reuse"
-                   + " the same search parameters but skip to an offset of results.")
+                   + " the same search parameters but skip to an offset of results. Searches without sort are"
+                   + " continued after the cursor of the last item of the previous page.")
     @ApiResponses(value = { @ApiResponse(responseCode = "200", description = "An ItemCollection.") })
     @ResourceAccess(description = "continue to next/previous search page", role = DefaultRole.PUBLIC)
     @GetMapping("paginate")
     public ResponseEntity<ItemCollectionResponse> otherPage(
         @RequestParam(name = SEARCH_ITEM_BODY_QUERY_PARAM) String itemBodyBase64,
         @RequestParam(name = PAGE_QUERY_PARAM, required = false, defaultValue = "1") Integer page,
+        @RequestParam(name = SEARCH_AFTER_QUERY_PARAM, required = false) String searchAfter,
         @RequestHeader Map<String, String> headers) {
         boolean appendAuthParam = !configFactory.makeConfigurationAccessor().isDisableauthParam();
         Map<String, String> stacHeaders = HeaderUtils.getStacHeaders(headers);
         return toResponseEntity(searchTokenSerde.deserialize(itemBodyBase64)
                                                 .flatMap(itemSearchBody -> itemSearchService.search(itemSearchBody,
                                                                                                     page,
+                                                                                                    searchAfter,
                                                                                                     linkCreatorService.makeOGCFeatLinkCreator(
                                                                                                         appendAuthParam,
                                                                                                         stacHeaders),
@@ -172,4 +187,96 @@ public class ItemSearchController implements TryToResponseEntity {
                                                                                                     stacHeaders)));
     }
 
+    @Operation(summary = "search with simple filtering, streamed",
+               description = "Retrieve Items matching filters, written as soon as they are converted. "
+                             + "Newline-delimited GeoJSON is written with stream=ndjson, links being given by the "
+                             + "Link header.")
+    @ApiResponses(value = { @ApiResponse(responseCode = "200", description = "An ItemCollection.") })
+    @ResourceAccess(description = "search with simple filtering, streamed", role = DefaultRole.PUBLIC)
+    @GetMapping(params = STREAM_QUERY_PARAM,
+                produces = { StacConstants.APPLICATION_GEO_JSON_MEDIA_TYPE,
+                             StacConstants.APPLICATION_JSON_MEDIA_TYPE,
+                             MediaType.APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<StreamingResponseBody> getItemSearchAsStream(
+        @RequestParam(name = LIMIT_QUERY_PARAM, required = false, defaultValue = "10") Integer limit,
+        @RequestParam(name = PAGE_QUERY_PARAM, required = false, defaultValue = "1") Integer page,
+        @RequestParam(name = BBOX_QUERY_PARAM, required = false) BBox bbox,
+        @RequestParam(name = DATETIME_QUERY_PARAM, required = false) String datetime,
+        @RequestParam(name = COLLECTIONS_QUERY_PARAM, required = false) List<String> collections,
+        @RequestParam(name = IDS_QUERY_PARAM, required = false) List<String> ids,
+        @RequestParam(name = FIELDS_QUERY_PARAM, required = false) String fields,
+        @RequestParam(name = QUERY_QUERY_PARAM, required = false) String query,
+        @RequestParam(name = SORT_BY_QUERY_PARAM, required = false) String sortBy,
+        @RequestParam(name = STREAM_QUERY_PARAM) String stream,
+        @RequestHeader Map<String, String> headers) {
+        return streamSearch(itemSearchBodyFactory.parseItemSearch(page,
+                                                                  limit,
+                                                                  bbox,
+                                                                  datetime,
+                                                                  collections,
+                                                                  ids,
+                                                                  fields,
+                                                                  query,
+                                                                  sortBy), page, null, stream, headers);
+    }
+
+    @Operation(summary = "search with complex filtering, streamed",
+               description = "Retrieve Items matching filters, written as soon as they are converted. "
+                             + "Newline-delimited GeoJSON is written with stream=ndjson, links being given by the "
+                             + "Link header.")
+    @ApiResponses(value = { @ApiResponse(responseCode = "200", description = "An ItemCollection.") })
+    @ResourceAccess(description = "search with complex filtering, streamed", role = DefaultRole.PUBLIC)
+    @PostMapping(params = STREAM_QUERY_PARAM,
+                 produces = { StacConstants.APPLICATION_GEO_JSON_MEDIA_TYPE,
+                              StacConstants.APPLICATION_JSON_MEDIA_TYPE,
+                              MediaType.APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<StreamingResponseBody> postItemSearchAsStream(@RequestBody ItemSearchBody itemSearchBody,
+                                                                        @RequestParam(name = PAGE_QUERY_PARAM,
+                                                                                      required = false,
+                                                                                      defaultValue = "1")
+                                                                        Integer page,
+                                                                        @RequestParam(name = STREAM_QUERY_PARAM)
+                                                                        String stream,
+                                                                        @RequestHeader Map<String, String> headers) {
+        return streamSearch(Try.success(itemSearchBody),
+                            itemSearchBody.getPage() == null ? page : itemSearchBody.getPage(),
+                            null,
+                            stream,
+                            headers);
+    }
+
+    @Operation(summary = "continue to next/previous search page, streamed",
+               description = "Same as the paginate endpoint, items being written as soon as they are converted.")
+    @ApiResponses(value = { @ApiResponse(responseCode = "200", description = "An ItemCollection.") })
+    @ResourceAccess(description = "continue to next/previous search page, streamed", role = DefaultRole.PUBLIC)
+    @GetMapping(value = "paginate",
+                params = STREAM_QUERY_PARAM,
+                produces = { StacConstants.APPLICATION_GEO_JSON_MEDIA_TYPE,
+                             StacConstants.APPLICATION_JSON_MEDIA_TYPE,
+                             MediaType.APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<StreamingResponseBody> otherPageAsStream(
+        @RequestParam(name = SEARCH_ITEM_BODY_QUERY_PARAM) String itemBodyBase64,
+        @RequestParam(name = PAGE_QUERY_PARAM, required = false, defaultValue = "1") Integer page,
+        @RequestParam(name = SEARCH_AFTER_QUERY_PARAM, required = false) String searchAfter,
+        @RequestParam(name = STREAM_QUERY_PARAM) String stream,
+        @RequestHeader Map<String, String> headers) {
+        return streamSearch(searchTokenSerde.deserialize(itemBodyBase64), page, searchAfter, stream, headers);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamSearch(Try<ItemSearchBody> itemSearchBody,
+                                                               Integer page,
+                                                               String searchAfter,
+                                                               String stream,
+                                                               Map<String, String> headers) {
+        boolean appendAuthParam = !configFactory.makeConfigurationAccessor().isDisableauthParam();
+        Map<String, String> stacHeaders = HeaderUtils.getStacHeaders(headers);
+        OGCFeatLinkCreator featLinkCreator = linkCreatorService.makeOGCFeatLinkCreator(appendAuthParam, stacHeaders);
+        return streamWriter.toResponseEntity(itemSearchBody.flatMap(body -> itemSearchService.searchAsStream(
+            body,
+            page,
+            searchAfter,
+            featLinkCreator,
+            linkCreatorService.makeSearchPageLinkCreator(page, body, appendAuthParam, stacHeaders),
+            stacHeaders)), stream);
+    }
 }
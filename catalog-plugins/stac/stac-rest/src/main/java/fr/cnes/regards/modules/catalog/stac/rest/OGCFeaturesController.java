@@ -29,6 +29,7 @@ import fr.cnes.regards.modules.catalog.stac.domain.spec.Collection;
 import fr.cnes.regards.modules.catalog.stac.domain.spec.Item;
 import fr.cnes.regards.modules.catalog.stac.domain.spec.geo.BBox;
 import fr.cnes.regards.modules.catalog.stac.rest.link.LinkCreatorService;
+import fr.cnes.regards.modules.catalog.stac.rest.stream.ItemCollectionStreamWriter;
 import fr.cnes.regards.modules.catalog.stac.rest.utils.HeaderUtils;
 import fr.cnes.regards.modules.catalog.stac.rest.utils.TryToResponseEntity;
 import fr.cnes.regards.modules.catalog.stac.service.collection.CollectionService;
@@ -38,13 +39,16 @@ import fr.cnes.regards.modules.catalog.stac.service.configuration.collection.Col
 import fr.cnes.regards.modules.catalog.stac.service.configuration.collection.CollectionConfigurationAccessorFactory;
 import fr.cnes.regards.modules.catalog.stac.service.item.ItemSearchService;
 import fr.cnes.regards.modules.catalog.stac.service.link.OGCFeatLinkCreator;
+import fr.cnes.regards.modules.catalog.stac.service.link.SearchPageLinkCreator;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.vavr.control.Try;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Map;
 
@@ -52,6 +56,9 @@ import static fr.cnes.regards.modules.catalog.stac.rest.utils.StacApiConstants.*
 
 /**
  * OGC Feature API
+ * <p>
+ * With the non-standard <code>stream</code> query param, the features of a collection are written as soon as they are
+ * converted : as an ItemCollection document, or as newline-delimited GeoJSON with <code>stream=ndjson</code>.
  *
  * @see <a href="https://github.com/radiantearth/stac-api-spec/tree/release/v1.0.0/ogcapi-features"></a>
  */
@@ -69,17 +76,21 @@ public class OGCFeaturesController implements TryToResponseEntity {
 
     private final ItemSearchService itemSearchService;
 
+    private final ItemCollectionStreamWriter streamWriter;
+
     @Autowired
     public OGCFeaturesController(CollectionService collectionService,
                                  ConfigurationAccessorFactory configFactory,
                                  CollectionConfigurationAccessorFactory collectionConfigFactory,
                                  LinkCreatorService linker,
-                                 ItemSearchService itemSearchService) {
+                                 ItemSearchService itemSearchService,
+                                 ItemCollectionStreamWriter streamWriter) {
         this.collectionService = collectionService;
         this.configFactory = configFactory;
         this.collectionConfigFactory = collectionConfigFactory;
         this.linker = linker;
         this.itemSearchService = itemSearchService;
+        this.streamWriter = streamWriter;
     }
 
     @Operation(summary = "the feature collections in the dataset",
@@ -189,6 +200,64 @@ public class OGCFeaturesController implements TryToResponseEntity {
                                                                         stacHeaders));
     }
 
+    @Operation(summary = "fetch features with get, streamed",
+               description = "Fetch features of the collection with the given collectionId, written as soon as they "
+                             + "are converted. Newline-delimited GeoJSON is written with stream=ndjson, links being "
+                             + "given by the Link header.")
+    @ApiResponses(value = { @ApiResponse(responseCode = "200",
+                                         description = "The response is a document consisting of features in the collection."),
+                            @ApiResponse(responseCode = "404", description = "Collection not found.") })
+    @ResourceAccess(description = "fetch features, streamed", role = DefaultRole.PUBLIC)
+    @GetMapping(value = STAC_ITEMS_PATH_SUFFIX,
+                params = STREAM_QUERY_PARAM,
+                produces = { StacConstants.APPLICATION_GEO_JSON_MEDIA_TYPE,
+                             StacConstants.APPLICATION_JSON_MEDIA_TYPE,
+                             MediaType.APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<StreamingResponseBody> getFeaturesAsStream(
+        @PathVariable(name = COLLECTION_ID_PARAM) String collectionId,
+        @RequestParam(name = LIMIT_QUERY_PARAM, required = false) Integer limit,
+        @RequestParam(name = BBOX_QUERY_PARAM, required = false) BBox bbox,
+        @RequestParam(name = DATETIME_QUERY_PARAM, required = false) String datetime,
+        @RequestHeader Map<String, String> headers,
+        @RequestParam(name = QUERY_QUERY_PARAM, required = false) String query,
+        @RequestParam(name = SORT_BY_QUERY_PARAM, required = false) String sortBy,
+        @RequestParam(name = PAGE_QUERY_PARAM, required = false, defaultValue = "1") Integer page,
+        @RequestParam(name = STREAM_QUERY_PARAM) String stream) {
+        return streamFeatures(collectionService.makeItemSearchBody(collectionId,
+                                                                   limit,
+                                                                   page,
+                                                                   bbox,
+                                                                   datetime,
+                                                                   query,
+                                                                   sortBy), collectionId, page, stream, headers);
+    }
+
+    @Operation(summary = "fetch features with post, streamed",
+               description = "Fetch features of the feature collection with the given collectionId, written as soon "
+                             + "as they are converted. Newline-delimited GeoJSON is written with stream=ndjson, links "
+                             + "being given by the Link header.")
+    @ApiResponses(value = { @ApiResponse(responseCode = "200",
+                                         description = "The response is a document consisting of features in the collection."),
+                            @ApiResponse(responseCode = "404", description = "Collection not found.") })
+    @ResourceAccess(description = "fetch features, streamed", role = DefaultRole.PUBLIC)
+    @PostMapping(value = STAC_ITEMS_PATH_SUFFIX,
+                 params = STREAM_QUERY_PARAM,
+                 produces = { StacConstants.APPLICATION_GEO_JSON_MEDIA_TYPE,
+                              StacConstants.APPLICATION_JSON_MEDIA_TYPE,
+                              MediaType.APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<StreamingResponseBody> postGetFeaturesAsStream(
+        @PathVariable(name = COLLECTION_ID_PARAM) String collectionId,
+        @RequestBody ItemSearchBody itemSearchBody,
+        @RequestHeader Map<String, String> headers,
+        @RequestParam(name = PAGE_QUERY_PARAM, required = false, defaultValue = "1") Integer page,
+        @RequestParam(name = STREAM_QUERY_PARAM) String stream) {
+        return streamFeatures(collectionService.makeItemSearchBody(collectionId, itemSearchBody),
+                              collectionId,
+                              itemSearchBody.getPage() == null ? page : itemSearchBody.getPage(),
+                              stream,
+                              headers);
+    }
+
     @Operation(summary = "fetch a single feature",
                description = "Fetch the feature with id featureId in the feature collection with id collectionId.")
     @ApiResponses(value = { @ApiResponse(responseCode = "200", description = "The feature content."),
@@ -204,4 +273,25 @@ public class OGCFeaturesController implements TryToResponseEntity {
         Try<Item> result = itemSearchService.searchById(featureId, linkCreator);
         return toResponseEntity(result);
     }
+
+    private ResponseEntity<StreamingResponseBody> streamFeatures(Try<ItemSearchBody> itemSearchBody,
+                                                                 String collectionId,
+                                                                 Integer page,
+                                                                 String stream,
+                                                                 Map<String, String> headers) {
+        boolean appendAuthParam = !configFactory.makeConfigurationAccessor().isDisableauthParam();
+        Map<String, String> stacHeaders = HeaderUtils.getStacHeaders(headers);
+        OGCFeatLinkCreator featLinkCreator = linker.makeOGCFeatLinkCreator(appendAuthParam, stacHeaders);
+        SearchPageLinkCreator pageLinkCreator = linker.makeCollectionItemsPageLinkCreator(page,
+                                                                                          collectionId,
+                                                                                          appendAuthParam,
+                                                                                          stacHeaders);
+        return streamWriter.toResponseEntity(itemSearchBody.flatMap(isb -> itemSearchService.searchAsStream(
+            isb,
+            page,
+            null,
+            featLinkCreator,
+            pageLinkCreator,
+            stacHeaders)), stream);
+    }
 }
@@ -239,10 +239,13 @@ public class LinkCreatorServiceImpl implements LinkCreatorService, Base64Codec {
                                                              .toOption();
             }
 
-            private Option<URI> createPageLink(int i, ItemSearchBody itemSearchBody) {
+            private Option<URI> createPageLink(int i, ItemSearchBody itemSearchBody, String searchAfter) {
                 String itemBodyB64 = toBase64(gson.toJson(itemSearchBody));
                 return tryOf(() -> WebMvcLinkBuilder.linkTo(WebMvcLinkBuilder.methodOn(ItemSearchController.class)
-                                                                             .otherPage(itemBodyB64, i, headers))
+                                                                             .otherPage(itemBodyB64,
+                                                                                        i,
+                                                                                        searchAfter,
+                                                                                        headers))
                                                     .toUri()).flatMapTry(uriParamAdder.appendAuthParams(appendAuthParams))
                                                              .onSuccess(u -> debug(LOGGER, URI_PATTERN_MESSAGE, u))
                                                              .onFailure(t -> error(LOGGER,
@@ -254,17 +257,22 @@ public class LinkCreatorServiceImpl implements LinkCreatorService, Base64Codec {
 
             @Override
             public Option<URI> createNextPageLink() {
-                return createPageLink(page + 1, itemSearchBody);
+                return createPageLink(page + 1, itemSearchBody, null);
+            }
+
+            @Override
+            public Option<URI> createNextPageLink(String searchAfter) {
+                return createPageLink(page + 1, itemSearchBody, searchAfter);
             }
 
             @Override
             public Option<URI> createPrevPageLink() {
-                return page == 0 ? none() : createPageLink(page - 1, itemSearchBody);
+                return page == 0 ? none() : createPageLink(page - 1, itemSearchBody, null);
             }
 
             @Override
             public Option<URI> createSelfPageLink() {
-                return createPageLink(page, itemSearchBody);
+                return createPageLink(page, itemSearchBody, null);
             }
         };
     }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.catalog.stac.rest.stream;
+
+import fr.cnes.regards.modules.catalog.stac.service.item.ItemCollectionStream;
+import io.vavr.control.Try;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Write pages of items as soon as their items are converted, instead of serializing a whole page built in memory.
+ */
+public interface ItemCollectionStreamWriter {
+
+    /**
+     * Value of the stream query parameter selecting the newline-delimited GeoJSON output
+     */
+    String NDJSON_FORMAT = "ndjson";
+
+    /**
+     * Write the page as an ItemCollection JSON document, its features being written one by one.
+     */
+    void writeJson(ItemCollectionStream itemCollection, OutputStream outputStream) throws IOException;
+
+    /**
+     * Write the features of the page as newline-delimited GeoJSON, one item by line.
+     */
+    void writeNdJson(ItemCollectionStream itemCollection, OutputStream outputStream) throws IOException;
+
+    /**
+     * @param format {@link #NDJSON_FORMAT} for newline-delimited GeoJSON, an ItemCollection JSON document otherwise
+     * @return the response writing the page. The links of a newline-delimited GeoJSON page are given by the Link
+     * header, in newline-delimited GeoJSON too.
+     */
+    ResponseEntity<StreamingResponseBody> toResponseEntity(Try<ItemCollectionStream> itemCollection, String format);
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.catalog.stac.rest.stream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import fr.cnes.regards.modules.catalog.stac.domain.StacConstants;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.Item;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.common.Link;
+import fr.cnes.regards.modules.catalog.stac.service.item.ItemCollectionStream;
+import io.vavr.control.Try;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static fr.cnes.regards.modules.catalog.stac.rest.utils.StacApiConstants.STREAM_QUERY_PARAM;
+
+/**
+ * Default impl for {@link ItemCollectionStreamWriter}.
+ */
+@Service
+public class ItemCollectionStreamWriterImpl implements ItemCollectionStreamWriter {
+
+    private static final String FEATURES_FIELD = "features";
+
+    private final Gson gson;
+
+    @Autowired
+    public ItemCollectionStreamWriterImpl(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public void writeJson(ItemCollectionStream itemCollection, OutputStream outputStream) throws IOException {
+        JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream,
+                                                                                         StandardCharsets.UTF_8)));
+        JsonObject envelope = gson.toJsonTree(itemCollection.envelope()).getAsJsonObject();
+        envelope.remove(FEATURES_FIELD);
+        writer.beginObject();
+        for (Map.Entry<String, JsonElement> field : envelope.entrySet()) {
+            writer.name(field.getKey());
+            gson.toJson(field.getValue(), writer);
+        }
+        // Features are written last, the other fields being known before the items are converted
+        writer.name(FEATURES_FIELD);
+        writer.beginArray();
+        for (Item item : itemCollection.items()) {
+            gson.toJson(item, Item.class, writer);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    @Override
+    public void writeNdJson(ItemCollectionStream itemCollection, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        for (Item item : itemCollection.items()) {
+            gson.toJson(item, Item.class, writer);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> toResponseEntity(Try<ItemCollectionStream> itemCollection,
+                                                                  String format) {
+        ItemCollectionStream stream = itemCollection.get();
+        if (NDJSON_FORMAT.equalsIgnoreCase(format)) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_NDJSON);
+            // Links requiring a body cannot be followed from a header
+            stream.envelope()
+                  .getLinks()
+                  .filter(link -> link.method() == null || HttpMethod.GET.name().equals(link.method()))
+                  .forEach(link -> headers.add(HttpHeaders.LINK, toLinkHeader(link)));
+            return ResponseEntity.ok()
+                                 .headers(headers)
+                                 .body(outputStream -> writeNdJson(stream, outputStream));
+        }
+        return ResponseEntity.ok()
+                             .contentType(MediaType.parseMediaType(StacConstants.APPLICATION_GEO_JSON_MEDIA_TYPE))
+                             .body(outputStream -> writeJson(stream, outputStream));
+    }
+
+    /**
+     * @return the link header value, the link continuing in newline-delimited GeoJSON
+     */
+    private static String toLinkHeader(Link link) {
+        return String.format("<%s>; rel=\"%s\"",
+                             UriComponentsBuilder.fromUri(link.href())
+                                                 .replaceQueryParam(STREAM_QUERY_PARAM, NDJSON_FORMAT)
+                                                 .build(true)
+                                                 .toUri(),
+                             link.rel());
+    }
+}
@@ -38,6 +38,8 @@ public final class StacApiConstants {
 
     public static final String PAGE_QUERY_PARAM = "page";
 
+    public static final String SEARCH_AFTER_QUERY_PARAM = "searchAfter";
+
     public static final String BBOX_QUERY_PARAM = "bbox";
 
     public static final String DATETIME_QUERY_PARAM = "datetime";
@@ -52,6 +54,8 @@ public final class StacApiConstants {
 
     public static final String SORT_BY_QUERY_PARAM = "sortby";
 
+    public static final String STREAM_QUERY_PARAM = "stream";
+
     public static final String STAC_PATH = "/stac";
 
     public static final String ITEM_PATH = "/items";
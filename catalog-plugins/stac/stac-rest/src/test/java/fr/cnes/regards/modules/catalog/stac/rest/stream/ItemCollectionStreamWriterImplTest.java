@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.catalog.stac.rest.stream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import fr.cnes.regards.framework.geojson.geometry.IGeometry;
+import fr.cnes.regards.modules.catalog.stac.domain.StacConstants;
+import fr.cnes.regards.modules.catalog.stac.domain.api.Context;
+import fr.cnes.regards.modules.catalog.stac.domain.api.ItemCollectionResponse;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.Item;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.STACType;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.common.Link;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.common.Relation;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.geo.BBox;
+import fr.cnes.regards.modules.catalog.stac.service.item.ItemCollectionStream;
+import fr.cnes.regards.modules.catalog.stac.testutils.gson.GsonAwareTest;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.HashSet;
+import io.vavr.collection.List;
+import io.vavr.control.Try;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link ItemCollectionStreamWriterImpl}
+ */
+public class ItemCollectionStreamWriterImplTest implements GsonAwareTest {
+
+    private final Gson gson = gson();
+
+    private final ItemCollectionStreamWriterImpl writer = new ItemCollectionStreamWriterImpl(gson);
+
+    private final List<Item> items = List.range(0, 5).map(ItemCollectionStreamWriterImplTest::makeItem);
+
+    private final Link nextLink = new Link(URI.create("http://stac/search/paginate?page=2"),
+                                           Relation.NEXT,
+                                           StacConstants.APPLICATION_GEO_JSON_MEDIA_TYPE,
+                                           "next search page",
+                                           HttpMethod.GET,
+                                           null);
+
+    private final ItemCollectionResponse envelope = new ItemCollectionResponse(HashSet.empty(),
+                                                                               List.empty(),
+                                                                               List.of(nextLink),
+                                                                               new Context(5, 5, 12L),
+                                                                               12L,
+                                                                               5L);
+
+    @Test
+    public void json_stream_equals_item_collection() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeJson(new ItemCollectionStream(envelope, items.iterator()), out);
+
+        assertThat(JsonParser.parseString(out.toString(StandardCharsets.UTF_8)))
+            .isEqualTo(gson.toJsonTree(envelope.withFeatures(items)));
+    }
+
+    @Test
+    public void ndjson_stream_writes_an_item_by_line() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeNdJson(new ItemCollectionStream(envelope, items.iterator()), out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n")).containsExactlyElementsOf(items.map(gson::toJson));
+    }
+
+    @Test
+    public void ndjson_response_gives_links_in_header() {
+        ItemCollectionStream stream = new ItemCollectionStream(envelope, items.iterator());
+        ResponseEntity<StreamingResponseBody> response = writer.toResponseEntity(Try.success(stream), "ndjson");
+
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+        assertThat(response.getHeaders().get(HttpHeaders.LINK)).containsExactly(
+            "<http://stac/search/paginate?page=2&stream=ndjson>; rel=\"next\"");
+    }
+
+    private static Item makeItem(int i) {
+        return new Item(STACType.FEATURE,
+                        StacConstants.STAC_SPEC_VERSION,
+                        HashSet.empty(),
+                        "feature-" + i,
+                        IGeometry.simplePolygon(0d, 0d, 0d, 3d, 3d, 0d),
+                        new BBox(0d, 0d, 3d, 3d),
+                        HashMap.of("index", i),
+                        List.empty(),
+                        HashMap.empty(),
+                        "theCollection");
+    }
+}
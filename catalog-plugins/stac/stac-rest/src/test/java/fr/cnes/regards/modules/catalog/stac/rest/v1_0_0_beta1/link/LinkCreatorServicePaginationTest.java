@@ -79,6 +79,22 @@ public class LinkCreatorServicePaginationTest {
         test_next_previous_self_pages(collectionPageLinkCreator);
     }
 
+    /**
+     * The next link of a search paginated with a cursor carries the cursor along with the next page number
+     */
+    @Test
+    public void test_search_after_next_page_link() {
+        SearchPageLinkCreator pageLinkCreator = linkCreatorService.makeSearchPageLinkCreator(2, null, true, null);
+
+        URI nextUri = pageLinkCreator.createNextPageLink("MTIzNA==").get();
+        assertEquals(List.of("3"), getQueryParam(nextUri, "page"));
+        assertEquals(List.of("MTIzNA=="), getQueryParam(nextUri, "searchAfter"));
+
+        // Other links are not continued after the cursor
+        assertEquals(List.of(), getQueryParam(pageLinkCreator.createPrevPageLink().get(), "searchAfter"));
+        assertEquals(List.of(), getQueryParam(pageLinkCreator.createSelfPageLink().get(), "searchAfter"));
+    }
+
     /**
      * We check the previous, next and self links for a given {@link SearchPageLinkCreator}
      */
@@ -128,4 +144,12 @@ public class LinkCreatorServicePaginationTest {
                                             .filter(pair -> pair.getName().equals("limit"))
                                             .count());
     }
+
+    private static List<String> getQueryParam(URI uri, String name) {
+        return new URIBuilder(uri).getQueryParams()
+                                  .stream()
+                                  .filter(pair -> pair.getName().equals(name))
+                                  .map(NameValuePair::getValue)
+                                  .toList();
+    }
 }
@@ -74,5 +74,21 @@ public interface CollectionService {
                                                       Function<ItemSearchBody, SearchPageLinkCreator> searchPageLinkCreatorMaker,
                                                       Map<String, String> headers);
 
+    /**
+     * @return the search body of the items of the given collection, static or dynamic, matching the given filters
+     */
+    Try<ItemSearchBody> makeItemSearchBody(String collectionId,
+                                           Integer limit,
+                                           Integer page,
+                                           BBox bbox,
+                                           String datetime,
+                                           String query,
+                                           String sortBy);
+
+    /**
+     * @return the given search body restricted to the items of the given collection, static or dynamic
+     */
+    Try<ItemSearchBody> makeItemSearchBody(String collectionId, ItemSearchBody itemSearchBody);
+
     java.util.List<Link> buildLandingPageLinks(ConfigurationAccessor config, OGCFeatLinkCreator linkCreator);
 }
@@ -261,17 +261,12 @@ public class CollectionServiceImpl implements CollectionService, StacLinkCreator
                                                              OGCFeatLinkCreator ogcFeatLinkCreator,
                                                              Function<ItemSearchBody, SearchPageLinkCreator> searchPageLinkCreatorMaker,
                                                              Map<String, String> headers) {
-        ConfigurationAccessor config = configurationAccessorFactory.makeConfigurationAccessor();
-
-        final Try<ItemSearchBody> tryIsb = dynCollService.isDynamicCollectionValueURN(collectionId) ?
-            getDynCollItemSearchBody(collectionId, page, limit, bbox, datetime, query, sortBy, config) :
-            getCollectionItemSearchBody(page, limit, bbox, datetime, query, sortBy, List.of(collectionId));
-
-        return tryIsb.flatMap(isb -> itemSearchService.search(isb,
-                                                              page,
-                                                              ogcFeatLinkCreator,
-                                                              searchPageLinkCreatorMaker.apply(isb),
-                                                              headers));
+        return makeItemSearchBody(collectionId, limit, page, bbox, datetime, query, sortBy)
+            .flatMap(isb -> itemSearchService.search(isb,
+                                                     page,
+                                                     ogcFeatLinkCreator,
+                                                     searchPageLinkCreatorMaker.apply(isb),
+                                                     headers));
     }
 
     @Override
@@ -281,17 +276,34 @@ public class CollectionServiceImpl implements CollectionService, StacLinkCreator
                                                              OGCFeatLinkCreator ogcFeatLinkCreator,
                                                              Function<ItemSearchBody, SearchPageLinkCreator> searchPageLinkCreatorMaker,
                                                              Map<String, String> headers) {
+        return makeItemSearchBody(collectionId, itemSearchBody)
+            .flatMap(isb -> itemSearchService.search(isb,
+                                                     page,
+                                                     ogcFeatLinkCreator,
+                                                     searchPageLinkCreatorMaker.apply(isb),
+                                                     headers));
+    }
+
+    @Override
+    public Try<ItemSearchBody> makeItemSearchBody(String collectionId,
+                                                  Integer limit,
+                                                  Integer page,
+                                                  BBox bbox,
+                                                  String datetime,
+                                                  String query,
+                                                  String sortBy) {
         ConfigurationAccessor config = configurationAccessorFactory.makeConfigurationAccessor();
+        return dynCollService.isDynamicCollectionValueURN(collectionId) ?
+            getDynCollItemSearchBody(collectionId, page, limit, bbox, datetime, query, sortBy, config) :
+            getCollectionItemSearchBody(page, limit, bbox, datetime, query, sortBy, List.of(collectionId));
+    }
 
-        final Try<ItemSearchBody> tryIsb = dynCollService.isDynamicCollectionValueURN(collectionId) ?
+    @Override
+    public Try<ItemSearchBody> makeItemSearchBody(String collectionId, ItemSearchBody itemSearchBody) {
+        ConfigurationAccessor config = configurationAccessorFactory.makeConfigurationAccessor();
+        return dynCollService.isDynamicCollectionValueURN(collectionId) ?
             getDynCollItemSearchBody(collectionId, itemSearchBody, config) :
             Try.of(() -> itemSearchBody.withCollections(List.of(collectionId)));
-
-        return tryIsb.flatMap(isb -> itemSearchService.search(isb,
-                                                              page,
-                                                              ogcFeatLinkCreator,
-                                                              searchPageLinkCreatorMaker.apply(isb),
-                                                              headers));
     }
 
     private Try<ItemSearchBody> getDynCollItemSearchBody(String collectionId,
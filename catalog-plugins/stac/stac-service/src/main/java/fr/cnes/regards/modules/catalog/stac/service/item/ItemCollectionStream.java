@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.catalog.stac.service.item;
+
+import fr.cnes.regards.modules.catalog.stac.domain.api.ItemCollectionResponse;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.Item;
+import io.vavr.collection.Iterator;
+
+/**
+ * Page of items converted while they are iterated, so that each item can be written as soon as it is converted
+ * instead of keeping the whole page in memory.
+ *
+ * @param envelope the page without its features : links, context and counts
+ * @param items    the features of the page, can be iterated only once
+ */
+public record ItemCollectionStream(ItemCollectionResponse envelope,
+                                   Iterator<Item> items) {
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.catalog.stac.service.item;
+
+import fr.cnes.regards.modules.catalog.stac.domain.properties.StacProperty;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.common.Link;
+import fr.cnes.regards.modules.catalog.stac.domain.spec.common.Relation;
+import fr.cnes.regards.modules.catalog.stac.service.configuration.ConfigurationAccessor;
+import fr.cnes.regards.modules.catalog.stac.service.item.extensions.FieldExtension;
+import fr.cnes.regards.modules.catalog.stac.service.link.OGCFeatLinkCreator;
+import io.vavr.collection.List;
+import io.vavr.collection.Set;
+import io.vavr.control.Option;
+import org.locationtech.spatial4j.io.GeoJSONReader;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Everything the conversion of REGARDS features to STAC items needs that does not depend on the feature : it is
+ * built once for a page of results and reused for each of its items.
+ * <p>
+ * The links shared by the items of a page (root link, collection and parent links of each collection) are created
+ * once as well, the item self link being the only one created for each item.
+ */
+public class ItemConversionContext {
+
+    private final List<StacProperty> properties;
+
+    private final FieldExtension fieldExtension;
+
+    private final OGCFeatLinkCreator linkCreator;
+
+    private final StacProperty linksStacProperty;
+
+    private final StacProperty assetsStacProperty;
+
+    private final GeoJSONReader geoJSONReader;
+
+    private final boolean humanReadableIdsEnabled;
+
+    private final Set<String> extensions;
+
+    private final Option<Link> rootLink;
+
+    /**
+     * Collection and parent links by collection
+     */
+    private final ConcurrentMap<String, List<Link>> collectionLinks = new ConcurrentHashMap<>();
+
+    public ItemConversionContext(List<StacProperty> properties,
+                                 FieldExtension fieldExtension,
+                                 OGCFeatLinkCreator linkCreator,
+                                 ConfigurationAccessor configurationAccessor,
+                                 Set<String> extensions) {
+        this.properties = properties;
+        this.fieldExtension = fieldExtension;
+        this.linkCreator = linkCreator;
+        this.linksStacProperty = configurationAccessor.getLinksStacProperty();
+        this.assetsStacProperty = configurationAccessor.getAssetsStacProperty();
+        this.geoJSONReader = configurationAccessor.getGeoJSONReader();
+        this.humanReadableIdsEnabled = configurationAccessor.isHumanReadableIdsEnabled();
+        this.extensions = extensions;
+        this.rootLink = fieldExtension.isLinksIncluded() ? linkCreator.createLandingPageLink(Relation.ROOT) :
+            Option.none();
+    }
+
+    public List<StacProperty> getProperties() {
+        return properties;
+    }
+
+    public FieldExtension getFieldExtension() {
+        return fieldExtension;
+    }
+
+    public OGCFeatLinkCreator getLinkCreator() {
+        return linkCreator;
+    }
+
+    public StacProperty getLinksStacProperty() {
+        return linksStacProperty;
+    }
+
+    public StacProperty getAssetsStacProperty() {
+        return assetsStacProperty;
+    }
+
+    public GeoJSONReader getGeoJSONReader() {
+        return geoJSONReader;
+    }
+
+    public boolean isHumanReadableIdsEnabled() {
+        return humanReadableIdsEnabled;
+    }
+
+    /**
+     * @return the extensions of the items, null if they are excluded by the field extension
+     */
+    public Set<String> getExtensions() {
+        return extensions;
+    }
+
+    /**
+     * @return the root link shared by all the items
+     */
+    public Option<Link> getRootLink() {
+        return rootLink;
+    }
+
+    /**
+     * @return the collection and parent links shared by all the items of the given collection
+     */
+    public List<Link> getCollectionLinks(String collection) {
+        if (collection == null) {
+            // Null keys are not supported by the cache, links are simply created
+            return createCollectionLinks(null);
+        }
+        return collectionLinks.computeIfAbsent(collection, this::createCollectionLinks);
+    }
+
+    private List<Link> createCollectionLinks(String collection) {
+        return List.of(linkCreator.createCollectionLink(Relation.COLLECTION, collection, "Item collection"),
+                       linkCreator.createCollectionLink(Relation.PARENT, collection, "Parent collection"))
+                   .flatMap(tl -> tl);
+    }
+}
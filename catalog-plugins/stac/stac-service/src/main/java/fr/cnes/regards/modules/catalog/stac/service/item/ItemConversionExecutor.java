@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.catalog.stac.service.item;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.modules.catalog.stac.domain.error.StacRequestCorrelationId;
+import io.vavr.collection.Iterator;
+import io.vavr.collection.List;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Executor converting the entities of a search page to STAC items with several threads.
+ * <p>
+ * The page is split in as many chunks as the parallelism, the first chunk is converted by the calling thread and the
+ * others by the executor threads. The tenant, the security context, the request attributes (used to build the links)
+ * and the request correlation id of the calling thread are set in the executor threads during the conversion.
+ * The number of chunks waiting for a thread is bounded, once reached the calling thread converts its chunks itself.
+ * <p>
+ * Pages smaller than the parallel threshold, or all pages if the parallelism is 1, are converted by the calling
+ * thread only. Pages written as a stream are converted chunk by chunk while they are written.
+ */
+@Component
+public class ItemConversionExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ItemConversionExecutor.class);
+
+    /**
+     * Number of chunks waiting for a thread by executor thread
+     */
+    private static final int QUEUED_CHUNKS_BY_THREAD = 4;
+
+    private final IRuntimeTenantResolver runtimeTenantResolver;
+
+    private final int parallelism;
+
+    private final int parallelThreshold;
+
+    /**
+     * Executor of the chunks not converted by the calling thread, null if the calling thread converts everything
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param parallelism       maximum number of threads converting a page, the number of processors if not positive
+     * @param parallelThreshold minimum number of entities of a page converted in parallel
+     */
+    @Autowired
+    public ItemConversionExecutor(IRuntimeTenantResolver runtimeTenantResolver,
+                                  @Value("${regards.stac.item.conversion.parallelism:0}") int parallelism,
+                                  @Value("${regards.stac.item.conversion.parallel.threshold:50}")
+                                  int parallelThreshold) {
+        this.runtimeTenantResolver = runtimeTenantResolver;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+        // The calling thread converts a chunk too
+        this.executor = this.parallelism > 1 ? createExecutor(this.parallelism - 1) : null;
+        LOGGER.info("STAC items converted with a parallelism of {} for pages of at least {} entities",
+                    this.parallelism,
+                    this.parallelThreshold);
+    }
+
+    private static ThreadPoolExecutor createExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                                                             threads,
+                                                             60,
+                                                             TimeUnit.SECONDS,
+                                                             new ArrayBlockingQueue<>(threads
+                                                                                      * QUEUED_CHUNKS_BY_THREAD),
+                                                             new BasicThreadFactory.Builder().namingPattern(
+                                                                 "stac-item-conversion-%d").daemon(true).build(),
+                                                             (task, pool) -> {
+                                                                 if (pool.isShutdown()) {
+                                                                     throw new RejectedExecutionException(
+                                                                         "STAC item conversion executor is shut down");
+                                                                 }
+                                                                 // Too many chunks waiting, run by the calling thread
+                                                                 task.run();
+                                                             });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Convert the given entities, in parallel if there are enough of them.
+     *
+     * @return the converted entities, in the order of the given entities
+     */
+    public <T, R> List<R> convert(List<T> entities, Function<T, R> conversion) {
+        if (executor == null || entities.size() < parallelThreshold) {
+            return entities.map(conversion);
+        }
+        int chunkSize = (entities.size() + parallelism - 1) / parallelism;
+        List<List<T>> chunks = entities.grouped(chunkSize).toList();
+        ArrayList<Future<List<R>>> futures = new ArrayList<>(chunks.size() - 1);
+        CallerContext callerContext = new CallerContext();
+        try {
+            for (List<T> chunk : chunks.tail()) {
+                futures.add(executor.submit(() -> callerContext.run(() -> chunk.map(conversion))));
+            }
+            List<R> converted = chunks.head().map(conversion);
+            for (Future<List<R>> future : futures) {
+                converted = converted.appendAll(future.get());
+            }
+            return converted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while converting STAC items", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to convert STAC items", e.getCause());
+        } finally {
+            // Chunks not converted yet on failure are useless
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Convert the given entities while the result is iterated, by chunks of the parallel threshold size so that each
+     * chunk is converted in parallel. The conversion runs with the context of the calling thread, even if the result
+     * is iterated by another thread (an asynchronous response writer for example).
+     *
+     * @return the converted entities, in the order of the given entities
+     */
+    public <T, R> Iterator<R> convertLazily(List<T> entities, Function<T, R> conversion) {
+        CallerContext callerContext = new CallerContext();
+        return entities.iterator()
+                       .grouped(parallelThreshold)
+                       .flatMap(chunk -> callerContext.run(() -> convert(chunk.toList(), conversion)));
+    }
+
+    /**
+     * Tenant, security context, request attributes and correlation id of the thread creating it, to run tasks in
+     * other threads with this context. The context of the running thread is restored afterward, as the task may run
+     * in the creating thread.
+     */
+    private class CallerContext {
+
+        private final String tenant = runtimeTenantResolver.getTenant();
+
+        private final SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        private final RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+        private final UUID correlationId = StacRequestCorrelationId.currentCId();
+
+        private <V> V run(Supplier<V> task) {
+            SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+            RequestAttributes previousRequestAttributes = RequestContextHolder.getRequestAttributes();
+            UUID previousCorrelationId = StacRequestCorrelationId.currentCId();
+            String previousTenant = runtimeTenantResolver.getTenant();
+            try {
+                SecurityContextHolder.setContext(securityContext);
+                RequestContextHolder.setRequestAttributes(requestAttributes);
+                StacRequestCorrelationId.use(correlationId);
+                runtimeTenantResolver.forceTenant(tenant);
+                return task.get();
+            } finally {
+                if (previousTenant != null) {
+                    runtimeTenantResolver.forceTenant(previousTenant);
+                } else {
+                    runtimeTenantResolver.clearTenant();
+                }
+                StacRequestCorrelationId.use(previousCorrelationId);
+                RequestContextHolder.setRequestAttributes(previousRequestAttributes);
+                SecurityContextHolder.setContext(previousSecurityContext);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
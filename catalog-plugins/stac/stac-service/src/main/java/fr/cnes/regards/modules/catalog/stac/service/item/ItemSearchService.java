@@ -42,12 +42,47 @@ public interface ItemSearchService {
      * @param searchPageLinkCreator the search page link creator
      * @return a page of items
      */
+    default Try<ItemCollectionResponse> search(ItemSearchBody itemSearchBody,
+                                               Integer page,
+                                               OGCFeatLinkCreator featLinkCreator,
+                                               SearchPageLinkCreator searchPageLinkCreator,
+                                               Map<String, String> headers) {
+        return search(itemSearchBody, page, null, featLinkCreator, searchPageLinkCreator, headers);
+    }
+
+    /**
+     * Search for items, starting after a cursor when the search is not sorted. Such searches are sorted by internal
+     * id and the next page link holds the cursor of the last item, so that every page costs the same whatever its
+     * depth. Sorted searches are paginated by page number.
+     *
+     * @param itemSearchBody        the search body
+     * @param page                  the page number, still used for the previous page link in cursor mode
+     * @param searchAfter           cursor of the last item of the previous page, null for the first page or to
+     *                              paginate by page number
+     * @param featLinkCreator       the link creator
+     * @param searchPageLinkCreator the search page link creator
+     * @return a page of items
+     */
     Try<ItemCollectionResponse> search(ItemSearchBody itemSearchBody,
                                        Integer page,
+                                       String searchAfter,
                                        OGCFeatLinkCreator featLinkCreator,
                                        SearchPageLinkCreator searchPageLinkCreator,
                                        Map<String, String> headers);
 
+    /**
+     * Search for items as {@link #search(ItemSearchBody, Integer, String, OGCFeatLinkCreator, SearchPageLinkCreator,
+     * Map)} does, the items being converted while they are iterated.
+     *
+     * @return a page of items to write as a stream
+     */
+    Try<ItemCollectionStream> searchAsStream(ItemSearchBody itemSearchBody,
+                                             Integer page,
+                                             String searchAfter,
+                                             OGCFeatLinkCreator featLinkCreator,
+                                             SearchPageLinkCreator searchPageLinkCreator,
+                                             Map<String, String> headers);
+
     /**
      * Search for an item by its id.
      *
@@ -35,6 +35,7 @@ import fr.cnes.regards.modules.catalog.stac.service.criterion.StacSearchCriterio
 import fr.cnes.regards.modules.catalog.stac.service.link.OGCFeatLinkCreator;
 import fr.cnes.regards.modules.catalog.stac.service.link.SearchPageLinkCreator;
 import fr.cnes.regards.modules.catalog.stac.service.search.AbstractSearchService;
+import fr.cnes.regards.modules.catalog.stac.service.utils.Base64Codec;
 import fr.cnes.regards.modules.dam.domain.entities.AbstractEntity;
 import fr.cnes.regards.modules.dam.domain.entities.feature.EntityFeature;
 import fr.cnes.regards.modules.indexer.dao.FacetPage;
@@ -42,13 +43,16 @@ import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
 import fr.cnes.regards.modules.search.domain.plugin.SearchType;
 import fr.cnes.regards.modules.search.service.CatalogSearchService;
 import io.vavr.collection.HashSet;
+import io.vavr.collection.Iterator;
 import io.vavr.collection.List;
-import io.vavr.collection.Stream;
+import io.vavr.control.Option;
 import io.vavr.control.Try;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
@@ -62,10 +66,15 @@ import static java.lang.String.format;
  * Implementation for {@link ItemSearchService}
  */
 @Service
-public class ItemSearchServiceImpl extends AbstractSearchService implements ItemSearchService {
+public class ItemSearchServiceImpl extends AbstractSearchService implements ItemSearchService, Base64Codec {
 
     private static final HashSet<String> SEARCH_EXTENSIONS = HashSet.empty();
 
+    /**
+     * Internal id of the entities, tiebreaker of the cursor pagination
+     */
+    private static final String ID_SORT_FIELD = "id";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(ItemSearchServiceImpl.class);
 
     private final StacSearchCriterionBuilder searchCriterionBuilder;
@@ -78,46 +87,102 @@ public class ItemSearchServiceImpl extends AbstractSearchService implements Item
 
     private final IdMappingService idMappingService;
 
+    private final ItemConversionExecutor conversionExecutor;
+
     @Autowired
     public ItemSearchServiceImpl(StacSearchCriterionBuilder critBuilder,
                                  CatalogSearchService catalogSearchService,
                                  ConfigurationAccessorFactory configurationAccessorFactory,
                                  RegardsFeatureToStacItemConverter itemConverter,
-                                 IdMappingService idMappingService) {
+                                 IdMappingService idMappingService,
+                                 ItemConversionExecutor conversionExecutor) {
         this.searchCriterionBuilder = critBuilder;
         this.catalogSearchService = catalogSearchService;
         this.configurationAccessorFactory = configurationAccessorFactory;
         this.itemConverter = itemConverter;
         this.idMappingService = idMappingService;
+        this.conversionExecutor = conversionExecutor;
     }
 
     @Override
     public Try<ItemCollectionResponse> search(ItemSearchBody itemSearchBody,
                                               Integer page,
+                                              String searchAfter,
                                               OGCFeatLinkCreator featLinkCreator,
                                               SearchPageLinkCreator searchPageLinkCreator,
                                               Map<String, String> headers) {
+        return searchPage(itemSearchBody, page, searchAfter, featLinkCreator, searchPageLinkCreator, headers).flatMap(
+            searchPage -> trying(() -> searchPage.envelope()
+                                                 .withFeatures(extractStacItems(searchPage.entities(),
+                                                                                searchPage.conversionContext())))
+                .mapFailure(ITEMCOLLECTIONRESPONSE_CONSTRUCTION, () -> "Failed to create ItemCollectionResponse"));
+    }
+
+    @Override
+    public Try<ItemCollectionStream> searchAsStream(ItemSearchBody itemSearchBody,
+                                                    Integer page,
+                                                    String searchAfter,
+                                                    OGCFeatLinkCreator featLinkCreator,
+                                                    SearchPageLinkCreator searchPageLinkCreator,
+                                                    Map<String, String> headers) {
+        return searchPage(itemSearchBody, page, searchAfter, featLinkCreator, searchPageLinkCreator, headers).map(
+            searchPage -> new ItemCollectionStream(searchPage.envelope(), convertLazily(searchPage)));
+    }
+
+    private Iterator<Item> convertLazily(SearchPage searchPage) {
+        ItemConversionContext context = searchPage.conversionContext();
+        // Entities failing to be converted are skipped
+        return conversionExecutor.convertLazily(searchPage.entities(),
+                                                entity -> itemConverter.convertFeatureToItem(context, entity))
+                                 .flatMap(item -> item);
+    }
+
+    private Try<SearchPage> searchPage(ItemSearchBody itemSearchBody,
+                                       Integer page,
+                                       String searchAfter,
+                                       OGCFeatLinkCreator featLinkCreator,
+                                       SearchPageLinkCreator searchPageLinkCreator,
+                                       Map<String, String> headers) {
         List<StacProperty> stacProperties = configurationAccessorFactory.makeConfigurationAccessor()
                                                                         .getStacProperties();
-        ICriterion criterion = searchCriterionBuilder.buildCriterion(stacProperties, itemSearchBody)
-                                                     .getOrElse(ICriterion.all());
-        debug(LOGGER, "Search request: {}\n\tCriterion: {}", itemSearchBody, criterion);
-
+        ICriterion searchCriterion = searchCriterionBuilder.buildCriterion(stacProperties, itemSearchBody)
+                                                           .getOrElse(ICriterion.all());
         Pageable pageable = pageable(itemSearchBody.getLimit(), page, itemSearchBody.getSortBy(), stacProperties);
-        return trying(() -> catalogSearchService.<AbstractEntity<? extends EntityFeature>>search(criterion,
-                                                                                                 SearchType.DATAOBJECTS,
-                                                                                                 null,
-                                                                                                 pageable)).mapFailure(
-                                                                                                               SEARCH,
-                                                                                                               () -> format("Search failure for page %d of %s", page, itemSearchBody))
-                                                                                                           .flatMap(
-                                                                                                               facetPage -> extractItemCollection(
-                                                                                                                   facetPage,
-                                                                                                                   stacProperties,
-                                                                                                                   itemSearchBody.getFields(),
-                                                                                                                   featLinkCreator,
-                                                                                                                   searchPageLinkCreator,
-                                                                                                                   headers));
+        // Searches without sort are sorted by internal id and paginated with a cursor on it
+        boolean cursorPagination = pageable.getSort().isUnsorted();
+        return parseSearchAfter(cursorPagination ? searchAfter : null).flatMap(lastId -> {
+            ICriterion criterion = lastId.map(id -> ICriterion.and(searchCriterion, ICriterion.gt(ID_SORT_FIELD, id)))
+                                         .getOrElse(searchCriterion);
+            Pageable actualPageable = cursorPagination ?
+                PageRequest.of(lastId.isDefined() ? 0 : pageable.getPageNumber(),
+                               pageable.getPageSize(),
+                               Sort.by(Sort.Order.asc(ID_SORT_FIELD))) :
+                pageable;
+            debug(LOGGER, "Search request: {}\n\tCriterion: {}", itemSearchBody, criterion);
+            return trying(() -> catalogSearchService.<AbstractEntity<? extends EntityFeature>>search(
+                criterion,
+                SearchType.DATAOBJECTS,
+                null,
+                actualPageable))
+                .mapFailure(SEARCH, () -> format("Search failure for page %d of %s", page, itemSearchBody))
+                .flatMap(facetPage -> extractSearchPage(facetPage,
+                                                        page,
+                                                        cursorPagination,
+                                                        lastId.isDefined(),
+                                                        stacProperties,
+                                                        itemSearchBody.getFields(),
+                                                        featLinkCreator,
+                                                        searchPageLinkCreator,
+                                                        headers));
+        });
+    }
+
+    private Try<Option<Long>> parseSearchAfter(String searchAfter) {
+        if (searchAfter == null) {
+            return Try.success(Option.none());
+        }
+        return trying(() -> Option.some(Long.parseLong(fromBase64(searchAfter))))
+            .mapFailure(SEARCH_AFTER_PARSING, () -> format("Failed to parse search after cursor: %s", searchAfter));
     }
 
     @Override
@@ -138,50 +203,86 @@ public class ItemSearchServiceImpl extends AbstractSearchService implements Item
                                                                        entity));
     }
 
-    private Try<ItemCollectionResponse> extractItemCollection(FacetPage<AbstractEntity<? extends EntityFeature>> facetPage,
-                                                              List<StacProperty> stacProperties,
-                                                              Fields fields,
-                                                              OGCFeatLinkCreator featLinkCreator,
-                                                              SearchPageLinkCreator searchPageLinkCreator,
-                                                              Map<String, String> headers) {
+    private Try<SearchPage> extractSearchPage(FacetPage<AbstractEntity<? extends EntityFeature>> facetPage,
+                                              Integer page,
+                                              boolean cursorPagination,
+                                              boolean afterCursor,
+                                              List<StacProperty> stacProperties,
+                                              Fields fields,
+                                              OGCFeatLinkCreator featLinkCreator,
+                                              SearchPageLinkCreator searchPageLinkCreator,
+                                              Map<String, String> headers) {
         return trying(() -> {
+            // After a cursor, the items of the previous pages are not matched by the search anymore
+            long previousCount = afterCursor ?
+                (long) (page - 1) * facetPage.getSize() :
+                (long) facetPage.getNumber() * facetPage.getSize();
+            long matchedCount = afterCursor ?
+                facetPage.getTotalElements() + previousCount :
+                facetPage.getTotalElements();
             Context context = new Context(facetPage.getNumberOfElements(),
                                           facetPage.getPageable().getPageSize(),
-                                          facetPage.getTotalElements());
-            return new ItemCollectionResponse(SEARCH_EXTENSIONS,
-                                              extractStacItems(Stream.ofAll(facetPage.get()),
-                                                               stacProperties,
-                                                               fields,
-                                                               featLinkCreator),
-                                              extractItemsLinks(featLinkCreator,
-                                                                searchPageLinkCreator,
-                                                                facetPage,
-                                                                headers),
-                                              context,
-                                              facetPage.getTotalElements(),
-                                              (long) facetPage.getNumberOfElements());
+                                          matchedCount);
+            boolean hasNext = matchedCount - previousCount - facetPage.getNumberOfElements() > 0;
+            List<Link> links = extractItemsLinks(featLinkCreator,
+                                                 searchPageLinkCreator,
+                                                 hasNext,
+                                                 page > 1,
+                                                 cursorPagination ? extractSearchAfter(facetPage) : Option.none(),
+                                                 headers);
+            ItemCollectionResponse envelope = new ItemCollectionResponse(SEARCH_EXTENSIONS,
+                                                                         List.empty(),
+                                                                         links,
+                                                                         context,
+                                                                         matchedCount,
+                                                                         (long) facetPage.getNumberOfElements());
+            return new SearchPage(envelope,
+                                  List.ofAll(facetPage.get()),
+                                  itemConverter.makeConversionContext(stacProperties, fields, featLinkCreator));
         }).mapFailure(ITEMCOLLECTIONRESPONSE_CONSTRUCTION, () -> "Failed to create ItemCollectionResponse");
     }
 
     private List<Link> extractItemsLinks(OGCFeatLinkCreator featLinkCreator,
                                          SearchPageLinkCreator searchPageLinkCreator,
-                                         FacetPage<AbstractEntity<? extends EntityFeature>> facetPage,
+                                         boolean hasNext,
+                                         boolean hasPrevious,
+                                         Option<String> searchAfter,
                                          Map<String, String> headers) {
         return List.of(featLinkCreator.createSearchLink(Relation.ROOT))
                    .flatMap(t -> t)
                    .appendAll(extractLinks(searchPageLinkCreator,
-                                           facetPage,
+                                           hasNext,
+                                           hasPrevious,
+                                           searchAfter,
                                            StacConstants.APPLICATION_GEO_JSON_MEDIA_TYPE,
                                            headers));
     }
 
-    private List<Item> extractStacItems(Stream<AbstractEntity<? extends EntityFeature>> entityStream,
-                                        List<StacProperty> stacProperties,
-                                        Fields fields,
-                                        OGCFeatLinkCreator featLinkCreator) {
-        return entityStream.flatMap(entity -> itemConverter.convertFeatureToItem(stacProperties,
-                                                                                 fields,
-                                                                                 featLinkCreator,
-                                                                                 entity)).toList();
+    /**
+     * @return the cursor of the last item of the page
+     */
+    private Option<String> extractSearchAfter(FacetPage<AbstractEntity<? extends EntityFeature>> facetPage) {
+        if (!facetPage.hasContent()) {
+            return Option.none();
+        }
+        return Option.of(toBase64(String.valueOf(facetPage.getContent()
+                                                          .get(facetPage.getNumberOfElements() - 1)
+                                                          .getId())));
+    }
+
+    private List<Item> extractStacItems(List<AbstractEntity<? extends EntityFeature>> entities,
+                                        ItemConversionContext context) {
+        // Entities failing to be converted are skipped
+        return conversionExecutor.convert(entities, entity -> itemConverter.convertFeatureToItem(context, entity))
+                                 .flatMap(item -> item);
+    }
+
+    /**
+     * Page of entities found by a search, with the items page without its features
+     */
+    private record SearchPage(ItemCollectionResponse envelope,
+                              List<AbstractEntity<? extends EntityFeature>> entities,
+                              ItemConversionContext conversionContext) {
+
     }
 }
@@ -33,9 +33,20 @@ import io.vavr.control.Try;
  */
 public interface RegardsFeatureToStacItemConverter {
 
-    Try<Item> convertFeatureToItem(List<StacProperty> properties,
-                                   Fields fields,
-                                   OGCFeatLinkCreator linkCreator,
-                                   AbstractEntity<? extends EntityFeature> feature);
+    /**
+     * Build the context shared by the conversions of a page of features
+     */
+    ItemConversionContext makeConversionContext(List<StacProperty> properties,
+                                                Fields fields,
+                                                OGCFeatLinkCreator linkCreator);
+
+    Try<Item> convertFeatureToItem(ItemConversionContext context, AbstractEntity<? extends EntityFeature> feature);
+
+    default Try<Item> convertFeatureToItem(List<StacProperty> properties,
+                                           Fields fields,
+                                           OGCFeatLinkCreator linkCreator,
+                                           AbstractEntity<? extends EntityFeature> feature) {
+        return convertFeatureToItem(makeConversionContext(properties, fields, linkCreator), feature);
+    }
 
 }
@@ -86,47 +86,49 @@ public class RegardsFeatureToStacItemConverterImpl implements RegardsFeatureToSt
     }
 
     @Override
-    public Try<Item> convertFeatureToItem(List<StacProperty> properties,
-                                          Fields fields,
-                                          OGCFeatLinkCreator linkCreator,
+    public ItemConversionContext makeConversionContext(List<StacProperty> properties,
+                                                       Fields fields,
+                                                       OGCFeatLinkCreator linkCreator) {
+        // Initialize field extensions
+        FieldExtension fieldExtension = FieldExtension.build(fields, properties.toJavaList());
+        ConfigurationAccessor configurationAccessor = configurationAccessorFactory.makeConfigurationAccessor();
+        Set<String> extensions = propertyExtractionService.extractExtensionsFromConfiguration(properties,
+                                                                                              HashSet.of(
+                                                                                                  FileInfoExtension.EXTENSION_ID),
+                                                                                              fieldExtension);
+        return new ItemConversionContext(properties, fieldExtension, linkCreator, configurationAccessor, extensions);
+    }
+
+    @Override
+    public Try<Item> convertFeatureToItem(ItemConversionContext context,
                                           AbstractEntity<? extends EntityFeature> feature) {
 
-        debug(LOGGER, "Converting to item: Feature={}\n\twith Properties={}", feature, properties);
+        debug(LOGGER, "Converting to item: Feature={}\n\twith Properties={}", feature, context.getProperties());
         return trying(() -> {
-            // Initialize field extensions
-            FieldExtension fieldExtension = FieldExtension.build(fields, properties.toJavaList());
-            ConfigurationAccessor configurationAccessor = configurationAccessorFactory.makeConfigurationAccessor();
+            FieldExtension fieldExtension = context.getFieldExtension();
             Map<String, Object> featureStacProperties = propertyExtractionService.extractStacProperties(feature,
-                                                                                                        properties,
+                                                                                                        context.getProperties(),
                                                                                                         fieldExtension);
 
             // Links from feature properties
             List<Link> staticFeatureLinks = propertyExtractionService.extractStaticLinks(feature,
-                                                                                         configurationAccessor.getLinksStacProperty(),
+                                                                                         context.getLinksStacProperty(),
                                                                                          fieldExtension);
             Map<String, Asset> staticFeatureAssets = propertyExtractionService.extractStaticAssets(feature,
-                                                                                                   configurationAccessor.getAssetsStacProperty(),
+                                                                                                   context.getAssetsStacProperty(),
                                                                                                    fieldExtension);
-            Set<String> extensions = propertyExtractionService.extractExtensionsFromConfiguration(properties,
-                                                                                                  HashSet.of(
-                                                                                                      FileInfoExtension.EXTENSION_ID),
-                                                                                                  fieldExtension);
-            Tuple2<IGeometry, BBox> geo = extractGeo(feature, configurationAccessor.getGeoJSONReader(), fieldExtension);
+            Tuple2<IGeometry, BBox> geo = extractGeo(feature, context.getGeoJSONReader(), fieldExtension);
             String collection = extractCollection(feature, fieldExtension).getOrNull();
-            String itemId = extractItemId(feature, configurationAccessor, fieldExtension);
+            String itemId = extractItemId(feature, context);
 
             Item result = new Item(fieldExtension.isTypeIncluded() ? STACType.FEATURE : null,
                                    fieldExtension.isStacVersionIncluded() ? StacConstants.STAC_SPEC_VERSION : null,
-                                   extensions,
+                                   context.getExtensions(),
                                    itemId,
                                    geo._1,
                                    geo._2,
                                    featureStacProperties,
-                                   extractItemLinks(itemId,
-                                                    collection,
-                                                    linkCreator,
-                                                    staticFeatureLinks,
-                                                    fieldExtension),
+                                   extractItemLinks(itemId, collection, context, staticFeatureLinks),
                                    propertyExtractionService.extractAssets(feature,
                                                                            staticFeatureAssets,
                                                                            fieldExtension),
@@ -137,37 +139,33 @@ public class RegardsFeatureToStacItemConverterImpl implements RegardsFeatureToSt
                       () -> format("Failed to convert data object %s to item", feature.getIpId()));
     }
 
-    private String extractItemId(AbstractEntity<? extends EntityFeature> feature,
-                                 ConfigurationAccessor configurationAccessor,
-                                 FieldExtension fieldExtension) {
+    private String extractItemId(AbstractEntity<? extends EntityFeature> feature, ItemConversionContext context) {
 
         // Skip id extraction according to field extension
-        if (!fieldExtension.isIdIncluded()) {
+        if (!context.getFieldExtension().isIdIncluded()) {
             return null;
         }
 
         return idMappingService.getItemId(feature.getIpId(),
                                           feature.getProviderId(),
-                                          configurationAccessor.isHumanReadableIdsEnabled());
+                                          context.isHumanReadableIdsEnabled());
     }
 
     private List<Link> extractItemLinks(String itemId,
                                         String collection,
-                                        OGCFeatLinkCreator linkCreator,
-                                        List<Link> staticFeatureLinks,
-                                        FieldExtension fieldExtension) {
+                                        ItemConversionContext context,
+                                        List<Link> staticFeatureLinks) {
 
         // Skip links extraction according to field extension
-        if (!fieldExtension.isLinksIncluded()) {
+        if (!context.getFieldExtension().isLinksIncluded()) {
             return null;
         }
 
-        return List.of(linkCreator.createLandingPageLink(Relation.ROOT),
-                       linkCreator.createCollectionLink(Relation.COLLECTION, collection, "Item collection"),
-                       linkCreator.createCollectionLink(Relation.PARENT, collection, "Parent collection"),
-                       linkCreator.createItemLink(Relation.SELF, collection, itemId))
-                   .flatMap(tl -> tl)
-                   .appendAll(staticFeatureLinks);
+        return context.getRootLink()
+                      .toList()
+                      .appendAll(context.getCollectionLinks(collection))
+                      .appendAll(context.getLinkCreator().createItemLink(Relation.SELF, collection, itemId))
+                      .appendAll(staticFeatureLinks);
     }
 
     private Option<String> extractCollection(AbstractEntity<? extends EntityFeature> feature,
@@ -34,6 +34,14 @@ public interface SearchPageLinkCreator {
 
     Option<URI> createNextPageLink();
 
+    /**
+     * @param searchAfter cursor of the last item of the current page, the next page starting after it
+     * @return the link to the next page, the page number one if cursors are not supported
+     */
+    default Option<URI> createNextPageLink(String searchAfter) {
+        return createNextPageLink();
+    }
+
     Option<URI> createPrevPageLink();
 
     Option<URI> createSelfPageLink();
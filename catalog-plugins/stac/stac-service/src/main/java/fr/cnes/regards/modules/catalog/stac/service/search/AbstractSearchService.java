@@ -33,6 +33,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpMethod;
 
+import java.net.URI;
 import java.util.Map;
 
 import static fr.cnes.regards.modules.catalog.stac.domain.api.SearchBody.SortBy.Direction.ASC;
@@ -77,10 +78,34 @@ public abstract class AbstractSearchService {
                                       FacetPage<?> page,
                                       String type,
                                       Map<String, String> headers) {
+        return extractLinks(searchPageLinkCreator,
+                            page.getTotalElements() - (long) page.getNumber() * page.getSize()
+                            - page.getNumberOfElements() > 0,
+                            page.getPageable().hasPrevious(),
+                            Option.none(),
+                            type,
+                            headers);
+    }
+
+    /**
+     * @param hasNext     whether there are results after the current page
+     * @param hasPrevious whether there are results before the current page
+     * @param searchAfter cursor of the last result of the page, used for the next page link if defined
+     */
+    protected List<Link> extractLinks(SearchPageLinkCreator searchPageLinkCreator,
+                                      boolean hasNext,
+                                      boolean hasPrevious,
+                                      Option<String> searchAfter,
+                                      String type,
+                                      Map<String, String> headers) {
         return List.of(extractSelfPage(searchPageLinkCreator, type, headers),
                        extractCollectionLink(searchPageLinkCreator, headers),
-                       extractNextPage(searchPageLinkCreator, page, type, headers),
-                       extractPreviousPage(searchPageLinkCreator, page, type, headers)).flatMap(l -> l);
+                       hasNext ?
+                           extractNextPage(searchPageLinkCreator, searchAfter, type, headers) :
+                           Option.<Link>none(),
+                       hasPrevious ?
+                           extractPreviousPage(searchPageLinkCreator, type, headers) :
+                           Option.<Link>none()).flatMap(l -> l);
     }
 
     private Option<Link> extractSelfPage(SearchPageLinkCreator searchPageLinkCreator,
@@ -107,34 +132,24 @@ public abstract class AbstractSearchService {
     }
 
     private Option<Link> extractNextPage(SearchPageLinkCreator searchPageLinkCreator,
-                                         FacetPage<?> page,
+                                         Option<String> searchAfter,
                                          String type,
                                          Map<String, String> headers) {
-        if (page.getTotalElements() - (long) page.getNumber() * page.getSize() - page.getNumberOfElements() > 0) {
-            return searchPageLinkCreator.createNextPageLink()
-                                        .map(uri -> new Link(uri,
-                                                             Relation.NEXT,
-                                                             type,
-                                                             "next search page",
-                                                             HttpMethod.GET,
-                                                             headers));
-        }
-        return Option.none();
+        Option<URI> nextPageUri = searchAfter.isDefined() ?
+            searchPageLinkCreator.createNextPageLink(searchAfter.get()) :
+            searchPageLinkCreator.createNextPageLink();
+        return nextPageUri.map(uri -> new Link(uri, Relation.NEXT, type, "next search page", HttpMethod.GET, headers));
     }
 
     private Option<Link> extractPreviousPage(SearchPageLinkCreator searchPageLinkCreator,
-                                             FacetPage<?> page,
                                              String type,
                                              Map<String, String> headers) {
-        if (page.getPageable().hasPrevious()) {
-            return searchPageLinkCreator.createPrevPageLink()
-                                        .map(uri -> new Link(uri,
-                                                             Relation.PREV,
-                                                             type,
-                                                             "previous search page",
-                                                             HttpMethod.GET,
-                                                             headers));
-        }
-        return Option.none();
+        return searchPageLinkCreator.createPrevPageLink()
+                                    .map(uri -> new Link(uri,
+                                                         Relation.PREV,
+                                                         type,
+                                                         "previous search page",
+                                                         HttpMethod.GET,
+                                                         headers));
     }
 }
@@ -5,6 +5,7 @@ import com.google.common.collect.Multimap;
 import com.google.gson.Gson;
 import fr.cnes.regards.framework.geojson.geometry.IGeometry;
 import fr.cnes.regards.framework.geojson.geometry.Polygon;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
 import fr.cnes.regards.framework.urn.DataType;
 import fr.cnes.regards.framework.urn.EntityType;
 import fr.cnes.regards.modules.catalog.stac.domain.properties.StacProperty;
@@ -19,6 +20,8 @@ import fr.cnes.regards.modules.catalog.stac.service.collection.IdMappingService;
 import fr.cnes.regards.modules.catalog.stac.service.configuration.ConfigurationAccessor;
 import fr.cnes.regards.modules.catalog.stac.service.configuration.ConfigurationAccessorFactory;
 import fr.cnes.regards.modules.catalog.stac.service.criterion.RegardsPropertyAccessorAwareTest;
+import fr.cnes.regards.modules.catalog.stac.service.item.ItemConversionContext;
+import fr.cnes.regards.modules.catalog.stac.service.item.ItemConversionExecutor;
 import fr.cnes.regards.modules.catalog.stac.service.item.RegardsFeatureToStacItemConverterImpl;
 import fr.cnes.regards.modules.catalog.stac.service.item.properties.PropertyExtractionServiceImpl;
 import fr.cnes.regards.modules.catalog.stac.service.link.OGCFeatLinkCreator;
@@ -33,28 +36,39 @@ import fr.cnes.regards.modules.indexer.domain.DataFile;
 import fr.cnes.regards.modules.model.domain.Model;
 import fr.cnes.regards.modules.model.dto.properties.IProperty;
 import io.vavr.Tuple;
+import io.vavr.collection.Iterator;
 import io.vavr.collection.List;
 import io.vavr.control.Option;
 import io.vavr.control.Try;
+import org.junit.After;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static fr.cnes.regards.modules.catalog.stac.domain.error.StacRequestCorrelationId.error;
 import static fr.cnes.regards.modules.catalog.stac.domain.error.StacRequestCorrelationId.info;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -62,6 +76,11 @@ public class RegardsFeatureToStacItemConverterImplTest implements GsonAwareTest,
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RegardsFeatureToStacItemConverterImplTest.class);
 
+    /**
+     * Number of threads converting a page in the parallel conversion tests
+     */
+    private static final int PARALLELISM = 4;
+
     Gson gson = gson();
 
     StacGeoHelper stacGeoHelper = new StacGeoHelper(gson);
@@ -86,6 +105,12 @@ public class RegardsFeatureToStacItemConverterImplTest implements GsonAwareTest,
                                                                                                   uriParamAdder),
                                                                                               idMappingService);
 
+    ThreadLocal<String> threadTenant = new ThreadLocal<>();
+
+    IRuntimeTenantResolver runtimeTenantResolver = mock(IRuntimeTenantResolver.class);
+
+    ItemConversionExecutor conversionExecutor = new ItemConversionExecutor(runtimeTenantResolver, PARALLELISM, 1);
+
     @Test
     public void convertFeatureToItem() throws Exception {
         when(uriParamAdder.makeAuthParam()).thenAnswer(i -> Tuple.of("token", "theJwtToken"));
@@ -191,6 +216,193 @@ public class RegardsFeatureToStacItemConverterImplTest implements GsonAwareTest,
         assertThat(item.getAssets().head()._2.getAdditionalFields().get("key3").getAsJsonObject().size()).isEqualTo(2);
     }
 
+    @Test
+    public void shared_context_conversion_equals_context_per_item_conversion() throws Exception {
+        List<StacProperty> stacProperties = mockConversion();
+        java.util.List<DataObject> page = makePage(100);
+
+        java.util.List<Item> itemsWithContextPerItem = convertPage(stacProperties, page, false);
+        java.util.List<Item> itemsWithSharedContext = convertPage(stacProperties, page, true);
+
+        assertThat(itemsWithSharedContext).hasSize(page.size());
+        assertThat(gson.toJson(itemsWithSharedContext)).isEqualTo(gson.toJson(itemsWithContextPerItem));
+    }
+
+    @After
+    public void after() {
+        conversionExecutor.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void parallel_conversion_equals_sequential_conversion() throws Exception {
+        List<StacProperty> stacProperties = mockConversion();
+        List<DataObject> page = List.ofAll(makePage(200));
+        ItemConversionContext context = service.makeConversionContext(stacProperties, null, linkCreator);
+        Authentication authentication = new TestingAuthenticationToken("user", "password");
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        runtimeTenantResolver.forceTenant(tenant);
+        Set<String> conversionThreads = ConcurrentHashMap.newKeySet();
+
+        List<Item> sequentialItems = page.map(feature -> service.convertFeatureToItem(context, feature).get());
+        List<Item> parallelItems = conversionExecutor.convert(page, feature -> {
+            // Context of the calling thread is available in the conversion threads
+            assertThat(runtimeTenantResolver.getTenant()).isEqualTo(tenant);
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isSameAs(authentication);
+            conversionThreads.add(Thread.currentThread().getName());
+            return service.convertFeatureToItem(context, feature).get();
+        });
+
+        assertThat(conversionThreads).hasSizeGreaterThan(1);
+        assertThat(gson.toJson(parallelItems)).isEqualTo(gson.toJson(sequentialItems));
+        // Context of the calling thread is unchanged
+        assertThat(runtimeTenantResolver.getTenant()).isEqualTo(tenant);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isSameAs(authentication);
+    }
+
+    @Test
+    public void lazy_conversion_runs_with_caller_context() throws Exception {
+        List<StacProperty> stacProperties = mockConversion();
+        List<DataObject> page = List.ofAll(makePage(120));
+        ItemConversionContext context = service.makeConversionContext(stacProperties, null, linkCreator);
+        Authentication authentication = new TestingAuthenticationToken("user", "password");
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        runtimeTenantResolver.forceTenant(tenant);
+
+        Iterator<Item> items = conversionExecutor.convertLazily(page, feature -> {
+            assertThat(runtimeTenantResolver.getTenant()).isEqualTo(tenant);
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isSameAs(authentication);
+            return service.convertFeatureToItem(context, feature).get();
+        });
+        // Iterated by another thread, as an asynchronous response writer does
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            List<Item> lazyItems = writer.submit(items::toList).get();
+            List<Item> sequentialItems = page.map(feature -> service.convertFeatureToItem(context, feature).get());
+            assertThat(gson.toJson(lazyItems)).isEqualTo(gson.toJson(sequentialItems));
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    private java.util.List<DataObject> makePage(int size) {
+        java.util.List<DataObject> page = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            page.add(makeFeature(FeatureUniformResourceName.build(FeatureIdentifier.FEATURE,
+                                                                  EntityType.DATA,
+                                                                  tenant,
+                                                                  UUID.randomUUID(),
+                                                                  1), IGeometry.simplePolygon(0d, 0d, 0d, 3d, 3d, 0d)));
+        }
+        return page;
+    }
+
+    private java.util.List<Item> convertPage(List<StacProperty> stacProperties,
+                                             java.util.List<DataObject> page,
+                                             boolean sharedContext) {
+        ItemConversionContext context = service.makeConversionContext(stacProperties, null, linkCreator);
+        java.util.List<Item> items = new ArrayList<>();
+        for (DataObject feature : page) {
+            Try<Item> item = sharedContext ?
+                service.convertFeatureToItem(context, feature) :
+                service.convertFeatureToItem(stacProperties, null, linkCreator, feature);
+            items.add(item.get());
+        }
+        return items;
+    }
+
+    private DataObject makeFeature(FeatureUniformResourceName itemIpId, Polygon polygon) {
+        DataObjectFeature dof = new DataObjectFeature(itemIpId,
+                                                      "theProvider",
+                                                      "theLabel",
+                                                      "theSessionOwner",
+                                                      "theSession",
+                                                      "theModelName");
+        DataObject feature = DataObject.wrap(model, dof, true);
+        String parentDatasetIpId = FeatureUniformResourceName.build(FeatureIdentifier.FEATURE,
+                                                                    EntityType.DATASET,
+                                                                    tenant,
+                                                                    UUID.randomUUID(),
+                                                                    1).toString();
+        feature.setGeometry(polygon);
+        feature.addTags(parentDatasetIpId);
+        feature.addProperty(IProperty.buildDate("regardsAttr", OffsetDateTime.now().minusYears(1L)));
+        feature.getFeature().setFiles(createDataFiles());
+        return feature;
+    }
+
+    /**
+     * Mock the services used by the conversion of the features built by {@link #makeFeature}
+     *
+     * @return the STAC properties to convert
+     */
+    private List<StacProperty> mockConversion() throws Exception {
+        when(uriParamAdder.makeAuthParam()).thenAnswer(i -> Tuple.of("token", "theJwtToken"));
+        when(uriParamAdder.appendParams(any())).thenCallRealMethod();
+
+        when(configurationAccessorFactory.makeConfigurationAccessor()).thenReturn(configurationAccessor);
+        when(configurationAccessor.getGeoJSONReader()).thenAnswer(i -> stacGeoHelper.makeGeoJSONReader(stacGeoHelper.updateFactory(
+            true)));
+
+        when(linkCreator.createLandingPageLink(Relation.ROOT)).thenAnswer(i -> Option.of(uri("/root"))
+                                                                                     .map(uri -> new Link(uri,
+                                                                                                          Relation.ROOT,
+                                                                                                          "",
+                                                                                                          "",
+                                                                                                          HttpMethod.GET,
+                                                                                                          null)));
+        when(linkCreator.createCollectionLink(any(Relation.class), anyString(), anyString())).thenAnswer(i -> Option.of(
+                                                                                                                        uri("/collection/" + i.getArgument(1)))
+                                                                                                                    .map(
+                                                                                                                        uri -> new Link(
+                                                                                                                            uri,
+                                                                                                                            (Relation) i.getArgument(
+                                                                                                                                0),
+                                                                                                                            "",
+                                                                                                                            "",
+                                                                                                                            HttpMethod.GET,
+                                                                                                                            null)));
+        when(linkCreator.createItemLink(any(Relation.class),
+                                        anyString(),
+                                        anyString())).thenAnswer(i -> Option.of(new URI("/collection/"
+                                                                                        + i.getArgument(1)
+                                                                                        + "/item/"
+                                                                                        + i.getArgument(2)))
+                                                                            .map(uri -> new Link(uri,
+                                                                                                 Relation.SELF,
+                                                                                                 "",
+                                                                                                 "",
+                                                                                                 HttpMethod.GET,
+                                                                                                 null)));
+
+        when(runtimeTenantResolver.getTenant()).thenAnswer(i -> threadTenant.get());
+        doAnswer(i -> {
+            threadTenant.set(i.getArgument(0));
+            return null;
+        }).when(runtimeTenantResolver).forceTenant(anyString());
+        doAnswer(i -> {
+            threadTenant.remove();
+            return null;
+        }).when(runtimeTenantResolver).clearTenant();
+
+        when(idMappingService.getStacIdByUrn(any())).thenReturn("stacId");
+        when(idMappingService.getItemId(any(), anyString(), anyBoolean())).thenAnswer(i -> i.getArgument(0)
+                                                                                             .toString());
+
+        return List.of(new StacProperty(accessor("regardsAttr",
+                                                 StacPropertyType.DATETIME,
+                                                 OffsetDateTime.now().minusYears(2L)),
+                                        null,
+                                        "stac:prop",
+                                        "",
+                                        false,
+                                        0,
+                                        null,
+                                        StacPropertyType.DATETIME,
+                                        new IdentityPropertyConverter<>(StacPropertyType.DATETIME),
+                                        Boolean.FALSE));
+    }
+
     public URI uri(String s) {
         try {
             return new URI(s);
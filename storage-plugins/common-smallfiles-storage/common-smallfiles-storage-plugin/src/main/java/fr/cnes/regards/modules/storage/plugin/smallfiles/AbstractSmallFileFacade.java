@@ -13,13 +13,14 @@ import fr.cnes.regards.modules.fileaccess.plugin.dto.FileCacheRequestDto;
 import fr.cnes.regards.modules.fileaccess.plugin.dto.FileDeletionRequestDto;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.*;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.task.*;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.ArchiveCacheAccessIndex;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.LockTypeEnum;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.ParallelZipArchiveWriter;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.RestoreResponse;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.SmallFilesUtils;
 import jakarta.annotation.Nullable;
 import lombok.Getter;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 
 import java.io.File;
@@ -34,10 +35,7 @@ import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -74,34 +72,49 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
 
     private final LockService lockService;
 
-    private final BasicThreadFactory factory;
+    /**
+     * Executors of the plugin instance, shared by all the facades created by the plugin
+     */
+    private final SmallFilesExecutors executors;
+
+    /**
+     * Occupancy of the workspace directories, shared by all the facades created by the plugin
+     */
+    private final DirectoryOccupancyLedger occupancyLedger;
+
+    /**
+     * Last access dates of the archives of the cache, shared by all the facades created by the plugin
+     */
+    private final ArchiveCacheAccessIndex cacheAccessIndex;
 
     public AbstractSmallFileFacade(IRuntimeTenantResolver runtimeTenantResolver,
                                    LockService lockService,
-                                   String threadNamingPattern) {
-        factory = new BasicThreadFactory.Builder().namingPattern(threadNamingPattern)
-                                                  .priority(Thread.MAX_PRIORITY)
-                                                  .build();
+                                   SmallFilesExecutors executors,
+                                   DirectoryOccupancyLedger occupancyLedger,
+                                   ArchiveCacheAccessIndex cacheAccessIndex) {
         this.runtimeTenantResolver = runtimeTenantResolver;
         this.lockService = lockService;
+        this.executors = executors;
+        this.occupancyLedger = occupancyLedger;
+        this.cacheAccessIndex = cacheAccessIndex;
     }
 
     public void store(FileStorageWorkingSubset workingSet,
                       IStorageProgressManager progressManager,
                       StoreSmallFileTaskConfiguration configuration) {
         LOGGER.info("Glacier store requests received");
-        ExecutorService storeExecutorService = null;
         try {
-            storeExecutorService = Executors.newFixedThreadPool(configuration.storeParallelTaskNumber(), factory);
             String tenant = runtimeTenantResolver.getTenant();
-            List<Future<LockServiceResponse<Void>>> taskResults = storeExecutorService.invokeAll(workingSet.getFileReferenceRequests()
-                                                                                                           .stream()
-                                                                                                           .map(request -> doStoreTask(
-                                                                                                               request,
-                                                                                                               configuration,
-                                                                                                               progressManager,
-                                                                                                               tenant))
-                                                                                                           .toList());
+            List<Future<LockServiceResponse<Void>>> taskResults = executors.invokeAll(SmallFilesExecutors.Operation.STORE,
+                                                                                      configuration.storeParallelTaskNumber(),
+                                                                                      workingSet.getFileReferenceRequests()
+                                                                                                .stream()
+                                                                                                .map(request -> doStoreTask(
+                                                                                                    request,
+                                                                                                    configuration,
+                                                                                                    progressManager,
+                                                                                                    tenant))
+                                                                                                .toList());
 
             // Wait for all tasks to complete
             for (Future<LockServiceResponse<Void>> future : taskResults) {
@@ -112,10 +125,6 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
             LOGGER.error("Storage process interrupted");
         } catch (ExecutionException e) {
             LOGGER.error("Error during storage process", e);
-        } finally {
-            if (storeExecutorService != null) {
-                storeExecutorService.shutdownNow();
-            }
         }
         LOGGER.info("End handling store requests");
     }
@@ -152,7 +161,8 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
                                             new StoreSmallFileTask(configuration,
                                                                    request,
                                                                    progressManager,
-                                                                   this::getStorageUrl));
+                                                                   this::getStorageUrl,
+                                                                   occupancyLedger));
                 }
             } catch (MalformedURLException e) {
                 LOGGER.error(e.getMessage(), e);
@@ -190,17 +200,35 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
                          RetrieveSmallFileTaskConfiguration configuration) {
         LOGGER.info("Glacier retrieve requests received");
         String tenant = runtimeTenantResolver.getTenant();
-        ExecutorService executorService = null;
         try {
-            executorService = Executors.newFixedThreadPool(configuration.parallelTaskNumber(), factory);
-            List<Future<LockServiceResponse<Void>>> taskResults = executorService.invokeAll(workingSubset.getFileRestorationRequests()
-                                                                                                         .stream()
-                                                                                                         .map(request -> doRetrieveTask(
-                                                                                                             request,
-                                                                                                             configuration,
-                                                                                                             progressManager,
-                                                                                                             tenant))
-                                                                                                         .toList());
+            // Small files stored in the same remote archive are retrieved together, to restore the archive only once
+            List<Callable<LockServiceResponse<Void>>> tasks = new ArrayList<>();
+            Map<String, Map<String, List<FileCacheRequestDto>>> smallFilesByArchive = new LinkedHashMap<>();
+            for (FileCacheRequestDto request : workingSubset.getFileRestorationRequests()) {
+                Optional<SmallFilesUtils.GlacierUrl> remoteSmallFile = getRemoteSmallFile(request.getFileReference()
+                                                                                                 .getLocation()
+                                                                                                 .getUrl(),
+                                                                                          request.getFileReference()
+                                                                                                 .getLocation()
+                                                                                                 .isPendingActionRemaining());
+                if (remoteSmallFile.isPresent()) {
+                    smallFilesByArchive.computeIfAbsent(remoteSmallFile.get().archiveFilePath(),
+                                                        archive -> new LinkedHashMap<>())
+                                       .computeIfAbsent(remoteSmallFile.get().smallFileNameInArchive().get(),
+                                                        fileName -> new ArrayList<>())
+                                       .add(request);
+                } else {
+                    tasks.add(doRetrieveTask(request, configuration, progressManager, tenant));
+                }
+            }
+            smallFilesByArchive.forEach((archive, requests) -> tasks.add(doRetrieveArchiveTask(archive,
+                                                                                               requests,
+                                                                                               configuration,
+                                                                                               progressManager,
+                                                                                               tenant)));
+            List<Future<LockServiceResponse<Void>>> taskResults = executors.invokeAll(SmallFilesExecutors.Operation.RETRIEVE,
+                                                                                      configuration.parallelTaskNumber(),
+                                                                                      tasks);
             // Wait for all tasks to complete
             for (Future<LockServiceResponse<Void>> future : taskResults) {
                 future.get();
@@ -210,10 +238,6 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
             LOGGER.error("Retrieval process interrupted");
         } catch (ExecutionException e) {
             LOGGER.error("Error during retrieval process", e);
-        } finally {
-            if (executorService != null) {
-                executorService.shutdown();
-            }
         }
         LOGGER.info("Handling of retrieve requests ended");
     }
@@ -277,22 +301,108 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
         };
     }
 
+    /**
+     * @return the small file location in its archive if the url is the one of a small file already sent to the
+     * storage, empty otherwise
+     */
+    private Optional<SmallFilesUtils.GlacierUrl> getRemoteSmallFile(String url, boolean pendingActionRemaining) {
+        if (pendingActionRemaining || !isASmallFileUrl(url)) {
+            return Optional.empty();
+        }
+        try {
+            SmallFilesUtils.GlacierUrl smallFile = SmallFilesUtils.dispatchFilePath(getFileRelativePath(url).toString());
+            return smallFile.isSmallFileUrl() ? Optional.of(smallFile) : Optional.empty();
+        } catch (MalformedURLException e) {
+            // Error is handled by the task of the single file
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Retrieve in cache several small files of the same remote archive, restoring the archive only once.
+     *
+     * @param archiveRelativePath path of the archive on the storage
+     * @param requestsByFileName  requests to handle, by name of the small file in the archive
+     */
+    public Callable<LockServiceResponse<Void>> doRetrieveArchiveTask(String archiveRelativePath,
+                                                                     Map<String, List<FileCacheRequestDto>> requestsByFileName,
+                                                                     RetrieveSmallFileTaskConfiguration configuration,
+                                                                     IRestorationProgressManager progressManager,
+                                                                     String tenant) {
+        return () -> {
+            LOGGER.debug(TENANT_LOG, Thread.currentThread().getName(), tenant);
+            runtimeTenantResolver.forceTenant(tenant);
+            try {
+                /*
+                 * Lock the archive (with RESTORE LOCK) to prevent other retrieve jobs or delete jobs to restore
+                 * the same archive, and clean jobs to delete it while files are extracted
+                 * @see {@link S3Glacier#doDeleteTask} and {@link S3Glacier#doCleanDirectory}
+                 */
+                String lockName = SmallFilesUtils.getLockName(LockTypeEnum.LOCK_RESTORE,
+                                                              null,
+                                                              configuration.workspacePath(),
+                                                              archiveRelativePath);
+                RetrieveCacheArchiveTask task = new RetrieveCacheArchiveTask(new RetrieveCacheArchiveTaskConfiguration(
+                    archiveRelativePath,
+                    getCachePath(configuration.workspacePath()),
+                    this,
+                    cacheAccessIndex,
+                    lockName,
+                    Instant.now(),
+                    configuration.renewMaxIterationWaitingPeriodInS(),
+                    configuration.renewCallDurationInMs(),
+                    lockService,
+                    occupancyLedger), requestsByFileName, progressManager);
+                LOGGER.debug("In thread {}, running RetrieveCacheArchiveTask on {} files from Glacier with lock",
+                             Thread.currentThread().getName(),
+                             requestsByFileName.size());
+                lockService.runWithLock(lockName, task);
+            } catch (InterruptedException e) {
+                LOGGER.error(e.getMessage(), e);
+                requestsByFileName.values()
+                                  .forEach(requests -> requests.forEach(request -> progressManager.restoreFailed(
+                                      request,
+                                      "The restoration task was interrupted before completion.")));
+            }
+            return null;
+        };
+    }
+
     public void delete(FileDeletionWorkingSubset workingSet,
                        IDeletionProgressManager progressManager,
                        DeleteSmallFileTaskConfiguration configuration) {
         LOGGER.info("S3Glacier delete received requests");
-        ExecutorService executorService = null;
         try {
-            executorService = Executors.newFixedThreadPool(configuration.parallelTaskNumber(), factory);
             String tenant = runtimeTenantResolver.getTenant();
-            List<Future<LockServiceResponse<Void>>> taskResults = executorService.invokeAll(workingSet.getFileDeletionRequests()
-                                                                                                      .stream()
-                                                                                                      .map(request -> doDeleteTask(
-                                                                                                          request,
-                                                                                                          configuration,
-                                                                                                          progressManager,
-                                                                                                          tenant))
-                                                                                                      .toList());
+            // Small files stored in the same remote archive are deleted together, to restore and update the archive
+            // only once
+            List<Callable<LockServiceResponse<Void>>> tasks = new ArrayList<>();
+            Map<String, Map<String, List<FileDeletionRequestDto>>> smallFilesByArchive = new LinkedHashMap<>();
+            for (FileDeletionRequestDto request : workingSet.getFileDeletionRequests()) {
+                Optional<SmallFilesUtils.GlacierUrl> remoteSmallFile = getRemoteSmallFile(request.getFileReference()
+                                                                                                 .getLocation()
+                                                                                                 .getUrl(),
+                                                                                          request.getFileReference()
+                                                                                                 .getLocation()
+                                                                                                 .isPendingActionRemaining());
+                if (remoteSmallFile.isPresent()) {
+                    smallFilesByArchive.computeIfAbsent(remoteSmallFile.get().archiveFilePath(),
+                                                        archive -> new LinkedHashMap<>())
+                                       .computeIfAbsent(remoteSmallFile.get().smallFileNameInArchive().get(),
+                                                        fileName -> new ArrayList<>())
+                                       .add(request);
+                } else {
+                    tasks.add(doDeleteTask(request, configuration, progressManager, tenant));
+                }
+            }
+            smallFilesByArchive.forEach((archive, requests) -> tasks.add(doDeleteArchiveTask(archive,
+                                                                                              requests,
+                                                                                              configuration,
+                                                                                              progressManager,
+                                                                                              tenant)));
+            List<Future<LockServiceResponse<Void>>> taskResults = executors.invokeAll(SmallFilesExecutors.Operation.DELETE,
+                                                                                      configuration.parallelTaskNumber(),
+                                                                                      tasks);
             // Wait for all tasks to complete
             for (Future<LockServiceResponse<Void>> future : taskResults) {
                 future.get();
@@ -301,10 +411,6 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
             LOGGER.error("Deletion process interrupted");
         } catch (ExecutionException e) {
             LOGGER.error("Error during deletion process", e);
-        } finally {
-            if (executorService != null) {
-                executorService.shutdown();
-            }
         }
         LOGGER.info("Handling of delete requests ended");
     }
@@ -335,7 +441,8 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
                 // The small file is still in the local building directory, it is not necessary to restore it
                 DeleteLocalSmallFileTaskConfiguration configurationLocal = new DeleteLocalSmallFileTaskConfiguration(
                     fileRelativePath,
-                    getArchiveBuildingWorkspacePath(configuration.workspacePath()));
+                    getArchiveBuildingWorkspacePath(configuration.workspacePath()),
+                    occupancyLedger);
                 DeleteLocalSmallFileTask task = new DeleteLocalSmallFileTask(configurationLocal,
                                                                              request,
                                                                              progressManager);
@@ -372,7 +479,8 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
                     Instant.now(),
                     configuration.renewMaxIterationWaitingPeriodInS(),
                     configuration.renewCallDurationInMs(),
-                    lockService);
+                    lockService,
+                    occupancyLedger);
                 RestoreAndDeleteSmallFileTask task = new RestoreAndDeleteSmallFileTask(configurationRestoreDelete,
                                                                                        request,
                                                                                        progressManager);
@@ -386,6 +494,56 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
         }
     }
 
+    /**
+     * Delete several small files of the same remote archive, restoring and extracting the archive only once.
+     *
+     * @param archiveRelativePath path of the archive on the storage
+     * @param requestsByFileName  requests to handle, by name of the small file in the archive
+     */
+    public Callable<LockServiceResponse<Void>> doDeleteArchiveTask(String archiveRelativePath,
+                                                                   Map<String, List<FileDeletionRequestDto>> requestsByFileName,
+                                                                   DeleteSmallFileTaskConfiguration configuration,
+                                                                   IDeletionProgressManager progressManager,
+                                                                   String tenant) {
+        return () -> {
+            LOGGER.debug(TENANT_LOG, Thread.currentThread().getName(), tenant);
+            runtimeTenantResolver.forceTenant(tenant);
+            try {
+                /*
+                 * Lock the archive (with RESTORE LOCK) to prevent other deletion jobs or restore jobs to retrieve
+                 * the same archive
+                 * @see {@link S3Glacier#doDeleteTask} and {@link S3Glacier#doRetrieveTask}
+                 */
+                String lockName = SmallFilesUtils.getLockName(LockTypeEnum.LOCK_RESTORE,
+                                                              null,
+                                                              configuration.workspacePath(),
+                                                              archiveRelativePath);
+                RestoreAndDeleteArchiveTask task = new RestoreAndDeleteArchiveTask(new RestoreAndDeleteArchiveTaskConfiguration(
+                    archiveRelativePath,
+                    getCachePath(configuration.workspacePath()),
+                    getArchiveBuildingWorkspacePath(configuration.workspacePath()),
+                    this,
+                    lockName,
+                    Instant.now(),
+                    configuration.renewMaxIterationWaitingPeriodInS(),
+                    configuration.renewCallDurationInMs(),
+                    lockService,
+                    occupancyLedger), requestsByFileName, progressManager);
+                LOGGER.debug("In thread {}, running RestoreAndDeleteArchiveTask on {} files from S3Glacier with lock",
+                             Thread.currentThread().getName(),
+                             requestsByFileName.size());
+                lockService.runWithLock(lockName, task);
+            } catch (InterruptedException e) {
+                LOGGER.error(e.getMessage(), e);
+                requestsByFileName.values()
+                                  .forEach(requests -> requests.forEach(request -> progressManager.deletionFailed(
+                                      request,
+                                      "The deletion task was interrupted before completion.")));
+            }
+            return null;
+        };
+    }
+
     public void runPeriodicAction(IPeriodicActionProgressManager progressManager,
                                   PeriodicActionSmallFileTaskConfiguration configuration) {
         LOGGER.info("Glacier periodic actions started");
@@ -401,10 +559,8 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
         if (!Files.exists(zipWorkspacePath)) {
             return;
         }
-        ExecutorService executorService = null;
         try (Stream<Path> dirList = Files.walk(zipWorkspacePath)/*; S3HighLevelReactiveClient client =
             createS3Client()*/) {
-            executorService = Executors.newFixedThreadPool(configuration.parallelTaskNumber(), factory);
             // Directory that will be stored are located in /<WORKSPACE>/<ZIP_DIR>/<NODE>/, they can be symbolic link
             // It is important to differentiate between actual directories and symbolic link to use locks correctly
             Map<Boolean, List<Path>> dirToProcessList = dirList.filter(dir -> dir.getFileName()
@@ -422,7 +578,9 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
                                                                                            tenant,
                                                                                            entry.getKey())))
                                                                 .toList();
-            List<Future<Boolean>> res = executorService.invokeAll(processes);
+            List<Future<Boolean>> res = executors.invokeAll(SmallFilesExecutors.Operation.SUBMIT_ARCHIVE,
+                                                            configuration.parallelTaskNumber(),
+                                                            processes);
             boolean success = res.stream().allMatch(futureRes -> {
                 try {
                     return futureRes.get();
@@ -441,10 +599,6 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
             LOGGER.error(e.getMessage(), e);
         } catch (InterruptedException e) {
             LOGGER.error("Submit archives process interrupted");
-        } finally {
-            if (executorService != null) {
-                executorService.shutdown();
-            }
         }
     }
 
@@ -474,7 +628,10 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
                 configuration.workspacePath(),
                 this,
                 configuration.archiveMaxAge(),
-                configuration.storageName());
+                configuration.storageName(),
+                occupancyLedger,
+                configuration.streamedArchiveUpload(),
+                new ParallelZipArchiveWriter(executors, configuration.archiveCompressionParallelism()));
 
             if (isSymLink) {
                 SubmitUpdatedArchiveTask task = new SubmitUpdatedArchiveTask(submitReadyArchiveTaskConfiguration,
@@ -510,6 +667,7 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
     /**
      * Clean the cache containing the restored archive. This will remove archives and their extracted content if they
      * are older than the age defined in plugin parameter (age > archiveCacheLifetime).
+     * Then, if the cache is still larger than its maximum size, the least recently used archives are evicted.
      */
     public void cleanArchiveCache(PeriodicActionSmallFileTaskConfiguration configuration) {
         Path cacheWorkspacePath = Paths.get(configuration.workspacePath(), TMP_DIR);
@@ -517,6 +675,9 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
         if (!Files.exists(cacheWorkspacePath)) {
             return;
         }
+        // Catch up the changes of the workspace not recorded in the occupancy ledger
+        int reconciled = occupancyLedger.reconcileStale();
+        LOGGER.debug("Occupancy of {} directories reconciled", reconciled);
         Instant oldestAgeToKeep = OffsetDateTime.now().minusHours(configuration.archiveCacheLifetime()).toInstant();
         List<Path> directoriesWithFiles = new ArrayList<>();
         getDirectoriesWithFilesToDelete(directoriesWithFiles,
@@ -524,23 +685,136 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
                                         oldestAgeToKeep,
                                         cacheWorkspacePath,
                                         Paths.get(configuration.workspacePath(), ZIP_DIR));
-        ExecutorService executorService = null;
         try {
-            executorService = Executors.newFixedThreadPool(configuration.parallelTaskNumber(), factory);
-            executorService.invokeAll(directoriesWithFiles.stream()
-                                                          .map(dirToProcess -> doCleanDirectory(cacheWorkspacePath,
-                                                                                                dirToProcess,
-                                                                                                oldestAgeToKeep,
-                                                                                                tenant,
-                                                                                                configuration))
-                                                          .toList());
+            executors.invokeAll(SmallFilesExecutors.Operation.CLEAN_CACHE,
+                                configuration.parallelTaskNumber(),
+                                directoriesWithFiles.stream()
+                                                    .map(dirToProcess -> doCleanDirectory(cacheWorkspacePath,
+                                                                                          dirToProcess,
+                                                                                          oldestAgeToKeep,
+                                                                                          tenant,
+                                                                                          configuration))
+                                                    .toList());
+            if (configuration.archiveCacheMaxSize() > 0) {
+                evictLeastRecentlyUsedArchives(cacheWorkspacePath, configuration);
+            }
         } catch (InterruptedException e) {
             LOGGER.error("Clean archive cache process interrupted");
+            Thread.currentThread().interrupt();
         } finally {
-            if (executorService != null) {
-                executorService.shutdown();
+            cacheAccessIndex.save();
+        }
+    }
+
+    /**
+     * Evict the least recently used archives of the cache, with their extracted content, until the cache size is
+     * under its maximum size. The archives used to update an archive following a deletion are never evicted.
+     */
+    private void evictLeastRecentlyUsedArchives(Path cacheWorkspacePath,
+                                                PeriodicActionSmallFileTaskConfiguration configuration)
+        throws InterruptedException {
+        Map<Path, CachedArchive> cachedArchives = new HashMap<>();
+        Set<Path> archivesInUse = new HashSet<>();
+        getCachedArchives(cachedArchives,
+                          archivesInUse,
+                          cacheWorkspacePath,
+                          cacheWorkspacePath,
+                          Paths.get(configuration.workspacePath(), ZIP_DIR));
+        cachedArchives.keySet().removeAll(archivesInUse);
+        // Access dates of the archives not in the cache anymore are useless
+        cacheAccessIndex.retainAll(cachedArchives.keySet()
+                                                 .stream()
+                                                 .map(archivePath -> cacheWorkspacePath.relativize(archivePath)
+                                                                                       .toString())
+                                                 .toList());
+        long cacheSize = cachedArchives.values().stream().mapToLong(CachedArchive::size).sum();
+        if (cacheSize <= configuration.archiveCacheMaxSize()) {
+            return;
+        }
+        LOGGER.info("Archive cache size {} exceeds its maximum size {}, evicting least recently used archives",
+                    cacheSize,
+                    configuration.archiveCacheMaxSize());
+        List<CachedArchive> archivesByLastAccess = cachedArchives.values()
+                                                                 .stream()
+                                                                 .sorted(Comparator.comparing(cachedArchive -> lastAccess(cachedArchive,
+                                                                                                                         cacheWorkspacePath)))
+                                                                 .toList();
+        for (CachedArchive cachedArchive : archivesByLastAccess) {
+            if (cacheSize <= configuration.archiveCacheMaxSize()) {
+                break;
+            }
+            String archiveKey = cacheWorkspacePath.relativize(cachedArchive.archivePath()).toString();
+            EvictCachedArchiveTask task = new EvictCachedArchiveTask(new EvictCachedArchiveTaskConfiguration(
+                archiveKey,
+                cachedArchive.archivePath(),
+                cachedArchive.archivePath()
+                             .resolveSibling(SmallFilesUtils.computePathOfBuildDirectoryFromArchiveName(cachedArchive.archivePath()
+                                                                                                                     .getFileName()
+                                                                                                                     .toString())),
+                occupancyLedger,
+                cacheAccessIndex));
+            /*
+             * Lock the archive (with RESTORE LOCK) to prevent retrieve jobs or delete jobs to access it while
+             * it's being evicted.
+             * @see S3Glacier#doRetrieveTask and {@link S3Glacier#doDeleteTask}
+             */
+            LockServiceResponse<Boolean> response = lockService.tryRunWithLock(SmallFilesUtils.getLockName(
+                                                                                   LockTypeEnum.LOCK_RESTORE,
+                                                                                   null,
+                                                                                   configuration.workspacePath(),
+                                                                                   cachedArchive.archivePath().toString()),
+                                                                               task,
+                                                                               configuration.cleanCacheTaskLockAcquireTimeout(),
+                                                                               TimeUnit.SECONDS);
+            if (response.isExecuted() && Boolean.TRUE.equals(response.getResponse())) {
+                cacheSize -= cachedArchive.size();
+            } else {
+                LOGGER.warn("Unable to evict archive {} from the cache, it should be in use by a restoration "
+                            + "process", archiveKey);
             }
         }
+        LOGGER.info("Archive cache size after eviction : {}", cacheSize);
+    }
+
+    /**
+     * Get the archives of the cache with the size of the archive and of its extracted content. Archives whose
+     * extracted directory is linked in the building workspace are returned as in use.
+     */
+    private void getCachedArchives(Map<Path, CachedArchive> cachedArchives,
+                                   Set<Path> archivesInUse,
+                                   Path directoryPath,
+                                   Path cachePath,
+                                   Path buildingPath) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                if (Files.isDirectory(path)) {
+                    if (fileName.startsWith(BUILDING_DIRECTORY_PREFIX)) {
+                        Path archivePath = path.resolveSibling(SmallFilesUtils.createArchiveNameFromBuildingDir(
+                            fileName));
+                        if (hasSymLink(path, cachePath, buildingPath)) {
+                            archivesInUse.add(archivePath);
+                        }
+                        // Listed again only if modified by another instance of the microservice
+                        long directorySize = occupancyLedger.getUpToDate(path).size();
+                        cachedArchives.merge(archivePath,
+                                             new CachedArchive(archivePath,
+                                                               directorySize,
+                                                               Files.getLastModifiedTime(path).toInstant()),
+                                             CachedArchive::merge);
+                    } else {
+                        getCachedArchives(cachedArchives, archivesInUse, path, cachePath, buildingPath);
+                    }
+                } else if (fileName.endsWith(ARCHIVE_EXTENSION)) {
+                    BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+                    cachedArchives.merge(path,
+                                         new CachedArchive(path, attr.size(), attr.lastModifiedTime().toInstant()),
+                                         CachedArchive::merge);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error while getting archives of the cache", e);
+        }
     }
 
     public Callable<LockServiceResponse<Void>> doCleanDirectory(Path cacheWorkspacePath,
@@ -553,7 +827,8 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
             runtimeTenantResolver.forceTenant(tenant);
             CleanDirectoryTaskConfiguration cleanDirectoryTaskConfiguration = new CleanDirectoryTaskConfiguration(
                 dirPath,
-                oldestAgeToKeep);
+                oldestAgeToKeep,
+                occupancyLedger);
             CleanDirectoryTask task = new CleanDirectoryTask(cleanDirectoryTaskConfiguration);
             String dirToClean = cacheWorkspacePath.relativize(dirPath).toString();
             /**
@@ -599,11 +874,13 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
                     // - directory contains at least one file to expired or directory is empty
                     // - directory is not associated to a current building archive so no symbolic link exists in
                     // building directory.
-                    if (path.getFileName().toString().startsWith(BUILDING_DIRECTORY_PREFIX) && (hasFilesTooOld(path,
-                                                                                                               oldestAgeToKeep)
-                                                                                                || FileUtils.isEmptyDirectory(
-                        path.toFile())) && !hasSymLink(path, cachePath, buildingPath)) {
-                        directoriesWithFiles.add(path);
+                    if (path.getFileName().toString().startsWith(BUILDING_DIRECTORY_PREFIX)) {
+                        // Building directories only contain files, they are not entered
+                        if (hasFilesTooOldOrIsEmpty(path, oldestAgeToKeep) && !hasSymLink(path,
+                                                                                          cachePath,
+                                                                                          buildingPath)) {
+                            directoriesWithFiles.add(path);
+                        }
                     } else {
                         // Else handle recursive subdirectories
                         getDirectoriesWithFilesToDelete(directoriesWithFiles,
@@ -624,16 +901,13 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
         return Files.isSymbolicLink(pathInBuildingWorkspace);
     }
 
-    private boolean hasFilesTooOld(Path directoryPath, Instant oldestAgeToKeep) throws IOException {
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath)) {
-            for (Path path : stream) {
-                BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
-                if (Files.isRegularFile(path) && attr.lastModifiedTime().toInstant().isBefore(oldestAgeToKeep)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    /**
+     * Check the directory from its occupancy in the ledger, without listing it if it is already known. The ledger
+     * may report files too old that are already deleted, the directory is then listed by the cleaning task.
+     */
+    private boolean hasFilesTooOldOrIsEmpty(Path directoryPath, Instant oldestAgeToKeep) throws IOException {
+        DirectoryOccupancyLedger.DirectoryOccupancy occupancy = occupancyLedger.get(directoryPath);
+        return occupancy.isEmpty() || occupancy.hasFilesOlderThan(oldestAgeToKeep);
     }
 
     private boolean isASmallFileUrl(String url) {
@@ -660,7 +934,8 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
                                                       configuration.renewMaxIterationWaitingPeriodInS(),
                                                       configuration.renewCallDurationInMs(),
                                                       lockService,
-                                                      configuration.useExternalCache());
+                                                      configuration.useExternalCache(),
+                                                      occupancyLedger);
     }
 
     private String getArchiveBuildingWorkspacePath(String workspacePath) {
@@ -695,16 +970,16 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
         LOGGER.info("Glacier periodic pending actions started");
         String tenant = runtimeTenantResolver.getTenant();
         List<Future<LockServiceResponse<Void>>> taskResults = null;
-        ExecutorService executorService = null;
         try {
-            executorService = Executors.newFixedThreadPool(parallelTaskNumber, factory);
-            taskResults = executorService.invokeAll(filesWithPendingActions.stream()
-                                                                           .map(ref -> doCheckPendingAction(ref.getLocation()
-                                                                                                               .getUrl(),
-                                                                                                            progressManager,
-                                                                                                            tenant,
-                                                                                                            workspacePath))
-                                                                           .toList());
+            taskResults = executors.invokeAll(SmallFilesExecutors.Operation.CHECK_PENDING_ACTION,
+                                              parallelTaskNumber,
+                                              filesWithPendingActions.stream()
+                                                                     .map(ref -> doCheckPendingAction(ref.getLocation()
+                                                                                                         .getUrl(),
+                                                                                                      progressManager,
+                                                                                                      tenant,
+                                                                                                      workspacePath))
+                                                                     .toList());
             // Wait for all tasks to complete
             for (Future<LockServiceResponse<Void>> future : taskResults) {
                 future.get();
@@ -713,10 +988,6 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
             LOGGER.error("Check pending action process interrupted");
         } catch (ExecutionException e) {
             LOGGER.error("Error during check pending action process", e);
-        } finally {
-            if (executorService != null) {
-                executorService.shutdown();
-            }
         }
 
         LOGGER.info("Glacier periodic pending actions ended");
@@ -798,4 +1069,30 @@ public abstract class AbstractSmallFileFacade implements ISmallFilesStorage {
 
     public abstract void handleDeleteFileRequest(FileDeletionRequestDto request,
                                                  IDeletionProgressManager progressManager);
+
+    /**
+     * Archive of the cache
+     *
+     * @param archivePath  path of the restored archive in the cache
+     * @param size         cumulated size of the archive and of its extracted files
+     * @param lastModified last modification date of the archive or of its extracted directory
+     */
+    private record CachedArchive(Path archivePath,
+                                 long size,
+                                 Instant lastModified) {
+
+        private CachedArchive merge(CachedArchive other) {
+            return new CachedArchive(archivePath,
+                                     size + other.size,
+                                     lastModified.isAfter(other.lastModified) ? lastModified : other.lastModified);
+        }
+    }
+
+    /**
+     * @return the last access date of the archive, its last modification date if it was never accessed
+     */
+    private Instant lastAccess(CachedArchive cachedArchive, Path cachePath) {
+        return cacheAccessIndex.getLastAccess(cachePath.relativize(cachedArchive.archivePath()).toString())
+                               .orElse(cachedArchive.lastModified());
+    }
 }
@@ -26,6 +26,7 @@ import fr.cnes.regards.framework.jpa.multitenant.lock.LockService;
 import fr.cnes.regards.framework.s3.domain.GlacierFileStatus;
 import fr.cnes.regards.framework.s3.domain.RestorationStatus;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.RestoreResponse;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.StoredArchive;
 import jakarta.annotation.Nullable;
 
 import java.io.IOException;
@@ -138,5 +139,11 @@ public interface ISmallFilesStorage {
 
     String storeFile(Path fileToCreate, String filePathOnStorage, String checksum, Long fileSize) throws IOException;
 
+    /**
+     * Store the content written by the given writer, sending it to the server while it is written, without any local
+     * file. The file is not created on the server if the writer fails.
+     */
+    StoredArchive storeStreamedFile(StoredArchive.ContentWriter writer, String filePathOnStorage) throws IOException;
+
     boolean existsStorageUrl(Path path);
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Long-lived executors of a small files storage plugin instance, one per type of operation.
+ * <p>
+ * The executors are shared by all the jobs running on the plugin instance, so the number of concurrent S3 and file
+ * system operations of each type is bounded by the parallelism of the operation, whatever the number of jobs. A job
+ * submitting more tasks than the executor can handle is blocked until tasks complete (back-pressure), instead of
+ * queuing all its tasks. Tasks submitted by a task of the same operation are run by the submitting task, so that
+ * tasks never wait for each other's permits.
+ * <p>
+ * Executors are created at first use, with the parallelism given by the first caller, then reused until
+ * {@link #shutdown()}.
+ */
+public class SmallFilesExecutors {
+
+    private static final Logger LOGGER = getLogger(SmallFilesExecutors.class);
+
+    /**
+     * Idle time after which a platform thread of an executor is released
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Type of operation, each one runs in its own executor so that a long operation cannot starve the others
+     */
+    public enum Operation {
+        STORE,
+        RETRIEVE,
+        DELETE,
+        SUBMIT_ARCHIVE,
+        CLEAN_CACHE,
+        CHECK_PENDING_ACTION,
+        COMPRESS_ARCHIVE;
+
+        private String getThreadName() {
+            return name().toLowerCase().replace('_', '-');
+        }
+    }
+
+    private final String threadNamePrefix;
+
+    private final Map<Operation, BoundedExecutor> executors = new EnumMap<>(Operation.class);
+
+    private boolean shutdown = false;
+
+    /**
+     * @param threadNamePrefix prefix of the thread names, completed with the operation name
+     */
+    public SmallFilesExecutors(String threadNamePrefix) {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    /**
+     * Run the given tasks in the executor of the given operation and wait for their completion, as
+     * {@link ExecutorService#invokeAll(Collection)} does.
+     * If the current thread is interrupted, the tasks not completed yet are cancelled.
+     *
+     * @param parallelism maximum number of tasks of the operation running at the same time, used at executor creation
+     */
+    public <T> List<Future<T>> invokeAll(Operation operation, int parallelism, Collection<? extends Callable<T>> tasks)
+        throws InterruptedException {
+        BoundedExecutor executor = getExecutor(operation, parallelism);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<T> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException | CancellationException e) {
+                    // Error is handled by the caller through the future
+                }
+            }
+            return futures;
+        } catch (InterruptedException | RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    /**
+     * Submit the given task to the executor of the given operation, waiting while the maximum number of pending tasks
+     * of the operation is reached.
+     *
+     * @param parallelism maximum number of tasks of the operation running at the same time, used at executor creation
+     */
+    public <T> Future<T> submit(Operation operation, int parallelism, Callable<T> task) throws InterruptedException {
+        return getExecutor(operation, parallelism).submit(task);
+    }
+
+    /**
+     * Stop all the executors, running tasks are interrupted.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        executors.values().forEach(executor -> executor.delegate.shutdownNow());
+        executors.clear();
+    }
+
+    private synchronized BoundedExecutor getExecutor(Operation operation, int parallelism) {
+        if (shutdown) {
+            throw new RejectedExecutionException(String.format("Executors %s are shut down", threadNamePrefix));
+        }
+        return executors.computeIfAbsent(operation, op -> createExecutor(op, Math.max(1, parallelism)));
+    }
+
+    private BoundedExecutor createExecutor(Operation operation, int parallelism) {
+        String namingPattern = threadNamePrefix + "-" + operation.getThreadName() + "-thread-%d";
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism,
+                                                             parallelism,
+                                                             KEEP_ALIVE_SECONDS,
+                                                             TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(),
+                                                             new BasicThreadFactory.Builder().namingPattern(
+                                                                                                 namingPattern)
+                                                                                             .priority(Thread.MAX_PRIORITY)
+                                                                                             .build());
+        executor.allowCoreThreadTimeOut(true);
+        LOGGER.info("Executor {} created with a parallelism of {}", namingPattern, parallelism);
+        // As many waiting tasks as running ones, so that the threads never wait for the submitters
+        return new BoundedExecutor(executor, parallelism * 2);
+    }
+
+    /**
+     * Executor limiting the number of tasks submitted and not completed yet. Submission blocks while the limit is
+     * reached. A permit is only released once its task is over, even if it was cancelled while running.
+     */
+    private static class BoundedExecutor {
+
+        private final ExecutorService delegate;
+
+        private final Semaphore permits;
+
+        /**
+         * True in the threads running a task of this executor
+         */
+        private final ThreadLocal<Boolean> runningTask = ThreadLocal.withInitial(() -> false);
+
+        private BoundedExecutor(ExecutorService delegate, int maxPendingTasks) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxPendingTasks, true);
+        }
+
+        private <T> Future<T> submit(Callable<T> task) throws InterruptedException {
+            FutureTask<T> future = new FutureTask<>(task);
+            if (runningTask.get()) {
+                // Waiting for a permit could deadlock once all the permits are held by tasks waiting for their
+                // own subtasks. Run the subtask in the calling task instead.
+                future.run();
+                return future;
+            }
+            permits.acquire();
+            try {
+                delegate.execute(() -> {
+                    runningTask.set(true);
+                    try {
+                        // Does nothing if the task was cancelled before it started
+                        future.run();
+                    } finally {
+                        runningTask.set(false);
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+            return future;
+        }
+    }
+}
@@ -18,6 +18,8 @@
  */
 package fr.cnes.regards.modules.storage.plugin.smallfiles.configuration;
 
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger;
+
 import java.nio.file.Path;
 import java.time.Instant;
 
@@ -25,6 +27,7 @@ import java.time.Instant;
  * @author Thibaud Michaudel
  **/
 public record CleanDirectoryTaskConfiguration(Path directoryPath,
-                                              Instant oldestAgeToKeep) {
+                                              Instant oldestAgeToKeep,
+                                              DirectoryOccupancyLedger occupancyLedger) {
 
 }
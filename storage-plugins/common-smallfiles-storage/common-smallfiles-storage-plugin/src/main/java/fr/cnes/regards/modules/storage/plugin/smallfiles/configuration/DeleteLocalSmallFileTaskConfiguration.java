@@ -18,12 +18,15 @@
  */
 package fr.cnes.regards.modules.storage.plugin.smallfiles.configuration;
 
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger;
+
 import java.nio.file.Path;
 
 /**
  * @author Thibaud Michaudel
  **/
 public record DeleteLocalSmallFileTaskConfiguration(Path fileRelativePath,
-                                                    String archiveBuildingWorkspacePath) {
+                                                    String archiveBuildingWorkspacePath,
+                                                    DirectoryOccupancyLedger occupancyLedger) {
 
 }
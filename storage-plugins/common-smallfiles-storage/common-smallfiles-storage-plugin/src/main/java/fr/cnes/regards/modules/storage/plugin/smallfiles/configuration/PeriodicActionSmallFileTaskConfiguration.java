@@ -19,7 +19,8 @@
 package fr.cnes.regards.modules.storage.plugin.smallfiles.configuration;
 
 /**
- * Data of configuration for the task in order to execute periodic action on small file in workspace
+ * Data of configuration for the task in order to execute periodic action on small file in workspace.
+ * The archive cache maximum size is in bytes, 0 meaning no size limit.
  *
  * @author Thibaud Michaudel
  **/
@@ -29,6 +30,9 @@ public record PeriodicActionSmallFileTaskConfiguration(String rootPath,
                                                        Integer parallelTaskNumber,
                                                        Integer archiveMaxAge,
                                                        Integer archiveCacheLifetime,
-                                                       Integer cleanCacheTaskLockAcquireTimeout) {
+                                                       Integer cleanCacheTaskLockAcquireTimeout,
+                                                       boolean streamedArchiveUpload,
+                                                       int archiveCompressionParallelism,
+                                                       long archiveCacheMaxSize) {
 
 }
@@ -20,6 +20,7 @@ package fr.cnes.regards.modules.storage.plugin.smallfiles.configuration;
 
 import fr.cnes.regards.framework.jpa.multitenant.lock.LockService;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger;
 
 import java.nio.file.Path;
 import java.time.Instant;
@@ -37,6 +38,8 @@ public record RestoreAndDeleteSmallFileTaskConfiguration(Path fileRelativePath,
                                                          Instant lockCreationDate,
                                                          int renewMaxIterationWaitingPeriodInS,
                                                          long renewDuration,
-                                                         LockService lockService) {
+                                                         LockService lockService,
+                                                         DirectoryOccupancyLedger occupancyLedger)
+    implements IRestoreArchiveTaskConfiguration {
 
 }
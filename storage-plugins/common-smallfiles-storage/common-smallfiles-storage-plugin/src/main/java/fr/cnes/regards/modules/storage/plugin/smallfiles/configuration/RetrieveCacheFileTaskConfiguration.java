@@ -20,6 +20,7 @@ package fr.cnes.regards.modules.storage.plugin.smallfiles.configuration;
 
 import fr.cnes.regards.framework.jpa.multitenant.lock.LockService;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger;
 
 import java.nio.file.Path;
 import java.time.Instant;
@@ -39,6 +40,7 @@ public record RetrieveCacheFileTaskConfiguration(String fileUrl,
                                                  int renewMaxIterationWaitingPeriodInS,
                                                  long renewDurationInMs,
                                                  LockService lockService,
-                                                 boolean useExternalCache) {
+                                                 boolean useExternalCache,
+                                                 DirectoryOccupancyLedger occupancyLedger) {
 
 }
@@ -19,6 +19,8 @@
 package fr.cnes.regards.modules.storage.plugin.smallfiles.configuration;
 
 import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.ParallelZipArchiveWriter;
 
 import java.nio.file.Path;
 
@@ -29,6 +31,9 @@ public record SubmitReadyArchiveTaskConfiguration(Path dirPath,
                                                   String workspacePath,
                                                   ISmallFilesStorage interfaceSmallFiles,
                                                   int archiveMaxAge,
-                                                  String storageName) {
+                                                  String storageName,
+                                                  DirectoryOccupancyLedger occupancyLedger,
+                                                  boolean streamedArchiveUpload,
+                                                  ParallelZipArchiveWriter zipWriter) {
 
 }
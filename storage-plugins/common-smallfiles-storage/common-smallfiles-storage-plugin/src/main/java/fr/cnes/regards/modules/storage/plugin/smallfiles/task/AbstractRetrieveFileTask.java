@@ -49,6 +49,15 @@ public abstract class AbstractRetrieveFileTask implements LockServiceTask<Void>
     }
 
     protected void copyFileAndHandleSuccess(Path localFilePath) {
+        copyFileAndHandleSuccess(fileCacheRequest, progressManager, localFilePath);
+    }
+
+    /**
+     * Copy the given local file to the restoration directory of the given request and inform the progress manager
+     */
+    protected static void copyFileAndHandleSuccess(FileCacheRequestDto fileCacheRequest,
+                                                   IRestorationProgressManager progressManager,
+                                                   Path localFilePath) {
         Path targetPath = Path.of(fileCacheRequest.getRestorationDirectory()).resolve(fileCacheRequest.getChecksum());
         try {
             Files.createDirectories(targetPath.getParent());
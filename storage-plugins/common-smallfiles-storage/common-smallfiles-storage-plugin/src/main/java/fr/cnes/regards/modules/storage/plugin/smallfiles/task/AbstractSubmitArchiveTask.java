@@ -25,6 +25,7 @@ import fr.cnes.regards.modules.fileaccess.plugin.domain.IPeriodicActionProgressM
 import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.SubmitReadyArchiveTaskConfiguration;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.SmallFilesUtils;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.StoredArchive;
 import org.slf4j.Logger;
 
 import java.io.File;
@@ -130,7 +131,11 @@ public abstract class AbstractSubmitArchiveTask implements LockServiceTask<Boole
             Path archiveToCreate = dirPath.getParent().resolve(archiveName);
 
             // Creating and sending archive
-            success = createAndSendArchive(filesList, archivePathOnStorage, archiveToCreate);
+            if (configuration.streamedArchiveUpload()) {
+                success = streamArchive(filesList, archivePathOnStorage);
+            } else {
+                success = createAndSendArchive(filesList, archivePathOnStorage, archiveToCreate);
+            }
 
             // Sending storageSuccess or error to progressManager
             handleEndSubmit(progressManager, filesList, archivePathOnStorage, success);
@@ -178,6 +183,30 @@ public abstract class AbstractSubmitArchiveTask implements LockServiceTask<Boole
         return true;
     }
 
+    /**
+     * Send the archive to the server while its entries are compressed, without creating a local archive
+     */
+    private boolean streamArchive(List<File> filesList, String archivePathOnStorage) {
+        try {
+            StoredArchive storedArchive = configuration.interfaceSmallFiles()
+                                                       .storeStreamedFile(out -> configuration.zipWriter()
+                                                                                              .write(filesList, out),
+                                                                          archivePathOnStorage);
+            // Saving archive information
+            progressManager.archiveStored(configuration.storageName(),
+                                          storedArchive.url(),
+                                          storedArchive.checksum(),
+                                          storedArchive.size());
+        } catch (IOException e) {
+            LOGGER.error("Error while sending streamed archive {}", archivePathOnStorage, e);
+            return false;
+        } catch (Exception e) {
+            LOGGER.error("Error while writing on storage", e);
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Send success status to the progress manager for each file that were pending
      */
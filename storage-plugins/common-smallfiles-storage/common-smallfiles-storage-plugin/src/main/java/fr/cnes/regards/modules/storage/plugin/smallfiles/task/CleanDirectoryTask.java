@@ -20,6 +20,7 @@ package fr.cnes.regards.modules.storage.plugin.smallfiles.task;
 
 import fr.cnes.regards.framework.jpa.multitenant.lock.LockServiceTask;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.CleanDirectoryTaskConfiguration;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger.DirectoryOccupancy;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.SmallFilesUtils;
 
 import java.io.IOException;
@@ -33,6 +34,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 /**
  * Task cleaning a directory by removing all regular files older than a given age in it.
  * This task does nothing to directories (they won't be removed or entered to be cleaned)
+ * The occupancy of the remaining files is recorded in the occupancy ledger.
  *
  * @author Thibaud Michaudel
  **/
@@ -52,6 +54,7 @@ public class CleanDirectoryTask implements LockServiceTask<Void> {
         LOGGER.info("Starting CleanDirectoryTask on {}", directoryToClean);
         long start = System.currentTimeMillis();
         boolean emptyDir = true;
+        DirectoryOccupancy remaining = DirectoryOccupancy.EMPTY;
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryToClean)) {
             for (Path path : stream) {
                 BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
@@ -63,16 +66,24 @@ public class CleanDirectoryTask implements LockServiceTask<Void> {
                     Files.delete(path);
                 } else {
                     emptyDir = false;
+                    if (attr.isRegularFile()) {
+                        remaining = remaining.add(attr.size(), attr.lastModifiedTime().toInstant());
+                    }
                 }
             }
             if (emptyDir) {
                 Files.delete(directoryToClean);
+                configuration.occupancyLedger().directoryRemoved(directoryToClean);
                 // Delete associated zip if any
                 String dirName = SmallFilesUtils.createArchiveNameFromBuildingDir(directoryToClean.getFileName()
                                                                                                  .toString());
                 Files.deleteIfExists(directoryToClean.getParent().resolve(dirName));
+            } else {
+                configuration.occupancyLedger().put(directoryToClean, remaining);
             }
         } catch (IOException e) {
+            // Occupancy of the directory is unknown, list it again when requested
+            configuration.occupancyLedger().directoryRemoved(directoryToClean);
             LOGGER.error("Error while deleting file {}", directoryToClean, e);
         }
         LOGGER.info("End of CleanDirectoryTask on {} after {} ms",
@@ -26,9 +26,8 @@ import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.DeleteLoc
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.SmallFilesUtils;
 import org.slf4j.Logger;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -76,42 +75,16 @@ public class DeleteLocalSmallFileTask implements LockServiceTask<Void> {
 
             // Name of the directory
             String dirName = SmallFilesUtils.computePathOfBuildDirectoryFromArchiveName(archiveName);
-            // Path of the directory in the workspace containing the file to delete if it's not the current directory
-            Path localPath = localPathWithArchiveDelimiter.getParent().resolve(dirName).resolve(smallFileName.get());
-
-            // Path of the directory in the workspace containing the file to delete if it's the current directory
-            Path localPathCurrent = localPathWithArchiveDelimiter.getParent()
-                                                                 .resolve(dirName + ISmallFilesStorage.CURRENT_ARCHIVE_SUFFIX)
-                                                                 .resolve(smallFileName.get());
-
-            if (Files.exists(localPath)) {
-                try {
-                    Files.delete(localPath);
-                    if (request.getFileReference().getLocation().isPendingActionRemaining()) {
-                        // The file was not yet sent to the server
-                        progressManager.deletionSucceed(request);
-                    } else {
-                        progressManager.deletionSucceedWithPendingAction(request);
-                    }
-                } catch (IOException e) {
-                    LOGGER.error("Error while trying to delete {}", localPath, e);
-                    progressManager.deletionFailed(request,
-                                                   String.format("Error while trying to delete %s", localPath));
-                }
-            } else if (Files.exists(localPathCurrent)) {
-                try {
-                    Files.delete(localPathCurrent);
-                    progressManager.deletionSucceed(request);
-                } catch (IOException e) {
-                    LOGGER.error("Error while trying to delete {}", localPathCurrent, e);
-                    progressManager.deletionFailed(request,
-                                                   String.format("Error while trying to delete %s", localPathCurrent));
-                }
-            } else {
-                LOGGER.warn("The file to delete {} should exist locally but wasn't found, the deletion will be "
-                            + "considered as successful but the file might still exist in the storage", localPath);
-                progressManager.deletionSucceed(request);
-            }
+            Path dirPath = localPathWithArchiveDelimiter.getParent().resolve(dirName);
+            // Files may have been stored or deleted by another instance of the microservice before the lock was held
+            configuration.occupancyLedger().refreshIfModified(dirPath);
+            configuration.occupancyLedger()
+                         .refreshIfModified(dirPath.resolveSibling(dirName + ISmallFilesStorage.CURRENT_ARCHIVE_SUFFIX));
+            SmallFileDeletionHelper.deleteLocalFile(dirPath,
+                                                    smallFileName.get(),
+                                                    List.of(request),
+                                                    configuration.occupancyLedger(),
+                                                    SmallFileDeletionHelper.DeletionResults.of(progressManager));
         } else {
             progressManager.deletionFailed(request,
                                            String.format("Error while trying to delete small file %s. Url "
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.task;
+
+import fr.cnes.regards.framework.jpa.multitenant.lock.LockServiceTask;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.EvictCachedArchiveTaskConfiguration;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Task evicting an archive from the cache whatever its age, to keep the cache under its maximum size : the
+ * restored archive and the directory of its extracted files are removed.
+ * This task must be run with the {@link fr.cnes.regards.modules.storage.plugin.smallfiles.utils.LockTypeEnum#LOCK_RESTORE}
+ * lock of the archive.
+ */
+public class EvictCachedArchiveTask implements LockServiceTask<Boolean> {
+
+    private static final Logger LOGGER = getLogger(EvictCachedArchiveTask.class);
+
+    private final EvictCachedArchiveTaskConfiguration configuration;
+
+    public EvictCachedArchiveTask(EvictCachedArchiveTaskConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return true if the archive and its extracted files are removed
+     */
+    @Override
+    public Boolean run() {
+        LOGGER.info("Evicting archive {} from the cache", configuration.archiveKey());
+        Path directoryPath = configuration.directoryPath();
+        try {
+            if (Files.isDirectory(directoryPath)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath)) {
+                    for (Path path : stream) {
+                        Files.delete(path);
+                    }
+                }
+                Files.delete(directoryPath);
+            }
+            Files.deleteIfExists(configuration.archivePath());
+            configuration.cacheAccessIndex().remove(configuration.archiveKey());
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("Error while evicting archive {} from the cache", configuration.archiveKey(), e);
+            return false;
+        } finally {
+            // Occupancy of the directory is unknown or null, list it again when requested
+            configuration.occupancyLedger().directoryRemoved(directoryPath);
+        }
+    }
+}
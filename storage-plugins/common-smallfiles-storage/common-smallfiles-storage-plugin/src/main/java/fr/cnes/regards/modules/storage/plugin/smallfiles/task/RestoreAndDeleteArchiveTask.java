@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.task;
+
+import fr.cnes.regards.framework.jpa.multitenant.lock.LockServiceTask;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.IDeletionProgressManager;
+import fr.cnes.regards.modules.fileaccess.plugin.dto.FileDeletionRequestDto;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.RestoreAndDeleteArchiveTaskConfiguration;
+import org.slf4j.Logger;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Task to delete several small files stored in the same archive.
+ * <p>
+ * The archive is restored and extracted in the building workspace once for all the requests, unless it already is
+ * from a previous deletion, then all the files are deleted from the extracted directory. The updated archive is sent
+ * once by the next periodic action, whatever the number of deleted files.
+ * The results of the requests are sent to the progress manager together at the end of the task.
+ * This task must be run with the {@link fr.cnes.regards.modules.storage.plugin.smallfiles.utils.LockTypeEnum#LOCK_RESTORE}
+ * lock of the archive.
+ */
+public class RestoreAndDeleteArchiveTask implements LockServiceTask<Void> {
+
+    private static final Logger LOGGER = getLogger(RestoreAndDeleteArchiveTask.class);
+
+    private final RestoreAndDeleteArchiveTaskConfiguration configuration;
+
+    /**
+     * Requests to handle, by name of the file to delete in the archive
+     */
+    private final Map<String, List<FileDeletionRequestDto>> requestsByFileName;
+
+    private final IDeletionProgressManager progressManager;
+
+    private final List<FileDeletionRequestDto> succeeded = new ArrayList<>();
+
+    private final List<FileDeletionRequestDto> succeededWithPendingAction = new ArrayList<>();
+
+    private final List<FailedDeletion> failed = new ArrayList<>();
+
+    /**
+     * Collect the results to send them together at the end of the task
+     */
+    private final SmallFileDeletionHelper.DeletionResults results = new SmallFileDeletionHelper.DeletionResults() {
+
+        @Override
+        public void deletionSucceed(FileDeletionRequestDto request) {
+            succeeded.add(request);
+        }
+
+        @Override
+        public void deletionSucceedWithPendingAction(FileDeletionRequestDto request) {
+            succeededWithPendingAction.add(request);
+        }
+
+        @Override
+        public void deletionFailed(FileDeletionRequestDto request, String cause) {
+            failed.add(new FailedDeletion(request, cause));
+        }
+    };
+
+    public RestoreAndDeleteArchiveTask(RestoreAndDeleteArchiveTaskConfiguration configuration,
+                                       Map<String, List<FileDeletionRequestDto>> requestsByFileName,
+                                       IDeletionProgressManager progressManager) {
+        this.configuration = configuration;
+        this.requestsByFileName = requestsByFileName;
+        this.progressManager = progressManager;
+    }
+
+    @Override
+    public Void run() {
+        LOGGER.info("Starting RestoreAndDeleteArchiveTask on {} for {} files",
+                    configuration.archiveRelativePath(),
+                    requestsByFileName.size());
+        long start = System.currentTimeMillis();
+        try {
+            deleteFiles();
+        } finally {
+            sendResults();
+        }
+        LOGGER.info("End of RestoreAndDeleteArchiveTask on {} after {} ms",
+                    configuration.archiveRelativePath(),
+                    System.currentTimeMillis() - start);
+        return null;
+    }
+
+    private void deleteFiles() {
+        List<FileDeletionRequestDto> requests = requestsByFileName.values().stream().flatMap(List::stream).toList();
+        Optional<Path> dirInWorkspacePath = SmallFileDeletionHelper.extractArchiveInWorkspace(configuration,
+                                                                                              configuration.archiveRelativePath(),
+                                                                                              requests,
+                                                                                              results);
+        if (dirInWorkspacePath.isEmpty()) {
+            return;
+        }
+        requestsByFileName.forEach((fileName, fileRequests) -> SmallFileDeletionHelper.deleteLocalFile(
+            dirInWorkspacePath.get(),
+            fileName,
+            fileRequests,
+            configuration.occupancyLedger(),
+            results));
+    }
+
+    /**
+     * Send the results of all the requests of the archive to the progress manager
+     */
+    private void sendResults() {
+        LOGGER.debug("Deletion results of archive {} : {} succeeded, {} succeeded with pending action, {} failed",
+                     configuration.archiveRelativePath(),
+                     succeeded.size(),
+                     succeededWithPendingAction.size(),
+                     failed.size());
+        succeeded.forEach(progressManager::deletionSucceed);
+        succeededWithPendingAction.forEach(progressManager::deletionSucceedWithPendingAction);
+        failed.forEach(failure -> progressManager.deletionFailed(failure.request(), failure.cause()));
+    }
+
+    private record FailedDeletion(FileDeletionRequestDto request,
+                                  String cause) {
+
+    }
+}
@@ -19,21 +19,15 @@
 package fr.cnes.regards.modules.storage.plugin.smallfiles.task;
 
 import fr.cnes.regards.framework.jpa.multitenant.lock.LockServiceTask;
-import fr.cnes.regards.framework.s3.domain.GlacierFileStatus;
-import fr.cnes.regards.framework.s3.domain.RestorationStatus;
-import fr.cnes.regards.framework.utils.file.ZipUtils;
 import fr.cnes.regards.modules.fileaccess.plugin.domain.IDeletionProgressManager;
 import fr.cnes.regards.modules.fileaccess.plugin.dto.FileDeletionRequestDto;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
-import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.DeleteLocalSmallFileTaskConfiguration;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.RestoreAndDeleteSmallFileTaskConfiguration;
-import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.RestoreResponse;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.SmallFilesUtils;
 import org.slf4j.Logger;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -46,7 +40,7 @@ import static org.slf4j.LoggerFactory.getLogger;
  * </li>
  * <li>If needed restore the archive if its not already present in the archive cache</li>
  * <li>If needed extract the archive in the building workspace</li>
- * <li>Launch a {@link DeleteLocalSmallFileTask} that will handle deletion of the file</li>
+ * <li>Delete the file from the extracted directory, as done by {@link DeleteLocalSmallFileTask}</li>
  * </ul>
  *
  * @author Thibaud Michaudel
@@ -82,102 +76,19 @@ public class RestoreAndDeleteSmallFileTask implements LockServiceTask<Void> {
         Optional<String> smallFileName = fileInfos.smallFileNameInArchive();
 
         if (smallFileName.isPresent()) {
-
-            Path archiveRelativePath = Path.of(archiveRelativePathAsString);
-            String archiveName = archiveRelativePath.getFileName().toString();
-            String directoryName = SmallFilesUtils.computePathOfBuildDirectoryFromArchiveName(archiveName);
-            //Relative directory path : /subdir/rs_zip_archive
-            Path relativeDirectoryPath = archiveRelativePath.getParent().resolve(directoryName);
-
-            // Archive path in cache : storages.../glacier/workspace/tmp/subdir/archive.zip
-            Path archivePathInCache = Path.of(configuration.cachePath()).resolve(archiveRelativePath);
-
-            // Dir path in building workspace : storages.../glacier/workspace/zip/subdir/rs_zip_archive
-            Path dirInWorkspacePath = Path.of(configuration.archiveBuildingWorkspacePath())
-                                          .resolve(relativeDirectoryPath);
-
-            // Dir path in cache workspace : storages.../glacier/workspace/tmp/subdir/rs_zip_archive
-            Path dirInCachePath = Path.of(configuration.cachePath()).resolve(relativeDirectoryPath);
-
-            if (!Files.exists(dirInWorkspacePath)) {
-                if (!Files.exists(archivePathInCache)) {
-
-                    // Restore
-                    RestoreResponse restoreResponse = configuration.interfaceSmallFiles()
-                                                                   .restore(archiveRelativePathAsString, null);
-
-                    switch (restoreResponse.status()) {
-                        case KEY_NOT_FOUND -> {
-                            LOGGER.warn("The file to delete {} was not found on the server, the deletion will be "
-                                        + "considered successful", request.getFileReference().getLocation().getUrl());
-                            progressManager.deletionSucceed(request);
-                            return null;
-                        }
-                        case CLIENT_EXCEPTION -> {
-                            LOGGER.error("Unable to reach S3 server", restoreResponse.exception());
-                            progressManager.deletionFailed(request, "Unable to reach S3 server");
-                            return null;
-                        }
-                        case FILE_AVAILABLE -> {
-                            // The archive is already available, just download it
-                            boolean success = configuration.interfaceSmallFiles()
-                                                           .downloadFile(archivePathInCache,
-                                                                         archiveRelativePathAsString,
-                                                                         null);
-                            if (!success) {
-                                progressManager.deletionFailed(request,
-                                                               String.format(
-                                                                   "Unable to download the archive %s containing the "
-                                                                   + "file to delete",
-                                                                   archiveRelativePathAsString));
-                                return null;
-                            }
-                        }
-                        default -> {
-                            // Launch check restoration process
-                            boolean restorationComplete = checkRestorationComplete(archiveRelativePathAsString,
-                                                                                   archivePathInCache);
-                            if (!restorationComplete) {
-                                progressManager.deletionFailed(request,
-                                                               String.format(
-                                                                   "Unable to restore the archive %s containing the "
-                                                                   + "file to delete",
-                                                                   archiveRelativePathAsString));
-                                return null;
-                            }
-                        }
-                    }
-                }
-
-                // Unzip the restored archive in the plugin workspace cache directory
-                // The extracted directory will be used to create the updated archive
-                // The presence of the files here allow the directory to be used to both restore the files and create
-                // the updated archive.
-                boolean success = ZipUtils.unzip(archivePathInCache, dirInCachePath);
-                if (!success) {
-                    progressManager.deletionFailed(request, "Error while extracting small file archive");
-                    return null;
-                }
-                try {
-                    // Create a symbolic link
-                    Files.createDirectories(dirInWorkspacePath.getParent());
-                    Files.createSymbolicLink(dirInWorkspacePath, dirInCachePath);
-                } catch (IOException e) {
-                    LOGGER.error(e.getMessage(), e);
-                    progressManager.deletionFailed(request, "Error while creating new small file archive");
-                    return null;
-                }
-            }
-            DeleteLocalSmallFileTaskConfiguration subTaskConfiguration = createDeleteLocalSmallFileTaskConfiguration();
-            DeleteLocalSmallFileTask task = new DeleteLocalSmallFileTask(subTaskConfiguration,
-                                                                         request,
-                                                                         progressManager);
-            /**
-             * Run the task without needing more locking as we already are in a locked environment (with a RESTORE
-             * LOCK on the archive containing the file being deleted).
-             * @see S3Glacier#handleDeleteSmallFileRequest
-             */
-            task.run();
+            SmallFileDeletionHelper.DeletionResults results = SmallFileDeletionHelper.DeletionResults.of(
+                progressManager);
+            Optional<Path> dirInWorkspacePath = SmallFileDeletionHelper.extractArchiveInWorkspace(configuration,
+                                                                                                  archiveRelativePathAsString,
+                                                                                                  List.of(request),
+                                                                                                  results);
+            // Delete the file without needing more locking as we already are in a locked environment (with a
+            // RESTORE LOCK on the archive containing the file being deleted).
+            dirInWorkspacePath.ifPresent(dir -> SmallFileDeletionHelper.deleteLocalFile(dir,
+                                                                                         smallFileName.get(),
+                                                                                         List.of(request),
+                                                                                         configuration.occupancyLedger(),
+                                                                                         results));
         } else {
             progressManager.deletionFailed(request,
                                            String.format("Error while trying to delete small file %s. Url "
@@ -191,23 +102,4 @@ public class RestoreAndDeleteSmallFileTask implements LockServiceTask<Void> {
                     System.currentTimeMillis() - start);
         return null;
     }
-
-    private DeleteLocalSmallFileTaskConfiguration createDeleteLocalSmallFileTaskConfiguration() {
-        return new DeleteLocalSmallFileTaskConfiguration(configuration.fileRelativePath(),
-                                                         configuration.archiveBuildingWorkspacePath());
-    }
-
-    private boolean checkRestorationComplete(String archiveRelativePathAsString, Path archivePathInCache) {
-        // Force the downloading in internal cache for small files because we must extract small files from archive in
-        // local after downloading of archive
-        GlacierFileStatus smallFilesStorageFileStatus = configuration.interfaceSmallFiles()
-                                                                     .downloadAfterRestoreFile(archivePathInCache,
-                                                                                               archiveRelativePathAsString,
-                                                                                               configuration.lockName(),
-                                                                                               configuration.lockCreationDate(),
-                                                                                               configuration.renewMaxIterationWaitingPeriodInS(),
-                                                                                               configuration.renewDuration(),
-                                                                                               configuration.lockService());
-        return RestorationStatus.AVAILABLE == smallFilesStorageFileStatus.getStatus();
-    }
 }
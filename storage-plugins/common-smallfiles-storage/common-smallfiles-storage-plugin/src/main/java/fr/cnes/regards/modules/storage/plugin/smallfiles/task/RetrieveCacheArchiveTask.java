@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.task;
+
+import fr.cnes.regards.framework.jpa.multitenant.lock.LockServiceTask;
+import fr.cnes.regards.framework.s3.domain.GlacierFileStatus;
+import fr.cnes.regards.framework.s3.domain.RestorationStatus;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.IRestorationProgressManager;
+import fr.cnes.regards.modules.fileaccess.plugin.dto.FileCacheRequestDto;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.RetrieveCacheArchiveTaskConfiguration;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.RestoreResponse;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.RestoreStatus;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.SmallFilesUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Task to retrieve in cache several small files stored in the same archive.
+ * <p>
+ * The archive is restored and downloaded once for all the requests, then all the requested files are extracted
+ * from the archive in one pass.
+ * This task must be run with the {@link fr.cnes.regards.modules.storage.plugin.smallfiles.utils.LockTypeEnum#LOCK_RESTORE}
+ * lock of the archive.
+ */
+public class RetrieveCacheArchiveTask implements LockServiceTask<Void> {
+
+    private static final Logger LOGGER = getLogger(RetrieveCacheArchiveTask.class);
+
+    private final RetrieveCacheArchiveTaskConfiguration configuration;
+
+    /**
+     * Requests to handle, by name of the requested file in the archive
+     */
+    private final Map<String, List<FileCacheRequestDto>> requestsByFileName;
+
+    private final IRestorationProgressManager progressManager;
+
+    public RetrieveCacheArchiveTask(RetrieveCacheArchiveTaskConfiguration configuration,
+                                    Map<String, List<FileCacheRequestDto>> requestsByFileName,
+                                    IRestorationProgressManager progressManager) {
+        this.configuration = configuration;
+        this.requestsByFileName = requestsByFileName;
+        this.progressManager = progressManager;
+    }
+
+    @Override
+    public Void run() {
+        LOGGER.info("Starting RetrieveCacheArchiveTask on {} for {} files",
+                    configuration.archiveRelativePath(),
+                    requestsByFileName.size());
+        long start = System.currentTimeMillis();
+        // Recorded before the restoration so that the archive is not the first one evicted from the cache
+        configuration.cacheAccessIndex().recordAccess(configuration.archiveRelativePath());
+
+        Path archiveCachePath = Path.of(configuration.cachePath(), configuration.archiveRelativePath());
+        String dirName = SmallFilesUtils.computePathOfBuildDirectoryFromArchiveName(archiveCachePath.getFileName()
+                                                                                                    .toString());
+        Path extractDirPath = archiveCachePath.getParent().resolve(dirName);
+        // Files may have been extracted or evicted by another instance of the microservice before the lock was held
+        configuration.occupancyLedger().refreshIfModified(extractDirPath);
+
+        // Files already extracted from the archive by a previous retrieval
+        Map<String, List<FileCacheRequestDto>> filesToExtract = new HashMap<>();
+        requestsByFileName.forEach((fileName, requests) -> {
+            Path localPath = extractDirPath.resolve(fileName);
+            if (Files.exists(localPath)) {
+                requests.forEach(request -> AbstractRetrieveFileTask.copyFileAndHandleSuccess(request,
+                                                                                              progressManager,
+                                                                                              localPath));
+            } else {
+                filesToExtract.put(fileName, requests);
+            }
+        });
+
+        if (!filesToExtract.isEmpty()) {
+            Optional<String> restorationError = Optional.empty();
+            // The archive may have been downloaded by another job holding the restore lock before this one
+            if (!Files.exists(archiveCachePath)) {
+                restorationError = restoreArchive(archiveCachePath);
+            }
+            if (restorationError.isPresent()) {
+                String error = restorationError.get();
+                filesToExtract.values()
+                              .forEach(requests -> requests.forEach(request -> progressManager.restoreFailed(request,
+                                                                                                             error)));
+            } else {
+                extractThenCopyFilesAndHandleSuccess(archiveCachePath, extractDirPath, filesToExtract);
+            }
+        }
+
+        LOGGER.info("End of RetrieveCacheArchiveTask on {} after {} ms",
+                    configuration.archiveRelativePath(),
+                    System.currentTimeMillis() - start);
+        return null;
+    }
+
+    /**
+     * Restore the archive and download it to the cache
+     *
+     * @return the error message if the archive could not be downloaded
+     */
+    private Optional<String> restoreArchive(Path archiveCachePath) {
+        String relativeArchivePath = configuration.archiveRelativePath();
+        LOGGER.info("Restoring {}", relativeArchivePath);
+        RestoreResponse restoreResponse = configuration.interfaceSmallFiles().restore(relativeArchivePath, null);
+
+        if (RestoreStatus.CLIENT_EXCEPTION == restoreResponse.status()) {
+            LOGGER.error(RetrieveCacheFileTask.UNABLE_TO_REACH_S3_SERVER, restoreResponse.exception());
+            return Optional.of(RetrieveCacheFileTask.UNABLE_TO_REACH_S3_SERVER);
+        }
+        if (RestoreStatus.KEY_NOT_FOUND == restoreResponse.status()) {
+            return Optional.of(String.format(RetrieveCacheFileTask.SPECIFIC_KEY_DOES_NOT_EXIST, relativeArchivePath));
+        }
+        if (RestoreStatus.FILE_AVAILABLE != restoreResponse.status()) {
+            // Launch check restoration process
+            GlacierFileStatus fileStatus = configuration.interfaceSmallFiles()
+                                                        .downloadAfterRestoreFile(archiveCachePath,
+                                                                                  relativeArchivePath,
+                                                                                  configuration.lockName(),
+                                                                                  configuration.lockCreationDate(),
+                                                                                  configuration.renewMaxIterationWaitingPeriodInS(),
+                                                                                  configuration.renewDurationInMs(),
+                                                                                  configuration.lockService());
+            if (RestorationStatus.AVAILABLE != fileStatus.getStatus()) {
+                return Optional.of(RetrieveCacheFileTask.TIMEOUT_EXCEEDED);
+            }
+        } else if (!configuration.interfaceSmallFiles().downloadFile(archiveCachePath, relativeArchivePath, null)) {
+            // File available, just download file to local directory
+            return Optional.of("Error while trying to restore file, download error to local cache directory");
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Extract all the given files from the archive, opened only once, then copy them to the restoration directory
+     * of their requests.
+     */
+    private void extractThenCopyFilesAndHandleSuccess(Path archivePath,
+                                                      Path extractDirPath,
+                                                      Map<String, List<FileCacheRequestDto>> filesToExtract) {
+        // Files not handled yet, to fail them if the archive cannot be read
+        Map<String, List<FileCacheRequestDto>> remainingFiles = new HashMap<>(filesToExtract);
+        try (ZipFile zipFile = new ZipFile(archivePath.toFile())) {
+            Files.createDirectories(extractDirPath);
+            for (Map.Entry<String, List<FileCacheRequestDto>> fileToExtract : filesToExtract.entrySet()) {
+                String fileName = fileToExtract.getKey();
+                remainingFiles.remove(fileName);
+                Path localPath = extractDirPath.resolve(fileName);
+                ZipEntry entry = zipFile.getEntry(fileName);
+                if (entry == null) {
+                    fileToExtract.getValue()
+                                 .forEach(request -> progressManager.restoreFailed(request,
+                                                                                   String.format(
+                                                                                       "The requested file %s is not present in the archive %s",
+                                                                                       fileName,
+                                                                                       archivePath.getFileName()
+                                                                                                  .toString())));
+                    continue;
+                }
+                try (InputStream entryStream = zipFile.getInputStream(entry)) {
+                    long size = Files.copy(entryStream, localPath, StandardCopyOption.REPLACE_EXISTING);
+                    configuration.occupancyLedger().fileAdded(localPath, size, Instant.now());
+                } catch (IOException e) {
+                    LOGGER.error("Error while extracting file {} from archive {}", localPath, archivePath, e);
+                    fileToExtract.getValue()
+                                 .forEach(request -> progressManager.restoreFailed(request,
+                                                                                   extractionError(fileName,
+                                                                                                   archivePath)));
+                    continue;
+                }
+                fileToExtract.getValue()
+                             .forEach(request -> AbstractRetrieveFileTask.copyFileAndHandleSuccess(request,
+                                                                                                   progressManager,
+                                                                                                   localPath));
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error while opening archive {}", archivePath, e);
+            remainingFiles.forEach((fileName, requests) -> requests.forEach(request -> progressManager.restoreFailed(
+                request,
+                extractionError(fileName, archivePath))));
+        }
+    }
+
+    private static String extractionError(String fileName, Path archivePath) {
+        return String.format("Error when trying to extract the requested file %s from the archive %s",
+                             fileName,
+                             archivePath.getFileName().toString());
+    }
+}
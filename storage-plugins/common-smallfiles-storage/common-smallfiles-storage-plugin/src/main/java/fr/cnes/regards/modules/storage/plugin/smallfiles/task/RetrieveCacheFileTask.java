@@ -35,6 +35,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.Optional;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -62,11 +63,11 @@ public class RetrieveCacheFileTask extends AbstractRetrieveFileTask {
 
     public static final int INITIAL_DELAY = 1000;
 
-    private static final String UNABLE_TO_REACH_S3_SERVER = "Unable to reach S3 server";
+    static final String UNABLE_TO_REACH_S3_SERVER = "Unable to reach S3 server";
 
-    private static final String SPECIFIC_KEY_DOES_NOT_EXIST = "The specified key %s does not exists on the server.";
+    static final String SPECIFIC_KEY_DOES_NOT_EXIST = "The specified key %s does not exists on the server.";
 
-    private static final String TIMEOUT_EXCEEDED = "Error while trying to restore file, timeout exceeded";
+    static final String TIMEOUT_EXCEEDED = "Error while trying to restore file, timeout exceeded";
 
     private final RetrieveCacheFileTaskConfiguration configuration;
 
@@ -112,6 +113,8 @@ public class RetrieveCacheFileTask extends AbstractRetrieveFileTask {
         if (smallFileName.isPresent()) {
             String dirName = SmallFilesUtils.computePathOfBuildDirectoryFromArchiveName(archiveName);
             Path localPath = archiveCachePath.getParent().resolve(dirName).resolve(smallFileName.get());
+            // Files may have been extracted or evicted by another microservice instance before the lock was held
+            configuration.occupancyLedger().refreshIfModified(localPath.getParent());
             if (Files.exists(localPath)) {
                 copyFileAndHandleSuccess(localPath);
                 return;
@@ -295,6 +298,7 @@ public class RetrieveCacheFileTask extends AbstractRetrieveFileTask {
         try {
             ZipUtils.extractFile(archivePath, localPath.getFileName().toString(), localPath.getParent());
             if (Files.exists(localPath)) {
+                configuration.occupancyLedger().fileAdded(localPath, Files.size(localPath), Instant.now());
                 copyFileAndHandleSuccess(localPath);
             } else {
                 progressManager.restoreFailed(fileCacheRequest,
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.task;
+
+import fr.cnes.regards.framework.s3.domain.GlacierFileStatus;
+import fr.cnes.regards.framework.s3.domain.RestorationStatus;
+import fr.cnes.regards.framework.utils.file.ZipUtils;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.IDeletionProgressManager;
+import fr.cnes.regards.modules.fileaccess.plugin.dto.FileDeletionRequestDto;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.IRestoreArchiveTaskConfiguration;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.RestoreResponse;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.SmallFilesUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Optional;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Steps shared by the tasks deleting small files : restoration and extraction of their archive in the building
+ * workspace, then deletion of the files from the extracted directory.
+ */
+final class SmallFileDeletionHelper {
+
+    private static final Logger LOGGER = getLogger(SmallFileDeletionHelper.class);
+
+    private SmallFileDeletionHelper() {
+    }
+
+    /**
+     * Results of the deletion requests, either sent directly to the progress manager or collected by the task
+     */
+    interface DeletionResults {
+
+        void deletionSucceed(FileDeletionRequestDto request);
+
+        void deletionSucceedWithPendingAction(FileDeletionRequestDto request);
+
+        void deletionFailed(FileDeletionRequestDto request, String cause);
+
+        static DeletionResults of(IDeletionProgressManager progressManager) {
+            return new DeletionResults() {
+
+                @Override
+                public void deletionSucceed(FileDeletionRequestDto request) {
+                    progressManager.deletionSucceed(request);
+                }
+
+                @Override
+                public void deletionSucceedWithPendingAction(FileDeletionRequestDto request) {
+                    progressManager.deletionSucceedWithPendingAction(request);
+                }
+
+                @Override
+                public void deletionFailed(FileDeletionRequestDto request, String cause) {
+                    progressManager.deletionFailed(request, cause);
+                }
+            };
+        }
+    }
+
+    /**
+     * Make the given archive available as a directory of the building workspace, restoring, downloading and
+     * extracting it if it is not already.
+     * The archive is extracted in the cache directory and linked in the building workspace to be sent again by
+     * the periodic actions without the deleted files.
+     * If the archive cannot be made available, or does not exist anymore, the result of all the given requests is
+     * sent.
+     *
+     * @param archiveRelativePath path of the archive on the storage : /subdir/archive.zip
+     * @param requests            deletion requests of the files of the archive
+     * @return the path of the directory in the building workspace, empty if the results of the requests were sent
+     */
+    static Optional<Path> extractArchiveInWorkspace(IRestoreArchiveTaskConfiguration configuration,
+                                                    String archiveRelativePath,
+                                                    Collection<FileDeletionRequestDto> requests,
+                                                    DeletionResults results) {
+        Path archivePath = Path.of(archiveRelativePath);
+        String directoryName = SmallFilesUtils.computePathOfBuildDirectoryFromArchiveName(archivePath.getFileName()
+                                                                                                     .toString());
+        //Relative directory path : /subdir/rs_zip_archive
+        Path relativeDirectoryPath = archivePath.resolveSibling(directoryName);
+
+        // Archive path in cache : storages.../glacier/workspace/tmp/subdir/archive.zip
+        Path archivePathInCache = Path.of(configuration.cachePath()).resolve(archivePath);
+
+        // Dir path in building workspace : storages.../glacier/workspace/zip/subdir/rs_zip_archive
+        Path dirInWorkspacePath = Path.of(configuration.archiveBuildingWorkspacePath()).resolve(relativeDirectoryPath);
+
+        // Dir path in cache workspace : storages.../glacier/workspace/tmp/subdir/rs_zip_archive
+        Path dirInCachePath = Path.of(configuration.cachePath()).resolve(relativeDirectoryPath);
+        // Files may have been extracted or deleted by another instance of the microservice before the lock was held
+        configuration.occupancyLedger().refreshIfModified(dirInCachePath);
+
+        if (Files.exists(dirInWorkspacePath)) {
+            // Already extracted by a previous deletion since the last periodic actions
+            return Optional.of(dirInWorkspacePath);
+        }
+        if (!Files.exists(archivePathInCache)) {
+            RestoreResponse restoreResponse = configuration.interfaceSmallFiles().restore(archiveRelativePath, null);
+            switch (restoreResponse.status()) {
+                case KEY_NOT_FOUND -> {
+                    LOGGER.warn("The archive {} containing the files to delete was not found on the server, the "
+                                + "deletions will be considered successful", archiveRelativePath);
+                    requests.forEach(results::deletionSucceed);
+                    return Optional.empty();
+                }
+                case CLIENT_EXCEPTION -> {
+                    LOGGER.error("Unable to reach S3 server", restoreResponse.exception());
+                    return failAll(requests, results, "Unable to reach S3 server");
+                }
+                case FILE_AVAILABLE -> {
+                    // The archive is already available, just download it
+                    if (!configuration.interfaceSmallFiles()
+                                      .downloadFile(archivePathInCache, archiveRelativePath, null)) {
+                        return failAll(requests,
+                                       results,
+                                       String.format("Unable to download the archive %s containing the file to delete",
+                                                     archiveRelativePath));
+                    }
+                }
+                default -> {
+                    // Launch check restoration process
+                    if (!checkRestorationComplete(configuration, archiveRelativePath, archivePathInCache)) {
+                        return failAll(requests,
+                                       results,
+                                       String.format("Unable to restore the archive %s containing the file to delete",
+                                                     archiveRelativePath));
+                    }
+                }
+            }
+        }
+        // Unzip the restored archive in the plugin workspace cache directory
+        // The presence of the files here allow the directory to be used to both restore the files and create
+        // the updated archive.
+        boolean unzipped = ZipUtils.unzip(archivePathInCache, dirInCachePath);
+        // The extracted files are counted by listing the directory once, if its occupancy is known
+        configuration.occupancyLedger().refreshIfModified(dirInCachePath);
+        if (!unzipped) {
+            return failAll(requests, results, "Error while extracting small file archive");
+        }
+        try {
+            Files.createDirectories(dirInWorkspacePath.getParent());
+            Files.createSymbolicLink(dirInWorkspacePath, dirInCachePath);
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            return failAll(requests, results, "Error while creating new small file archive");
+        }
+        return Optional.of(dirInWorkspacePath);
+    }
+
+    /**
+     * Delete a file from a directory of the building workspace, or from the current building directory of its node
+     * if the directory became the current one, then send the result of its requests.
+     *
+     * @param dirInWorkspacePath directory of the building workspace containing the file
+     * @param fileName           name of the file to delete
+     * @param requests           deletion requests of the file
+     */
+    static void deleteLocalFile(Path dirInWorkspacePath,
+                                String fileName,
+                                Collection<FileDeletionRequestDto> requests,
+                                DirectoryOccupancyLedger occupancyLedger,
+                                DeletionResults results) {
+        Path localPath = dirInWorkspacePath.resolve(fileName);
+        // Path of the file if its directory became the current building directory of its node
+        Path localPathCurrent = dirInWorkspacePath.resolveSibling(dirInWorkspacePath.getFileName()
+                                                                  + ISmallFilesStorage.CURRENT_ARCHIVE_SUFFIX)
+                                                  .resolve(fileName);
+        Path pathToDelete = localPath;
+        boolean current = false;
+        if (!Files.exists(localPath)) {
+            if (!Files.exists(localPathCurrent)) {
+                LOGGER.warn("The file to delete {} should exist locally but wasn't found, the deletion will be "
+                            + "considered as successful but the file might still exist in the storage", localPath);
+                requests.forEach(results::deletionSucceed);
+                return;
+            }
+            pathToDelete = localPathCurrent;
+            current = true;
+        }
+        try {
+            long size = Files.size(pathToDelete);
+            // The directory of the building workspace may be a link to the cache directory
+            Path realPathToDelete = pathToDelete.toRealPath();
+            Files.delete(pathToDelete);
+            occupancyLedger.fileRemoved(realPathToDelete, size);
+        } catch (IOException e) {
+            LOGGER.error("Error while trying to delete {}", pathToDelete, e);
+            failAll(requests, results, String.format("Error while trying to delete %s", pathToDelete));
+            return;
+        }
+        for (FileDeletionRequestDto request : requests) {
+            if (current || request.getFileReference().getLocation().isPendingActionRemaining()) {
+                // The file was not yet sent to the server
+                results.deletionSucceed(request);
+            } else {
+                // The archive needs to be sent again without the file
+                results.deletionSucceedWithPendingAction(request);
+            }
+        }
+    }
+
+    private static Optional<Path> failAll(Collection<FileDeletionRequestDto> requests,
+                                          DeletionResults results,
+                                          String error) {
+        requests.forEach(request -> results.deletionFailed(request, error));
+        return Optional.empty();
+    }
+
+    private static boolean checkRestorationComplete(IRestoreArchiveTaskConfiguration configuration,
+                                                    String archiveRelativePath,
+                                                    Path archivePathInCache) {
+        // Force the downloading in internal cache for small files because we must extract small files from archive in
+        // local after downloading of archive
+        GlacierFileStatus fileStatus = configuration.interfaceSmallFiles()
+                                                    .downloadAfterRestoreFile(archivePathInCache,
+                                                                              archiveRelativePath,
+                                                                              configuration.lockName(),
+                                                                              configuration.lockCreationDate(),
+                                                                              configuration.renewMaxIterationWaitingPeriodInS(),
+                                                                              configuration.renewDuration(),
+                                                                              configuration.lockService());
+        return RestorationStatus.AVAILABLE == fileStatus.getStatus();
+    }
+}
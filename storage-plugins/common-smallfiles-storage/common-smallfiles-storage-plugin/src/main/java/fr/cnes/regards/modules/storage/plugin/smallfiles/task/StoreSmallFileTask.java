@@ -25,6 +25,7 @@ import fr.cnes.regards.modules.fileaccess.dto.request.FileStorageRequestAggregat
 import fr.cnes.regards.modules.fileaccess.plugin.domain.IStorageProgressManager;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.StoreSmallFileTaskConfiguration;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.SmallFilesUtils;
 import org.slf4j.Logger;
 
@@ -35,11 +36,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Optional;
 import java.util.function.Function;
-import java.util.stream.Stream;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -75,14 +76,18 @@ public class StoreSmallFileTask implements LockServiceTask<Void> {
 
     private final Function<String, URL> urlProvider;
 
+    private final DirectoryOccupancyLedger occupancyLedger;
+
     public StoreSmallFileTask(StoreSmallFileTaskConfiguration storeSmallFileTaskConfiguration,
                               FileStorageRequestAggregationDto request,
                               IStorageProgressManager progressManager,
-                              Function<String, URL> urlProvider) {
+                              Function<String, URL> urlProvider,
+                              DirectoryOccupancyLedger occupancyLedger) {
         this.configuration = storeSmallFileTaskConfiguration;
         this.request = request;
         this.progressManager = progressManager;
         this.urlProvider = urlProvider;
+        this.occupancyLedger = occupancyLedger;
     }
 
     @Override
@@ -96,7 +101,11 @@ public class StoreSmallFileTask implements LockServiceTask<Void> {
                               request.getSubDirectory() != null ? request.getSubDirectory() : "");
         Optional<ArchiveInfo> optionalArchiveInfo = createArchiveInfo(node);
         // Save the file only if it is valid and not already saved
-        optionalArchiveInfo.ifPresent(this::saveLocalSmallFile);
+        optionalArchiveInfo.ifPresent(archiveInfo -> {
+            // Files may have been stored by another instance of the microservice before the lock was held
+            occupancyLedger.refreshIfModified(archiveInfo.localArchiveLocation());
+            saveLocalSmallFile(archiveInfo);
+        });
         LOGGER.info("Ending StoreSmallFileTask on {} after {}",
                     request.getMetaInfo().getFileName(),
                     System.currentTimeMillis() - start);
@@ -123,13 +132,13 @@ public class StoreSmallFileTask implements LockServiceTask<Void> {
             localArchiveLocation = node.resolve(ISmallFilesStorage.BUILDING_DIRECTORY_PREFIX
                                                 + archiveName
                                                 + ISmallFilesStorage.CURRENT_ARCHIVE_SUFFIX);
+            occupancyLedger.currentDirectoryCreated(localArchiveLocation);
         } else {
-            try (Stream<Path> fileList = Files.list(node)) {
-                Optional<String> currentDateArchiveOptional = fileList.map(Path::getFileName)
-                                                                      .map(Path::toString)
-                                                                      .filter(dirName -> dirName.endsWith(
-                                                                          ISmallFilesStorage.CURRENT_ARCHIVE_SUFFIX))
-                                                                      .findFirst();
+            try {
+                // The node is listed only if its current directory is not known yet
+                Optional<String> currentDateArchiveOptional = occupancyLedger.getCurrentDirectory(node)
+                                                                             .map(Path::getFileName)
+                                                                             .map(Path::toString);
                 if (currentDateArchiveOptional.isPresent()) {
                     archiveName = SmallFilesUtils.removePrefixAndSuffix(currentDateArchiveOptional.get());
                     localArchiveLocation = node.resolve(currentDateArchiveOptional.get());
@@ -146,6 +155,7 @@ public class StoreSmallFileTask implements LockServiceTask<Void> {
                     localArchiveLocation = node.resolve(ISmallFilesStorage.BUILDING_DIRECTORY_PREFIX
                                                         + archiveName
                                                         + ISmallFilesStorage.CURRENT_ARCHIVE_SUFFIX);
+                    occupancyLedger.currentDirectoryCreated(localArchiveLocation);
                 }
 
             } catch (IOException e) {
@@ -231,26 +241,25 @@ public class StoreSmallFileTask implements LockServiceTask<Void> {
                 progressManager.storageFailed(request, "The checksum of the file doesn't match the expected one");
             } else {
                 long realFileSize = Files.size(fileDownloadPath);
+                occupancyLedger.fileAdded(fileDownloadPath, realFileSize, Instant.now());
                 // Rename the _current archive if needed
-                try (Stream<Path> fileList = Files.list(archiveInfo.localArchiveLocation())) {
-                    if (fileList.mapToLong(f -> f.toFile().length()).sum() > configuration.archiveMaxSize()) {
-                        String currentName = archiveInfo.localArchiveLocation().getFileName().toString();
-                        String nameWithoutSuffix = currentName.substring(0,
-                                                                         currentName.length()
-                                                                         - ISmallFilesStorage.CURRENT_ARCHIVE_SUFFIX.length());
-                        boolean renameOk = archiveInfo.localArchiveLocation()
-                                                      .toFile()
-                                                      .renameTo(archiveInfo.localArchiveLocation()
-                                                                           .getParent()
-                                                                           .resolve(nameWithoutSuffix)
-                                                                           .toFile());
-                        if (!renameOk) {
-                            LOGGER.error("Error while renaming current building directory {}", currentName);
-                            progressManager.storageFailed(request,
-                                                          String.format(
-                                                              "Error while renaming current building directory %s",
-                                                              currentName));
-                        }
+                // The running size is only checked against the filesystem before the rollover
+                if (occupancyLedger.get(archiveInfo.localArchiveLocation()).size() > configuration.archiveMaxSize()
+                    && occupancyLedger.rescan(archiveInfo.localArchiveLocation()).size()
+                       > configuration.archiveMaxSize()) {
+                    String currentName = archiveInfo.localArchiveLocation().getFileName().toString();
+                    String nameWithoutSuffix = currentName.substring(0,
+                                                                     currentName.length()
+                                                                     - ISmallFilesStorage.CURRENT_ARCHIVE_SUFFIX.length());
+                    Path fullDirectoryPath = archiveInfo.localArchiveLocation().getParent().resolve(nameWithoutSuffix);
+                    boolean renameOk = archiveInfo.localArchiveLocation().toFile().renameTo(fullDirectoryPath.toFile());
+                    if (renameOk) {
+                        occupancyLedger.directoryMoved(archiveInfo.localArchiveLocation(), fullDirectoryPath);
+                    } else {
+                        LOGGER.error("Error while renaming current building directory {}", currentName);
+                        progressManager.storageFailed(request,
+                                                      String.format("Error while renaming current building directory %s",
+                                                                    currentName));
                     }
                 }
                 handleStorageSucceedWithPendingAction(request,
@@ -94,10 +94,12 @@ public class SubmitReadyArchiveTask extends AbstractSubmitArchiveTask {
                 }
                 Path newDirPath = dirPath.getParent().resolve(nameWithoutSuffix);
                 continueOk = dirPath.toFile().renameTo(newDirPath.toFile());
-                dirPath = newDirPath;
-                if (!continueOk) {
+                if (continueOk) {
+                    configuration.occupancyLedger().directoryMoved(dirPath, newDirPath);
+                } else {
                     LOGGER.error("Error while renaming current building directory {}", currentName);
                 }
+                dirPath = newDirPath;
             } catch (ParseException e) {
                 LOGGER.error("Error while parsing directory name as a date : {}", nameWithoutSuffix, e);
             }
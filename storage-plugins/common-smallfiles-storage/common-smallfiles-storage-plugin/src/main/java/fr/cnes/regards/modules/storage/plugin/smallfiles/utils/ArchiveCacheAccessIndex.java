@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.utils;
+
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Index of the last access date of the archives of the restoration cache, so that the archives least recently used
+ * are evicted first when the cache exceeds its size.
+ * <p>
+ * Archives are identified by their path relative to the cache directory, which is also their path on the storage.
+ * The index is saved in a local file with {@link #save()} and loaded at creation, so that the access dates are kept
+ * across restarts. Each line of the file holds the access date in epoch milliseconds and the archive key.
+ */
+public class ArchiveCacheAccessIndex {
+
+    private static final Logger LOGGER = getLogger(ArchiveCacheAccessIndex.class);
+
+    /**
+     * File of the index, null if the index is not saved
+     */
+    @Nullable
+    private final Path indexFile;
+
+    private final ConcurrentMap<String, Instant> lastAccesses = new ConcurrentHashMap<>();
+
+    private volatile boolean modified;
+
+    public ArchiveCacheAccessIndex(@Nullable Path indexFile) {
+        this.indexFile = indexFile;
+        load();
+    }
+
+    /**
+     * Record an access to the given archive now
+     */
+    public void recordAccess(String archiveKey) {
+        lastAccesses.put(normalize(archiveKey), Instant.now());
+        modified = true;
+    }
+
+    /**
+     * @return the last access date of the given archive, empty if it was never accessed
+     */
+    public Optional<Instant> getLastAccess(String archiveKey) {
+        return Optional.ofNullable(lastAccesses.get(normalize(archiveKey)));
+    }
+
+    public void remove(String archiveKey) {
+        if (lastAccesses.remove(normalize(archiveKey)) != null) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Forget the archives that are not in the given ones anymore, as they were removed from the cache
+     */
+    public void retainAll(Collection<String> archiveKeys) {
+        Set<String> keysToKeep = new HashSet<>();
+        archiveKeys.forEach(archiveKey -> keysToKeep.add(normalize(archiveKey)));
+        if (lastAccesses.keySet().retainAll(keysToKeep)) {
+            modified = true;
+        }
+    }
+
+    public int size() {
+        return lastAccesses.size();
+    }
+
+    /**
+     * Save the index to its file if it was modified since the last save. The file is replaced atomically, so that
+     * a crash while saving does not lose the previous index.
+     */
+    public synchronized void save() {
+        if (indexFile == null || !modified) {
+            return;
+        }
+        modified = false;
+        Path tmpFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(indexFile.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Instant> lastAccess : lastAccesses.entrySet()) {
+                    writer.write(lastAccess.getValue().toEpochMilli() + " " + lastAccess.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            modified = true;
+            LOGGER.warn("Unable to save the archive cache access index to {}", indexFile, e);
+        }
+    }
+
+    private void load() {
+        if (indexFile == null || !Files.exists(indexFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    try {
+                        lastAccesses.put(line.substring(separator + 1),
+                                         Instant.ofEpochMilli(Long.parseLong(line.substring(0, separator))));
+                    } catch (NumberFormatException e) {
+                        LOGGER.warn("Invalid line in the archive cache access index {} : {}", indexFile, line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to load the archive cache access index from {}, the access dates are lost",
+                        indexFile,
+                        e);
+        }
+    }
+
+    private static String normalize(String archiveKey) {
+        return archiveKey.replaceFirst("^/*", "");
+    }
+}
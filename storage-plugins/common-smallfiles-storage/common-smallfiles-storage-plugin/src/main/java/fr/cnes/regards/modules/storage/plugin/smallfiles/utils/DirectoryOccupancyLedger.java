@@ -0,0 +1,368 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.utils;
+
+import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Occupancy (number of files, size and oldest modification date of the regular files) of the workspace
+ * directories, maintained by the tasks adding and removing files, so that rollover and cleaning decisions do not
+ * need to list the directories.
+ * <p>
+ * The occupancy of a directory is computed by listing it the first time it is requested, then updated with the
+ * files added and removed. The oldest modification date is not known anymore once the oldest file is removed, so
+ * it is kept as a lower bound : a directory may be considered as having files to clean while it does not, never the
+ * opposite. The directory is then listed by the cleaning task which records its exact occupancy.
+ * Changes made without informing the ledger are caught up by {@link #reconcileStale()}, that lists again the
+ * directories whose occupancy was computed before the reconciliation period.
+ * <p>
+ * The ledger is kept by each instance of the microservice while the workspace is shared. The modification date of
+ * each directory is recorded with its occupancy, so the changes made by the other instances are detected by
+ * {@link #refreshIfModified(Path)} and {@link #getUpToDate(Path)} without listing the directory : it is only listed
+ * again when its modification date differs from the recorded one.
+ * <p>
+ * The ledger also keeps the current building directory of each node, so that the store tasks do not list the node
+ * to find it.
+ */
+public class DirectoryOccupancyLedger {
+
+    private static final Logger LOGGER = getLogger(DirectoryOccupancyLedger.class);
+
+    private final Duration reconciliationPeriod;
+
+    private final ConcurrentMap<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Current building directory by node
+     */
+    private final ConcurrentMap<Path, Path> currentDirectories = new ConcurrentHashMap<>();
+
+    private final LongAdder scanCount = new LongAdder();
+
+    public DirectoryOccupancyLedger(Duration reconciliationPeriod) {
+        this.reconciliationPeriod = reconciliationPeriod;
+    }
+
+    /**
+     * @return the occupancy of the given directory, listed only if not known yet
+     * @throws IOException if the directory cannot be listed
+     */
+    public DirectoryOccupancy get(Path directory) throws IOException {
+        try {
+            return entries.computeIfAbsent(normalize(directory), this::scanEntry).occupancy();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the occupancy of the given directory, listed if not known yet or if the directory was modified without
+     * informing this ledger, by another instance of the microservice
+     * @throws IOException if the directory cannot be listed
+     */
+    public DirectoryOccupancy getUpToDate(Path directory) throws IOException {
+        refreshIfModified(directory);
+        return get(directory);
+    }
+
+    /**
+     * List again the given directory if its occupancy is known and the directory was modified without informing this
+     * ledger, by another instance of the microservice. The occupancy is forgotten if the directory does not exist
+     * anymore. To be used by the tasks once they hold the lock of the directory.
+     */
+    public void refreshIfModified(Path directory) {
+        try {
+            entries.computeIfPresent(normalize(directory), (dir, entry) -> {
+                FileTime directoryModification = lastModified(dir);
+                if (directoryModification == null) {
+                    // Directory removed
+                    return null;
+                }
+                if (directoryModification.equals(entry.directoryModification())) {
+                    return entry;
+                }
+                LOGGER.debug("Directory {} modified by another process, listing it again", dir);
+                return scanEntry(dir);
+            });
+        } catch (UncheckedIOException e) {
+            LOGGER.warn("Unable to list directory {} to refresh its occupancy", directory, e.getCause());
+            entries.remove(normalize(directory));
+        }
+    }
+
+    /**
+     * List again the given directory and record its exact occupancy
+     *
+     * @throws IOException if the directory cannot be listed
+     */
+    public DirectoryOccupancy rescan(Path directory) throws IOException {
+        try {
+            Entry entry = scanEntry(normalize(directory));
+            entries.put(normalize(directory), entry);
+            return entry.occupancy();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Record a file added to its directory. Nothing is done if the directory occupancy is not known yet, the file
+     * being counted when the directory is listed.
+     */
+    public void fileAdded(Path file, long size, Instant lastModified) {
+        entries.computeIfPresent(normalize(file.getParent()),
+                                 (dir, entry) -> entry.with(entry.occupancy().add(size, lastModified),
+                                                            lastModified(dir)));
+    }
+
+    /**
+     * Record a file removed from its directory.
+     */
+    public void fileRemoved(Path file, long size) {
+        entries.computeIfPresent(normalize(file.getParent()),
+                                 (dir, entry) -> entry.with(entry.occupancy().remove(size), lastModified(dir)));
+    }
+
+    /**
+     * Record the exact occupancy of a directory, computed by a task listing it.
+     */
+    public void put(Path directory, DirectoryOccupancy occupancy) {
+        Path normalizedDirectory = normalize(directory);
+        entries.put(normalizedDirectory, new Entry(occupancy, lastModified(normalizedDirectory), Instant.now()));
+    }
+
+    public void directoryMoved(Path source, Path target) {
+        Entry entry = entries.remove(normalize(source));
+        if (entry != null) {
+            entries.put(normalize(target), entry);
+        }
+        forgetCurrentDirectory(source);
+    }
+
+    public void directoryRemoved(Path directory) {
+        entries.remove(normalize(directory));
+        forgetCurrentDirectory(directory);
+    }
+
+    /**
+     * Get the current building directory of the given node, the one with the
+     * {@link ISmallFilesStorage#CURRENT_ARCHIVE_SUFFIX} suffix. The node is listed only if its current directory is
+     * not known yet or does not exist anymore, as it may have been renamed by a task not informing the ledger.
+     *
+     * @return the current building directory, empty if the node has none
+     * @throws IOException if the node cannot be listed
+     */
+    public Optional<Path> getCurrentDirectory(Path node) throws IOException {
+        Path normalizedNode = normalize(node);
+        Path currentDirectory = currentDirectories.get(normalizedNode);
+        if (currentDirectory != null && Files.isDirectory(currentDirectory)) {
+            return Optional.of(currentDirectory);
+        }
+        Optional<Path> foundDirectory;
+        try (Stream<Path> fileList = Files.list(normalizedNode)) {
+            foundDirectory = fileList.filter(path -> path.getFileName()
+                                                         .toString()
+                                                         .endsWith(ISmallFilesStorage.CURRENT_ARCHIVE_SUFFIX))
+                                     .findFirst();
+        }
+        if (foundDirectory.isPresent()) {
+            currentDirectories.put(normalizedNode, foundDirectory.get());
+        } else {
+            currentDirectories.remove(normalizedNode);
+        }
+        return foundDirectory;
+    }
+
+    /**
+     * Record the new current building directory of its node
+     */
+    public void currentDirectoryCreated(Path directory) {
+        Path normalizedDirectory = normalize(directory);
+        currentDirectories.put(normalizedDirectory.getParent(), normalizedDirectory);
+    }
+
+    private void forgetCurrentDirectory(Path directory) {
+        Path normalizedDirectory = normalize(directory);
+        currentDirectories.remove(normalizedDirectory.getParent(), normalizedDirectory);
+    }
+
+    /**
+     * List again the directories whose occupancy was computed before the reconciliation period, and forget the
+     * ones that do not exist anymore.
+     *
+     * @return the number of directories listed
+     */
+    public int reconcileStale() {
+        Instant limit = Instant.now().minus(reconciliationPeriod);
+        List<Path> staleDirectories = new ArrayList<>();
+        for (Map.Entry<Path, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().reconciliationDate().isBefore(limit)) {
+                staleDirectories.add(entry.getKey());
+            }
+        }
+        int reconciled = 0;
+        for (Path directory : staleDirectories) {
+            try {
+                rescan(directory);
+                reconciled++;
+            } catch (NoSuchFileException e) {
+                directoryRemoved(directory);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to list directory {} to reconcile its occupancy", directory, e);
+                directoryRemoved(directory);
+            }
+        }
+        return reconciled;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of directories listed by this ledger
+     */
+    public long getScanCount() {
+        return scanCount.sum();
+    }
+
+    /**
+     * List the given directory, its modification date being read before so that a file added while listing is
+     * detected later
+     */
+    private Entry scanEntry(Path directory) {
+        try {
+            FileTime directoryModification = Files.getLastModifiedTime(directory);
+            scanCount.increment();
+            return new Entry(scan(directory), directoryModification, Instant.now());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the modification date of the given directory, null if it cannot be read
+     */
+    @Nullable
+    private static FileTime lastModified(Path directory) {
+        try {
+            return Files.getLastModifiedTime(directory);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * List the regular files of the given directory to compute its occupancy
+     */
+    public static DirectoryOccupancy scan(Path directory) throws IOException {
+        DirectoryOccupancy occupancy = DirectoryOccupancy.EMPTY;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attr.isRegularFile()) {
+                    occupancy = occupancy.add(attr.size(), attr.lastModifiedTime().toInstant());
+                }
+            }
+        }
+        return occupancy;
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Occupancy of a directory
+     *
+     * @param fileCount          number of regular files
+     * @param size               cumulated size of the regular files in bytes
+     * @param oldestModification oldest modification date of the files, null if there is none. It may be older than
+     *                           the actual one once files are removed.
+     */
+    public record DirectoryOccupancy(long fileCount,
+                                     long size,
+                                     @Nullable Instant oldestModification) {
+
+        public static final DirectoryOccupancy EMPTY = new DirectoryOccupancy(0, 0, null);
+
+        public boolean isEmpty() {
+            return fileCount == 0;
+        }
+
+        /**
+         * @return true if the directory may contain files modified before the given date
+         */
+        public boolean hasFilesOlderThan(Instant date) {
+            return oldestModification != null && oldestModification.isBefore(date);
+        }
+
+        /**
+         * @return the occupancy with the given file added
+         */
+        public DirectoryOccupancy add(long fileSize, Instant lastModified) {
+            Instant oldest = oldestModification == null || lastModified.isBefore(oldestModification) ?
+                lastModified :
+                oldestModification;
+            return new DirectoryOccupancy(fileCount + 1, size + fileSize, oldest);
+        }
+
+        private DirectoryOccupancy remove(long fileSize) {
+            long count = Math.max(0, fileCount - 1);
+            return new DirectoryOccupancy(count, Math.max(0, size - fileSize), count == 0 ? null : oldestModification);
+        }
+    }
+
+    /**
+     * @param directoryModification modification date of the directory once the occupancy was last updated, null if
+     *                              unknown
+     */
+    private record Entry(DirectoryOccupancy occupancy,
+                         @Nullable FileTime directoryModification,
+                         Instant reconciliationDate) {
+
+        private Entry with(DirectoryOccupancy newOccupancy, @Nullable FileTime newDirectoryModification) {
+            return new Entry(newOccupancy, newDirectoryModification, reconciliationDate);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.utils;
+
+import fr.cnes.regards.modules.storage.plugin.smallfiles.SmallFilesExecutors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Writer of a zip archive on a stream, the entries being compressed in parallel.
+ * <p>
+ * Each file is read and deflated by its own task, in the {@link SmallFilesExecutors.Operation#COMPRESS_ARCHIVE}
+ * executor, then the compressed entries are written to the stream in the order of the files as soon as they are
+ * ready. The crc and sizes of an entry being known once it is compressed, they are written in its local header and
+ * no data descriptor is needed. The stream does not need to be seekable, so the archive can be sent to the server
+ * while it is written, without any local archive file. Entries that do not compress are stored.
+ * <p>
+ * The files are small files, read in memory. At most twice the parallelism compressed entries are held in memory
+ * while waiting to be written. Zip64 records are written when the archive exceeds the zip32 limits.
+ */
+public class ParallelZipArchiveWriter {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    private static final short ZIP64_EXTRA_FIELD_ID = 0x0001;
+
+    private static final int UTF8_FLAG = 0x0800;
+
+    private static final int ZIP32_VERSION = 20;
+
+    private static final int ZIP64_VERSION = 45;
+
+    private static final long ZIP32_MAX_SIZE = 0xFFFFFFFFL;
+
+    private static final int ZIP32_MAX_ENTRIES = 0xFFFF;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SmallFilesExecutors executors;
+
+    private final int parallelism;
+
+    /**
+     * @param parallelism number of entries compressed at the same time
+     */
+    public ParallelZipArchiveWriter(SmallFilesExecutors executors, int parallelism) {
+        this.executors = executors;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Write an archive of the given files, named after their file name, to the given stream. The stream is not
+     * closed.
+     *
+     * @return the size of the archive
+     * @throws InterruptedIOException if the current thread is interrupted while waiting for the compression
+     */
+    public long write(List<File> files, OutputStream out) throws IOException {
+        Deque<Future<CompressedEntry>> pendingEntries = new ArrayDeque<>();
+        ZipOutput zip = new ZipOutput(out);
+        try {
+            for (File file : files) {
+                if (pendingEntries.size() >= parallelism * 2) {
+                    zip.writeEntry(await(pendingEntries.poll()));
+                }
+                pendingEntries.add(executors.submit(SmallFilesExecutors.Operation.COMPRESS_ARCHIVE,
+                                                    parallelism,
+                                                    () -> compress(file)));
+            }
+            while (!pendingEntries.isEmpty()) {
+                zip.writeEntry(await(pendingEntries.poll()));
+            }
+            zip.writeCentralDirectory();
+            return zip.position;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing archive entries");
+        } finally {
+            pendingEntries.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static CompressedEntry await(Future<CompressedEntry> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Error while compressing archive entry", e.getCause());
+        }
+    }
+
+    private static CompressedEntry compress(File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+            byte[] buffer = new byte[Math.min(BUFFER_SIZE, content.length + 64)];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            // Content that does not compress is kept as is
+            boolean stored = compressed.size() >= content.length;
+            return new CompressedEntry(file.getName().getBytes(StandardCharsets.UTF_8),
+                                       stored ? ZipEntry.STORED : ZipEntry.DEFLATED,
+                                       toDosTime(file.lastModified()),
+                                       crc.getValue(),
+                                       content.length,
+                                       stored ? content : compressed.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int toDosTime(long epochMilli) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25
+               | time.getMonthValue() << 21
+               | time.getDayOfMonth() << 16
+               | time.getHour() << 11
+               | time.getMinute() << 5
+               | time.getSecond() >> 1;
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Entry compressed and waiting to be written
+     *
+     * @param data compressed content, or content if the entry is stored
+     */
+    private record CompressedEntry(byte[] name,
+                                   int method,
+                                   int dosTime,
+                                   long crc,
+                                   long size,
+                                   byte[] data) {
+
+    }
+
+    /**
+     * Entry written, kept without its data for the central directory
+     */
+    private record WrittenEntry(byte[] name,
+                                int method,
+                                int dosTime,
+                                long crc,
+                                long size,
+                                long compressedSize,
+                                long offset) {
+
+    }
+
+    /**
+     * Zip records written to the stream, keeping the position and the entries for the central directory
+     */
+    private static class ZipOutput {
+
+        private final OutputStream out;
+
+        private final List<WrittenEntry> entries = new ArrayList<>();
+
+        private long position = 0;
+
+        private ZipOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        private void writeEntry(CompressedEntry entry) throws IOException {
+            if (entry.size() >= ZIP32_MAX_SIZE || entry.data().length >= ZIP32_MAX_SIZE) {
+                throw new ZipException(String.format("Entry %s is too large",
+                                                     new String(entry.name(), StandardCharsets.UTF_8)));
+            }
+            ByteBuffer header = allocate(LOCAL_HEADER_SIZE + entry.name().length);
+            header.putInt(LOCAL_HEADER_SIGNATURE)
+                  .putShort((short) ZIP32_VERSION)
+                  .putShort((short) UTF8_FLAG)
+                  .putShort((short) entry.method())
+                  .putInt(entry.dosTime())
+                  .putInt((int) entry.crc())
+                  .putInt(entry.data().length)
+                  .putInt((int) entry.size())
+                  .putShort((short) entry.name().length)
+                  .putShort((short) 0)
+                  .put(entry.name());
+            entries.add(new WrittenEntry(entry.name(),
+                                         entry.method(),
+                                         entry.dosTime(),
+                                         entry.crc(),
+                                         entry.size(),
+                                         entry.data().length,
+                                         position));
+            write(header.array());
+            write(entry.data());
+        }
+
+        private void writeCentralDirectory() throws IOException {
+            long centralDirectoryOffset = position;
+            for (WrittenEntry entry : entries) {
+                boolean zip64 = entry.offset() >= ZIP32_MAX_SIZE;
+                int extraLength = zip64 ? 12 : 0;
+                ByteBuffer header = allocate(CENTRAL_HEADER_SIZE + entry.name().length + extraLength);
+                header.putInt(CENTRAL_HEADER_SIGNATURE)
+                      .putShort((short) (zip64 ? ZIP64_VERSION : ZIP32_VERSION))
+                      .putShort((short) (zip64 ? ZIP64_VERSION : ZIP32_VERSION))
+                      .putShort((short) UTF8_FLAG)
+                      .putShort((short) entry.method())
+                      .putInt(entry.dosTime())
+                      .putInt((int) entry.crc())
+                      .putInt((int) entry.compressedSize())
+                      .putInt((int) entry.size())
+                      .putShort((short) entry.name().length)
+                      .putShort((short) extraLength)
+                      // Comment length, disk number, internal and external attributes
+                      .putShort((short) 0)
+                      .putShort((short) 0)
+                      .putShort((short) 0)
+                      .putInt(0)
+                      .putInt((int) (zip64 ? ZIP32_MAX_SIZE : entry.offset()))
+                      .put(entry.name());
+                if (zip64) {
+                    header.putShort(ZIP64_EXTRA_FIELD_ID).putShort((short) 8).putLong(entry.offset());
+                }
+                write(header.array());
+            }
+            long centralDirectorySize = position - centralDirectoryOffset;
+            boolean zip64 = entries.size() >= ZIP32_MAX_ENTRIES
+                            || centralDirectoryOffset >= ZIP32_MAX_SIZE
+                            || centralDirectorySize >= ZIP32_MAX_SIZE;
+            if (zip64) {
+                long zip64EndOffset = position;
+                ByteBuffer zip64End = allocate(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE + ZIP64_LOCATOR_SIZE);
+                zip64End.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+                        .putLong(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE - 12L)
+                        .putShort((short) ZIP64_VERSION)
+                        .putShort((short) ZIP64_VERSION)
+                        .putInt(0)
+                        .putInt(0)
+                        .putLong(entries.size())
+                        .putLong(entries.size())
+                        .putLong(centralDirectorySize)
+                        .putLong(centralDirectoryOffset)
+                        .putInt(ZIP64_LOCATOR_SIGNATURE)
+                        .putInt(0)
+                        .putLong(zip64EndOffset)
+                        .putInt(1);
+                write(zip64End.array());
+            }
+            ByteBuffer end = allocate(END_OF_CENTRAL_DIRECTORY_SIZE);
+            end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+               .putShort((short) 0)
+               .putShort((short) 0)
+               .putShort((short) Math.min(entries.size(), ZIP32_MAX_ENTRIES))
+               .putShort((short) Math.min(entries.size(), ZIP32_MAX_ENTRIES))
+               .putInt((int) Math.min(centralDirectorySize, ZIP32_MAX_SIZE))
+               .putInt((int) Math.min(centralDirectoryOffset, ZIP32_MAX_SIZE))
+               .putShort((short) 0);
+            write(end.array());
+            out.flush();
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+    }
+}
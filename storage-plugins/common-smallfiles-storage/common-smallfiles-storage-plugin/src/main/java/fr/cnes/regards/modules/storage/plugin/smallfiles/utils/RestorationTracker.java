@@ -0,0 +1,315 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.utils;
+
+import fr.cnes.regards.framework.s3.domain.GlacierFileStatus;
+import fr.cnes.regards.framework.s3.domain.RestorationStatus;
+import fr.cnes.regards.framework.s3.exception.S3ClientException;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.task.RetrieveCacheFileTask;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Tracker of the pending restorations of a plugin instance.
+ * <p>
+ * All the restorations waited by the plugin jobs are checked by a single scheduled task : at each period, the
+ * restorations whose next check date is reached are checked in one batch of non-blocking availability requests.
+ * Each restoration is checked with an increasing delay, as many jobs as needed can wait for the same key with only
+ * one availability request per check. The future returned to each job is completed as soon as the restoration ends.
+ * <p>
+ * The locks held by the waiting jobs are not renewed by the tracker : a lock can only be renewed by the thread
+ * owning it, so each job renews its own lock while waiting, see {@link WaitingLock#waitAndRenew(Future, long)}.
+ */
+public class RestorationTracker {
+
+    private static final Logger LOGGER = getLogger(RestorationTracker.class);
+
+    private static final int S3_MAX_ATTEMPT = 5;
+
+    /**
+     * Period in ms of the checks of the pending restorations
+     */
+    private final long checkPeriodInMs;
+
+    /**
+     * Maximum number of availability requests sent in parallel
+     */
+    private final int batchSize;
+
+    /**
+     * Pending restorations by key
+     */
+    private final ConcurrentMap<String, PendingRestoration> pendingRestorations = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public RestorationTracker(long checkPeriodInMs, int batchSize) {
+        this.checkPeriodInMs = checkPeriodInMs;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Track the restoration of the given key until it is available, no longer pending or the timeout is exceeded.
+     *
+     * @param key               key of the restored file
+     * @param statusSupplier    availability request of the file
+     * @param timeout           duration after which the restoration is considered as failed
+     * @param maxCheckDelayInMs maximum delay between two checks of the restoration
+     * @return the future completed with the last status of the file. Completed with a {@link RestorationStatus#RESTORE_PENDING}
+     * status if the timeout is exceeded, or exceptionally if the server cannot be reached. Cancelling it stops the
+     * tracking for the caller.
+     */
+    public CompletableFuture<GlacierFileStatus> track(String key,
+                                                      Supplier<Mono<GlacierFileStatus>> statusSupplier,
+                                                      Duration timeout,
+                                                      long maxCheckDelayInMs) {
+        Waiter waiter = new Waiter(statusSupplier);
+        Instant deadline = Instant.now().plus(timeout);
+        PendingRestoration restoration = pendingRestorations.compute(key, (k, existing) -> {
+            PendingRestoration pending = existing == null || existing.future.isDone() ?
+                new PendingRestoration(key, maxCheckDelayInMs, deadline) :
+                existing;
+            pending.addWaiter(waiter, deadline);
+            return pending;
+        });
+        startScheduler();
+        CompletableFuture<GlacierFileStatus> waiterFuture = restoration.future.thenApply(status -> status);
+        waiterFuture.whenComplete((status, error) -> {
+            if (waiterFuture.isCancelled()) {
+                restoration.removeWaiter(waiter);
+                if (restoration.isWithoutWaiter()) {
+                    pendingRestorations.remove(key, restoration);
+                }
+            }
+        });
+        LOGGER.debug("Tracking restoration of {}, {} restorations pending", key, pendingRestorations.size());
+        return waiterFuture;
+    }
+
+    /**
+     * @return the period in ms of the checks of the pending restorations
+     */
+    public long getCheckPeriodInMs() {
+        return checkPeriodInMs;
+    }
+
+    /**
+     * @return the number of restorations tracked
+     */
+    public int getPendingRestorationCount() {
+        return pendingRestorations.size();
+    }
+
+    /**
+     * Stop the tracking, the pending restorations are completed exceptionally.
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        pendingRestorations.values()
+                           .forEach(restoration -> restoration.future.completeExceptionally(new CancellationException(
+                               "Restoration tracking stopped")));
+        pendingRestorations.clear();
+    }
+
+    private synchronized void startScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder().namingPattern(
+                "restoration-tracker-thread-%d").daemon(true).build());
+            scheduler.scheduleWithFixedDelay(this::checkPendingRestorations,
+                                             0,
+                                             checkPeriodInMs,
+                                             TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Check the restorations whose next check date is reached.
+     */
+    void checkPendingRestorations() {
+        try {
+            Instant now = Instant.now();
+            List<PendingRestoration> restorationsToCheck = pendingRestorations.values()
+                                                                              .stream()
+                                                                              .filter(restoration -> !restoration.nextCheckDate.isAfter(
+                                                                                  now))
+                                                                              .sorted(Comparator.comparing(
+                                                                                  restoration -> restoration.nextCheckDate))
+                                                                              .toList();
+            if (restorationsToCheck.isEmpty()) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            Flux.fromIterable(restorationsToCheck)
+                .flatMap(restoration -> restoration.checkStatus()
+                                                   .doOnNext(status -> onStatus(restoration, status))
+                                                   .onErrorResume(error -> {
+                                                       onError(restoration, Exceptions.unwrap(error));
+                                                       return Mono.empty();
+                                                   }), batchSize)
+                .then()
+                .block();
+            LOGGER.debug("[S3 Monitoring] Checking {} pending restorations took {} ms, {} restorations still pending",
+                         restorationsToCheck.size(),
+                         System.currentTimeMillis() - start,
+                         pendingRestorations.size());
+        } catch (RuntimeException e) {
+            // Do not stop the scheduled checks
+            LOGGER.error("Error while checking pending restorations", e);
+        }
+    }
+
+    private void onStatus(PendingRestoration restoration, GlacierFileStatus status) {
+        restoration.unreachableServerAttempts = 0;
+        String key = restoration.key;
+        switch (status.getStatus()) {
+            case RESTORE_PENDING -> {
+                if (Instant.now().isAfter(restoration.deadline)) {
+                    LOGGER.error("The Restoration of file {} was not completed after the set maximum delay, ending "
+                                 + "restoration process", key);
+                    restoration.complete(status);
+                } else {
+                    LOGGER.info("Restoration of file {} not succeeded yet. Waiting for restoration end.", key);
+                    restoration.scheduleNextCheck();
+                }
+            }
+            case AVAILABLE -> {
+                LOGGER.info("Restoration succeeded for file {}", key);
+                restoration.complete(status);
+            }
+            case EXPIRED -> {
+                LOGGER.error("The restoration of file {} is done but expired. File is no longer available.", key);
+                restoration.complete(status);
+            }
+            case NOT_AVAILABLE -> {
+                LOGGER.error("File {} is not available and no restoration request is pending.", key);
+                restoration.complete(status);
+            }
+        }
+    }
+
+    private void onError(PendingRestoration restoration, Throwable error) {
+        if (error instanceof NoSuchKeyException) {
+            LOGGER.error("The requested file {} was not found on the server", restoration.key, error);
+            restoration.complete(new GlacierFileStatus(RestorationStatus.NOT_AVAILABLE, null, null));
+        } else if (error instanceof S3ClientException
+                   && ++restoration.unreachableServerAttempts < S3_MAX_ATTEMPT) {
+            LOGGER.warn("Unable to check if the restoration of {} is complete because the server is unreachable",
+                        restoration.key);
+            restoration.scheduleNextCheck();
+        } else {
+            LOGGER.error("Unable to check if the restoration of {} is complete", restoration.key, error);
+            restoration.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Job waiting for a restoration
+     *
+     * @param statusSupplier availability request of the job
+     */
+    private record Waiter(Supplier<Mono<GlacierFileStatus>> statusSupplier) {
+
+    }
+
+    /**
+     * Restoration waited by one or several jobs
+     */
+    private class PendingRestoration {
+
+        private final String key;
+
+        private final long maxCheckDelayInMs;
+
+        private final List<Waiter> waiters = new CopyOnWriteArrayList<>();
+
+        private final CompletableFuture<GlacierFileStatus> future = new CompletableFuture<>();
+
+        private volatile Instant deadline;
+
+        private volatile Instant nextCheckDate = Instant.now();
+
+        private long checkDelayInMs = RetrieveCacheFileTask.INITIAL_DELAY;
+
+        private int unreachableServerAttempts = 0;
+
+        private PendingRestoration(String key, long maxCheckDelayInMs, Instant deadline) {
+            this.key = key;
+            this.maxCheckDelayInMs = maxCheckDelayInMs;
+            this.deadline = deadline;
+        }
+
+        private void addWaiter(Waiter waiter, Instant waiterDeadline) {
+            waiters.add(waiter);
+            if (waiterDeadline.isAfter(deadline)) {
+                deadline = waiterDeadline;
+            }
+        }
+
+        private void removeWaiter(Waiter waiter) {
+            waiters.remove(waiter);
+        }
+
+        private boolean isWithoutWaiter() {
+            return waiters.isEmpty();
+        }
+
+        /**
+         * Check the status with the availability request of one of the waiting jobs, still open as the job waits
+         */
+        private Mono<GlacierFileStatus> checkStatus() {
+            List<Waiter> currentWaiters = List.copyOf(waiters);
+            if (currentWaiters.isEmpty()) {
+                pendingRestorations.remove(key, this);
+                return Mono.empty();
+            }
+            return Mono.defer(() -> currentWaiters.get(0).statusSupplier().get());
+        }
+
+        private void scheduleNextCheck() {
+            nextCheckDate = Instant.now().plusMillis(checkDelayInMs);
+            checkDelayInMs = Math.min(2 * checkDelayInMs, Math.max(maxCheckDelayInMs, checkPeriodInMs));
+        }
+
+        private void complete(GlacierFileStatus status) {
+            pendingRestorations.remove(key, this);
+            future.complete(status);
+        }
+
+        private void completeExceptionally(Throwable error) {
+            pendingRestorations.remove(key, this);
+            future.completeExceptionally(error);
+        }
+    }
+}
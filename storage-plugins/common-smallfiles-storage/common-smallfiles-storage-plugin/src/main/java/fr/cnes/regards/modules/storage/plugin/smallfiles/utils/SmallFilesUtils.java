@@ -27,7 +27,6 @@ import fr.cnes.regards.framework.s3.dto.StorageConfigDto;
 import fr.cnes.regards.framework.s3.exception.S3ClientException;
 import fr.cnes.regards.framework.utils.file.DownloadUtils;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
-import fr.cnes.regards.modules.storage.plugin.smallfiles.task.RetrieveCacheFileTask;
 import jakarta.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -44,10 +43,14 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -61,8 +64,6 @@ public class SmallFilesUtils {
 
     private static final Logger LOGGER = getLogger(SmallFilesUtils.class);
 
-    private static final int S3_MAX_ATTEMPT = 5;
-
     private SmallFilesUtils() {
     }
 
@@ -155,6 +156,9 @@ public class SmallFilesUtils {
     /**
      * Check if the restoration of a file is completed, either successfully or after the timeout is exceeded in
      * external cache.
+     * The availability of the file is checked by the given restoration tracker, along with the other pending
+     * restorations of the plugin. The lock is renewed by the calling thread, that owns it, until the end of the
+     * restoration.
      *
      * @param key                      s3 key of the file to download
      * @param s3Configuration          configuration of the s3 storage
@@ -163,9 +167,9 @@ public class SmallFilesUtils {
      * @param lockCreationDate         creation date of the lock for renewal purpose
      * @param renewCallDurationInMs    worst case scenario duration of the renewal call, necessary to prevent the lock from expiring between renewal call and renewal success
      * @param lockService              lockService handling the lock renewal
+     * @param restorationTracker       tracker of the pending restorations of the plugin
      * @return GlacierFileStatus
      */
-    @SuppressWarnings("java:S2259") // NOSONAR: block() cannot throw NullPointerException here
     public static GlacierFileStatus checkRestorationComplete(String key,
                                                              StorageConfigDto s3Configuration,
                                                              int s3AccessTimeoutInSeconds,
@@ -175,142 +179,45 @@ public class SmallFilesUtils {
                                                              Long renewCallDurationInMs,
                                                              @Nullable String standardStorageClassName,
                                                              LockService lockService,
-                                                             S3HighLevelReactiveClient s3Client) {
-        int lockTimeToLiveInSeconds = lockService.getTimeToLiveInSeconds();
-
-        RestorationStatus restorationStatus = RestorationStatus.NOT_AVAILABLE;
-
-        boolean retryAvailability = true;
-        int delay = RetrieveCacheFileTask.INITIAL_DELAY;
-        int totalWaited = 0;
-        int reachServerAttempt = 0;
-        GlacierFileStatus glacierFileStatus = null;
-
+                                                             S3HighLevelReactiveClient s3Client,
+                                                             RestorationTracker restorationTracker) {
+        WaitingLock lock = new WaitingLock(lockName,
+                                           lockCreationDate,
+                                           lockService.getTimeToLiveInSeconds(),
+                                           renewCallDurationInMs,
+                                           lockService);
+        LOGGER.debug("Waiting at most {}s for the restoration of {}/{}",
+                     s3AccessTimeoutInSeconds,
+                     s3Configuration.getBucket(),
+                     key);
+        CompletableFuture<GlacierFileStatus> restoration = restorationTracker.track(key,
+                                                                                    () -> s3Client.isFileAvailable(
+                                                                                        s3Configuration,
+                                                                                        key,
+                                                                                        standardStorageClassName),
+                                                                                    Duration.ofSeconds(
+                                                                                        s3AccessTimeoutInSeconds),
+                                                                                    renewMaxIterationWaitingPeriodInS
+                                                                                    * 1000L);
         try {
-            while ((restorationStatus != RestorationStatus.AVAILABLE) && retryAvailability) {
-                reachServerAttempt++;
-                LOGGER.debug("Checking if restoration succeeded");
-
-                try {
-                    long start = Instant.now().toEpochMilli();
-                    glacierFileStatus = s3Client.isFileAvailable(s3Configuration, key, standardStorageClassName)
-                                                .block();
-                    LOGGER.trace("[S3 Monitoring] Checking availability of {} took {} ms",
-                                 key,
-                                 Instant.now().toEpochMilli() - start);
-                    restorationStatus = glacierFileStatus.getStatus();
-                    reachServerAttempt = 0;
-                } catch (S3ClientException e) {
-                    LOGGER.warn("Unable to check if the restoration is complete because the server is unreachable");
-                    if (reachServerAttempt >= S3_MAX_ATTEMPT) {
-                        throw e;
-                    }
-                }
-
-                switch (restorationStatus) {
-                    case RESTORE_PENDING -> {
-                        LOGGER.info("Restoration of file {}/{} not succeeded yet. Waiting for restoration end.",
-                                    s3Configuration.getBucket(),
-                                    key);
-                        if (totalWaited > s3AccessTimeoutInSeconds * 1000) {
-                            LOGGER.error("The Restoration was not completed after the set maximum delay of {}s, ending "
-                                         + "restoration process", s3AccessTimeoutInSeconds);
-                            retryAvailability = false;
-                        } else {
-                            WaitingLock lock = new WaitingLock(lockName,
-                                                               lockCreationDate,
-                                                               lockTimeToLiveInSeconds,
-                                                               renewCallDurationInMs,
-                                                               lockService);
-                            LOGGER.debug("Next try in {}", delay);
-                            LOGGER.debug("Will wait at most {}ms", s3AccessTimeoutInSeconds * 1000 - totalWaited);
-                            lock.waitAndRenew(delay);
-                            totalWaited += delay;
-                            delay = Math.min(2 * delay, renewMaxIterationWaitingPeriodInS * 1000);
-                        }
-                    }
-                    case AVAILABLE -> {
-                        LOGGER.info("Restoration succeeded for file {}/{}", s3Configuration.getBucket(), key);
-                        retryAvailability = false;
-                    }
-                    case EXPIRED -> {
-                        LOGGER.error("The restoration of file {}/{} is done but expired. File is no longer available.",
-                                     s3Configuration.getBucket(),
-                                     key);
-                        retryAvailability = false;
-                    }
-                    case NOT_AVAILABLE -> {
-                        LOGGER.error("File {}/{} is not available and no restoration request is pending.",
-                                     s3Configuration.getBucket(),
-                                     key);
-                        retryAvailability = false;
-                    }
-                }
-            }
-        } catch (NoSuchKeyException e) {
-            LOGGER.error("The requested file {} was not found on the server", key, e);
+            return lock.waitAndRenew(restoration, restorationTracker.getCheckPeriodInMs());
+        } catch (RuntimeException e) {
+            // Lock renewal failure, stop waiting for the restoration
+            restoration.cancel(false);
+            throw e;
         } catch (InterruptedException e) {
-            LOGGER.error("Sleep interrupted", e);
-        }
-
-        return glacierFileStatus == null ?
-            new GlacierFileStatus(restorationStatus, null, null) :
-            new GlacierFileStatus(restorationStatus,
-                                  glacierFileStatus.getFileSize(),
-                                  glacierFileStatus.getExpirationDate());
-    }
-
-    /**
-     * Download a file after the checking if the restoration of a file is completed, either successfully or after the
-     * timeout is exceeded in internal cache.
-     *
-     * @param targetFilePath           path where the file will be downloaded
-     * @param key                      s3 key of the file to download
-     * @param s3Configuration          configuration of the s3 storage
-     * @param s3AccessTimeoutInSeconds time after which the restoration attempt will fail
-     * @param lockName                 name of the lock for renewal purpose
-     * @param lockCreationDate         creation date of the lock for renewal purpose
-     * @param renewCallDurationInMs    worst case scenario duration of the renewal call, necessary to prevent the lock from expiring between renewal call and renewal success
-     * @param lockService              lockService handling the lock renewal
-     * @return GlacierFileStatus
-     */
-    public static GlacierFileStatus downloadAfterRestoreFile(Path targetFilePath,
-                                                             String key,
-                                                             StorageConfigDto s3Configuration,
-                                                             int s3AccessTimeoutInSeconds,
-                                                             String lockName,
-                                                             Instant lockCreationDate,
-                                                             int renewMaxIterationWaitingPeriodInS,
-                                                             Long renewCallDurationInMs,
-                                                             @Nullable String standardStorageClassName,
-                                                             LockService lockService,
-                                                             S3HighLevelReactiveClient s3Client) {
-
-        GlacierFileStatus glacierFileStatus = checkRestorationComplete(key,
-                                                                       s3Configuration,
-                                                                       s3AccessTimeoutInSeconds,
-                                                                       lockName,
-                                                                       lockCreationDate,
-                                                                       renewMaxIterationWaitingPeriodInS,
-                                                                       renewCallDurationInMs,
-                                                                       standardStorageClassName,
-                                                                       lockService,
-                                                                       s3Client);
-
-        if (glacierFileStatus.getStatus() == RestorationStatus.AVAILABLE) {
-            String downloadedFileName = targetFilePath.getFileName().toString();
-
-            try {
-                if (!downloadFile(targetFilePath, key, s3Configuration, "S3GlacierRestore_" + downloadedFileName)) {
-                    return new GlacierFileStatus(RestorationStatus.NOT_AVAILABLE,
-                                                 glacierFileStatus.getFileSize(),
-                                                 glacierFileStatus.getExpirationDate());
-                }
-            } catch (NoSuchKeyException e) {
-                LOGGER.error("The requested file {} was not found on the server", downloadedFileName, e);
+            LOGGER.error("Waiting for restoration interrupted", e);
+            restoration.cancel(false);
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            LOGGER.error("Restoration tracking of {} stopped", key, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
             }
+            LOGGER.error("Unable to check if the restoration of {} is complete", key, e);
         }
-        return glacierFileStatus;
+        return new GlacierFileStatus(RestorationStatus.NOT_AVAILABLE, null, null);
     }
 
     /**
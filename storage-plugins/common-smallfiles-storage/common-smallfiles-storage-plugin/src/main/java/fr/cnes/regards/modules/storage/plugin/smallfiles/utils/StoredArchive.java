@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Archive stored on the server while it was written
+ *
+ * @param url      url of the archive on the server
+ * @param checksum MD5 checksum of the archive
+ * @param size     size of the archive in bytes
+ */
+public record StoredArchive(String url,
+                            String checksum,
+                            long size) {
+
+    /**
+     * Writer of the content of an archive, sent to the server while it is written
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
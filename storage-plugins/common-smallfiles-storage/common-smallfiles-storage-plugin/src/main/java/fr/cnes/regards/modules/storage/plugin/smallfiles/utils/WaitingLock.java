@@ -22,6 +22,10 @@ import fr.cnes.regards.framework.jpa.multitenant.lock.LockService;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Representation of a lock that have a creation time, a time to live and that can be renewed
@@ -30,7 +34,10 @@ public class WaitingLock {
 
     private final String lockName;
 
-    private Instant creationDate;
+    /**
+     * Last renewal (or creation) date of the lock, only updated by the thread owning the lock
+     */
+    private volatile Instant creationDate;
 
     private final long maxTimeToLiveInSeconds;
 
@@ -70,6 +77,44 @@ public class WaitingLock {
         }
     }
 
+    /**
+     * Wait for the given future and renew the lock when needed during the wait.
+     * The lock is renewed by the calling thread, as only the thread owning a lock can renew it.
+     *
+     * @param future          the future to wait for
+     * @param checkPeriodInMs maximum time to wait between two checks of the lock expiration
+     * @return the result of the future
+     */
+    public <T> T waitAndRenew(Future<T> future, long checkPeriodInMs)
+        throws InterruptedException, ExecutionException {
+        while (true) {
+            long waitTime = Math.max(1, Math.min(checkPeriodInMs, getLockRemainingTime()));
+            try {
+                return future.get(waitTime, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                renewIfExpiringWithin(checkPeriodInMs);
+            }
+        }
+    }
+
+    /**
+     * Renew the lock if it expires within the given delay, without waiting
+     *
+     * @param delay the time in ms until the next call of this method
+     * @return true if the lock was renewed
+     */
+    public boolean renewIfExpiringWithin(long delay) {
+        if (getLockRemainingTime() <= delay) {
+            renew();
+            return true;
+        }
+        return false;
+    }
+
+    public String getLockName() {
+        return lockName;
+    }
+
     /**
      * Get the remaining time to live for the lock using the difference of the lock last renewal (or creation) date and now
      *
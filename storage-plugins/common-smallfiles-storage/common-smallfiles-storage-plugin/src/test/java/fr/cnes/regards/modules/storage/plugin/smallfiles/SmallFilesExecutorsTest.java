@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Test {@link SmallFilesExecutors}
+ */
+public class SmallFilesExecutorsTest {
+
+    private static final int PARALLELISM = 3;
+
+    private final SmallFilesExecutors executors = new SmallFilesExecutors("test");
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @After
+    public void after() {
+        executors.shutdown();
+    }
+
+    @Test
+    public void parallelism_bounded_across_callers() throws Exception {
+        // Given two jobs submitting tasks of the same operation at the same time
+        ExecutorService jobs = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<List<Future<Integer>>>> jobResults = new ArrayList<>();
+            for (int job = 0; job < 2; job++) {
+                jobResults.add(jobs.submit(() -> executors.invokeAll(SmallFilesExecutors.Operation.STORE,
+                                                                     PARALLELISM,
+                                                                     createTasks(20))));
+            }
+            // Then all tasks are run, never more than the parallelism at the same time
+            for (Future<List<Future<Integer>>> jobResult : jobResults) {
+                List<Future<Integer>> results = jobResult.get(30, TimeUnit.SECONDS);
+                Assert.assertEquals(20, results.size());
+                for (int i = 0; i < results.size(); i++) {
+                    Assert.assertTrue(results.get(i).isDone());
+                    Assert.assertEquals(Integer.valueOf(i), results.get(i).get());
+                }
+            }
+            Assert.assertTrue("Too many tasks running at the same time : " + maxRunning.get(),
+                              maxRunning.get() <= PARALLELISM);
+        } finally {
+            jobs.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failed_task_does_not_stop_others() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>(createTasks(4));
+        tasks.add(1, () -> {
+            throw new IllegalStateException("failure");
+        });
+        List<Future<Integer>> results = executors.invokeAll(SmallFilesExecutors.Operation.DELETE, PARALLELISM, tasks);
+        Assert.assertEquals(5, results.size());
+        Assert.assertThrows(ExecutionException.class, () -> results.get(1).get());
+        Assert.assertEquals(Integer.valueOf(3), results.get(4).get());
+    }
+
+    @Test
+    public void cancelled_task_keeps_its_permit_until_it_ends() throws Exception {
+        // Given an operation with a parallelism of 1 (one running task and one waiting task at most), and a task
+        // ignoring interruptions cancelled while running
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> cancelled = executors.submit(SmallFilesExecutors.Operation.RETRIEVE, 1, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // Interruption ignored, the task goes on
+                release.await();
+            }
+            return 0;
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        cancelled.cancel(true);
+        executors.submit(SmallFilesExecutors.Operation.RETRIEVE, 1, () -> 1);
+
+        // When another task is submitted
+        ExecutorService job = Executors.newSingleThreadExecutor();
+        try {
+            Future<Future<Integer>> submission = job.submit(() -> submit(SmallFilesExecutors.Operation.RETRIEVE, 2));
+
+            // Then its submission waits for the end of the cancelled task
+            Assert.assertThrows(TimeoutException.class, () -> submission.get(200, TimeUnit.MILLISECONDS));
+            release.countDown();
+            Assert.assertEquals(Integer.valueOf(2), submission.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS));
+        } finally {
+            job.shutdownNow();
+        }
+    }
+
+    @Test
+    public void subtasks_of_same_operation_do_not_deadlock() throws Exception {
+        // Given tasks submitting and waiting for subtasks of the same operation, more than the parallelism
+        List<Callable<Integer>> tasks = IntStream.range(0, PARALLELISM * 4).<Callable<Integer>>mapToObj(i -> () -> {
+            int sum = 0;
+            for (Future<Integer> subtask : executors.invokeAll(SmallFilesExecutors.Operation.STORE,
+                                                               PARALLELISM,
+                                                               createTasks(3))) {
+                sum += subtask.get();
+            }
+            return sum;
+        }).toList();
+
+        // Then all of them complete
+        ExecutorService job = Executors.newSingleThreadExecutor();
+        try {
+            List<Future<Integer>> results = job.submit(() -> executors.invokeAll(SmallFilesExecutors.Operation.STORE,
+                                                                                 PARALLELISM,
+                                                                                 tasks)).get(30, TimeUnit.SECONDS);
+            for (Future<Integer> result : results) {
+                Assert.assertEquals(Integer.valueOf(3), result.get());
+            }
+        } finally {
+            job.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejected_after_shutdown() {
+        executors.shutdown();
+        Assert.assertThrows(RejectedExecutionException.class,
+                            () -> executors.invokeAll(SmallFilesExecutors.Operation.RETRIEVE,
+                                                      PARALLELISM,
+                                                      createTasks(1)));
+    }
+
+    private Future<Integer> submit(SmallFilesExecutors.Operation operation, int result) throws InterruptedException {
+        return executors.submit(operation, 1, () -> result);
+    }
+
+    private List<Callable<Integer>> createTasks(int number) {
+        return IntStream.range(0, number).<Callable<Integer>>mapToObj(i -> () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } finally {
+                running.decrementAndGet();
+            }
+            return i;
+        }).toList();
+    }
+}
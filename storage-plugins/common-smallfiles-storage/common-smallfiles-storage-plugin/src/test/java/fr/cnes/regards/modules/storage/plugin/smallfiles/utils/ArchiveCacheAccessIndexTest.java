@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Test {@link ArchiveCacheAccessIndex}
+ */
+public class ArchiveCacheAccessIndexTest {
+
+    private static final Path WORKSPACE = Paths.get("target", "cache-index");
+
+    private Path indexFile;
+
+    @Before
+    public void init() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+        indexFile = WORKSPACE.resolve("archive-cache-index");
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+    }
+
+    @Test
+    public void access_dates_kept_after_reload() {
+        ArchiveCacheAccessIndex index = new ArchiveCacheAccessIndex(indexFile);
+        index.recordAccess("node/archive1.zip");
+        index.recordAccess("/node/archive2.zip");
+        index.save();
+
+        ArchiveCacheAccessIndex reloadedIndex = new ArchiveCacheAccessIndex(indexFile);
+        Assert.assertEquals(2, reloadedIndex.size());
+        Assert.assertEquals(index.getLastAccess("node/archive1.zip"),
+                            reloadedIndex.getLastAccess("node/archive1.zip"));
+        // Leading separator is ignored
+        Assert.assertEquals(index.getLastAccess("node/archive2.zip"),
+                            reloadedIndex.getLastAccess("/node/archive2.zip"));
+        Assert.assertEquals(Optional.empty(), reloadedIndex.getLastAccess("node/archive3.zip"));
+    }
+
+    @Test
+    public void removed_archives_forgotten() {
+        ArchiveCacheAccessIndex index = new ArchiveCacheAccessIndex(indexFile);
+        index.recordAccess("node/archive1.zip");
+        index.recordAccess("node/archive2.zip");
+        index.recordAccess("node/archive3.zip");
+
+        index.remove("node/archive1.zip");
+        index.retainAll(List.of("node/archive2.zip", "node/archive4.zip"));
+        index.save();
+
+        ArchiveCacheAccessIndex reloadedIndex = new ArchiveCacheAccessIndex(indexFile);
+        Assert.assertEquals(1, reloadedIndex.size());
+        Assert.assertTrue(reloadedIndex.getLastAccess("node/archive2.zip").isPresent());
+    }
+
+    @Test
+    public void invalid_lines_ignored() throws IOException {
+        Files.createDirectories(WORKSPACE);
+        Files.writeString(indexFile, "1000 node/archive1.zip\nnot_a_date node/archive2.zip\n\n");
+
+        ArchiveCacheAccessIndex index = new ArchiveCacheAccessIndex(indexFile);
+        Assert.assertEquals(1, index.size());
+        Assert.assertEquals(1000, index.getLastAccess("node/archive1.zip").orElseThrow().toEpochMilli());
+    }
+
+    @Test
+    public void index_without_file_not_saved() {
+        ArchiveCacheAccessIndex index = new ArchiveCacheAccessIndex(null);
+        index.recordAccess("node/archive1.zip");
+        index.save();
+
+        Assert.assertEquals(1, index.size());
+        Assert.assertFalse(Files.exists(WORKSPACE));
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.utils;
+
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger.DirectoryOccupancy;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+
+/**
+ * Test {@link DirectoryOccupancyLedger}
+ */
+public class DirectoryOccupancyLedgerTest {
+
+    private static final Path WORKSPACE = Paths.get("target", "occupancy");
+
+    private final Instant oldDate = Instant.now().minus(2, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS);
+
+    private Path directory;
+
+    @Before
+    public void init() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+        directory = Files.createDirectories(WORKSPACE.resolve("node").resolve("rs_zip_archive_current"));
+        createFile("file1", 100, oldDate);
+        createFile("file2", 50, Instant.now());
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+    }
+
+    @Test
+    public void directory_listed_once() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+
+        DirectoryOccupancy occupancy = ledger.get(directory);
+        Assert.assertEquals(2, occupancy.fileCount());
+        Assert.assertEquals(150, occupancy.size());
+        Assert.assertEquals(oldDate, occupancy.oldestModification());
+
+        // File added without informing the ledger is not seen, the directory is not listed again
+        createFile("file3", 10, Instant.now());
+        Assert.assertEquals(150, ledger.get(directory).size());
+        Assert.assertEquals(1, ledger.size());
+    }
+
+    @Test
+    public void modified_directory_listed_again() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+        ledger.get(directory);
+
+        // Unmodified directory is not listed again
+        ledger.refreshIfModified(directory);
+        Assert.assertEquals(150, ledger.getUpToDate(directory).size());
+        Assert.assertEquals(1, ledger.getScanCount());
+
+        // File added by another instance of the microservice
+        createFile("file3", 10, Instant.now());
+        Files.setLastModifiedTime(directory, FileTime.from(oldDate));
+
+        DirectoryOccupancy occupancy = ledger.getUpToDate(directory);
+        Assert.assertEquals(3, occupancy.fileCount());
+        Assert.assertEquals(160, occupancy.size());
+        Assert.assertEquals(2, ledger.getScanCount());
+    }
+
+    @Test
+    public void removed_directory_forgotten() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+        ledger.get(directory);
+
+        FileUtils.deleteDirectory(directory.toFile());
+        ledger.refreshIfModified(directory);
+        Assert.assertEquals(0, ledger.size());
+    }
+
+    @Test
+    public void consecutive_stores_not_listed_again() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+        ledger.get(directory);
+
+        for (int i = 0; i < 50; i++) {
+            ledger.refreshIfModified(directory);
+            Path file = Files.write(directory.resolve("stored_" + i), new byte[10]);
+            ledger.fileAdded(file, 10, Instant.now());
+            Assert.assertEquals(160 + 10L * i, ledger.get(directory).size());
+        }
+        Assert.assertEquals(52, ledger.get(directory).fileCount());
+        Assert.assertEquals(1, ledger.getScanCount());
+    }
+
+    @Test
+    public void files_added_and_removed() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+        ledger.get(directory);
+
+        ledger.fileAdded(createFile("file3", 10, Instant.now()), 10, Instant.now());
+        Assert.assertEquals(3, ledger.get(directory).fileCount());
+        Assert.assertEquals(160, ledger.get(directory).size());
+
+        ledger.fileRemoved(directory.resolve("file1"), 100);
+        ledger.fileRemoved(directory.resolve("file2"), 50);
+        DirectoryOccupancy occupancy = ledger.get(directory);
+        Assert.assertEquals(1, occupancy.fileCount());
+        Assert.assertEquals(10, occupancy.size());
+        // Oldest date is kept as a lower bound until the directory is listed again
+        Assert.assertTrue(occupancy.hasFilesOlderThan(Instant.now().minus(1, ChronoUnit.DAYS)));
+
+        ledger.fileRemoved(directory.resolve("file3"), 10);
+        Assert.assertTrue(ledger.get(directory).isEmpty());
+        Assert.assertNull(ledger.get(directory).oldestModification());
+    }
+
+    @Test
+    public void files_added_to_unknown_directory_ignored() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+
+        ledger.fileAdded(createFile("file3", 10, Instant.now()), 10, Instant.now());
+        Assert.assertEquals(0, ledger.size());
+        // File is counted once when the directory is listed
+        Assert.assertEquals(3, ledger.get(directory).fileCount());
+    }
+
+    @Test
+    public void exact_occupancy_put() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+        ledger.get(directory);
+
+        Files.delete(directory.resolve("file1"));
+        ledger.put(directory, DirectoryOccupancyLedger.scan(directory));
+
+        DirectoryOccupancy occupancy = ledger.get(directory);
+        Assert.assertEquals(1, occupancy.fileCount());
+        Assert.assertFalse(occupancy.hasFilesOlderThan(Instant.now().minus(1, ChronoUnit.DAYS)));
+    }
+
+    @Test
+    public void directory_moved_and_removed() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+        ledger.get(directory);
+
+        Path target = Files.move(directory, directory.resolveSibling("rs_zip_archive"));
+        ledger.directoryMoved(directory, target);
+        Assert.assertEquals(150, ledger.get(target).size());
+        Assert.assertEquals(1, ledger.size());
+
+        ledger.directoryRemoved(target);
+        Assert.assertEquals(0, ledger.size());
+    }
+
+    @Test
+    public void stale_directories_reconciled() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ZERO);
+        Path otherDirectory = Files.createDirectories(WORKSPACE.resolve("node").resolve("rs_zip_other"));
+        ledger.get(directory);
+        ledger.get(otherDirectory);
+
+        // Changes made without informing the ledger
+        createFile("file3", 10, Instant.now());
+        FileUtils.deleteDirectory(otherDirectory.toFile());
+
+        Assert.assertEquals(1, ledger.reconcileStale());
+        Assert.assertEquals(1, ledger.size());
+        Assert.assertEquals(160, ledger.get(directory).size());
+    }
+
+    @Test
+    public void recent_directories_not_reconciled() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+        ledger.get(directory);
+
+        createFile("file3", 10, Instant.now());
+
+        Assert.assertEquals(0, ledger.reconcileStale());
+        Assert.assertEquals(150, ledger.get(directory).size());
+    }
+
+    @Test
+    public void current_directory_kept() throws IOException {
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+        Path node = directory.getParent();
+        Files.createDirectories(node.resolve("rs_zip_archive_previous"));
+
+        Assert.assertEquals(directory.toAbsolutePath(), ledger.getCurrentDirectory(node).orElseThrow());
+
+        // Directory renamed without informing the ledger, the node is listed again
+        Path fullDirectory = Files.move(directory, directory.resolveSibling("rs_zip_archive"));
+        Assert.assertTrue(ledger.getCurrentDirectory(node).isEmpty());
+
+        Path newDirectory = Files.createDirectories(node.resolve("rs_zip_new_current"));
+        ledger.currentDirectoryCreated(newDirectory);
+        Assert.assertEquals(newDirectory.toAbsolutePath(), ledger.getCurrentDirectory(node).orElseThrow());
+
+        // Directory renamed by a task informing the ledger
+        Files.move(newDirectory, fullDirectory.resolveSibling("rs_zip_new"));
+        ledger.directoryMoved(newDirectory, fullDirectory.resolveSibling("rs_zip_new"));
+        Assert.assertTrue(ledger.getCurrentDirectory(node).isEmpty());
+    }
+
+    @Test
+    public void ledger_matches_listing_while_storing() throws IOException {
+        Path node = Files.createDirectories(WORKSPACE.resolve("storing"));
+        // Archives already built on the node, waiting to be sent
+        for (int i = 0; i < 20; i++) {
+            Files.createDirectories(node.resolve("rs_zip_archive_" + i));
+        }
+        Files.createDirectories(node.resolve("rs_zip_storing_current"));
+        DirectoryOccupancyLedger ledger = new DirectoryOccupancyLedger(Duration.ofHours(1));
+        for (int i = 0; i < 100; i++) {
+            Path currentDirectory = ledger.getCurrentDirectory(node).orElseThrow();
+            try (Stream<Path> fileList = Files.list(node)) {
+                Assert.assertEquals(fileList.filter(path -> path.getFileName().toString().endsWith("_current"))
+                                            .map(Path::toAbsolutePath)
+                                            .findFirst()
+                                            .orElseThrow(), currentDirectory);
+            }
+            Path file = Files.write(currentDirectory.resolve("file_" + i), new byte[10 + i]);
+            ledger.fileAdded(file, 10 + i, Instant.now());
+            try (Stream<Path> fileList = Files.list(currentDirectory)) {
+                Assert.assertEquals(fileList.mapToLong(f -> f.toFile().length()).sum(),
+                                    ledger.get(currentDirectory).size());
+            }
+        }
+        // Current directory listed once
+        Assert.assertEquals(1, ledger.getScanCount());
+    }
+
+    private Path createFile(String name, int size, Instant lastModified) throws IOException {
+        Path file = Files.write(directory.resolve(name), new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.from(lastModified));
+        return file;
+    }
+}
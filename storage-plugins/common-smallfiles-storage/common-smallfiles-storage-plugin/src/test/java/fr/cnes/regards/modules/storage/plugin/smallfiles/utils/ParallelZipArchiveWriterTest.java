@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.utils;
+
+import fr.cnes.regards.modules.storage.plugin.smallfiles.SmallFilesExecutors;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Test {@link ParallelZipArchiveWriter}
+ */
+public class ParallelZipArchiveWriterTest {
+
+    private static final Path WORKSPACE = Paths.get("target", "parallel-zip");
+
+    private final SmallFilesExecutors executors = new SmallFilesExecutors("test");
+
+    private final Random random = new Random(42);
+
+    @Before
+    public void init() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+        Files.createDirectories(WORKSPACE);
+    }
+
+    @After
+    public void after() throws IOException {
+        executors.shutdown();
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+    }
+
+    @Test
+    public void archive_read_as_stream() throws IOException {
+        // Given files that compress, that do not compress, and an empty one
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            files.add(createFile("file_" + i + ".txt", 10_000, i % 2 == 0));
+        }
+        files.add(createFile("empty.txt", 0, false));
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long size = new ParallelZipArchiveWriter(executors, 4).write(files, out);
+
+        // Then the entries are read in the order of the files, without the central directory
+        Assert.assertEquals(out.size(), size);
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (File file : files) {
+                ZipEntry entry = zip.getNextEntry();
+                Assert.assertNotNull(entry);
+                Assert.assertEquals(file.getName(), entry.getName());
+                Assert.assertArrayEquals(Files.readAllBytes(file.toPath()), zip.readAllBytes());
+            }
+            Assert.assertNull(zip.getNextEntry());
+        }
+    }
+
+    @Test
+    public void archive_read_from_central_directory() throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add(createFile("file_" + i + ".bin", random.nextInt(100_000), i % 3 == 0));
+        }
+
+        Path archive = writeArchive(files, 3);
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            Assert.assertEquals(files.size(), zip.size());
+            for (File file : files) {
+                ZipEntry entry = zip.getEntry(file.getName());
+                Assert.assertEquals(file.length(), entry.getSize());
+                Assert.assertArrayEquals(Files.readAllBytes(file.toPath()), zip.getInputStream(entry).readAllBytes());
+            }
+            // Compressible files are deflated, other ones are stored
+            Assert.assertEquals(ZipEntry.DEFLATED, zip.getEntry("file_0.bin").getMethod());
+            Assert.assertEquals(ZipEntry.STORED, zip.getEntry("file_1.bin").getMethod());
+        }
+    }
+
+    @Test
+    public void zip64_archive_with_many_entries() throws IOException {
+        // Given more entries than a zip32 archive can contain
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 0xFFFF + 10; i++) {
+            files.add(Files.write(WORKSPACE.resolve("f" + i), new byte[] { (byte) i }).toFile());
+        }
+
+        Path archive = writeArchive(files, 4);
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            Assert.assertEquals(files.size(), zip.size());
+            ZipEntry last = zip.getEntry("f" + (files.size() - 1));
+            Assert.assertArrayEquals(new byte[] { (byte) (files.size() - 1) }, zip.getInputStream(last).readAllBytes());
+        }
+    }
+
+    @Test
+    public void missing_file_fails() throws IOException {
+        List<File> files = List.of(createFile("file.txt", 100, true), WORKSPACE.resolve("missing.txt").toFile());
+
+        Assert.assertThrows(IOException.class,
+                            () -> new ParallelZipArchiveWriter(executors, 2).write(files, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void parallel_archive_equals_sequential_archive() throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            files.add(createFile("file_" + i, 64 * 1024, i % 4 != 0));
+        }
+
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        new ParallelZipArchiveWriter(executors, 1).write(files, sequential);
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        new ParallelZipArchiveWriter(executors, 4).write(files, parallel);
+
+        Assert.assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+    }
+
+    private Path writeArchive(List<File> files, int parallelism) throws IOException {
+        Path archive = WORKSPACE.resolve("archive.zip");
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            new ParallelZipArchiveWriter(executors, parallelism).write(files, out);
+        }
+        return archive;
+    }
+
+    /**
+     * @param compressible true to create a text-like content, false for a random one
+     */
+    private File createFile(String name, int size, boolean compressible) throws IOException {
+        byte[] content = new byte[size];
+        if (compressible) {
+            for (int i = 0; i < size; i++) {
+                content[i] = (byte) ('a' + random.nextInt(4));
+            }
+        } else {
+            random.nextBytes(content);
+        }
+        return Files.write(WORKSPACE.resolve(name), content).toFile();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.smallfiles.utils;
+
+import fr.cnes.regards.framework.jpa.multitenant.lock.LockService;
+import fr.cnes.regards.framework.s3.domain.GlacierFileStatus;
+import fr.cnes.regards.framework.s3.domain.RestorationStatus;
+import fr.cnes.regards.framework.s3.exception.S3ClientException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Test {@link RestorationTracker}
+ */
+public class RestorationTrackerTest {
+
+    private static final String KEY = "root/node/rs_zip_archive.zip";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final RestorationTracker tracker = new RestorationTracker(50, 10);
+
+    private final AtomicInteger statusRequests = new AtomicInteger();
+
+    @After
+    public void after() {
+        tracker.shutdown();
+    }
+
+    @Test
+    public void restoration_checked_once_for_all_waiters() throws Exception {
+        // Given a restoration pending at first check, then available
+        Supplier<Mono<GlacierFileStatus>> statusSupplier = statusSupplier(RestorationStatus.RESTORE_PENDING,
+                                                                          RestorationStatus.AVAILABLE);
+        // When three jobs wait for the same restoration
+        CompletableFuture<GlacierFileStatus> first = tracker.track(KEY, statusSupplier, TIMEOUT, 1000);
+        CompletableFuture<GlacierFileStatus> second = tracker.track(KEY, statusSupplier, TIMEOUT, 1000);
+        CompletableFuture<GlacierFileStatus> third = tracker.track(KEY, statusSupplier, TIMEOUT, 1000);
+
+        // Then all of them are notified with only one availability request per check
+        Assert.assertEquals(RestorationStatus.AVAILABLE, first.get(10, TimeUnit.SECONDS).getStatus());
+        Assert.assertEquals(RestorationStatus.AVAILABLE, second.get(10, TimeUnit.SECONDS).getStatus());
+        Assert.assertEquals(RestorationStatus.AVAILABLE, third.get(10, TimeUnit.SECONDS).getStatus());
+        Assert.assertEquals(2, statusRequests.get());
+        Assert.assertEquals(0, tracker.getPendingRestorationCount());
+    }
+
+    @Test
+    public void lock_renewed_by_owning_thread_while_waiting() throws Exception {
+        // Given a lock expiring in one second, owned by the waiting thread as locks of the jdbc lock registry are,
+        // and a restoration longer than that
+        ReentrantLock ownedLock = new ReentrantLock();
+        ownedLock.lock();
+        AtomicInteger renewals = new AtomicInteger();
+        LockService lockService = Mockito.mock(LockService.class);
+        Mockito.doAnswer(invocation -> {
+            if (!ownedLock.isHeldByCurrentThread()) {
+                throw new IllegalStateException("The current thread doesn't own the lock");
+            }
+            renewals.incrementAndGet();
+            return null;
+        }).when(lockService).renewLock("lock");
+        try {
+            WaitingLock lock = new WaitingLock("lock", Instant.now(), 1, 0, lockService);
+            Supplier<Mono<GlacierFileStatus>> statusSupplier = statusSupplier(RestorationStatus.RESTORE_PENDING,
+                                                                              RestorationStatus.RESTORE_PENDING,
+                                                                              RestorationStatus.RESTORE_PENDING,
+                                                                              RestorationStatus.AVAILABLE);
+            CompletableFuture<GlacierFileStatus> restoration = tracker.track(KEY, statusSupplier, TIMEOUT, 1000);
+
+            // When the waiting thread waits for the restoration
+            GlacierFileStatus status = lock.waitAndRenew(restoration, 50);
+
+            // Then the lock is renewed by the waiting thread without error
+            Assert.assertEquals(RestorationStatus.AVAILABLE, status.getStatus());
+            Assert.assertTrue(renewals.get() > 0);
+        } finally {
+            ownedLock.unlock();
+        }
+    }
+
+    @Test
+    public void restoration_pending_after_timeout() throws Exception {
+        CompletableFuture<GlacierFileStatus> restoration = tracker.track(KEY,
+                                                                         statusSupplier(RestorationStatus.RESTORE_PENDING),
+                                                                         Duration.ZERO,
+                                                                         1000);
+
+        Assert.assertEquals(RestorationStatus.RESTORE_PENDING, restoration.get(10, TimeUnit.SECONDS).getStatus());
+        Assert.assertEquals(0, tracker.getPendingRestorationCount());
+    }
+
+    @Test
+    public void unknown_key_not_available() throws Exception {
+        CompletableFuture<GlacierFileStatus> restoration = tracker.track(KEY,
+                                                                         () -> Mono.error(NoSuchKeyException.builder()
+                                                                                                            .build()),
+                                                                         TIMEOUT,
+                                                                         1000);
+
+        Assert.assertEquals(RestorationStatus.NOT_AVAILABLE, restoration.get(10, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    public void unreachable_server_fails_after_max_attempts() {
+        RestorationTracker fastTracker = new RestorationTracker(10, 10);
+        try {
+            CompletableFuture<GlacierFileStatus> restoration = fastTracker.track(KEY, () -> {
+                statusRequests.incrementAndGet();
+                return Mono.error(new S3ClientException("unreachable"));
+            }, TIMEOUT, 10);
+
+            ExecutionException exception = Assert.assertThrows(ExecutionException.class,
+                                                               () -> restoration.get(30, TimeUnit.SECONDS));
+            Assert.assertTrue(exception.getCause() instanceof S3ClientException);
+            Assert.assertEquals(5, statusRequests.get());
+        } finally {
+            fastTracker.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelled_waiter_no_longer_tracked() {
+        CompletableFuture<GlacierFileStatus> restoration = tracker.track(KEY,
+                                                                         statusSupplier(RestorationStatus.RESTORE_PENDING),
+                                                                         TIMEOUT,
+                                                                         1000);
+        Assert.assertEquals(1, tracker.getPendingRestorationCount());
+
+        restoration.cancel(false);
+
+        Assert.assertEquals(0, tracker.getPendingRestorationCount());
+    }
+
+    /**
+     * Supplier returning the given statuses, the last one being returned for all the next calls
+     */
+    private Supplier<Mono<GlacierFileStatus>> statusSupplier(RestorationStatus... statuses) {
+        return () -> Mono.fromSupplier(() -> {
+            int call = statusRequests.getAndIncrement();
+            return new GlacierFileStatus(statuses[Math.min(call, statuses.length - 1)], 10L, null);
+        });
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.local.service;
+
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Stream on a region of a local file : a whole plain file, or the data of an uncompressed (STORED) zip entry.
+ * <p>
+ * Besides the usual reads, the region is exposed (channel, offset and length) so that callers can send it with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, letting the kernel copy the data to a socket or a
+ * file without going through user space buffers, or read only a range of it.
+ * {@link #transferTo(OutputStream)} does so when copying the stream, which is what most copy utilities call.
+ * <p>
+ * The channel, and the zip lock if any, are released when the stream is closed.
+ */
+public class FileRegionInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of consecutive writes accepting no byte before the copy to a channel fails
+     */
+    private static final int MAX_EMPTY_WRITES = 100;
+
+    private final FileChannel channel;
+
+    private final long offset;
+
+    private final long length;
+
+    private final Runnable release;
+
+    /**
+     * Position of the next read, from the start of the region
+     */
+    private long position = 0;
+
+    private boolean closed = false;
+
+    /**
+     * @param channel channel of the file, closed with the stream
+     * @param offset  offset of the region in the file
+     * @param length  length of the region
+     * @param release action run once the stream is closed
+     */
+    public FileRegionInputStream(FileChannel channel, long offset, long length, Runnable release) {
+        this.channel = channel;
+        this.offset = offset;
+        this.length = length;
+        this.release = release;
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : Byte.toUnsignedInt(b[0]);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkOpen();
+        if (len == 0) {
+            return 0;
+        }
+        long remaining = length - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), offset + position);
+        if (read < 0) {
+            throw new EOFException("Unexpected end of file");
+        }
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, length - position);
+    }
+
+    /**
+     * Transfer the remaining bytes of the region to the given stream, with {@link FileChannel#transferTo} rather
+     * than through a read buffer.
+     */
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        WritableByteChannel target = out instanceof FileOutputStream fileOut ?
+            fileOut.getChannel() :
+            Channels.newChannel(out);
+        long transferred = transferTo(position, length - position, target);
+        position += transferred;
+        return transferred;
+    }
+
+    /**
+     * Transfer the given range of the region to the given channel. The position of the stream is not changed.
+     *
+     * @param start start of the range, from the start of the region
+     * @param count number of bytes to transfer
+     * @return the number of bytes transferred, lower than the given count if the range exceeds the region
+     */
+    public long transferTo(long start, long count, WritableByteChannel target) throws IOException {
+        checkOpen();
+        if (start < 0 || count < 0) {
+            throw new IllegalArgumentException(String.format("Invalid range %d-%d", start, count));
+        }
+        long toTransfer = Math.max(0, Math.min(count, length - start));
+        long transferred = 0;
+        while (transferred < toTransfer) {
+            long sent = channel.transferTo(offset + start + transferred, toTransfer - transferred, target);
+            if (sent <= 0) {
+                if (offset + start + transferred >= channel.size()) {
+                    throw new EOFException("Unexpected end of file");
+                }
+                // Target does not accept direct transfers (non-blocking channel not ready), copy the rest of the range
+                return transferred + copy(start + transferred, toTransfer - transferred, target);
+            }
+            transferred += sent;
+        }
+        return transferred;
+    }
+
+    /**
+     * Copy the given range of the region to the given channel through a buffer.
+     * Fails if the channel does not accept any byte after {@link #MAX_EMPTY_WRITES} attempts.
+     */
+    private long copy(long start, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, count));
+        long copied = 0;
+        while (copied < count) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), count - copied));
+            if (channel.read(buffer, offset + start + copied) < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+            buffer.flip();
+            int emptyWrites = 0;
+            while (buffer.hasRemaining()) {
+                emptyWrites = target.write(buffer) == 0 ? emptyWrites + 1 : 0;
+                if (emptyWrites >= MAX_EMPTY_WRITES) {
+                    throw new IOException(String.format("Target channel does not accept data after %d attempts",
+                                                        MAX_EMPTY_WRITES));
+                }
+            }
+            copied += buffer.limit();
+        }
+        return copied;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            release.run();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -24,8 +24,10 @@ import com.google.common.collect.Maps;
 import fr.cnes.regards.framework.gson.adapters.LocalDateTimeAdapter;
 import fr.cnes.regards.framework.module.rest.exception.ModuleException;
 import fr.cnes.regards.framework.modules.plugins.annotations.Plugin;
+import fr.cnes.regards.framework.modules.plugins.annotations.PluginDestroy;
 import fr.cnes.regards.framework.modules.plugins.annotations.PluginInit;
 import fr.cnes.regards.framework.modules.plugins.annotations.PluginParameter;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
 import fr.cnes.regards.framework.s3.S3StorageConfiguration;
 import fr.cnes.regards.framework.utils.file.DownloadUtils;
 import fr.cnes.regards.modules.fileaccess.dto.AbstractStoragePluginConfigurationDto;
@@ -36,18 +38,26 @@ import fr.cnes.regards.modules.fileaccess.plugin.domain.*;
 import fr.cnes.regards.modules.fileaccess.plugin.dto.FileCacheRequestDto;
 import fr.cnes.regards.modules.fileaccess.plugin.dto.FileDeletionRequestDto;
 import fr.cnes.regards.modules.storage.plugin.local.dto.LocalStorageLocationConfigurationDto;
+import fr.cnes.regards.modules.storage.plugin.local.zip.ZipAccessLocks;
+import fr.cnes.regards.modules.storage.plugin.local.zip.ZipArchiveEntry;
+import fr.cnes.regards.modules.storage.plugin.local.zip.ZipArchiveFormat;
+import fr.cnes.regards.modules.storage.plugin.local.zip.ZipArchiveIndex;
+import fr.cnes.regards.modules.storage.plugin.local.zip.ZipArchivePacker;
 import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.Assert;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
@@ -55,10 +65,10 @@ import java.nio.file.*;
 import java.security.NoSuchAlgorithmException;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.function.Function;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 
 /**
  * Plugin handling the storage on local file system
@@ -94,6 +104,8 @@ public class LocalDataStorage implements IOnlineStorageLocation {
 
     public static final String LOCAL_STORAGE_MAX_FILE_SIZE_FOR_ZIP = "Local_Storage_Max_File_Size_For_Zip";
 
+    public static final String LOCAL_STORAGE_PARALLEL_STORE_TASK_NUMBER = "Local_Storage_Parallel_Store_Number";
+
     public static final int MAX_REQUESTS_PER_WORKING_SUBSET = 100;
 
     /**
@@ -120,7 +132,22 @@ public class LocalDataStorage implements IOnlineStorageLocation {
 
     private static final Long ZIP_ACQUIRE_TIMEOUT = 25L;
 
-    private final Semaphore zipAccessSemaphore = new Semaphore(1, true);
+    /**
+     * Packers of the zips currently written, by zip directory. A zip stays opened while a working subset is stored,
+     * so that small files are appended to it without rewriting the whole archive for each of them.
+     */
+    private final ConcurrentMap<Path, ZipArchivePacker> zipPackers = new ConcurrentHashMap<>();
+
+    /**
+     * Entries of the zip archives, so that lookups and reads of zip entries do not need to parse the archives.
+     */
+    private final ZipArchiveIndex zipArchiveIndex = new ZipArchiveIndex();
+
+    /**
+     * Locks on zip directories and zip archives. Readers of an archive share its lock, stores and deletions
+     * have an exclusive access to the zip directory and to the archive they modify.
+     */
+    private final ZipAccessLocks zipAccessLocks = new ZipAccessLocks();
 
     /**
      * Base storage location url
@@ -148,6 +175,12 @@ public class LocalDataStorage implements IOnlineStorageLocation {
                      defaultValue = "500000000")
     private Long maxZipSize;
 
+    @PluginParameter(name = LOCAL_STORAGE_PARALLEL_STORE_TASK_NUMBER,
+                     label = "Number of files to store in parallel",
+                     description = "Number of files downloaded in parallel when storing files. Small files are then added one by one to the current zip archive.",
+                     defaultValue = "5")
+    private int storeParallelTaskNumber;
+
     @PluginParameter(name = FILE_NAMING_STRATEGY,
                      label = "File naming strategy",
                      description = "Determines file name on target storage. List of possible values : CHECKSUM, FILENAME.",
@@ -157,6 +190,25 @@ public class LocalDataStorage implements IOnlineStorageLocation {
     @Autowired
     private S3StorageConfiguration knownS3Storages;
 
+    @Autowired
+    private IRuntimeTenantResolver runtimeTenantResolver;
+
+    private final BasicThreadFactory storeThreadFactory = new BasicThreadFactory.Builder().namingPattern(
+        "local-storage-store-thread-%d").priority(Thread.MAX_PRIORITY).build();
+
+    private final BasicThreadFactory zipWriterThreadFactory = new BasicThreadFactory.Builder().namingPattern(
+        "local-storage-zip-writer-thread-%d").priority(Thread.MAX_PRIORITY).build();
+
+    /**
+     * Threads downloading the files to store, shared by all the working subsets
+     */
+    private ExecutorService storeExecutorService;
+
+    /**
+     * Single thread adding the small files to the current zips, shared by all the working subsets
+     */
+    private ExecutorService zipWriterExecutorService;
+
     @PluginInit
     public void initPlugin() {
         Assert.isTrue(EnumUtils.isValidEnum(FileNamingStrategy.class, fileNamingStrategy),
@@ -206,36 +258,155 @@ public class LocalDataStorage implements IOnlineStorageLocation {
         return PreparationResponse.build(workingSubSets, Maps.newHashMap());
     }
 
+    /**
+     * Files of the working subset are downloaded in parallel, their checksum being checked during the download.
+     * Small files are then handed off to a single zip writer, which adds them to the current zip one after the other.
+     * Each request of the working subset ends with a success or an error, even if the storage process is
+     * interrupted.
+     */
     @Override
     public void store(FileStorageWorkingSubset workingSubset, IStorageProgressManager progressManager) {
-        workingSubset.getFileReferenceRequests().forEach(data -> doStore(progressManager, data));
+        String tenant = runtimeTenantResolver != null ? runtimeTenantResolver.getTenant() : null;
+        StoreProgress progress = new StoreProgress(workingSubset.getFileReferenceRequests(), progressManager);
+        List<Future<List<Future<?>>>> storeFutures = new ArrayList<>();
+        List<Future<?>> zipFutures = new ArrayList<>();
+        try {
+            for (Map.Entry<Path, List<FileStorageRequestAggregationDto>> requestsByLocation : groupByStorageLocation(
+                workingSubset,
+                progress).entrySet()) {
+                storeFutures.add(getStoreExecutorService().submit(doStoreTask(requestsByLocation.getKey(),
+                                                                              requestsByLocation.getValue(),
+                                                                              progress,
+                                                                              tenant)));
+            }
+            // Wait for all downloads, then for the small files handed off to the zip writer
+            for (Future<List<Future<?>>> storeFuture : storeFutures) {
+                try {
+                    zipFutures.addAll(storeFuture.get());
+                } catch (ExecutionException e) {
+                    LOGGER.error("[LOCAL STORAGE PLUGIN] Error during storage process", e);
+                }
+            }
+            for (Future<?> zipFuture : zipFutures) {
+                try {
+                    zipFuture.get();
+                } catch (ExecutionException e) {
+                    LOGGER.error("[LOCAL STORAGE PLUGIN] Error during storage process into zip", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("[LOCAL STORAGE PLUGIN] Storage process interrupted", e);
+            storeFutures.forEach(future -> future.cancel(true));
+            // Zip writer is not interrupted, as an interrupted channel is closed and the zip left unfinished
+            zipFutures.forEach(future -> future.cancel(false));
+        } finally {
+            // Zips stay opened while the working subset is handled, write their central directory once done
+            closeZipPackers();
+            progress.failRemainingRequests("Storage process ended before the file was stored");
+        }
     }
 
-    private void doStore(IStorageProgressManager progressManager, FileStorageRequestAggregationDto request) {
-        Path fullPathToFile;
-        try {
-            fullPathToFile = getStorageLocation(request);
-        } catch (IOException ioe) {
-            String failureCause = String.format(IOEXCEPTION_ERROR_MESSAGE_FORMAT,
-                                                request.getMetaInfo().getChecksum(),
-                                                ioe);
-            LOGGER.error(failureCause, ioe);
-            progressManager.storageFailed(request, ioe.getMessage());
-            return;
+    /**
+     * Store thread pool is created at first use, as the plugin can be used without initialization in tests
+     */
+    private synchronized ExecutorService getStoreExecutorService() {
+        if (storeExecutorService == null) {
+            storeExecutorService = Executors.newFixedThreadPool(Math.max(1, storeParallelTaskNumber),
+                                                                storeThreadFactory);
         }
+        return storeExecutorService;
+    }
+
+    /**
+     * Zip writer thread is created at first use, as the plugin can be used without initialization in tests
+     */
+    private synchronized ExecutorService getZipWriterExecutorService() {
+        if (zipWriterExecutorService == null) {
+            zipWriterExecutorService = Executors.newSingleThreadExecutor(zipWriterThreadFactory);
+        }
+        return zipWriterExecutorService;
+    }
+
+    /**
+     * Group requests by target file location. Requests of a same location (same file requested many times) are
+     * handled one after the other, as they are downloaded to the same file.
+     */
+    private Map<Path, List<FileStorageRequestAggregationDto>> groupByStorageLocation(FileStorageWorkingSubset workingSubset,
+                                                                                     StoreProgress progress) {
+        Map<Path, List<FileStorageRequestAggregationDto>> requestsByLocation = new LinkedHashMap<>();
+        for (FileStorageRequestAggregationDto request : workingSubset.getFileReferenceRequests()) {
+            try {
+                requestsByLocation.computeIfAbsent(getStorageLocation(request), location -> new ArrayList<>())
+                                  .add(request);
+            } catch (IOException ioe) {
+                String failureCause = String.format(IOEXCEPTION_ERROR_MESSAGE_FORMAT,
+                                                    request.getMetaInfo().getChecksum(),
+                                                    ioe);
+                LOGGER.error(failureCause, ioe);
+                progress.storageFailed(request, ioe.getMessage());
+            }
+        }
+        return requestsByLocation;
+    }
+
+    /**
+     * Download the files of the given location. Small files are handed off to the zip writer.
+     *
+     * @return the futures of the small files added to the zip
+     */
+    private Callable<List<Future<?>>> doStoreTask(Path fullPathToFile,
+                                                  List<FileStorageRequestAggregationDto> requests,
+                                                  StoreProgress progress,
+                                                  String tenant) {
+        return () -> {
+            forceTenant(tenant);
+            List<Future<?>> zipFutures = new ArrayList<>();
+            for (FileStorageRequestAggregationDto request : requests) {
+                if (!zipFutures.isEmpty()) {
+                    // Wait for the previous file to be in the zip before handling another request of the same
+                    // location, as it is downloaded to the same file
+                    zipFutures.get(zipFutures.size() - 1).get();
+                }
+                Optional<File> fileToZip = doStore(progress, request, fullPathToFile);
+                if (fileToZip.isPresent()) {
+                    zipFutures.add(getZipWriterExecutorService().submit(() -> {
+                        forceTenant(tenant);
+                        doStoreInZip(progress, request, fileToZip.get());
+                    }));
+                }
+            }
+            return zipFutures;
+        };
+    }
+
+    private void forceTenant(String tenant) {
+        if (runtimeTenantResolver != null && tenant != null) {
+            runtimeTenantResolver.forceTenant(tenant);
+        }
+    }
+
+    /**
+     * Download the file of the given request to its storage location.
+     *
+     * @return the downloaded file if it has to be added to a zip
+     */
+    private Optional<File> doStore(StoreProgress progress,
+                                   FileStorageRequestAggregationDto request,
+                                   Path fullPathToFile) {
         //check if file is already at the right place or not. Unless we are instructed not to(for updates for example)
         if (Files.exists(fullPathToFile)) {
             Long fileSize = fullPathToFile.toFile().length();
             //if it is, there is nothing to move/copy, we just need to say to the system that the file is stored successfully
             try {
                 LOGGER.debug("[LOCAL STORAGE PLUGIN] File {} already exists, no replacement.", fullPathToFile);
-                progressManager.storageSucceed(request, fullPathToFile.toUri().toURL(), fileSize);
+                progress.storageSucceed(request, fullPathToFile.toUri().toURL(), fileSize);
             } catch (MalformedURLException e) {
                 LOGGER.error(e.getMessage(), e);
                 String failureCause = String.format("Invalid URL creation for file %s.", fullPathToFile);
-                progressManager.storageFailed(request, failureCause);
+                progress.storageFailed(request, failureCause);
             }
-            return;
+            return Optional.empty();
         }
         try {
             URL sourceUrl = new URL(request.getOriginUrl());
@@ -247,32 +418,33 @@ public class LocalDataStorage implements IOnlineStorageLocation {
                 }
                 Long fileSize = file.length();
                 if (fileSize < maxFileSizeForZip) {
-                    doStoreInZip(progressManager, request, file);
+                    return Optional.of(file);
                 } else {
-                    progressManager.storageSucceed(request, fullPathToFile.toUri().toURL(), fileSize);
+                    progress.storageSucceed(request, fullPathToFile.toUri().toURL(), fileSize);
                 }
             } else {
                 Files.deleteIfExists(fullPathToFile);
-                progressManager.storageFailed(request, "Checksum does not match with expected one");
+                progress.storageFailed(request, "Checksum does not match with expected one");
             }
         } catch (NoSuchAlgorithmException e) {
             LOGGER.error(e.getMessage(), e);
             String failureCause = String.format(
                 "Invalid checksum algorithm %s. Unable to determine if the file is well formed.",
                 request.getMetaInfo().getChecksum());
-            progressManager.storageFailed(request, failureCause);
+            progress.storageFailed(request, failureCause);
         } catch (IOException ioe) {
             String failureCause = String.format(IOEXCEPTION_ERROR_MESSAGE_FORMAT,
                                                 request.getMetaInfo().getChecksum(),
                                                 ioe);
             LOGGER.error(failureCause, ioe);
             fullPathToFile.toFile().delete();
-            progressManager.storageFailed(request, failureCause);
+            progress.storageFailed(request, failureCause);
         } catch (ModuleException e) {
             LOGGER.error(e.getMessage(), e);
             fullPathToFile.toFile().delete();
-            progressManager.storageFailed(request, e.getMessage());
+            progress.storageFailed(request, e.getMessage());
         }
+        return Optional.empty();
     }
 
     private boolean doDownloadAndCheckChecksum(FileStorageRequestAggregationDto request,
@@ -293,84 +465,195 @@ public class LocalDataStorage implements IOnlineStorageLocation {
         return downloadOk;
     }
 
-    private void doStoreInZip(IStorageProgressManager progressManager,
+    private void doStoreInZip(StoreProgress progress,
                               FileStorageRequestAggregationDto request,
-                              File file) throws IOException {
+                              File file) {
         long start = System.currentTimeMillis();
-        Path zipDirPath = getStorageLocationForZip(request);
+        Path zipDirPath = null;
+        Path zipPath = null;
+        ZipArchivePacker packer = null;
+        long dirStamp = 0L;
+        long zipStamp = 0L;
         try {
             LOGGER.trace("[LOCAL STORAGE PLUGIN] Store in zip ....");
-            zipAccessSemaphore.acquire();
-            Path zipPath = getCurrentZipPath(zipDirPath);
-            // check if file is already in zip
-            Map<String, String> env = new HashMap<>(1);
-            env.put(CREATE_ENV_FS, "true");
+            zipDirPath = getStorageLocationForZip(request);
+            // Stores into the same zip directory are exclusive as they all target the current zip
+            dirStamp = zipAccessLocks.writeLock(zipDirPath);
+            packer = getZipPacker(zipDirPath);
+            zipPath = packer.getZipPath();
+            // Readers of the current zip are blocked while it is modified, other zips are still readable
+            zipStamp = zipAccessLocks.writeLock(zipPath);
             String checksum = request.getMetaInfo().getChecksum();
-            boolean downloadOk = false;
-            try (FileChannel zipFC = FileChannel.open(zipPath, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
-                FileLock zipLock = zipFC.lock();
-                try (FileSystem zipFs = FileSystems.newFileSystem(URI.create(ZIP_PROTOCOL + zipPath.toAbsolutePath()),
-                                                                  env)) {
-                    Path pathInZip = zipFs.getPath(request.getMetaInfo().getChecksum());
-                    if (Files.exists(pathInZip)) {
-                        //if it is, there is nothing to move/copy, we just need to say to the system that the file is stored successfully
-                        LOGGER.debug("[LOCAL STORAGE PLUGIN] File {} already exists in zip, no replacement.",
-                                     pathInZip);
-                        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
-                            Long fileSize = zipFile.getEntry(checksum).getSize();
-                            progressManager.storageSucceed(request, zipPath.toUri().toURL(), fileSize);
-                        }
-                    } else {
-                        // add the file into the zip
-                        URL sourceUrl = new URL("file", null, file.getPath());
-                        downloadOk = DownloadUtils.downloadAndCheckChecksum(sourceUrl,
-                                                                            pathInZip,
-                                                                            request.getMetaInfo().getAlgorithm(),
-                                                                            checksum,
-                                                                            knownS3Storages.getStorages());
-                        // download issues are handled right here
-                        // while download success has to be handle after the zip file system has been closed
-                        // for zip entries to be detected correctly
-                        if (!downloadOk) {
-                            String failureCause = String.format(
-                                "Storage of StorageDataFile(%s) failed at the following location: %s, in zip: %s. Its checksum once stored does not match with the expected one",
-                                checksum,
-                                pathInZip,
-                                zipPath);
-                            Files.deleteIfExists(pathInZip);
-                            progressManager.storageFailed(request, failureCause);
-                        }
-                    }
-                } finally {
-                    zipLock.release();
-                }
-            }
-            if (downloadOk) {
-                try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
-                    Long fileSize = zipFile.getEntry(checksum).getSize();
-                    progressManager.storageSucceed(request, zipPath.toUri().toURL(), fileSize);
+            Optional<ZipArchiveEntry> existingEntry = zipArchiveIndex.getEntry(zipPath, checksum);
+            if (existingEntry.isPresent()) {
+                //if it is, there is nothing to move/copy, we just need to say to the system that the file is stored successfully
+                LOGGER.debug("[LOCAL STORAGE PLUGIN] File {} already exists in zip {}, no replacement.",
+                             checksum,
+                             zipPath);
+                progress.storageSucceed(request, zipPath.toUri().toURL(), existingEntry.get().size());
+            } else {
+                // add the file at the end of the zip, checking its checksum on the fly
+                Optional<ZipArchiveEntry> entry = packer.append(checksum,
+                                                                file.toPath(),
+                                                                request.getMetaInfo().getAlgorithm(),
+                                                                checksum);
+                if (entry.isPresent()) {
+                    zipArchiveIndex.put(zipPath, entry.get());
+                    progress.storageSucceed(request, zipPath.toUri().toURL(), entry.get().size());
+                } else {
+                    String failureCause = String.format(
+                        "Storage of StorageDataFile(%s) failed in zip: %s. Its checksum once stored does not match with the expected one",
+                        checksum,
+                        zipPath);
+                    progress.storageFailed(request, failureCause);
                 }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            LOGGER.error("[LOCAL STORAGE PLUGIN] Storage into zip has been interrupted while acquiring semaphore.", e);
+            LOGGER.error("[LOCAL STORAGE PLUGIN] Storage into zip has been interrupted while acquiring zip lock.", e);
+            progress.storageFailed(request, "Storage into zip has been interrupted while acquiring zip lock.");
         } catch (MalformedURLException | NoSuchAlgorithmException e) {
             LOGGER.error(e.getMessage(), e);
             String failureCause = String.format("Invalid URL creation for file. %s", e.getMessage());
-            progressManager.storageFailed(request, failureCause);
+            progress.storageFailed(request, failureCause);
         } catch (IOException ioe) {
             String failureCause = String.format(IOEXCEPTION_ERROR_MESSAGE_FORMAT,
                                                 request.getMetaInfo().getChecksum(),
                                                 ioe);
             LOGGER.error(failureCause, ioe);
-            progressManager.storageFailed(request, failureCause);
+            progress.storageFailed(request, failureCause);
         } finally {
             LOGGER.trace("[LOCAL STORAGE PLUGIN] Store in zip done in {}ms", System.currentTimeMillis() - start);
-            zipAccessSemaphore.release();
+            if (zipStamp != 0L) {
+                // Readers of the zip, from this process or not, need its central directory once it is unlocked
+                writeCentralDirectory(packer);
+                zipAccessLocks.unlockWrite(zipPath, zipStamp);
+            }
+            if (dirStamp != 0L) {
+                zipAccessLocks.unlockWrite(zipDirPath, dirStamp);
+            }
             file.delete();
         }
     }
 
+    /**
+     * Get the packer of the current zip of the given directory, opening it if needed. The packer is closed, and the
+     * current zip rolled over, when the zip reached its maximum size or its maximum number of files.
+     * Caller must hold the write lock of the zip directory.
+     */
+    private ZipArchivePacker getZipPacker(Path zipDirPath) throws IOException, InterruptedException {
+        ZipArchivePacker packer = zipPackers.get(normalize(zipDirPath));
+        if (packer != null) {
+            if (!packer.isFull(maxZipSize, MAX_FILE_IN_ZIP)) {
+                return packer;
+            }
+            // Central directory is written, so the full zip is rolled over by getCurrentZipPath
+            closeZipPacker(zipDirPath);
+        }
+        Path zipPath = getCurrentZipPath(zipDirPath);
+        try {
+            packer = openZipPacker(zipPath);
+        } catch (ZipException e) {
+            // Zips written by the zip file system cannot be appended to. Lets start a new one.
+            LOGGER.info("[LOCAL STORAGE PLUGIN] Zip {} cannot be appended to ({}), a new zip is created.",
+                        zipPath,
+                        e.getMessage());
+            packer = openZipPacker(createNewZip(zipDirPath));
+        }
+        if (packer.isFull(maxZipSize, MAX_FILE_IN_ZIP)) {
+            // zip cannot grow anymore (zip32 limits) even if it is under the configured limits
+            packer.close();
+            packer = openZipPacker(createNewZip(zipDirPath));
+        }
+        zipPackers.put(normalize(zipDirPath), packer);
+        zipArchiveIndex.load(packer.getZipPath(), packer.getEntries());
+        return packer;
+    }
+
+    private static void writeCentralDirectory(ZipArchivePacker packer) {
+        try {
+            packer.writeCentralDirectory();
+        } catch (IOException e) {
+            // Entries are recovered from their local headers at next opening
+            LOGGER.error("[LOCAL STORAGE PLUGIN] Error writing central directory of zip {}. Cause : {}",
+                         packer.getZipPath(),
+                         e.getMessage(),
+                         e);
+        }
+    }
+
+    /**
+     * Open a packer on the given zip, once the streams opened on the zip are closed.
+     */
+    private ZipArchivePacker openZipPacker(Path zipPath) throws IOException, InterruptedException {
+        long zipStamp = zipAccessLocks.writeLock(zipPath);
+        try {
+            return ZipArchivePacker.open(zipPath);
+        } finally {
+            zipAccessLocks.unlockWrite(zipPath, zipStamp);
+        }
+    }
+
+    /**
+     * Write the central directory of the zip currently opened for the given directory and release it.
+     * Caller must hold the write lock of the zip directory.
+     */
+    private void closeZipPacker(Path zipDirPath) throws InterruptedException {
+        ZipArchivePacker packer = zipPackers.remove(normalize(zipDirPath));
+        if (packer != null) {
+            // Wait for the streams opened on the zip before closing it
+            long zipStamp = zipAccessLocks.writeLock(packer.getZipPath());
+            try {
+                packer.close();
+            } catch (IOException e) {
+                LOGGER.error("[LOCAL STORAGE PLUGIN] Error closing zip {}. Cause : {}",
+                             packer.getZipPath(),
+                             e.getMessage(),
+                             e);
+            } finally {
+                zipAccessLocks.unlockWrite(packer.getZipPath(), zipStamp);
+            }
+        }
+    }
+
+    /**
+     * Close all the zips opened by the storage of files, so that their central directory is written
+     */
+    private void closeZipPackers() {
+        for (Path zipDirPath : new ArrayList<>(zipPackers.keySet())) {
+            long dirStamp = 0L;
+            try {
+                dirStamp = zipAccessLocks.writeLock(zipDirPath);
+                closeZipPacker(zipDirPath);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("[LOCAL STORAGE PLUGIN] Interrupted while closing zips of directory {}", zipDirPath, e);
+                return;
+            } finally {
+                if (dirStamp != 0L) {
+                    zipAccessLocks.unlockWrite(zipDirPath, dirStamp);
+                }
+            }
+        }
+    }
+
+    @PluginDestroy
+    public synchronized void onDestroy() {
+        if (storeExecutorService != null) {
+            storeExecutorService.shutdownNow();
+            storeExecutorService = null;
+        }
+        if (zipWriterExecutorService != null) {
+            zipWriterExecutorService.shutdown();
+            zipWriterExecutorService = null;
+        }
+        closeZipPackers();
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
     // this method is public because of tests
     public Path getStorageLocation(FileStorageRequestAggregationDto request) throws IOException {
         String checksum = request.getMetaInfo().getChecksum();
@@ -426,57 +709,46 @@ public class LocalDataStorage implements IOnlineStorageLocation {
         if (!Files.isSymbolicLink(linkPath)) {
             // If the link does not exist it means that no zip has been created yet
             // Lets create the first one
-            Map<String, String> env = new HashMap<>(1);
-            env.put(CREATE_ENV_FS, "true");
-            Path zipPath = storageLocation.resolve("regards_"
-                                                   + OffsetDateTime.now()
-                                                                   .format(LocalDateTimeAdapter.ISO_DATE_TIME_UTC)
-                                                   + ".zip");
-            try (FileSystem zipFs = FileSystems.newFileSystem(URI.create(ZIP_PROTOCOL + zipPath.toAbsolutePath()),
-                                                              env)) {
-                // now that zip has been created, lets create the link.
-                Files.createSymbolicLink(linkPath, zipPath);
-            }
-            return zipPath;
-        }
-        if (Files.isSymbolicLink(linkPath)) {
-            // if the link does exist, it means that a zip has already been created
-            // in this case, we have to check its size to be sure we can still add files to it
-            Path targetPath = Files.readSymbolicLink(linkPath);
-            try (ZipFile zip = new ZipFile(targetPath.toFile())) {
-                if ((targetPath.toFile().length() >= maxZipSize) || (zip.size() >= MAX_FILE_IN_ZIP)) {
-                    // we have to create a new one
-                    try (FileChannel targetFC = FileChannel.open(targetPath,
-                                                                 StandardOpenOption.WRITE,
-                                                                 StandardOpenOption.READ)) {
-                        FileLock targetLock = targetFC.lock();
-                        try {
-                            // create a new zip and make the link points to the new zip
-                            Map<String, String> env = new HashMap<>(1);
-                            env.put(CREATE_ENV_FS, "true");
-                            Path newZipPath = storageLocation.resolve("regards_"
-                                                                      + OffsetDateTime.now()
-                                                                                      .format(LocalDateTimeAdapter.ISO_DATE_TIME_UTC)
-                                                                      + ".zip");
-                            try (FileSystem zipFs = FileSystems.newFileSystem(URI.create(ZIP_PROTOCOL
-                                                                                         + newZipPath.toAbsolutePath()),
-                                                                              env)) {
-                                // now that zip has been created, lets create the link.
-                                Files.deleteIfExists(linkPath);
-                                Files.createSymbolicLink(linkPath, newZipPath);
-                            }
-                            return newZipPath;
-                        } finally {
-                            targetLock.release();
-                        }
-                    }
-                } else {
-                    return targetPath;
+            return createNewZip(storageLocation);
+        }
+        // if the link does exist, it means that a zip has already been created
+        // in this case, we have to check its size to be sure we can still add files to it
+        Path targetPath = Files.readSymbolicLink(linkPath);
+        ZipArchivePacker packer = zipPackers.get(normalize(storageLocation));
+        if (packer != null && normalize(packer.getZipPath()).equals(normalize(targetPath))) {
+            // zip is being written, its size is checked before each new file by the packer
+            return targetPath;
+        }
+        if ((Files.size(targetPath) >= maxZipSize) || (zipArchiveIndex.getEntryCount(targetPath) >= MAX_FILE_IN_ZIP)) {
+            // we have to create a new one
+            try (FileChannel targetFC = FileChannel.open(targetPath,
+                                                         StandardOpenOption.WRITE,
+                                                         StandardOpenOption.READ)) {
+                FileLock targetLock = targetFC.lock();
+                try {
+                    return createNewZip(storageLocation);
+                } finally {
+                    targetLock.release();
                 }
             }
         }
-        throw new IOException(
-            "A file should have been put into a zip but we could not create nor retrieve the zip in which it should have been added");
+        return targetPath;
+    }
+
+    /**
+     * Create a new empty zip in the given directory and make the current zip link points to it
+     */
+    private Path createNewZip(Path storageLocation) throws IOException {
+        Path linkPath = storageLocation.resolve(CURRENT_ZIP_NAME);
+        Path zipPath = storageLocation.resolve("regards_"
+                                               + OffsetDateTime.now().format(LocalDateTimeAdapter.ISO_DATE_TIME_UTC)
+                                               + ".zip");
+        ZipArchiveFormat.createEmptyArchive(zipPath);
+        zipArchiveIndex.load(zipPath, List.of());
+        // now that zip has been created, lets create the link.
+        Files.deleteIfExists(linkPath);
+        Files.createSymbolicLink(linkPath, zipPath);
+        return zipPath;
     }
 
     @Override
@@ -534,47 +806,92 @@ public class LocalDataStorage implements IOnlineStorageLocation {
         Map<String, String> env = new HashMap<>(1);
         env.put(CREATE_ENV_FS, "false");
         LOGGER.debug("[LOCAL STORAGE PLUGIN] File to delete from a zip file [{}].", zipPath);
+        Path zipDirPath = zipPath.getParent();
         try (FileChannel zipFC = FileChannel.open(zipPath, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
-            zipAccessSemaphore.acquire();
+            // Same lock order as stores : zip directory then zip archive
+            long dirStamp = zipAccessLocks.writeLock(zipDirPath);
+            long zipStamp = 0L;
             try {
+                zipStamp = zipAccessLocks.writeLock(zipPath);
+                String checksum = request.getFileReference().getMetaInfo().getChecksum();
+                if (zipArchiveIndex.getEntry(zipPath, checksum).isEmpty()) {
+                    // Nothing to delete, do not rewrite the zip
+                    LOGGER.debug("[LOCAL STORAGE PLUGIN] File {} not deleted from zip {} as it does not exists",
+                                 checksum,
+                                 zipPath);
+                    progressManager.deletionSucceed(request);
+                    return;
+                }
+                // The zip may be the one currently written by stores. Write its central directory before
+                // modifying it. Next store will open it again.
+                ZipArchivePacker packer = zipPackers.get(normalize(zipDirPath));
+                if (packer != null && normalize(packer.getZipPath()).equals(normalize(zipPath))) {
+                    zipPackers.remove(normalize(zipDirPath));
+                    packer.close();
+                }
                 FileLock zipLock = zipFC.lock();
                 try {
                     try (FileSystem zipFs = FileSystems.newFileSystem(URI.create(ZIP_PROTOCOL
                                                                                  + zipPath.toAbsolutePath()), env)) {
-                        Path pathInZip = zipFs.getPath(request.getFileReference().getMetaInfo().getChecksum());
+                        Path pathInZip = zipFs.getPath(checksum);
                         Files.deleteIfExists(pathInZip);
-                        progressManager.deletionSucceed(request);
+                    } finally {
+                        // Entries following the deleted one have moved, index is loaded again at next access
+                        zipArchiveIndex.invalidate(zipPath);
                     }
-                    try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
-                        if (!zipFile.entries().hasMoreElements()) {
-                            Path linkPath = zipPath.getParent().resolve(CURRENT_ZIP_NAME);
-                            // Check if it is the current zip file. If it is, delete the symboliclink
-                            if (Files.isSymbolicLink(linkPath) && zipPath.equals(Files.readSymbolicLink(linkPath))) {
-                                Files.delete(linkPath);
-                            }
-                            Files.deleteIfExists(zipPath);
+                    progressManager.deletionSucceed(request);
+                    if (zipArchiveIndex.getEntryCount(zipPath) == 0) {
+                        Path linkPath = zipPath.getParent().resolve(CURRENT_ZIP_NAME);
+                        // Check if it is the current zip file. If it is, delete the symboliclink
+                        if (Files.isSymbolicLink(linkPath) && zipPath.equals(Files.readSymbolicLink(linkPath))) {
+                            Files.delete(linkPath);
                         }
+                        Files.deleteIfExists(zipPath);
+                        zipArchiveIndex.invalidate(zipPath);
                     }
                 } finally {
                     zipLock.release();
                 }
             } finally {
-                zipAccessSemaphore.release();
+                if (zipStamp != 0L) {
+                    zipAccessLocks.unlockWrite(zipPath, zipStamp);
+                }
+                zipAccessLocks.unlockWrite(zipDirPath, dirStamp);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            LOGGER.error("[LOCAL STORAGE PLUGIN] Deletion from zip has been interrupted while acquiring semaphore.", e);
+            LOGGER.error("[LOCAL STORAGE PLUGIN] Deletion from zip has been interrupted while acquiring zip lock.", e);
+            progressManager.deletionFailed(request, "Deletion from zip has been interrupted while acquiring zip lock.");
         }
     }
 
+    /**
+     * Retrieve a stream of the given file. Plain files and uncompressed zip entries are returned as
+     * {@link FileRegionInputStream}, so that callers can transfer them without copying their content through the
+     * JVM, or read a range of them.
+     */
     @Override
     public InputStream retrieve(FileReferenceWithoutOwnersDto fileRef) throws ModuleException, FileNotFoundException {
         if (fileRef.getLocation().getUrl().matches(".*regards_.*\\.zip")) {
             return retrieveFromZip(fileRef);
         } else {
             try {
-                return (new URL(fileRef.getLocation().getUrl())).openStream();
-            } catch (FileNotFoundException e) {
+                URL url = new URL(fileRef.getLocation().getUrl());
+                if (!"file".equals(url.getProtocol())) {
+                    return url.openStream();
+                }
+                Path path;
+                try {
+                    // URI decodes the escaped characters of the path
+                    path = Paths.get(url.toURI());
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    // Relative or invalid file URL, let the URL resolve it
+                    return url.openStream();
+                }
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                return new FileRegionInputStream(channel, 0, channel.size(), () -> {
+                });
+            } catch (FileNotFoundException | NoSuchFileException e) {
                 String errorMessage = String.format("[LOCAL STORAGE PLUGIN] file %s does not exists.",
                                                     fileRef.getLocation().getUrl());
                 LOGGER.error(errorMessage, e);
@@ -590,6 +907,8 @@ public class LocalDataStorage implements IOnlineStorageLocation {
 
     /**
      * Retrieve a stream of the given file from a ZIP file.<br/>
+     * Many streams can be opened at the same time on the same ZIP file or on different ZIP files. Only stores and
+     * deletions on the same ZIP file wait for the streams to be closed.<br/>
      * <b>NOTE</b> : The stream and the ZIP access are released when the stream is closed. Callers must call the stream after usage.
      *
      * @param fileRef {@link FileReferenceWithoutOwnersDto} to retrieve
@@ -597,37 +916,15 @@ public class LocalDataStorage implements IOnlineStorageLocation {
      * @throws ModuleException if an error occurs while accessing ZIP file or file himself
      */
     private InputStream retrieveFromZip(FileReferenceWithoutOwnersDto fileRef) throws ModuleException {
-        Map<String, String> env = new HashMap<>(1);
-        env.put(CREATE_ENV_FS, "false");
         String checksum = fileRef.getMetaInfo().getChecksum();
-        FileChannel zipFC = null;
-        FileLock zipLock = null;
-        FileSystem zipFs = null;
-        InputStream streamFromZip = null;
+        Path zipPath = null;
+        long zipStamp = 0L;
+        FileChannel zipChannel = null;
         try {
-            LOGGER.debug("Attempting to acquire semaphore, available permits : {}",
-                         zipAccessSemaphore.availablePermits());
-            if (zipAccessSemaphore.tryAcquire(ZIP_ACQUIRE_TIMEOUT, TimeUnit.SECONDS)) {
-
-                LOGGER.debug("Semaphore acquired available permits : {}", zipAccessSemaphore.availablePermits());
-                Path zipPath = Paths.get(new URL(fileRef.getLocation().getUrl()).getPath());
-                // File channel and File system are not included into try-finally or try-with-resource because if we do this it does not work.
-                // Instead, they are closed thanks to RegardsIS
-                // Moreover semaphore and lock are released by RegardsIS too
-                zipFC = FileChannel.open(zipPath, StandardOpenOption.WRITE, StandardOpenOption.READ); // NOSONAR
-                LOGGER.debug("Attempting to get Lock from zip {}", fileRef.getLocation().getUrl());
-                zipLock = zipFC.lock();
-                LOGGER.debug("Lock acquired from zip {}", fileRef.getLocation().getUrl());
-                zipFs = FileSystems.newFileSystem(URI.create(ZIP_PROTOCOL + zipPath.toAbsolutePath()),// NOSONAR
-                                                  env); // NOSONAR
-                Path pathInZip = zipFs.getPath(checksum);
-                streamFromZip = RegardsIS.build(Files.newInputStream(pathInZip),
-                                                zipFs,
-                                                zipLock,
-                                                zipFC,
-                                                zipAccessSemaphore);
-                return streamFromZip;
-            } else {
+            zipPath = Paths.get(new URL(fileRef.getLocation().getUrl()).getPath());
+            LOGGER.debug("Attempting to acquire read lock on zip {}", zipPath);
+            zipStamp = zipAccessLocks.tryReadLock(zipPath, ZIP_ACQUIRE_TIMEOUT, TimeUnit.SECONDS);
+            if (zipStamp == 0L) {
                 String errorMessage = String.format(
                     "[LOCAL STORAGE PLUGIN] Error retrieving file %s (%s) from zip %s. Cause : timeout accessing zip file. Zip file is already locked.",
                     checksum,
@@ -636,10 +933,43 @@ public class LocalDataStorage implements IOnlineStorageLocation {
                 LOGGER.error(errorMessage);
                 throw new ModuleException(errorMessage);
             }
+            LOGGER.debug("Read lock acquired on zip {}", zipPath);
+            Path lockedZipPath = zipPath;
+            long lockedZipStamp = zipStamp;
+            ZipArchivePacker packer = zipPackers.get(normalize(zipPath.getParent()));
+            if (packer != null && normalize(packer.getZipPath()).equals(normalize(zipPath))) {
+                // zip is currently written, read the entry through the packer that knows all its entries.
+                // Read lock prevents it from being closed while the stream is opened.
+                InputStream entryStream = packer.openEntryStream(checksum)
+                                                .orElseThrow(() -> new NoSuchFileException(checksum));
+                return RegardsIS.build(entryStream,
+                                       () -> {
+                                       },
+                                       () -> zipAccessLocks.unlockRead(lockedZipPath, lockedZipStamp));
+            }
+            ZipArchiveEntry entry = zipArchiveIndex.getEntry(zipPath, checksum)
+                                                   .orElseThrow(() -> new NoSuchFileException(checksum));
+            // Zip channel is not included into try-finally or try-with-resource because it has to stay opened
+            // while the stream is read. Instead, it is closed thanks to RegardsIS, as well as the read lock.
+            zipChannel = FileChannel.open(zipPath, StandardOpenOption.READ); // NOSONAR
+            Runnable unlock = () -> zipAccessLocks.unlockRead(lockedZipPath, lockedZipStamp);
+            try {
+                // Entry is read directly at its offset, without parsing the zip central directory
+                return openZipEntryStream(zipChannel, entry, unlock);
+            } catch (ZipException e) {
+                // Zip has been modified since it was indexed, by another process. Index it again.
+                LOGGER.warn("[LOCAL STORAGE PLUGIN] Zip {} changed since it was indexed. Cause : {}",
+                            zipPath,
+                            e.getMessage());
+                zipArchiveIndex.invalidate(zipPath);
+                entry = zipArchiveIndex.getEntry(zipPath, checksum)
+                                       .orElseThrow(() -> new NoSuchFileException(checksum));
+                return openZipEntryStream(zipChannel, entry, unlock);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             String errorMessage = String.format(
-                "[LOCAL STORAGE PLUGIN] Retrieve file %s (%s) from zip %s has been interrupted while acquiring semaphore. Cause : %s.",
+                "[LOCAL STORAGE PLUGIN] Retrieve file %s (%s) from zip %s has been interrupted while acquiring zip lock. Cause : %s.",
                 checksum,
                 fileRef.getMetaInfo().getFileName(),
                 fileRef.getLocation().getUrl(),
@@ -654,14 +984,8 @@ public class LocalDataStorage implements IOnlineStorageLocation {
                 fileRef.getLocation().getUrl(),
                 e.getMessage());
             try {
-                if (zipFs != null) {
-                    zipFs.close();
-                }
-                if (zipLock != null) {
-                    zipLock.release();
-                }
-                if (zipFC != null) {
-                    zipFC.close();
+                if (zipChannel != null) {
+                    zipChannel.close();
                 }
                 throw new ModuleException(errorMessage);
             } catch (IOException ioE) {
@@ -672,12 +996,29 @@ public class LocalDataStorage implements IOnlineStorageLocation {
                 exception.addSuppressed(ioE);
                 throw exception;
             } finally {
-                zipAccessSemaphore.release();
-                LOGGER.debug("Semaphore released");
+                if (zipStamp != 0L) {
+                    zipAccessLocks.unlockRead(zipPath, zipStamp);
+                    LOGGER.debug("Read lock released on zip {}", zipPath);
+                }
             }
         }
     }
 
+    /**
+     * Open a stream on the given zip entry, releasing the zip channel and running the given unlock action once
+     * closed. Uncompressed entries are exposed as a region of the zip file.
+     */
+    private static InputStream openZipEntryStream(FileChannel zipChannel, ZipArchiveEntry entry, Runnable unlock)
+        throws IOException {
+        if (entry.method() == ZipEntry.STORED) {
+            return new FileRegionInputStream(zipChannel,
+                                             ZipArchiveFormat.getDataOffset(zipChannel, entry),
+                                             entry.compressedSize(),
+                                             unlock);
+        }
+        return RegardsIS.build(ZipArchiveFormat.openEntryStream(zipChannel, entry), zipChannel, unlock);
+    }
+
     @Override
     public boolean allowPhysicalDeletion() {
         return allowPhysicalDeletion;
@@ -706,29 +1047,66 @@ public class LocalDataStorage implements IOnlineStorageLocation {
                                                         FileNamingStrategy.valueOf(fileNamingStrategy));
     }
 
-    private static class RegardsIS extends InputStream {
+    /**
+     * Progress of the storage of a working subset. Each request is reported once : either by the task storing it, or
+     * as failed once the working subset is handled if its task did not report it (error, interruption).
+     */
+    private static class StoreProgress {
+
+        private final IStorageProgressManager progressManager;
 
-        private FileLock lock;
+        private final Set<FileStorageRequestAggregationDto> remainingRequests = Collections.newSetFromMap(
+            new IdentityHashMap<>());
 
-        private FileChannel fc;
+        private StoreProgress(Collection<FileStorageRequestAggregationDto> requests,
+                              IStorageProgressManager progressManager) {
+            this.progressManager = progressManager;
+            this.remainingRequests.addAll(requests);
+        }
 
-        private Semaphore semaphore;
+        public synchronized void storageSucceed(FileStorageRequestAggregationDto request,
+                                                URL storedUrl,
+                                                Long fileSize) {
+            if (remainingRequests.remove(request)) {
+                progressManager.storageSucceed(request, storedUrl, fileSize);
+            }
+        }
+
+        public synchronized void storageFailed(FileStorageRequestAggregationDto request, String cause) {
+            if (remainingRequests.remove(request)) {
+                progressManager.storageFailed(request, cause);
+            }
+        }
+
+        public synchronized void failRemainingRequests(String cause) {
+            for (FileStorageRequestAggregationDto request : remainingRequests) {
+                LOGGER.error("[LOCAL STORAGE PLUGIN] Storage of {} failed. Cause : {}",
+                             request.getMetaInfo().getChecksum(),
+                             cause);
+                progressManager.storageFailed(request, cause);
+            }
+            remainingRequests.clear();
+        }
+    }
+
+    /**
+     * Stream on a zip entry releasing the zip resources (zip file and lock) once closed
+     */
+    private static class RegardsIS extends InputStream {
 
         private InputStream source;
 
-        private FileSystem fs;
+        private Closeable zip;
 
-        public static RegardsIS build(InputStream source,
-                                      FileSystem fs,
-                                      FileLock lock,
-                                      FileChannel fc,
-                                      Semaphore semaphore) {
+        private Runnable unlock;
+
+        private boolean closed;
+
+        public static RegardsIS build(InputStream source, Closeable zip, Runnable unlock) {
             RegardsIS is = new RegardsIS();
             is.source = source;
-            is.fs = fs;
-            is.lock = lock;
-            is.fc = fc;
-            is.semaphore = semaphore;
+            is.zip = zip;
+            is.unlock = unlock;
             return is;
         }
 
@@ -738,17 +1116,35 @@ public class LocalDataStorage implements IOnlineStorageLocation {
         }
 
         @Override
-        public void close() throws IOException {
-            source.close();
-            LOGGER.debug("IS closed");
-            fs.close();
-            LOGGER.debug("fs closed");
-            lock.release();
-            LOGGER.debug("lock released");
-            fc.close();
-            LOGGER.debug("fc released");
-            semaphore.release();
-            LOGGER.debug("Semaphore released");
+        public int read(byte[] b, int off, int len) throws IOException {
+            return source.read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return source.skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return source.available();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                source.close();
+                LOGGER.debug("IS closed");
+                zip.close();
+                LOGGER.debug("zip closed");
+            } finally {
+                unlock.run();
+                LOGGER.debug("Read lock released");
+            }
         }
     }
 
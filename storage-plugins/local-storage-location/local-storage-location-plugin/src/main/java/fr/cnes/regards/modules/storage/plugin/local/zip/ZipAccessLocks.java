@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.local.zip;
+
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Read/write locks of the local storage zip archives, one lock per path.
+ * <ul>
+ *     <li>Many readers can access the same archive, or different archives, at the same time</li>
+ *     <li>A writer (store into the current zip, deletion of an entry) has an exclusive access to its archive</li>
+ * </ul>
+ * {@link StampedLock}s are used instead of {@link java.util.concurrent.locks.ReentrantReadWriteLock} because a read
+ * lock is held by a stream returned to the caller, and this stream can be closed by another thread than the one
+ * which opened it. Locks are not reentrant.
+ */
+public class ZipAccessLocks {
+
+    private final ConcurrentMap<Path, StampedLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Try to acquire a read lock on the given path
+     *
+     * @return the stamp to use to release the lock, 0 if the lock could not be acquired before the timeout
+     */
+    public long tryReadLock(Path path, long timeout, TimeUnit unit) throws InterruptedException {
+        return getLock(path).tryReadLock(timeout, unit);
+    }
+
+    public void unlockRead(Path path, long stamp) {
+        getLock(path).unlockRead(stamp);
+    }
+
+    /**
+     * Acquire an exclusive lock on the given path, waiting as long as needed.
+     *
+     * @return the stamp to use to release the lock
+     */
+    public long writeLock(Path path) throws InterruptedException {
+        return getLock(path).writeLockInterruptibly();
+    }
+
+    public void unlockWrite(Path path, long stamp) {
+        getLock(path).unlockWrite(stamp);
+    }
+
+    private StampedLock getLock(Path path) {
+        return locks.computeIfAbsent(normalize(path), p -> new StampedLock());
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.local.zip;
+
+/**
+ * Location and sizes of an entry in a zip archive, as written in its central directory.
+ *
+ * @param name               name of the entry (the file checksum for local storage zips)
+ * @param method             compression method, {@link java.util.zip.ZipEntry#STORED} or
+ *                           {@link java.util.zip.ZipEntry#DEFLATED}
+ * @param flags              general purpose bit flags
+ * @param dosTime            last modification time in MS-DOS format
+ * @param crc                CRC-32 of the uncompressed content
+ * @param compressedSize     size of the entry data in the archive
+ * @param size               size of the uncompressed content
+ * @param localHeaderOffset  offset of the entry local header from the start of the archive
+ */
+public record ZipArchiveEntry(String name,
+                              int method,
+                              int flags,
+                              long dosTime,
+                              long crc,
+                              long compressedSize,
+                              long size,
+                              long localHeaderOffset) {
+
+    /**
+     * Bit 3 of the general purpose flags : sizes and crc are not in the local header but in a data descriptor
+     * following the entry data.
+     */
+    public static final int DATA_DESCRIPTOR_FLAG = 0x08;
+
+    /**
+     * Bit 11 of the general purpose flags : entry name is UTF-8 encoded.
+     */
+    public static final int UTF8_FLAG = 0x800;
+
+    public boolean hasDataDescriptor() {
+        return (flags & DATA_DESCRIPTOR_FLAG) != 0;
+    }
+}
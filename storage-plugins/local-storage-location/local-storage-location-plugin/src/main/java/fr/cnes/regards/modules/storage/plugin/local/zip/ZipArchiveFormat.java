@@ -0,0 +1,480 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.local.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Minimal reader/writer of the zip (32 bits) structures used by the local storage archives :
+ * <ul>
+ *     <li>local file headers, written before each entry data</li>
+ *     <li>central directory headers and end of central directory record, written at the end of the archive</li>
+ * </ul>
+ * Only what is needed to append entries to an archive and to read them back by offset is handled here.
+ * Zip64 archives are not supported.
+ */
+public final class ZipArchiveFormat {
+
+    public static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    public static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    public static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    public static final int LOCAL_HEADER_SIZE = 30;
+
+    public static final int CENTRAL_HEADER_SIZE = 46;
+
+    public static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    /**
+     * Offsets and sizes are stored on 4 bytes without zip64 extensions.
+     */
+    public static final long ZIP32_MAX_SIZE = 0xFFFFFFFFL;
+
+    /**
+     * Entry count is stored on 2 bytes without zip64 extensions.
+     */
+    public static final int ZIP32_MAX_ENTRIES = 0xFFFF;
+
+    /**
+     * Offset of the crc field in a local file header. Crc and sizes follow it.
+     */
+    public static final int LOCAL_HEADER_CRC_OFFSET = 14;
+
+    private static final int VERSION = 20;
+
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private ZipArchiveFormat() {
+    }
+
+    /**
+     * Read the central directory of the given archive.
+     *
+     * @return entries of the archive and offset of its central directory, empty if the archive has no valid end of
+     * central directory record (empty file, archive being written by a {@link ZipArchivePacker} that was not closed)
+     */
+    public static Optional<CentralDirectory> readCentralDirectory(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            return Optional.empty();
+        }
+        // End of central directory record is at the end of the file, followed by an optional comment.
+        int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = readFully(channel, fileSize - tailSize, tailSize);
+        for (int pos = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; pos >= 0; pos--) {
+            if (tail.getInt(pos) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+                && pos + END_OF_CENTRAL_DIRECTORY_SIZE + Short.toUnsignedInt(tail.getShort(pos + 20)) == tailSize) {
+                int entryCount = Short.toUnsignedInt(tail.getShort(pos + 10));
+                long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(pos + 12));
+                long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(pos + 16));
+                if (entryCount == ZIP32_MAX_ENTRIES || centralDirectoryOffset == ZIP32_MAX_SIZE) {
+                    throw new ZipException("Zip64 archives are not supported");
+                }
+                long endOffset = fileSize - tailSize + pos;
+                if (centralDirectoryOffset + centralDirectorySize > endOffset) {
+                    throw new ZipException("Invalid central directory offset");
+                }
+                return Optional.of(new CentralDirectory(readCentralHeaders(channel,
+                                                                           centralDirectoryOffset,
+                                                                           centralDirectorySize,
+                                                                           entryCount), centralDirectoryOffset));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Read the number of entries of the given archive from its end of central directory record.
+     *
+     * @return the number of entries, empty if the archive has no valid end of central directory record
+     */
+    public static Optional<Integer> readEntryCount(Path archive) throws IOException {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < END_OF_CENTRAL_DIRECTORY_SIZE) {
+                return Optional.empty();
+            }
+            // Archives written by this storage have no comment, so the record is the last 22 bytes of the file.
+            ByteBuffer end = readFully(channel, fileSize - END_OF_CENTRAL_DIRECTORY_SIZE, END_OF_CENTRAL_DIRECTORY_SIZE);
+            if (end.getInt(0) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return Optional.of(Short.toUnsignedInt(end.getShort(10)));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            return readCentralDirectory(channel).map(cd -> cd.entries().size());
+        }
+    }
+
+    /**
+     * Rebuild the entry list of an archive without central directory by reading its local file headers from the
+     * start of the file. Scan stops at the first incomplete entry or at the first bytes which are not a local file
+     * header.
+     *
+     * @return entries found and offset following the last complete entry
+     * @throws ZipException if an entry without sizes in its local header (data descriptor) is found
+     */
+    public static CentralDirectory scanLocalHeaders(FileChannel channel) throws IOException {
+        List<ZipArchiveEntry> entries = new ArrayList<>();
+        long fileSize = channel.size();
+        long offset = 0;
+        while (offset + LOCAL_HEADER_SIZE <= fileSize) {
+            ByteBuffer header = readFully(channel, offset, LOCAL_HEADER_SIZE);
+            if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+                break;
+            }
+            int flags = Short.toUnsignedInt(header.getShort(6));
+            if ((flags & ZipArchiveEntry.DATA_DESCRIPTOR_FLAG) != 0) {
+                throw new ZipException(String.format("Entry at offset %d has no size in its local header", offset));
+            }
+            int nameLength = Short.toUnsignedInt(header.getShort(26));
+            int extraLength = Short.toUnsignedInt(header.getShort(28));
+            long compressedSize = Integer.toUnsignedLong(header.getInt(18));
+            long entryEnd = offset + LOCAL_HEADER_SIZE + nameLength + extraLength + compressedSize;
+            if (entryEnd > fileSize) {
+                break;
+            }
+            String name = decodeName(readFully(channel, offset + LOCAL_HEADER_SIZE, nameLength), flags);
+            entries.add(new ZipArchiveEntry(name,
+                                            Short.toUnsignedInt(header.getShort(8)),
+                                            flags,
+                                            Integer.toUnsignedLong(header.getInt(10)),
+                                            Integer.toUnsignedLong(header.getInt(LOCAL_HEADER_CRC_OFFSET)),
+                                            compressedSize,
+                                            Integer.toUnsignedLong(header.getInt(22)),
+                                            offset));
+            offset = entryEnd;
+        }
+        return new CentralDirectory(entries, offset);
+    }
+
+    /**
+     * Open a stream on the uncompressed content of the given entry. Positional reads are used so the channel can
+     * be shared by several streams and by a writer appending to the archive.
+     * The channel is not closed when the stream is closed.
+     */
+    public static InputStream openEntryStream(FileChannel channel, ZipArchiveEntry entry) throws IOException {
+        long dataOffset = getDataOffset(channel, entry);
+        InputStream raw = new ChannelRegionInputStream(channel, dataOffset, entry.compressedSize());
+        return switch (entry.method()) {
+            case ZipEntry.STORED -> raw;
+            case ZipEntry.DEFLATED -> new EntryInflaterInputStream(raw);
+            default -> throw new ZipException(String.format("Unsupported compression method %d for entry %s",
+                                                            entry.method(),
+                                                            entry.name()));
+        };
+    }
+
+    /**
+     * Compute the offset of the entry data. Local header extra field may differ from the central directory one, so
+     * the local header is always read.
+     */
+    public static long getDataOffset(FileChannel channel, ZipArchiveEntry entry) throws IOException {
+        ByteBuffer header = readFully(channel, entry.localHeaderOffset(), LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException(String.format("Invalid local header for entry %s", entry.name()));
+        }
+        return entry.localHeaderOffset()
+               + LOCAL_HEADER_SIZE
+               + Short.toUnsignedInt(header.getShort(26))
+               + Short.toUnsignedInt(header.getShort(28));
+    }
+
+    /**
+     * Build the local file header of the given entry. Signature is left empty when requested, so that an entry
+     * interrupted while its data is written is ignored by {@link #scanLocalHeaders(FileChannel)}.
+     */
+    public static ByteBuffer localHeader(ZipArchiveEntry entry, byte[] name, boolean withSignature) {
+        ByteBuffer buffer = ByteBuffer.allocate(LOCAL_HEADER_SIZE + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(withSignature ? LOCAL_HEADER_SIGNATURE : 0);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) entry.flags());
+        buffer.putShort((short) entry.method());
+        buffer.putInt((int) entry.dosTime());
+        buffer.putInt((int) entry.crc());
+        buffer.putInt((int) entry.compressedSize());
+        buffer.putInt((int) entry.size());
+        buffer.putShort((short) name.length);
+        buffer.putShort((short) 0);
+        buffer.put(name);
+        return buffer.flip();
+    }
+
+    /**
+     * Build the central directory and the end of central directory record of an archive containing the given
+     * entries.
+     */
+    public static ByteBuffer centralDirectory(List<ZipArchiveEntry> entries, long centralDirectoryOffset)
+        throws ZipException {
+        if (entries.size() >= ZIP32_MAX_ENTRIES) {
+            throw new ZipException("Too many entries for a zip32 archive");
+        }
+        List<byte[]> names = new ArrayList<>(entries.size());
+        int centralDirectorySize = 0;
+        for (ZipArchiveEntry entry : entries) {
+            byte[] name = encodeName(entry.name());
+            names.add(name);
+            centralDirectorySize += CENTRAL_HEADER_SIZE + name.length;
+        }
+        if (centralDirectoryOffset + centralDirectorySize + END_OF_CENTRAL_DIRECTORY_SIZE > ZIP32_MAX_SIZE) {
+            throw new ZipException("Archive too large for a zip32 archive");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(centralDirectorySize + END_OF_CENTRAL_DIRECTORY_SIZE)
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < entries.size(); i++) {
+            ZipArchiveEntry entry = entries.get(i);
+            byte[] name = names.get(i);
+            buffer.putInt(CENTRAL_HEADER_SIGNATURE);
+            buffer.putShort((short) VERSION);
+            buffer.putShort((short) VERSION);
+            buffer.putShort((short) entry.flags());
+            buffer.putShort((short) entry.method());
+            buffer.putInt((int) entry.dosTime());
+            buffer.putInt((int) entry.crc());
+            buffer.putInt((int) entry.compressedSize());
+            buffer.putInt((int) entry.size());
+            buffer.putShort((short) name.length);
+            // Extra field, comment, disk number, internal and external attributes
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putInt(0);
+            buffer.putInt((int) entry.localHeaderOffset());
+            buffer.put(name);
+        }
+        buffer.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) entries.size());
+        buffer.putShort((short) entries.size());
+        buffer.putInt(centralDirectorySize);
+        buffer.putInt((int) centralDirectoryOffset);
+        buffer.putShort((short) 0);
+        return buffer.flip();
+    }
+
+    /**
+     * Create a new empty archive : an end of central directory record without any entry.
+     */
+    public static void createEmptyArchive(Path archive) throws IOException {
+        ByteBuffer buffer = centralDirectory(List.of(), 0);
+        Files.write(archive, buffer.array(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    public static byte[] encodeName(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Convert a date to the MS-DOS date and time format used in zip headers.
+     */
+    public static long toDosTime(LocalDateTime dateTime) {
+        int year = dateTime.getYear();
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (year - 1980) << 25)
+               | ((long) dateTime.getMonthValue() << 21)
+               | ((long) dateTime.getDayOfMonth() << 16)
+               | ((long) dateTime.getHour() << 11)
+               | ((long) dateTime.getMinute() << 5)
+               | ((long) dateTime.getSecond() >> 1);
+    }
+
+    public static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException(String.format("Unexpected end of archive at offset %d",
+                                                     position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    public static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+
+    private static List<ZipArchiveEntry> readCentralHeaders(FileChannel channel,
+                                                            long offset,
+                                                            long size,
+                                                            int entryCount) throws IOException {
+        ByteBuffer buffer = readFully(channel, offset, (int) size);
+        List<ZipArchiveEntry> entries = new ArrayList<>(entryCount);
+        int pos = 0;
+        for (int i = 0; i < entryCount; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > size || buffer.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header");
+            }
+            int flags = Short.toUnsignedInt(buffer.getShort(pos + 8));
+            int nameLength = Short.toUnsignedInt(buffer.getShort(pos + 28));
+            int extraLength = Short.toUnsignedInt(buffer.getShort(pos + 30));
+            int commentLength = Short.toUnsignedInt(buffer.getShort(pos + 32));
+            long compressedSize = Integer.toUnsignedLong(buffer.getInt(pos + 20));
+            long uncompressedSize = Integer.toUnsignedLong(buffer.getInt(pos + 24));
+            long localHeaderOffset = Integer.toUnsignedLong(buffer.getInt(pos + 42));
+            if (compressedSize == ZIP32_MAX_SIZE
+                || uncompressedSize == ZIP32_MAX_SIZE
+                || localHeaderOffset == ZIP32_MAX_SIZE) {
+                throw new ZipException("Zip64 entries are not supported");
+            }
+            byte[] name = new byte[nameLength];
+            buffer.get(pos + CENTRAL_HEADER_SIZE, name);
+            entries.add(new ZipArchiveEntry(decodeName(ByteBuffer.wrap(name), flags),
+                                            Short.toUnsignedInt(buffer.getShort(pos + 10)),
+                                            flags,
+                                            Integer.toUnsignedLong(buffer.getInt(pos + 12)),
+                                            Integer.toUnsignedLong(buffer.getInt(pos + 16)),
+                                            compressedSize,
+                                            uncompressedSize,
+                                            localHeaderOffset));
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private static String decodeName(ByteBuffer name, int flags) {
+        // Local storage entry names are checksums, so plain ASCII. UTF-8 is a superset of it.
+        return ((flags & ZipArchiveEntry.UTF8_FLAG) != 0 ?
+            StandardCharsets.UTF_8 :
+            StandardCharsets.ISO_8859_1).decode(name).toString();
+    }
+
+    /**
+     * Entries and central directory offset of an archive. For an archive without central directory, the offset is
+     * the one following the last entry.
+     */
+    public record CentralDirectory(List<ZipArchiveEntry> entries,
+                                   long offset) {
+
+    }
+
+    /**
+     * Stream on a region of a channel, read with positional reads.
+     */
+    private static class ChannelRegionInputStream extends InputStream {
+
+        private final FileChannel channel;
+
+        private final long end;
+
+        private long position;
+
+        private ChannelRegionInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : Byte.toUnsignedInt(b[0]);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            long remaining = end - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of archive");
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+
+    /**
+     * Raw deflate data needs an extra dummy byte at the end of the input, as done by {@link java.util.zip.ZipFile}.
+     */
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+
+        private boolean closed;
+
+        private EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of entry data");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.local.zip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipException;
+
+/**
+ * In-memory index of the entries of the local storage zip archives : entry name (file checksum) to location and
+ * sizes of the entry in its archive.
+ * <p>
+ * Entries of an archive are loaded from its central directory the first time the archive is accessed, then the
+ * index is updated by the stores and deletions of this plugin instance. The size and modification date of the
+ * archive are recorded with its entries : when they differ at next access, the archive has been modified by another
+ * instance of the microservice and its entries are loaded again. Existence checks and size lookups only read the
+ * archive attributes, and entries are read directly at their offset.
+ * <p>
+ * Callers must hold the lock of an archive (see {@link ZipAccessLocks}) while accessing its entries : a read lock to
+ * look up entries, a write lock to update them.
+ */
+public class ZipArchiveIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZipArchiveIndex.class);
+
+    /**
+     * Entries by entry name, by archive
+     */
+    private final ConcurrentMap<Path, IndexedArchive> archives = new ConcurrentHashMap<>();
+
+    /**
+     * @return the entry of the given archive with the given name, loading the archive entries if needed
+     */
+    public Optional<ZipArchiveEntry> getEntry(Path zipPath, String name) throws IOException {
+        return Optional.ofNullable(getEntries(zipPath).get(name));
+    }
+
+    /**
+     * @return the number of entries of the given archive, loading the archive entries if needed
+     */
+    public int getEntryCount(Path zipPath) throws IOException {
+        return getEntries(zipPath).size();
+    }
+
+    /**
+     * Replace the entries of the given archive, when they are already known (new archive, archive opened by a
+     * {@link ZipArchivePacker}).
+     */
+    public void load(Path zipPath, Collection<ZipArchiveEntry> entries) throws IOException {
+        archives.put(normalize(zipPath), new IndexedArchive(byName(entries), ArchiveStamp.of(zipPath)));
+    }
+
+    /**
+     * Add a new entry to the given archive, just appended by the caller
+     */
+    public void put(Path zipPath, ZipArchiveEntry entry) throws IOException {
+        Path key = normalize(zipPath);
+        IndexedArchive archive = archives.get(key);
+        if (archive == null) {
+            // New entry is read with the other ones
+            getEntries(zipPath);
+        } else {
+            archive.entries().put(entry.name(), entry);
+            // Archive modified by the caller, entries do not have to be loaded again
+            archives.put(key, new IndexedArchive(archive.entries(), ArchiveStamp.of(zipPath)));
+        }
+    }
+
+    /**
+     * Forget the entries of the given archive, after it has been rewritten or deleted. They are loaded again at next
+     * access.
+     */
+    public void invalidate(Path zipPath) {
+        archives.remove(normalize(zipPath));
+    }
+
+    private Map<String, ZipArchiveEntry> getEntries(Path zipPath) throws IOException {
+        Path key = normalize(zipPath);
+        // Read before the entries so that a modification made while reading them is detected at next access
+        ArchiveStamp stamp = ArchiveStamp.of(zipPath);
+        IndexedArchive archive = archives.get(key);
+        if (archive == null || !archive.stamp().equals(stamp)) {
+            if (archive != null) {
+                LOGGER.debug("[LOCAL STORAGE PLUGIN] Zip {} modified by another process, indexed again", zipPath);
+            }
+            archive = new IndexedArchive(byName(readEntries(zipPath)), stamp);
+            archives.put(key, archive);
+        }
+        return archive.entries();
+    }
+
+    private static Map<String, ZipArchiveEntry> byName(Collection<ZipArchiveEntry> entries) {
+        Map<String, ZipArchiveEntry> entriesByName = new ConcurrentHashMap<>();
+        entries.forEach(entry -> entriesByName.put(entry.name(), entry));
+        return entriesByName;
+    }
+
+    private static Collection<ZipArchiveEntry> readEntries(Path zipPath) throws IOException {
+        if (Files.notExists(zipPath)) {
+            return List.of();
+        }
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(zipPath, StandardOpenOption.READ)) {
+            Optional<ZipArchiveFormat.CentralDirectory> centralDirectory;
+            try {
+                centralDirectory = ZipArchiveFormat.readCentralDirectory(channel);
+            } catch (ZipException e) {
+                LOGGER.warn("[LOCAL STORAGE PLUGIN] Invalid central directory in zip archive {} : {}",
+                            zipPath,
+                            e.getMessage());
+                centralDirectory = Optional.empty();
+            }
+            // Archive without central directory is being written by another process, or was not closed properly
+            Collection<ZipArchiveEntry> entries = centralDirectory.isPresent() ?
+                centralDirectory.get().entries() :
+                ZipArchiveFormat.scanLocalHeaders(channel).entries();
+            LOGGER.debug("[LOCAL STORAGE PLUGIN] {} entries of zip {} indexed in {}ms",
+                         entries.size(),
+                         zipPath,
+                         System.currentTimeMillis() - start);
+            return entries;
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Entries of an archive, with the size and modification date of the archive when they were known
+     */
+    private record IndexedArchive(Map<String, ZipArchiveEntry> entries, ArchiveStamp stamp) {
+
+    }
+
+    /**
+     * Size and modification date of an archive, {@link #MISSING} if it does not exist
+     */
+    private record ArchiveStamp(long size, FileTime lastModified) {
+
+        private static final ArchiveStamp MISSING = new ArchiveStamp(-1L, FileTime.fromMillis(0L));
+
+        private static ArchiveStamp of(Path zipPath) throws IOException {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(zipPath, BasicFileAttributes.class);
+                return new ArchiveStamp(attributes.size(), attributes.lastModifiedTime());
+            } catch (NoSuchFileException e) {
+                return MISSING;
+            }
+        }
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.local.zip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Append-only writer of a local storage zip archive.
+ * <p>
+ * Unlike the zip file system provider, which rewrites the whole archive each time it is closed, the packer keeps
+ * the archive channel open and only appends new entries at its end :
+ * <ul>
+ *     <li>each entry is streamed from its source file, deflated on the fly, and its checksum is computed in the same
+ *     pass</li>
+ *     <li>the local header is patched with the crc and sizes once the entry is written, and its signature is
+ *     written last, so that an interrupted entry is never seen as a valid one</li>
+ *     <li>the central directory is written back by {@link #writeCentralDirectory()} once entries are appended, so
+ *     that readers never see the archive without it, and it is removed again before the next entry is appended</li>
+ * </ul>
+ * An exclusive file lock is held on the archive while the packer is open, to prevent other processes from writing
+ * into it. Thread safety between writers and readers of the same JVM is left to the caller
+ * (see {@link ZipAccessLocks}).
+ */
+public class ZipArchivePacker implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZipArchivePacker.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path zipPath;
+
+    private final FileChannel channel;
+
+    private final FileLock fileLock;
+
+    /**
+     * Entries of the archive by name, in archive order.
+     */
+    private final Map<String, ZipArchiveEntry> entries;
+
+    /**
+     * Offset where the next entry is written. Also the offset of the central directory once written.
+     */
+    private long writePosition;
+
+    /**
+     * True if the central directory on disk is not up-to-date and has to be written before the archive is read.
+     */
+    private boolean dirty;
+
+    private boolean closed;
+
+    private ZipArchivePacker(Path zipPath,
+                             FileChannel channel,
+                             FileLock fileLock,
+                             List<ZipArchiveEntry> entries,
+                             long writePosition) {
+        this.zipPath = zipPath;
+        this.channel = channel;
+        this.fileLock = fileLock;
+        this.entries = new LinkedHashMap<>();
+        entries.forEach(entry -> this.entries.put(entry.name(), entry));
+        this.writePosition = writePosition;
+    }
+
+    /**
+     * Open the given archive to append entries to it. The archive is created if it does not exist.
+     * If the archive has no central directory (process stopped before closing the packer), its entries are
+     * recovered from their local headers.
+     *
+     * @throws ZipException if the archive cannot be appended to : zip64 archive or entries written with data
+     *                      descriptors by another tool. The caller should then use a new archive.
+     */
+    public static ZipArchivePacker open(Path zipPath) throws IOException {
+        FileChannel channel = FileChannel.open(zipPath,
+                                               StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE);
+        FileLock fileLock = null;
+        try {
+            fileLock = channel.lock();
+            Optional<ZipArchiveFormat.CentralDirectory> centralDirectory;
+            try {
+                centralDirectory = ZipArchiveFormat.readCentralDirectory(channel);
+            } catch (ZipException e) {
+                // Stale end of central directory record left behind entries appended after it.
+                LOGGER.warn("[LOCAL STORAGE PLUGIN] Invalid central directory in zip archive {} : {}",
+                            zipPath,
+                            e.getMessage());
+                centralDirectory = Optional.empty();
+            }
+            ZipArchiveFormat.CentralDirectory content;
+            boolean recovered = false;
+            if (centralDirectory.isPresent()) {
+                content = centralDirectory.get();
+                if (content.entries().stream().anyMatch(ZipArchiveEntry::hasDataDescriptor)) {
+                    throw new ZipException(String.format("Archive %s contains entries with data descriptors",
+                                                         zipPath));
+                }
+            } else {
+                content = ZipArchiveFormat.scanLocalHeaders(channel);
+                recovered = channel.size() > 0;
+                if (recovered) {
+                    LOGGER.warn("[LOCAL STORAGE PLUGIN] Zip archive {} has no central directory. {} entries recovered "
+                                + "from local headers.", zipPath, content.entries().size());
+                }
+            }
+            ZipArchivePacker packer = new ZipArchivePacker(zipPath,
+                                                           channel,
+                                                           fileLock,
+                                                           content.entries(),
+                                                           content.offset());
+            // Make sure the central directory is written back even if no entry is appended.
+            packer.dirty = recovered;
+            return packer;
+        } catch (IOException | RuntimeException e) {
+            if (fileLock != null && fileLock.isValid()) {
+                fileLock.release();
+            }
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append the content of the given file as a new entry of the archive. The content is checked against the given
+     * checksum while it is written. If the checksum does not match, the entry is removed from the archive.
+     *
+     * @param name              entry name
+     * @param source            file to append
+     * @param algorithm         checksum algorithm (ex: MD5)
+     * @param expectedChecksum  expected checksum of the file, in hexadecimal
+     * @return the new entry, or empty if the checksum does not match
+     */
+    public Optional<ZipArchiveEntry> append(String name, Path source, String algorithm, String expectedChecksum)
+        throws IOException, NoSuchAlgorithmException {
+        checkOpen();
+        if (entries.containsKey(name)) {
+            throw new ZipException(String.format("Entry %s already exists in archive %s", name, zipPath));
+        }
+        long sourceSize = Files.size(source);
+        if (!canAppend(sourceSize)) {
+            throw new ZipException(String.format("Archive %s cannot contain %d more bytes", zipPath, sourceSize));
+        }
+        long entryOffset = writePosition;
+        if (!dirty) {
+            // Remove the current central directory before overwriting it, so that a process stopped before the
+            // packer is closed leaves an archive without any central directory, which is recovered at next opening.
+            channel.truncate(entryOffset);
+            channel.force(false);
+            dirty = true;
+        }
+        try {
+            ZipArchiveEntry entry = writeEntry(name, source, entryOffset, algorithm, expectedChecksum, true);
+            if (entry != null && entry.compressedSize() >= entry.size()) {
+                // Content does not compress, keep it as is. It also allows direct reads of the entry.
+                channel.truncate(entryOffset);
+                entry = writeEntry(name, source, entryOffset, algorithm, expectedChecksum, false);
+            }
+            if (entry == null) {
+                channel.truncate(entryOffset);
+                return Optional.empty();
+            }
+            entries.put(name, entry);
+            writePosition = ZipArchiveFormat.getDataOffset(channel, entry) + entry.compressedSize();
+            return Optional.of(entry);
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException e) {
+            channel.truncate(entryOffset);
+            throw e;
+        }
+    }
+
+    /**
+     * Open a stream on the uncompressed content of an entry of the archive. Data of entries appended since the
+     * packer was opened is available even if the central directory is not written yet.
+     */
+    public Optional<InputStream> openEntryStream(String name) throws IOException {
+        checkOpen();
+        ZipArchiveEntry entry = entries.get(name);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        return Optional.of(ZipArchiveFormat.openEntryStream(channel, entry));
+    }
+
+    /**
+     * @return true if an entry of the given size can still be appended without exceeding zip32 limits
+     */
+    public boolean canAppend(long sourceSize) {
+        // Deflated data can be a bit larger than its source, keep a margin for headers and central directory.
+        long margin = sourceSize / 100 + 1024 + (entries.size() + 1L) * (ZipArchiveFormat.CENTRAL_HEADER_SIZE + 256);
+        return entries.size() + 1 < ZipArchiveFormat.ZIP32_MAX_ENTRIES
+               && writePosition + sourceSize + margin < ZipArchiveFormat.ZIP32_MAX_SIZE;
+    }
+
+    /**
+     * @return true if the archive reached one of the given limits and should be rolled over
+     */
+    public boolean isFull(long maxSize, int maxEntries) {
+        return writePosition >= maxSize || entries.size() >= maxEntries || !canAppend(0);
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    public Optional<ZipArchiveEntry> getEntry(String name) {
+        return Optional.ofNullable(entries.get(name));
+    }
+
+    public List<ZipArchiveEntry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries.values()));
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return size of the archive without its central directory
+     */
+    public long getSize() {
+        return writePosition;
+    }
+
+    public Path getZipPath() {
+        return zipPath;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Write the central directory if needed, keeping the archive open to append other entries. The archive is then
+     * a complete zip for its readers, until the next entry is appended.
+     */
+    public void writeCentralDirectory() throws IOException {
+        checkOpen();
+        if (dirty) {
+            ByteBuffer centralDirectory = ZipArchiveFormat.centralDirectory(new ArrayList<>(entries.values()),
+                                                                            writePosition);
+            ZipArchiveFormat.writeFully(channel, centralDirectory, writePosition);
+            channel.truncate(writePosition + centralDirectory.limit());
+            dirty = false;
+        }
+    }
+
+    /**
+     * Write the central directory if needed, then release the archive.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            writeCentralDirectory();
+            channel.force(true);
+        } finally {
+            closed = true;
+            try {
+                if (fileLock.isValid()) {
+                    fileLock.release();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Write an entry at the given offset.
+     *
+     * @return the written entry, or null if the checksum of the source does not match the expected one
+     */
+    private ZipArchiveEntry writeEntry(String name,
+                                       Path source,
+                                       long offset,
+                                       String algorithm,
+                                       String expectedChecksum,
+                                       boolean deflate) throws IOException, NoSuchAlgorithmException {
+        byte[] encodedName = ZipArchiveFormat.encodeName(name);
+        int method = deflate ? ZipEntry.DEFLATED : ZipEntry.STORED;
+        long dosTime = ZipArchiveFormat.toDosTime(LocalDateTime.now());
+        // Header without signature, nor crc and sizes. They are written once the data is.
+        ZipArchiveEntry pending = new ZipArchiveEntry(name, method, ZipArchiveEntry.UTF8_FLAG, dosTime, 0, 0, 0, offset);
+        long dataOffset = offset + ZipArchiveFormat.LOCAL_HEADER_SIZE + encodedName.length;
+        ZipArchiveFormat.writeFully(channel, ZipArchiveFormat.localHeader(pending, encodedName, false), offset);
+
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        CRC32 crc = new CRC32();
+        long size = 0;
+        long position = dataOffset;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        Deflater deflater = deflate ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+        try (InputStream in = Files.newInputStream(source)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                crc.update(buffer, 0, read);
+                size += read;
+                if (deflater != null) {
+                    deflater.setInput(buffer, 0, read);
+                    position = deflate(deflater, position);
+                } else {
+                    ZipArchiveFormat.writeFully(channel, ByteBuffer.wrap(buffer, 0, read), position);
+                    position += read;
+                }
+            }
+            if (deflater != null) {
+                deflater.finish();
+                position = deflate(deflater, position);
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        String checksum = HexFormat.of().formatHex(digest.digest());
+        if (!checksum.equalsIgnoreCase(expectedChecksum)) {
+            LOGGER.error("[LOCAL STORAGE PLUGIN] Invalid checksum for file {}. Expected {}, computed {}",
+                         source,
+                         expectedChecksum,
+                         checksum);
+            return null;
+        }
+        ZipArchiveEntry entry = new ZipArchiveEntry(name,
+                                                    method,
+                                                    ZipArchiveEntry.UTF8_FLAG,
+                                                    dosTime,
+                                                    crc.getValue(),
+                                                    position - dataOffset,
+                                                    size,
+                                                    offset);
+        // Crc and sizes first, then the signature which validates the entry.
+        ByteBuffer header = ZipArchiveFormat.localHeader(entry, encodedName, true);
+        ZipArchiveFormat.writeFully(channel,
+                                    header.slice(ZipArchiveFormat.LOCAL_HEADER_CRC_OFFSET, 12),
+                                    offset + ZipArchiveFormat.LOCAL_HEADER_CRC_OFFSET);
+        ZipArchiveFormat.writeFully(channel, header.slice(0, 4), offset);
+        return entry;
+    }
+
+    /**
+     * Write the deflated data available, until the deflater needs more input or, once finished, until all the data
+     * is flushed.
+     */
+    private long deflate(Deflater deflater, long position) throws IOException {
+        byte[] output = new byte[BUFFER_SIZE];
+        long newPosition = position;
+        while (!deflater.finished()) {
+            int length = deflater.deflate(output);
+            if (length > 0) {
+                ZipArchiveFormat.writeFully(channel, ByteBuffer.wrap(output, 0, length), newPosition);
+                newPosition += length;
+            } else if (deflater.needsInput()) {
+                break;
+            }
+        }
+        return newPosition;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException(String.format("Zip archive packer of %s is closed", zipPath));
+        }
+    }
+}
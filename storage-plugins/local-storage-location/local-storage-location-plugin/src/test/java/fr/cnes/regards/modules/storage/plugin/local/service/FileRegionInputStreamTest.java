@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.local.service;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for {@link FileRegionInputStream}
+ */
+public class FileRegionInputStreamTest {
+
+    private static final Path WORKSPACE = Paths.get("target", "file-region");
+
+    private final byte[] content = new byte[100_000];
+
+    private Path file;
+
+    @Before
+    public void init() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+        Files.createDirectories(WORKSPACE);
+        new Random(42).nextBytes(content);
+        file = Files.write(WORKSPACE.resolve("file"), content);
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+    }
+
+    @Test
+    public void read_region() throws IOException {
+        try (InputStream stream = open(1000, 50_000, () -> {
+        })) {
+            Assert.assertEquals(Byte.toUnsignedInt(content[1000]), stream.read());
+            Assert.assertEquals(10, stream.skip(10));
+            Assert.assertArrayEquals(Arrays.copyOfRange(content, 1011, 51_000), stream.readAllBytes());
+            Assert.assertEquals(-1, stream.read());
+        }
+    }
+
+    @Test
+    public void transfer_region() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream stream = open(1000, 50_000, () -> {
+        })) {
+            Assert.assertEquals(Byte.toUnsignedInt(content[1000]), stream.read());
+            Assert.assertEquals(49_999, stream.transferTo(out));
+            Assert.assertEquals(-1, stream.read());
+        }
+        Assert.assertArrayEquals(Arrays.copyOfRange(content, 1001, 51_000), out.toByteArray());
+    }
+
+    @Test
+    public void transfer_range() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileRegionInputStream stream = open(1000, 50_000, () -> {
+        })) {
+            Assert.assertEquals(100, stream.transferTo(200, 100, Channels.newChannel(out)));
+            // Range exceeding the region is truncated
+            Assert.assertEquals(50, stream.transferTo(49_950, 100, Channels.newChannel(out)));
+            // Position of the stream is unchanged
+            Assert.assertEquals(Byte.toUnsignedInt(content[1000]), stream.read());
+        }
+        byte[] expected = new byte[150];
+        System.arraycopy(content, 1200, expected, 0, 100);
+        System.arraycopy(content, 50_950, expected, 100, 50);
+        Assert.assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    public void transfer_to_slow_channel() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel outChannel = Channels.newChannel(out);
+        AtomicInteger writes = new AtomicInteger();
+        // Non-blocking like channel, accepting no byte at every other write
+        WritableByteChannel slowChannel = new WritableByteChannel() {
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                return writes.getAndIncrement() % 2 == 0 ? 0 : outChannel.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (FileRegionInputStream stream = open(1000, 50_000, () -> {
+        })) {
+            Assert.assertEquals(50_000, stream.transferTo(0, 50_000, slowChannel));
+        }
+        Assert.assertArrayEquals(Arrays.copyOfRange(content, 1000, 51_000), out.toByteArray());
+    }
+
+    @Test
+    public void transfer_to_blocked_channel_fails() throws IOException {
+        WritableByteChannel blockedChannel = new WritableByteChannel() {
+
+            @Override
+            public int write(ByteBuffer src) {
+                return 0;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (FileRegionInputStream stream = open(1000, 50_000, () -> {
+        })) {
+            Assert.assertThrows(IOException.class, () -> stream.transferTo(0, 50_000, blockedChannel));
+        }
+    }
+
+    @Test
+    public void close_releases_region() throws IOException {
+        AtomicBoolean released = new AtomicBoolean();
+        FileRegionInputStream stream = open(0, content.length, () -> released.set(true));
+        stream.close();
+        stream.close();
+
+        Assert.assertTrue(released.get());
+        Assert.assertFalse(stream.getChannel().isOpen());
+        Assert.assertThrows(IOException.class, stream::read);
+    }
+
+    @Test
+    public void transfer_to_file_equals_buffered_copy() throws IOException {
+        Path source = WORKSPACE.resolve("big_file");
+        byte[] sourceContent = new byte[3 * 1024 * 1024 + 123];
+        new Random(7).nextBytes(sourceContent);
+        Files.write(source, sourceContent);
+        int offset = 1000;
+        int length = sourceContent.length - 2 * offset;
+
+        Path copyTarget = WORKSPACE.resolve("copy");
+        try (InputStream in = Files.newInputStream(source); OutputStream out = Files.newOutputStream(copyTarget)) {
+            Assert.assertEquals(offset, in.skip(offset));
+            byte[] buffer = new byte[8192];
+            int remaining = length;
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, Math.min(buffer.length, remaining))) >= 0) {
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+
+        Path transferTarget = WORKSPACE.resolve("transfer");
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+            InputStream in = new FileRegionInputStream(channel, offset, length, () -> {
+            });
+            OutputStream out = new FileOutputStream(transferTarget.toFile())) {
+            Assert.assertEquals(length, in.transferTo(out));
+        }
+
+        Assert.assertArrayEquals(Arrays.copyOfRange(sourceContent, offset, offset + length),
+                                 Files.readAllBytes(copyTarget));
+        Assert.assertEquals(-1L, Files.mismatch(copyTarget, transferTarget));
+    }
+
+    private FileRegionInputStream open(long offset, long length, Runnable release) throws IOException {
+        return new FileRegionInputStream(FileChannel.open(file, StandardOpenOption.READ), offset, length, release);
+    }
+}
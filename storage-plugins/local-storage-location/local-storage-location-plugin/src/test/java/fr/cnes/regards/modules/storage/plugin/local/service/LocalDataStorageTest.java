@@ -19,6 +19,7 @@
 package fr.cnes.regards.modules.storage.plugin.local.service;
 
 import com.google.common.collect.Sets;
+import fr.cnes.regards.framework.module.rest.exception.ModuleException;
 import fr.cnes.regards.framework.modules.plugins.domain.PluginConfiguration;
 import fr.cnes.regards.framework.modules.plugins.dto.parameter.parameter.IPluginParam;
 import fr.cnes.regards.framework.s3.S3StorageConfiguration;
@@ -45,6 +46,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
@@ -52,6 +54,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipFile;
 
 /**
  * @author sbinda
@@ -97,6 +100,7 @@ public class LocalDataStorageTest {
 
     @After
     public void after() throws IOException {
+        plugin.onDestroy();
         if (Files.exists(Paths.get(baseStorageLocation))) {
             Files.walk(Paths.get(baseStorageLocation)).forEach(p -> p.toFile().delete());
         }
@@ -365,6 +369,180 @@ public class LocalDataStorageTest {
         Assert.assertTrue("ZIP archive should still be there", Files.exists(zipPath));
     }
 
+    @Test
+    public void storeInParallel() throws IOException {
+        Path testFilePath = Paths.get("src", "test", "resources", "file.test");
+        Path testFile2Path = Paths.get("src", "test", "resources", "file2.test");
+        List<FileStorageRequestAggregationDto> requests = new ArrayList<>();
+        // Same file requested twice, and another file. All of them are small files stored in the same zip
+        for (String owner : List.of("owner", "owner2")) {
+            requests.add(createFileStorageRequestAggregationDto(owner,
+                                                                createFileReferenceMetaInfoDto(
+                                                                    "edc900745c5d15d773fbcdc0b376f00c",
+                                                                    "MD5",
+                                                                    "file.name",
+                                                                    null,
+                                                                    MediaType.APPLICATION_OCTET_STREAM),
+                                                                testFilePath.toUri().toString(),
+                                                                "localStorage",
+                                                                Optional.empty(),
+                                                                "group",
+                                                                "TEST",
+                                                                "session-001"));
+        }
+        requests.add(createFileStorageRequestAggregationDto("owner",
+                                                            createFileReferenceMetaInfoDto(
+                                                                "b4b2c823e4a4cf98d755f76679c83918",
+                                                                "MD5",
+                                                                "file2.name",
+                                                                null,
+                                                                MediaType.APPLICATION_OCTET_STREAM),
+                                                            testFile2Path.toUri().toString(),
+                                                            "localStorage",
+                                                            Optional.empty(),
+                                                            "group",
+                                                            "TEST",
+                                                            "session-001"));
+        plugin.store(new FileStorageWorkingSubset(requests), storageProgress);
+
+        for (FileStorageRequestAggregationDto request : requests) {
+            Mockito.verify(storageProgress, Mockito.times(1))
+                   .storageSucceed(Mockito.eq(request), Mockito.any(), Mockito.any());
+        }
+        Mockito.verify(storageProgress, Mockito.never()).storageFailed(Mockito.any(), Mockito.any());
+        Path zipPath = plugin.getCurrentZipPath(plugin.getStorageLocationForZip(requests.get(0)));
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            Assert.assertEquals("Each file should be stored once in the zip", 2, zipFile.size());
+        }
+    }
+
+    @Test
+    public void store_interrupted_reports_all_requests() {
+        Path testFilePath = Paths.get("src", "test", "resources", "file.test");
+        List<FileStorageRequestAggregationDto> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(createFileStorageRequestAggregationDto("owner" + i,
+                                                                createFileReferenceMetaInfoDto(
+                                                                    "edc900745c5d15d773fbcdc0b376f00c",
+                                                                    "MD5",
+                                                                    "file.name",
+                                                                    null,
+                                                                    MediaType.APPLICATION_OCTET_STREAM),
+                                                                testFilePath.toUri().toString(),
+                                                                "localStorage",
+                                                                Optional.of("dir" + i),
+                                                                "group",
+                                                                "TEST",
+                                                                "session-001"));
+        }
+        // Given a storage process interrupted before its tasks are done
+        Thread.currentThread().interrupt();
+        try {
+            plugin.store(new FileStorageWorkingSubset(requests), storageProgress);
+        } finally {
+            Assert.assertTrue("Interruption should be kept", Thread.interrupted());
+        }
+
+        // Then each request ends with exactly one success or error
+        for (FileStorageRequestAggregationDto request : requests) {
+            long reports = Mockito.mockingDetails(storageProgress)
+                                  .getInvocations()
+                                  .stream()
+                                  .filter(invocation -> invocation.getArguments()[0] == request)
+                                  .count();
+            Assert.assertEquals("Request should be reported once", 1, reports);
+        }
+    }
+
+    @Test
+    public void retrieveFromZipConcurrently() throws IOException, ModuleException {
+        store();
+        Path testFilePath = Paths.get("src", "test", "resources", "file.test");
+
+        FileStorageRequestAggregationDto storageRequest = createFileStorageRequestAggregationDto("owner",
+                                                                                                 createFileReferenceMetaInfoDto(
+                                                                                                     "edc900745c5d15d773fbcdc0b376f00c",
+                                                                                                     "MD5",
+                                                                                                     "file.name",
+                                                                                                     null,
+                                                                                                     MediaType.APPLICATION_OCTET_STREAM),
+                                                                                                 testFilePath.toUri()
+                                                                                                             .toString(),
+                                                                                                 "localStorage",
+                                                                                                 Optional.empty(),
+                                                                                                 "group",
+                                                                                                 "TEST",
+                                                                                                 "session-001");
+        Path zipPath = plugin.getCurrentZipPath(plugin.getStorageLocationForZip(storageRequest));
+        FileReferenceWithoutOwnersDto fileRef = createFileReferenceDto(1L,
+                                                                       createFileReferenceMetaInfoDto(
+                                                                           "edc900745c5d15d773fbcdc0b376f00c",
+                                                                           "MD5",
+                                                                           "file.name",
+                                                                           null,
+                                                                           MediaType.APPLICATION_OCTET_STREAM),
+                                                                       new FileLocationDto("local-storage",
+                                                                                           zipPath.toUri()
+                                                                                                  .toURL()
+                                                                                                  .toString()));
+        byte[] expectedContent = Files.readAllBytes(testFilePath);
+        // Both streams are opened on the same zip at the same time, the second one must not wait for the first one
+        // to be closed
+        try (InputStream first = plugin.retrieve(fileRef); InputStream second = plugin.retrieve(fileRef)) {
+            Assert.assertArrayEquals(expectedContent, second.readAllBytes());
+            Assert.assertArrayEquals(expectedContent, first.readAllBytes());
+        }
+        // Once streams are closed, the zip can be modified again
+        FileDeletionRequestDto deletionRequest = createFileDeletionRequestDto(fileRef, "groupId", "TEST", "session-001");
+        plugin.delete(new FileDeletionWorkingSubset(Sets.newHashSet(deletionRequest)), deletionProgress);
+        Mockito.verify(deletionProgress, Mockito.times(1)).deletionSucceed(deletionRequest);
+    }
+
+    @Test
+    public void retrieveFileRegion() throws IOException, ModuleException {
+        Path testFilePath = Paths.get("src", "test", "resources", "file.test");
+        FileReferenceWithoutOwnersDto fileRef = createFileReferenceDto(1L,
+                                                                       createFileReferenceMetaInfoDto(
+                                                                           "edc900745c5d15d773fbcdc0b376f00c",
+                                                                           "MD5",
+                                                                           "file.name",
+                                                                           null,
+                                                                           MediaType.APPLICATION_OCTET_STREAM),
+                                                                       new FileLocationDto("local-storage",
+                                                                                           testFilePath.toUri()
+                                                                                                       .toURL()
+                                                                                                       .toString()));
+        // Plain files are exposed as a file region, so that they can be transferred without copy
+        try (InputStream stream = plugin.retrieve(fileRef)) {
+            Assert.assertTrue(stream instanceof FileRegionInputStream);
+            Assert.assertEquals(Files.size(testFilePath), ((FileRegionInputStream) stream).getLength());
+            Assert.assertArrayEquals(Files.readAllBytes(testFilePath), stream.readAllBytes());
+        }
+    }
+
+    @Test
+    public void retrieveFileWithEscapedPath() throws IOException, ModuleException {
+        Path testFilePath = Paths.get("src", "test", "resources", "file.test");
+        Path storedFilePath = Files.createDirectories(Paths.get(baseStorageLocation, "dir with spaces"))
+                                   .resolve("file%.test");
+        Files.copy(testFilePath, storedFilePath);
+        FileReferenceWithoutOwnersDto fileRef = createFileReferenceDto(1L,
+                                                                       createFileReferenceMetaInfoDto(
+                                                                           "edc900745c5d15d773fbcdc0b376f00c",
+                                                                           "MD5",
+                                                                           "file.name",
+                                                                           null,
+                                                                           MediaType.APPLICATION_OCTET_STREAM),
+                                                                       new FileLocationDto("local-storage",
+                                                                                           storedFilePath.toUri()
+                                                                                                         .toURL()
+                                                                                                         .toString()));
+        // Url path is percent-encoded
+        try (InputStream stream = plugin.retrieve(fileRef)) {
+            Assert.assertArrayEquals(Files.readAllBytes(testFilePath), stream.readAllBytes());
+        }
+    }
+
     @Test
     public void delete() throws IOException {
         URL urlToDelete = new URL("file", null, "target/local-storage/test/huhu/fileToDelete.test");
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.local.zip;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+
+public class ZipArchiveIndexTest {
+
+    private static final Path WORKSPACE = Paths.get("target", "zip-index");
+
+    private final ZipArchiveIndex index = new ZipArchiveIndex();
+
+    @Before
+    public void init() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+        Files.createDirectories(WORKSPACE);
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+    }
+
+    @Test
+    public void index_and_read_entries() throws Exception {
+        Path zipPath = WORKSPACE.resolve("regards_test.zip");
+        String first = append(zipPath, "first file content");
+        String second = append(zipPath, "second file content");
+
+        Assert.assertEquals(2, index.getEntryCount(zipPath));
+        ZipArchiveEntry entry = index.getEntry(zipPath, second).orElseThrow();
+        Assert.assertEquals("second file content".length(), entry.size());
+        try (FileChannel channel = FileChannel.open(zipPath, StandardOpenOption.READ);
+            InputStream stream = ZipArchiveFormat.openEntryStream(channel, entry)) {
+            Assert.assertEquals("second file content", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        index.invalidate(zipPath);
+        Assert.assertTrue(index.getEntry(zipPath, first).isPresent());
+        Assert.assertEquals(2, index.getEntryCount(zipPath));
+    }
+
+    @Test
+    public void zip_rewritten_outside_index() throws Exception {
+        Path zipPath = WORKSPACE.resolve("regards_test.zip");
+        String first = append(zipPath, "first file content");
+        String second = append(zipPath, "second file content");
+        ZipArchiveEntry secondEntry = index.getEntry(zipPath, second).orElseThrow();
+
+        // Entry deleted by another instance of the microservice, following entries are moved
+        try (FileSystem zipFs = FileSystems.newFileSystem(URI.create("jar:file:" + zipPath.toAbsolutePath()),
+                                                          Map.of("create", "false"))) {
+            Files.delete(zipFs.getPath(first));
+        }
+
+        Assert.assertFalse(index.getEntry(zipPath, first).isPresent());
+        Assert.assertEquals(1, index.getEntryCount(zipPath));
+        ZipArchiveEntry movedEntry = index.getEntry(zipPath, second).orElseThrow();
+        Assert.assertNotEquals(secondEntry.localHeaderOffset(), movedEntry.localHeaderOffset());
+        try (FileChannel channel = FileChannel.open(zipPath, StandardOpenOption.READ);
+            InputStream stream = ZipArchiveFormat.openEntryStream(channel, movedEntry)) {
+            Assert.assertEquals("second file content", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void zip_appended_outside_index() throws Exception {
+        Path zipPath = WORKSPACE.resolve("regards_test.zip");
+        String first = append(zipPath, "first file content");
+        Assert.assertEquals(1, index.getEntryCount(zipPath));
+
+        // Entry appended by another instance of the microservice
+        String second = append(zipPath, "second file content");
+
+        Assert.assertTrue(index.getEntry(zipPath, first).isPresent());
+        Assert.assertTrue(index.getEntry(zipPath, second).isPresent());
+        Assert.assertEquals(2, index.getEntryCount(zipPath));
+    }
+
+    @Test
+    public void zip_created_outside_index() throws Exception {
+        Path zipPath = WORKSPACE.resolve("regards_test.zip");
+        Assert.assertEquals(0, index.getEntryCount(zipPath));
+
+        String first = append(zipPath, "first file content");
+
+        Assert.assertTrue(index.getEntry(zipPath, first).isPresent());
+    }
+
+    @Test
+    public void index_missing_zip() throws IOException {
+        Path zipPath = WORKSPACE.resolve("regards_missing.zip");
+        Assert.assertEquals(0, index.getEntryCount(zipPath));
+        Assert.assertFalse(index.getEntry(zipPath, "checksum").isPresent());
+    }
+
+    private String append(Path zipPath, String content) throws Exception {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(bytes));
+        Path source = Files.write(WORKSPACE.resolve(checksum), bytes);
+        try (ZipArchivePacker packer = ZipArchivePacker.open(zipPath)) {
+            Assert.assertTrue(packer.append(checksum, source, "MD5", checksum).isPresent());
+        }
+        return checksum;
+    }
+}
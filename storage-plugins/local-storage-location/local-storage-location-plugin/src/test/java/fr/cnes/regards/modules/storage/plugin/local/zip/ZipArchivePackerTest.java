@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017-2024 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.local.zip;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class ZipArchivePackerTest {
+
+    private static final Path WORKSPACE = Paths.get("target", "zip-packer");
+
+    private final Random random = new Random(42);
+
+    @Before
+    public void init() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+        Files.createDirectories(WORKSPACE);
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+    }
+
+    @Test
+    public void append_and_read() throws Exception {
+        Path zipPath = WORKSPACE.resolve("regards_test.zip");
+        ZipArchiveFormat.createEmptyArchive(zipPath);
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (ZipArchivePacker packer = ZipArchivePacker.open(zipPath)) {
+            for (int i = 0; i < 20; i++) {
+                // half compressible and half random files, to get both DEFLATED and STORED entries
+                byte[] content = createContent(i % 2 == 0);
+                String checksum = md5(content);
+                Assert.assertTrue(packer.append(checksum, writeSource(content), "MD5", checksum).isPresent());
+                contents.put(checksum, content);
+            }
+            // Entries are readable before the central directory is written
+            for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                try (InputStream stream = packer.openEntryStream(content.getKey()).orElseThrow()) {
+                    Assert.assertArrayEquals(content.getValue(), stream.readAllBytes());
+                }
+            }
+        }
+        assertZipContent(zipPath, contents);
+
+        // Append to the existing archive
+        try (ZipArchivePacker packer = ZipArchivePacker.open(zipPath)) {
+            Assert.assertEquals(contents.size(), packer.getEntryCount());
+            byte[] content = createContent(true);
+            String checksum = md5(content);
+            Assert.assertTrue(packer.append(checksum, writeSource(content), "MD5", checksum).isPresent());
+            contents.put(checksum, content);
+        }
+        assertZipContent(zipPath, contents);
+        Assert.assertEquals(Optional.of(contents.size()), ZipArchiveFormat.readEntryCount(zipPath));
+    }
+
+    @Test
+    public void readable_between_appends() throws Exception {
+        Path zipPath = WORKSPACE.resolve("regards_test.zip");
+        ZipArchiveFormat.createEmptyArchive(zipPath);
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (ZipArchivePacker packer = ZipArchivePacker.open(zipPath)) {
+            for (int i = 0; i < 3; i++) {
+                byte[] content = createContent(i % 2 == 0);
+                String checksum = md5(content);
+                Assert.assertTrue(packer.append(checksum, writeSource(content), "MD5", checksum).isPresent());
+                contents.put(checksum, content);
+                packer.writeCentralDirectory();
+                // Archive is a valid zip for other readers while the packer is still open
+                assertZipContent(zipPath, contents);
+            }
+        }
+        assertZipContent(zipPath, contents);
+    }
+
+    @Test
+    public void append_invalid_checksum() throws Exception {
+        Path zipPath = WORKSPACE.resolve("regards_test.zip");
+        byte[] valid = createContent(true);
+        try (ZipArchivePacker packer = ZipArchivePacker.open(zipPath)) {
+            packer.append(md5(valid), writeSource(valid), "MD5", md5(valid));
+            long size = packer.getSize();
+            Assert.assertFalse(packer.append("invalid", writeSource(createContent(true)), "MD5", md5(valid))
+                                     .isPresent());
+            Assert.assertEquals("Invalid entry should be removed from the archive", size, packer.getSize());
+            Assert.assertFalse(packer.contains("invalid"));
+        }
+        assertZipContent(zipPath, Map.of(md5(valid), valid));
+    }
+
+    @Test
+    public void recover_archive_without_central_directory() throws Exception {
+        Path zipPath = WORKSPACE.resolve("regards_test.zip");
+        Path crashedZipPath = WORKSPACE.resolve("regards_crashed.zip");
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (ZipArchivePacker packer = ZipArchivePacker.open(zipPath)) {
+            for (int i = 0; i < 5; i++) {
+                byte[] content = createContent(i % 2 == 0);
+                packer.append(md5(content), writeSource(content), "MD5", md5(content));
+                contents.put(md5(content), content);
+            }
+            // Copy of the archive as it would be if the process stopped now
+            Files.copy(zipPath, crashedZipPath);
+        }
+        try (ZipArchivePacker packer = ZipArchivePacker.open(crashedZipPath)) {
+            Assert.assertEquals(contents.size(), packer.getEntryCount());
+        }
+        assertZipContent(crashedZipPath, contents);
+    }
+
+    @Test
+    public void refuse_zip_file_system_archive() throws Exception {
+        Path zipPath = WORKSPACE.resolve("regards_zipfs.zip");
+        try (FileSystem zipFs = FileSystems.newFileSystem(URI.create("jar:file:" + zipPath.toAbsolutePath()),
+                                                          Map.of("create", "true"))) {
+            Files.write(zipFs.getPath("entry"), createContent(true));
+        }
+        Assert.assertThrows(java.util.zip.ZipException.class, () -> ZipArchivePacker.open(zipPath));
+    }
+
+    @Test
+    public void packed_archive_matches_zip_file_system_archive() throws Exception {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        Path zipFsPath = WORKSPACE.resolve("regards_zipfs.zip");
+        Path packerPath = WORKSPACE.resolve("regards_packer.zip");
+        try (ZipArchivePacker packer = ZipArchivePacker.open(packerPath)) {
+            for (int i = 0; i < 30; i++) {
+                byte[] content = createContent(i % 2 == 0);
+                String checksum = md5(content);
+                Path source = writeSource(content);
+                // One zip file system per file, as each store request was handled
+                try (FileSystem zipFs = FileSystems.newFileSystem(URI.create("jar:file:" + zipFsPath.toAbsolutePath()),
+                                                                  Map.of("create", "true"))) {
+                    Files.copy(source, zipFs.getPath(checksum));
+                }
+                Assert.assertTrue(packer.append(checksum, source, "MD5", checksum).isPresent());
+                contents.put(checksum, content);
+            }
+        }
+        assertZipContent(zipFsPath, contents);
+        assertZipContent(packerPath, contents);
+    }
+
+    private void assertZipContent(Path zipPath, Map<String, byte[]> contents) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            Assert.assertEquals(contents.size(), zipFile.size());
+            for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                ZipEntry entry = zipFile.getEntry(content.getKey());
+                Assert.assertNotNull(entry);
+                try (InputStream stream = zipFile.getInputStream(entry)) {
+                    Assert.assertArrayEquals(content.getValue(), stream.readAllBytes());
+                }
+            }
+        }
+    }
+
+    private byte[] createContent(boolean compressible) {
+        byte[] content = new byte[500 + random.nextInt(5000)];
+        if (compressible) {
+            Arrays.fill(content, (byte) ('a' + random.nextInt(26)));
+        } else {
+            random.nextBytes(content);
+        }
+        return content;
+    }
+
+    private Path writeSource(byte[] content) throws IOException {
+        return Files.write(Files.createTempFile(WORKSPACE, "source", ".test"), content);
+    }
+
+    private static String md5(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugins.s3.mock;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Distribution of the simulated latency of the requests to the S3 server
+ */
+public enum LatencyDistribution {
+
+    /**
+     * Always the latency
+     */
+    CONSTANT {
+        @Override
+        public long nextDelayInMs(long latencyInMs, long deviationInMs, RandomGenerator random) {
+            return latencyInMs;
+        }
+    },
+
+    /**
+     * Uniformly distributed between latency - deviation and latency + deviation
+     */
+    UNIFORM {
+        @Override
+        public long nextDelayInMs(long latencyInMs, long deviationInMs, RandomGenerator random) {
+            if (deviationInMs <= 0) {
+                return latencyInMs;
+            }
+            return Math.max(0, latencyInMs + random.nextLong(-deviationInMs, deviationInMs + 1));
+        }
+    },
+
+    /**
+     * Normal distribution with the latency as mean and the deviation as standard deviation
+     */
+    NORMAL {
+        @Override
+        public long nextDelayInMs(long latencyInMs, long deviationInMs, RandomGenerator random) {
+            return Math.max(0, Math.round(random.nextGaussian(latencyInMs, deviationInMs)));
+        }
+    },
+
+    /**
+     * Latency as minimum, plus an exponential tail whose mean is the deviation. This is the closest to the latencies
+     * measured on a real server : most requests are fast, a few are much slower.
+     */
+    EXPONENTIAL {
+        @Override
+        public long nextDelayInMs(long latencyInMs, long deviationInMs, RandomGenerator random) {
+            if (deviationInMs <= 0) {
+                return latencyInMs;
+            }
+            return latencyInMs + Math.round(random.nextExponential() * deviationInMs);
+        }
+    };
+
+    /**
+     * @return the next simulated delay in milliseconds, never negative
+     */
+    public abstract long nextDelayInMs(long latencyInMs, long deviationInMs, RandomGenerator random);
+}
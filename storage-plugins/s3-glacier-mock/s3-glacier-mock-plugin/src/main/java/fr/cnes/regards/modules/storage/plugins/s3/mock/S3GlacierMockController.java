@@ -22,6 +22,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -40,6 +42,8 @@ public class S3GlacierMockController {
 
     public static final String SET_EXPIRED_ENDPOINT = "/file/{namePattern}/setExpired";
 
+    public static final String SIMULATION_ENDPOINT = "/simulation";
+
     private final S3MockService s3MockService;
 
     public S3GlacierMockController(S3MockService s3MockService) {
@@ -64,4 +68,15 @@ public class S3GlacierMockController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    @GetMapping(path = SIMULATION_ENDPOINT)
+    public ResponseEntity<S3MockSimulationSettings> getSimulation() {
+        return new ResponseEntity<>(s3MockService.getSimulationSettings(), HttpStatus.OK);
+    }
+
+    @PutMapping(path = SIMULATION_ENDPOINT)
+    public ResponseEntity<Void> setSimulation(@RequestBody S3MockSimulationSettings settings) {
+        s3MockService.setSimulationSettings(settings);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
 }
@@ -39,7 +39,7 @@ public class S3GlacierPluginMock extends S3Glacier {
         throws NearlineFileNotAvailableException, NearlineDownloadException {
         LOGGER.info("[S3-GLACIER-MOCK-PLUGIN] ask download of file {}", fileReference.getLocation().getUrl());
         s3MockService.throwIfCannotDownload(fileReference);
-        return super.download(fileReference);
+        return s3MockService.throttle(super.download(fileReference));
     }
 
     @Override
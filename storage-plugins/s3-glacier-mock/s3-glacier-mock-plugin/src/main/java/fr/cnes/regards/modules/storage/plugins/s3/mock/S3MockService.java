@@ -35,10 +35,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import java.io.InputStream;
 import java.time.OffsetDateTime;
-import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -55,23 +56,26 @@ public class S3MockService {
 
     private final ICacheFileRepository cacheFileRepository;
 
-    private final Set<String> T3FileChecksums = new HashSet<>();
+    private final S3MockSimulator simulator;
 
-    private final Set<String> restoredFileChecksums = new HashSet<>();
+    private final Set<String> T3FileChecksums = ConcurrentHashMap.newKeySet();
 
     public S3MockService(FileReferenceService fileRefService,
                          CacheService cacheService,
-                         ICacheFileRepository cacheFileRepository) {
+                         ICacheFileRepository cacheFileRepository,
+                         S3MockSimulator simulator) {
         this.fileRefService = fileRefService;
         this.cacheService = cacheService;
         this.cacheFileRepository = cacheFileRepository;
+        this.simulator = simulator;
     }
 
     public void throwIfCannotDownload(FileReferenceWithoutOwnersDto fileReference)
         throws NearlineFileNotAvailableException {
         String checksum = fileReference.getMetaInfo().getChecksum();
+        awaitSimulatedRequest();
         if (T3FileChecksums.contains(checksum)) {
-            if (!restoredFileChecksums.contains(checksum)) {
+            if (!simulator.isRestored(checksum)) {
                 LOGGER.info("[S3-MOCK] Try to download {} which is stored in T3 and is not restored",
                             fileReference.getMetaInfo().getFileName());
                 throw new NearlineFileNotAvailableException("T3 file not downloadable");
@@ -87,8 +91,9 @@ public class S3MockService {
 
     public Optional<NearlineFileStatusDto> checkAvailability(FileReferenceWithoutOwnersDto fileReference) {
         String checksum = fileReference.getMetaInfo().getChecksum();
+        awaitSimulatedRequest();
         if (T3FileChecksums.contains(checksum)) {
-            if (!restoredFileChecksums.contains(checksum)) {
+            if (!simulator.isRestored(checksum)) {
                 // file on T3 not restored
                 return Optional.of(new NearlineFileStatusDto(fileReference.getChecksum(),
                                                              NearlineFileStatusDtoStatus.UNAVAILABLE,
@@ -113,13 +118,14 @@ public class S3MockService {
     public void restoreWithFileName(String fileNamePattern) {
         LOGGER.info("[S3-MOCK] pass from T3 to T2 files with name pattern {}", fileNamePattern);
         Set<String> checksums = getChecksumOfFilesWithName(fileNamePattern);
-        restoredFileChecksums.addAll(checksums);
+        // Files are available once the simulated restoration delay is elapsed
+        checksums.forEach(simulator::requestRestoration);
     }
 
     public void setExpiredDateToFileWithName(String fileNamePattern) {
         LOGGER.info("[S3-MOCK] set expired date to files with name pattern {}", fileNamePattern);
         Set<String> checksums = getChecksumOfFilesWithName(fileNamePattern);
-        restoredFileChecksums.removeAll(checksums);
+        checksums.forEach(simulator::expireRestoration);
         Set<CacheFile> cacheFiles = cacheService.getCacheFiles(checksums);
         for (CacheFile cacheFile : cacheFiles) {
             cacheFile.setExpirationDate(OffsetDateTime.now().minusHours(1));
@@ -127,6 +133,33 @@ public class S3MockService {
         cacheFileRepository.saveAll(cacheFiles);
     }
 
+    /**
+     * @return the given download stream read at the simulated bandwidth
+     */
+    public InputStream throttle(InputStream stream) {
+        return simulator.throttle(stream);
+    }
+
+    public S3MockSimulationSettings getSimulationSettings() {
+        return simulator.getSettings();
+    }
+
+    public void setSimulationSettings(S3MockSimulationSettings settings) {
+        LOGGER.info("[S3-MOCK] simulate S3 server with {}", settings);
+        simulator.setSettings(settings);
+    }
+
+    /**
+     * Wait for the simulated latency of a request to the S3 server
+     */
+    private void awaitSimulatedRequest() {
+        try {
+            simulator.await(0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private Set<String> getChecksumOfFilesWithName(String fileNamePattern) {
         Specification<FileReference> spec = FileReferenceSpecification.search(fileNamePattern,
                                                                               null,
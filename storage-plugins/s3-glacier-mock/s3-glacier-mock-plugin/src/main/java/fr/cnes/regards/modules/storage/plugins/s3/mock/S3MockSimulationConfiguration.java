@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugins.s3.mock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the performances of the simulated S3 server. By default, the server has no latency nor limit
+ * and the restorations are immediate, the settings can be changed at runtime with
+ * {@link S3GlacierMockController#SIMULATION_ENDPOINT}.
+ */
+@Configuration
+public class S3MockSimulationConfiguration {
+
+    @Bean
+    public S3MockSimulator s3MockSimulator(@Value("${regards.s3.mock.latency.distribution:CONSTANT}")
+                                           LatencyDistribution latencyDistribution,
+                                           @Value("${regards.s3.mock.latency.ms:0}") long latencyInMs,
+                                           @Value("${regards.s3.mock.latency.deviation.ms:0}")
+                                           long latencyDeviationInMs,
+                                           @Value("${regards.s3.mock.bandwidth.bytes.per.second:0}")
+                                           long bandwidthInBytesPerSecond,
+                                           @Value("${regards.s3.mock.restore.delay.seconds:0}") long restoreDelayInS,
+                                           @Value("${regards.s3.mock.max.concurrent.requests:0}")
+                                           int maxConcurrentRequests) {
+        return new S3MockSimulator(new S3MockSimulationSettings(latencyDistribution,
+                                                                latencyInMs,
+                                                                latencyDeviationInMs,
+                                                                bandwidthInBytesPerSecond,
+                                                                restoreDelayInS,
+                                                                maxConcurrentRequests));
+    }
+}
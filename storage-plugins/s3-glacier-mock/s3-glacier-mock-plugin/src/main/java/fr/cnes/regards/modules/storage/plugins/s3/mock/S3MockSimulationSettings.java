@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugins.s3.mock;
+
+/**
+ * Performances of the S3 server simulated by the {@link S3MockSimulator}
+ *
+ * @param latencyDistribution       distribution of the latency of each request
+ * @param latencyInMs               latency of each request in milliseconds, see {@link LatencyDistribution}
+ * @param latencyDeviationInMs      deviation of the latency in milliseconds, see {@link LatencyDistribution}
+ * @param bandwidthInBytesPerSecond bandwidth shared by all the transfers, 0 for no limit
+ * @param restoreDelayInS           delay in seconds between a restoration request and the availability of the file
+ * @param maxConcurrentRequests     number of requests handled at the same time by the server, the other ones wait
+ *                                  for a free slot, 0 for no limit
+ */
+public record S3MockSimulationSettings(LatencyDistribution latencyDistribution,
+                                       long latencyInMs,
+                                       long latencyDeviationInMs,
+                                       long bandwidthInBytesPerSecond,
+                                       long restoreDelayInS,
+                                       int maxConcurrentRequests) {
+
+    /**
+     * Settings of a server without any latency nor limit
+     */
+    public static final S3MockSimulationSettings NONE = new S3MockSimulationSettings(LatencyDistribution.CONSTANT,
+                                                                                     0,
+                                                                                     0,
+                                                                                     0,
+                                                                                     0,
+                                                                                     0);
+
+    public S3MockSimulationSettings {
+        if (latencyDistribution == null) {
+            latencyDistribution = LatencyDistribution.CONSTANT;
+        }
+        if (latencyInMs < 0
+            || latencyDeviationInMs < 0
+            || bandwidthInBytesPerSecond < 0
+            || restoreDelayInS < 0
+            || maxConcurrentRequests < 0) {
+            throw new IllegalArgumentException("Simulation settings cannot be negative");
+        }
+    }
+}
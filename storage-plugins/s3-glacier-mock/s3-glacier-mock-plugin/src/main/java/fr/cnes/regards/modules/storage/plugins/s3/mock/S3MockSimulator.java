@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugins.s3.mock;
+
+import reactor.core.publisher.Mono;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Simulator of the performances of a S3 server : latency of the requests, bandwidth, restoration delay and number of
+ * requests handled at the same time, as defined by {@link S3MockSimulationSettings}.
+ * <p>
+ * The simulator does not hold any thread : each request reserves its time on the simulated server, that is a free
+ * slot among the concurrent ones, then its latency and its transfer on the shared bandwidth, and is given the delay to
+ * wait before its response. The reactive requests wait with {@link Mono#delay(Duration)}, the blocking ones sleep.
+ * The restorations are available once their delay is elapsed, without any task to complete them.
+ */
+public class S3MockSimulator {
+
+    private volatile S3MockSimulationSettings settings;
+
+    /**
+     * Dates in nanoseconds at which the busy slots of concurrent requests are free, guarded by this
+     */
+    private final PriorityQueue<Long> busySlots = new PriorityQueue<>();
+
+    /**
+     * Date in nanoseconds at which the bandwidth is free, guarded by this
+     */
+    private long bandwidthFreeAt = System.nanoTime();
+
+    /**
+     * Date at which each restored file is available, by file key
+     */
+    private final Map<String, Instant> restorations = new ConcurrentHashMap<>();
+
+    public S3MockSimulator(S3MockSimulationSettings settings) {
+        this.settings = settings;
+    }
+
+    public S3MockSimulationSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Change the simulated performances, the requests already handled keep their delay
+     */
+    public synchronized void setSettings(S3MockSimulationSettings settings) {
+        this.settings = settings;
+        busySlots.clear();
+        bandwidthFreeAt = System.nanoTime();
+    }
+
+    /**
+     * Reserve the time of a request transferring the given number of bytes on the simulated server
+     *
+     * @return the delay before the response of the request
+     */
+    public synchronized Duration reserveRequest(long transferredBytes) {
+        S3MockSimulationSettings currentSettings = settings;
+        long now = System.nanoTime();
+        long start = now;
+        if (currentSettings.maxConcurrentRequests() > 0
+            && busySlots.size() >= currentSettings.maxConcurrentRequests()) {
+            // Wait for the first slot to be free
+            start = Math.max(now, busySlots.poll());
+        }
+        long end = start + TimeUnit.MILLISECONDS.toNanos(currentSettings.latencyDistribution()
+                                                                         .nextDelayInMs(currentSettings.latencyInMs(),
+                                                                                        currentSettings.latencyDeviationInMs(),
+                                                                                        ThreadLocalRandom.current()));
+        end = reserveTransfer(end, transferredBytes, currentSettings);
+        if (currentSettings.maxConcurrentRequests() > 0) {
+            busySlots.add(end);
+        }
+        return Duration.ofNanos(end - now);
+    }
+
+    /**
+     * Reserve the transfer of the given number of bytes of an already started request, on the shared bandwidth
+     *
+     * @return the delay before the end of the transfer
+     */
+    public synchronized Duration reserveTransfer(long transferredBytes) {
+        long now = System.nanoTime();
+        return Duration.ofNanos(reserveTransfer(now, transferredBytes, settings) - now);
+    }
+
+    private long reserveTransfer(long start, long transferredBytes, S3MockSimulationSettings currentSettings) {
+        if (currentSettings.bandwidthInBytesPerSecond() <= 0 || transferredBytes <= 0) {
+            return start;
+        }
+        long transferStart = Math.max(start, bandwidthFreeAt);
+        bandwidthFreeAt = transferStart
+                          + transferredBytes * TimeUnit.SECONDS.toNanos(1)
+                            / currentSettings.bandwidthInBytesPerSecond();
+        return bandwidthFreeAt;
+    }
+
+    /**
+     * Delay the given response by the simulated time of the request, without blocking any thread. The time is
+     * reserved at subscription.
+     */
+    public <T> Mono<T> simulate(long transferredBytes, Supplier<Mono<T>> response) {
+        return Mono.defer(() -> Mono.delay(reserveRequest(transferredBytes)).then(Mono.defer(response)));
+    }
+
+    /**
+     * Wait for the simulated time of a request, for the blocking calls
+     */
+    public void await(long transferredBytes) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(reserveRequest(transferredBytes).toNanos());
+    }
+
+    /**
+     * @return the given stream read at the simulated bandwidth
+     */
+    public InputStream throttle(InputStream stream) {
+        return new FilterInputStream(stream) {
+
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read >= 0) {
+                    waitTransfer(1);
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    waitTransfer(read);
+                }
+                return read;
+            }
+
+            private void waitTransfer(long transferredBytes) throws InterruptedIOException {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(reserveTransfer(transferredBytes).toNanos());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Simulated transfer interrupted");
+                }
+            }
+        };
+    }
+
+    /**
+     * Request the restoration of the given file, a restoration already requested is not delayed
+     *
+     * @return the date at which the file is available
+     */
+    public Instant requestRestoration(String key) {
+        return restorations.computeIfAbsent(key,
+                                            k -> Instant.now().plusSeconds(settings.restoreDelayInS()));
+    }
+
+    public boolean isRestorationRequested(String key) {
+        return restorations.containsKey(key);
+    }
+
+    /**
+     * @return true if the restoration of the given file was requested and its delay is elapsed
+     */
+    public boolean isRestored(String key) {
+        Instant availableDate = restorations.get(key);
+        return availableDate != null && !availableDate.isAfter(Instant.now());
+    }
+
+    /**
+     * Forget the restoration of the given file, as if it expired
+     */
+    public void expireRestoration(String key) {
+        restorations.remove(key);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugins.s3.mock;
+
+import fr.cnes.regards.framework.s3.client.S3HighLevelReactiveClient;
+import fr.cnes.regards.framework.s3.domain.GlacierFileStatus;
+import fr.cnes.regards.framework.s3.domain.RestorationStatus;
+import fr.cnes.regards.framework.s3.domain.StorageCommand;
+import fr.cnes.regards.framework.s3.domain.StorageCommandResult;
+import fr.cnes.regards.framework.s3.dto.StorageConfigDto;
+import jakarta.annotation.Nullable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.RestoreObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * S3 client storing the files in memory, with the performances of a Glacier server simulated by a
+ * {@link S3MockSimulator}. Files stored are restorable : they are available once restored and the restoration delay
+ * is elapsed. The responses are delayed without blocking any thread, as a real server would do.
+ * <p>
+ * Only the requests used by the S3 Glacier plugin to store, restore and delete files are simulated, the other ones
+ * are sent to the server of the parent client.
+ */
+public class SimulatedS3Client extends S3HighLevelReactiveClient {
+
+    /**
+     * Expiration of the restored files, as returned to the availability requests
+     */
+    private static final long RESTORATION_LIFETIME_IN_HOURS = 24;
+
+    private final S3MockSimulator simulator;
+
+    /**
+     * Content of the stored files by key
+     */
+    private final Map<String, byte[]> storedFiles = new ConcurrentHashMap<>();
+
+    public SimulatedS3Client(Scheduler scheduler, S3MockSimulator simulator) {
+        super(scheduler, 10 * 1024 * 1024, 10);
+        this.simulator = simulator;
+    }
+
+    @Override
+    public Mono<StorageCommandResult.WriteResult> write(StorageCommand.Write cmd) {
+        return cmd.getEntry().getData().reduce(new ByteArrayOutputStream(), (content, buffer) -> {
+            ByteBuffer readBuffer = buffer.duplicate();
+            byte[] bytes = new byte[readBuffer.remaining()];
+            readBuffer.get(bytes);
+            content.writeBytes(bytes);
+            return content;
+        }).flatMap(content -> simulator.simulate(content.size(), () -> {
+            byte[] bytes = content.toByteArray();
+            storedFiles.put(cmd.getEntryKey(), bytes);
+            // A new version of the file has to be restored again
+            simulator.expireRestoration(cmd.getEntryKey());
+            return Mono.<StorageCommandResult.WriteResult>just(new StorageCommandResult.WriteSuccess(cmd,
+                                                                                                     bytes.length,
+                                                                                                     md5(bytes)));
+        }));
+    }
+
+    @Override
+    public Mono<StorageCommandResult.DeleteResult> delete(StorageCommand.Delete cmd) {
+        return simulator.simulate(0, () -> {
+            storedFiles.remove(cmd.getEntryKey());
+            simulator.expireRestoration(cmd.getEntryKey());
+            return Mono.<StorageCommandResult.DeleteResult>just(new StorageCommandResult.DeleteSuccess(cmd));
+        });
+    }
+
+    @Override
+    public Mono<RestoreObjectResponse> restore(StorageConfigDto config, String key) {
+        return restore(config, key, null);
+    }
+
+    @Override
+    public Mono<RestoreObjectResponse> restore(StorageConfigDto config, String key, @Nullable Integer days) {
+        return simulator.simulate(0, () -> {
+            if (!storedFiles.containsKey(key)) {
+                return Mono.error(NoSuchKeyException.builder().message("Unknown key " + key).build());
+            }
+            simulator.requestRestoration(key);
+            return Mono.just(RestoreObjectResponse.builder().build());
+        });
+    }
+
+    @Override
+    public Mono<GlacierFileStatus> isFileAvailable(StorageConfigDto config,
+                                                   String key,
+                                                   String standardStorageClassName) {
+        return simulator.simulate(0, () -> {
+            byte[] content = storedFiles.get(key);
+            if (content == null) {
+                return Mono.just(new GlacierFileStatus(RestorationStatus.NOT_AVAILABLE, null, null));
+            }
+            if (simulator.isRestored(key)) {
+                return Mono.just(new GlacierFileStatus(RestorationStatus.AVAILABLE,
+                                                       (long) content.length,
+                                                       ZonedDateTime.now().plusHours(RESTORATION_LIFETIME_IN_HOURS)));
+            }
+            if (simulator.isRestorationRequested(key)) {
+                return Mono.just(new GlacierFileStatus(RestorationStatus.RESTORE_PENDING,
+                                                       (long) content.length,
+                                                       null));
+            }
+            return Mono.just(new GlacierFileStatus(RestorationStatus.NOT_AVAILABLE, (long) content.length, null));
+        });
+    }
+
+    /**
+     * Download a stored file, after the latency of the request and at the simulated bandwidth. The file has to be
+     * restored.
+     *
+     * @return the content of the file, empty if it is not stored or not restored
+     */
+    public Optional<InputStream> download(String key) throws InterruptedException {
+        byte[] content = storedFiles.get(key);
+        if (content == null || !simulator.isRestored(key)) {
+            return Optional.empty();
+        }
+        simulator.await(0);
+        return Optional.of(simulator.throttle(new ByteArrayInputStream(content)));
+    }
+
+    public boolean isStored(String key) {
+        return storedFiles.containsKey(key);
+    }
+
+    public int getStoredFileCount() {
+        return storedFiles.size();
+    }
+
+    private static String md5(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugins.s3.mock;
+
+import fr.cnes.regards.framework.jpa.multitenant.lock.LockService;
+import fr.cnes.regards.framework.jpa.multitenant.lock.LockServiceResponse;
+import fr.cnes.regards.framework.jpa.multitenant.lock.LockServiceTask;
+import fr.cnes.regards.framework.modules.plugins.domain.PluginConfiguration;
+import fr.cnes.regards.framework.modules.plugins.dto.parameter.parameter.IPluginParam;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.s3.S3StorageConfiguration;
+import fr.cnes.regards.framework.s3.domain.S3Server;
+import fr.cnes.regards.framework.utils.plugins.PluginUtils;
+import fr.cnes.regards.framework.utils.plugins.exception.NotAvailablePluginConfigurationException;
+import fr.cnes.regards.modules.fileaccess.dto.*;
+import fr.cnes.regards.modules.fileaccess.dto.request.FileStorageRequestAggregationDto;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.FileDeletionWorkingSubset;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.FileRestorationWorkingSubset;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.FileStorageWorkingSubset;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.IDeletionProgressManager;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.IPeriodicActionProgressManager;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.IRestorationProgressManager;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.IStorageProgressManager;
+import fr.cnes.regards.modules.fileaccess.plugin.dto.FileCacheRequestDto;
+import fr.cnes.regards.modules.fileaccess.plugin.dto.FileDeletionRequestDto;
+import fr.cnes.regards.modules.storage.plugin.s3.S3Glacier;
+import fr.cnes.regards.modules.storage.s3.common.AbstractS3Storage;
+import jakarta.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/**
+ * Load test of the {@link S3Glacier} plugin on a simulated Glacier server :
+ * files are stored, then restored, then deleted. The throughput and the latency percentiles of each scenario are
+ * logged. The latency of a request is the time between the start of the scenario and the report of the request,
+ * all the requests of a scenario being sent together as the storage microservice does.
+ * <p>
+ * The number of files can be changed with -Ds3.mock.load.files=
+ */
+public class S3GlacierLoadIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(S3GlacierLoadIT.class);
+
+    private static final Path WORKSPACE = Paths.get("target", "s3-glacier-load");
+
+    private static final int FILES = Integer.getInteger("s3.mock.load.files", 10_000);
+
+    private static final int FILE_SIZE = 1024;
+
+    private static final int NODES = 10;
+
+    private static final Duration SCENARIO_TIMEOUT = Duration.ofMinutes(10);
+
+    private static final String STORAGE = "storage";
+
+    /**
+     * Performances of a Glacier server : most requests answered in 20 to 50 ms with a long tail, a 50 Mb/s
+     * bandwidth, 50 requests handled at the same time and restorations available after 2 seconds
+     */
+    private static final S3MockSimulationSettings SIMULATION = new S3MockSimulationSettings(LatencyDistribution.EXPONENTIAL,
+                                                                                            20,
+                                                                                            30,
+                                                                                            50L * 1024 * 1024,
+                                                                                            2,
+                                                                                            50);
+
+    private final Random random = new Random(42);
+
+    private SimulatedS3Glacier glacier;
+
+    @Before
+    public void init() throws IOException, InterruptedException, NotAvailablePluginConfigurationException {
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+        Files.createDirectories(WORKSPACE);
+        PluginUtils.setup();
+        Collection<IPluginParam> parameters = IPluginParam.set(IPluginParam.build(AbstractS3Storage.S3_SERVER_ENDPOINT_PARAM_NAME,
+                                                                                  "http://simulated-s3"),
+                                                               IPluginParam.build(AbstractS3Storage.S3_SERVER_REGION_PARAM_NAME,
+                                                                                  "simulated-region"),
+                                                               IPluginParam.build(AbstractS3Storage.S3_SERVER_KEY_PARAM_NAME,
+                                                                                  "key"),
+                                                               IPluginParam.build(AbstractS3Storage.S3_SERVER_SECRET_PARAM_NAME,
+                                                                                  "secret"),
+                                                               IPluginParam.build(AbstractS3Storage.S3_SERVER_BUCKET_PARAM_NAME,
+                                                                                  "bucket"),
+                                                               IPluginParam.build(AbstractS3Storage.S3_SERVER_ROOT_PATH_PARAM_NAME,
+                                                                                  "load"),
+                                                               IPluginParam.build(SMALL_FILES_WORKSPACE_PATH,
+                                                                                  WORKSPACE.resolve("workspace")
+                                                                                           .toAbsolutePath()
+                                                                                           .toString()),
+                                                               IPluginParam.build(SMALL_FILES_MAX_SIZE, 10 * FILE_SIZE),
+                                                               IPluginParam.build(SMALL_FILES_ARCHIVE_MAX_SIZE,
+                                                                                  100 * FILE_SIZE),
+                                                               // Archives are sent at the first periodic action
+                                                               IPluginParam.build(SMALL_FILES_ARCHIVE_DURATION_IN_HOURS,
+                                                                                  0),
+                                                               IPluginParam.build(SMALL_FILES_PARALLEL_STORE_TASK_NUMBER,
+                                                                                  10),
+                                                               IPluginParam.build(SMALL_FILES_PARALLEL_DELETE_AND_RESTORE_TASK_NUMBER,
+                                                                                  20),
+                                                               IPluginParam.build(S3Glacier.GLACIER_S3_ACCESS_TRY_TIMEOUT,
+                                                                                  60));
+        glacier = PluginUtils.getPlugin(PluginConfiguration.build(SimulatedS3Glacier.class,
+                                                                  "Simulated S3 Glacier",
+                                                                  parameters), new ConcurrentHashMap<>());
+        IRuntimeTenantResolver runtimeTenantResolver = Mockito.mock(IRuntimeTenantResolver.class);
+        Mockito.when(runtimeTenantResolver.getTenant()).thenReturn("TENANT");
+        S3StorageConfiguration s3StorageSettings = Mockito.mock(S3StorageConfiguration.class);
+        Mockito.when(s3StorageSettings.getStorages())
+               .thenReturn(List.of(new S3Server("http://simulated-s3", "simulated-region", "key", "secret", "bucket")));
+        ReflectionTestUtils.setField(glacier, "lockService", mockLockService());
+        ReflectionTestUtils.setField(glacier, "runtimeTenantResolver", runtimeTenantResolver);
+        ReflectionTestUtils.setField(glacier, "s3StorageSettings", s3StorageSettings);
+        glacier.simulate(new S3MockSimulator(SIMULATION));
+    }
+
+    @After
+    public void after() throws IOException {
+        glacier.onDestroy();
+        FileUtils.deleteDirectory(WORKSPACE.toFile());
+    }
+
+    @Test
+    public void store_restore_and_delete_files() throws IOException, NoSuchAlgorithmException {
+        List<FileStorageRequestAggregationDto> storageRequests = createStorageRequests();
+
+        // Store the files in the workspace, then send the archives
+        LoadRecorder storeRecorder = new LoadRecorder("Store");
+        Map<String, URL> storedUrls = new ConcurrentHashMap<>();
+        glacier.store(new FileStorageWorkingSubset(storageRequests), new IStorageProgressManager() {
+
+            @Override
+            public void storageSucceed(FileStorageRequestAggregationDto request, URL storedUrl, Long fileSize) {
+                storedUrls.put(request.getMetaInfo().getChecksum(), storedUrl);
+                storeRecorder.succeeded();
+            }
+
+            @Override
+            public void storageSucceedWithPendingActionRemaining(FileStorageRequestAggregationDto request,
+                                                                 URL storedUrl,
+                                                                 Long fileSize,
+                                                                 Boolean notifyAdministrators) {
+                storedUrls.put(request.getMetaInfo().getChecksum(), storedUrl);
+                storeRecorder.succeeded();
+            }
+
+            @Override
+            public void storagePendingActionSucceed(String storedUrl) {
+                // Reported by the periodic action
+            }
+
+            @Override
+            public void storageFailed(FileStorageRequestAggregationDto request, String cause) {
+                storeRecorder.failed(cause);
+            }
+        });
+        storeRecorder.awaitAndReport(FILES);
+
+        LoadRecorder sendRecorder = new LoadRecorder("Send archives");
+        glacier.runPeriodicAction(new IPeriodicActionProgressManager() {
+
+            @Override
+            public void storagePendingActionSucceed(String pendingActionSucceedUrl) {
+                sendRecorder.succeeded();
+            }
+
+            @Override
+            public void allPendingActionSucceed(String storageLocationName) {
+                // Nothing to do
+            }
+
+            @Override
+            public void storagePendingActionError(Path pendingActionErrorPath) {
+                sendRecorder.failed(pendingActionErrorPath.toString());
+            }
+
+            @Override
+            public void archiveStored(String storage, String url, String checksum, Long archiveSize) {
+                // Nothing to do
+            }
+
+            @Override
+            public void archiveDeleted(String storage, String url) {
+                // Nothing to do
+            }
+        });
+        sendRecorder.awaitAndReport(FILES);
+        LOGGER.info("{} archives sent to the simulated server", glacier.getSimulatedClient().getStoredFileCount());
+
+        List<FileReferenceWithoutOwnersDto> references = storageRequests.stream()
+                                                                        .map(request -> createReference(request,
+                                                                                                        storedUrls.get(
+                                                                                                            request.getMetaInfo()
+                                                                                                                   .getChecksum())))
+                                                                        .toList();
+
+        // Restore the archives and extract the files
+        LoadRecorder restoreRecorder = new LoadRecorder("Restore");
+        Path restorationPath = WORKSPACE.resolve("restored").toAbsolutePath();
+        glacier.retrieve(new FileRestorationWorkingSubset(references.stream()
+                                                                    .map(reference -> createCacheRequest(reference,
+                                                                                                         restorationPath))
+                                                                    .toList()), new IRestorationProgressManager() {
+
+            @Override
+            public void restoreSucceededInternalCache(FileCacheRequestDto request, Path restoredFilePath) {
+                restoreRecorder.succeeded();
+            }
+
+            @Override
+            public void restoreSucceededExternalCache(FileCacheRequestDto request,
+                                                      URL restoredFileUrl,
+                                                      @Nullable Long fileSize,
+                                                      OffsetDateTime expirationDate) {
+                restoreRecorder.succeeded();
+            }
+
+            @Override
+            public void restoreFailed(FileCacheRequestDto request, String cause) {
+                restoreRecorder.failed(cause);
+            }
+        });
+        restoreRecorder.awaitAndReport(FILES);
+
+        // Delete the files, the archives are rebuilt without them then deleted
+        LoadRecorder deleteRecorder = new LoadRecorder("Delete");
+        glacier.delete(new FileDeletionWorkingSubset(references.stream().map(this::createDeletionRequest).toList()),
+                       new IDeletionProgressManager() {
+
+                           @Override
+                           public void deletionSucceed(FileDeletionRequestDto request) {
+                               deleteRecorder.succeeded();
+                           }
+
+                           @Override
+                           public void deletionSucceedWithPendingAction(FileDeletionRequestDto request) {
+                               deleteRecorder.succeeded();
+                           }
+
+                           @Override
+                           public void deletionFailed(FileDeletionRequestDto request, String cause) {
+                               deleteRecorder.failed(cause);
+                           }
+                       });
+        deleteRecorder.awaitAndReport(FILES);
+        Assert.assertEquals("All the archives should be deleted",
+                            0,
+                            glacier.getSimulatedClient().getStoredFileCount());
+    }
+
+    private List<FileStorageRequestAggregationDto> createStorageRequests()
+        throws IOException, NoSuchAlgorithmException {
+        Path sourcePath = Files.createDirectories(WORKSPACE.resolve("source"));
+        List<FileStorageRequestAggregationDto> requests = new ArrayList<>(FILES);
+        byte[] content = new byte[FILE_SIZE];
+        for (int i = 0; i < FILES; i++) {
+            random.nextBytes(content);
+            String fileName = "file_" + i + ".dat";
+            Path file = Files.write(sourcePath.resolve(fileName), content);
+            String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+            requests.add(new FileStorageRequestAggregationDto(random.nextLong(),
+                                                              null,
+                                                              file.toAbsolutePath().toUri().toString(),
+                                                              STORAGE,
+                                                              new FileReferenceMetaInfoDto(checksum,
+                                                                                           MD5_CHECKSUM,
+                                                                                           fileName,
+                                                                                           (long) FILE_SIZE,
+                                                                                           null,
+                                                                                           null,
+                                                                                           "application/octet-stream",
+                                                                                           null),
+                                                              "node" + i % NODES,
+                                                              "sessionOwner",
+                                                              "session",
+                                                              "jobId",
+                                                              null,
+                                                              null,
+                                                              null));
+        }
+        return requests;
+    }
+
+    private FileReferenceWithoutOwnersDto createReference(FileStorageRequestAggregationDto request, URL storedUrl) {
+        Assert.assertNotNull("Each file should have been stored", storedUrl);
+        return new FileReferenceWithoutOwnersDto(random.nextLong(),
+                                                 null,
+                                                 request.getMetaInfo(),
+                                                 new FileLocationDto(STORAGE,
+                                                                     storedUrl.toString(),
+                                                                     FileArchiveStatus.STORED),
+                                                 false,
+                                                 false);
+    }
+
+    private FileCacheRequestDto createCacheRequest(FileReferenceWithoutOwnersDto reference, Path restorationPath) {
+        return new FileCacheRequestDto(random.nextLong(),
+                                       Set.of("load-group"),
+                                       reference,
+                                       reference.getMetaInfo().getChecksum(),
+                                       STORAGE,
+                                       reference.getMetaInfo().getFileSize(),
+                                       restorationPath.toString(),
+                                       24,
+                                       FileRequestStatus.TO_DO,
+                                       null,
+                                       null,
+                                       "jobId");
+    }
+
+    private FileDeletionRequestDto createDeletionRequest(FileReferenceWithoutOwnersDto reference) {
+        return new FileDeletionRequestDto(random.nextLong(),
+                                          "load-group",
+                                          FileRequestStatus.TO_DO,
+                                          STORAGE,
+                                          reference,
+                                          false,
+                                          null,
+                                          null,
+                                          null,
+                                          "sessionOwner",
+                                          "session");
+    }
+
+    private static LockService mockLockService() throws InterruptedException {
+        LockService lockService = Mockito.mock(LockService.class);
+        Mockito.doAnswer(invocation -> {
+            LockServiceTask<?> task = invocation.getArgument(1);
+            return new LockServiceResponse<>(true, task.run());
+        }).when(lockService).runWithLock(any(), any());
+        Mockito.doAnswer(invocation -> {
+            LockServiceTask<?> task = invocation.getArgument(1);
+            return new LockServiceResponse<>(true, task.run());
+        }).when(lockService).tryRunWithLock(any(), any(), anyInt(), any());
+        Mockito.doAnswer(invocation -> 60).when(lockService).getTimeToLiveInSeconds();
+        return lockService;
+    }
+
+    /**
+     * Recorder of the reports of the requests of a scenario
+     */
+    private static class LoadRecorder {
+
+        private final String scenario;
+
+        private final long start = System.nanoTime();
+
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private LoadRecorder(String scenario) {
+            this.scenario = scenario;
+        }
+
+        private void succeeded() {
+            latencies.add(System.nanoTime() - start);
+        }
+
+        private void failed(String cause) {
+            LOGGER.error("[{}] Request failed : {}", scenario, cause);
+            failures.incrementAndGet();
+        }
+
+        /**
+         * Wait for the reports of all the requests, then log the throughput and the latency percentiles
+         */
+        private void awaitAndReport(int requests) {
+            Awaitility.await()
+                      .atMost(SCENARIO_TIMEOUT)
+                      .until(() -> latencies.size() + failures.get() >= requests);
+            long duration = System.nanoTime() - start;
+            List<Long> sortedLatencies = latencies.stream().sorted().toList();
+            LOGGER.info("[{}] {} requests in {} ms : {} requests/s, latency p50 {} ms, p90 {} ms, p99 {} ms, max {} ms",
+                        scenario,
+                        requests,
+                        duration / 1_000_000,
+                        requests * 1_000_000_000L / Math.max(1, duration),
+                        percentile(sortedLatencies, 50),
+                        percentile(sortedLatencies, 90),
+                        percentile(sortedLatencies, 99),
+                        percentile(sortedLatencies, 100));
+            Assert.assertEquals(String.format("[%s] No request should fail", scenario), 0, failures.get());
+        }
+
+        private static long percentile(List<Long> sortedLatencies, int percentile) {
+            if (sortedLatencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.size()) - 1;
+            return sortedLatencies.get(Math.max(0, index)) / 1_000_000;
+        }
+    }
+}
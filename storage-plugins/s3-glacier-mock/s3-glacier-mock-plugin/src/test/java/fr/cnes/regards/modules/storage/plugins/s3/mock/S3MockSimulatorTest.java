@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugins.s3.mock;
+
+import org.junit.Assert;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Test {@link S3MockSimulator}
+ */
+public class S3MockSimulatorTest {
+
+    @Test
+    public void requests_wait_for_a_free_slot() {
+        S3MockSimulator simulator = new S3MockSimulator(new S3MockSimulationSettings(LatencyDistribution.CONSTANT,
+                                                                                     100,
+                                                                                     0,
+                                                                                     0,
+                                                                                     0,
+                                                                                     2));
+        // Two requests handled at the same time, the next ones wait for the previous ones
+        assertAround(100, simulator.reserveRequest(0));
+        assertAround(100, simulator.reserveRequest(0));
+        assertAround(200, simulator.reserveRequest(0));
+        assertAround(200, simulator.reserveRequest(0));
+        assertAround(300, simulator.reserveRequest(0));
+    }
+
+    @Test
+    public void transfers_share_the_bandwidth() {
+        S3MockSimulator simulator = new S3MockSimulator(new S3MockSimulationSettings(LatencyDistribution.CONSTANT,
+                                                                                     0,
+                                                                                     0,
+                                                                                     1000,
+                                                                                     0,
+                                                                                     0));
+        assertAround(500, simulator.reserveRequest(500));
+        assertAround(1000, simulator.reserveRequest(500));
+        assertAround(1100, simulator.reserveTransfer(100));
+    }
+
+    @Test
+    public void response_delayed_at_subscription() {
+        S3MockSimulator simulator = new S3MockSimulator(new S3MockSimulationSettings(LatencyDistribution.CONSTANT,
+                                                                                     200,
+                                                                                     0,
+                                                                                     0,
+                                                                                     0,
+                                                                                     0));
+        Mono<String> response = simulator.simulate(0, () -> Mono.just("response"));
+        // Time is reserved at subscription
+        long start = System.nanoTime();
+        Assert.assertEquals("response", response.block());
+        Assert.assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 190);
+    }
+
+    @Test
+    public void file_restored_after_delay() throws InterruptedException {
+        S3MockSimulator simulator = new S3MockSimulator(new S3MockSimulationSettings(LatencyDistribution.CONSTANT,
+                                                                                     0,
+                                                                                     0,
+                                                                                     0,
+                                                                                     1,
+                                                                                     0));
+        Assert.assertFalse(simulator.isRestorationRequested("file"));
+        simulator.requestRestoration("file");
+        Assert.assertTrue(simulator.isRestorationRequested("file"));
+        Assert.assertFalse(simulator.isRestored("file"));
+        Thread.sleep(1100);
+        Assert.assertTrue(simulator.isRestored("file"));
+        simulator.expireRestoration("file");
+        Assert.assertFalse(simulator.isRestored("file"));
+    }
+
+    @Test
+    public void latencies_follow_their_distribution() {
+        Random random = new Random(42);
+        Assert.assertEquals(20, LatencyDistribution.CONSTANT.nextDelayInMs(20, 30, random));
+        long sum = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long delay = LatencyDistribution.UNIFORM.nextDelayInMs(20, 10, random);
+            Assert.assertTrue(delay >= 10 && delay <= 30);
+            sum += LatencyDistribution.EXPONENTIAL.nextDelayInMs(20, 30, random);
+        }
+        // Exponential tail of mean 30 ms after the 20 ms latency
+        Assert.assertEquals(50, sum / 10_000, 3);
+    }
+
+    private static void assertAround(long expectedMs, Duration delay) {
+        Assert.assertEquals(expectedMs, delay.toMillis(), 20);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugins.s3.mock;
+
+import fr.cnes.regards.framework.modules.plugins.annotations.Plugin;
+import fr.cnes.regards.framework.s3.client.S3HighLevelReactiveClient;
+import fr.cnes.regards.modules.storage.plugin.s3.S3Glacier;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.AbstractSmallFileFacade;
+import jakarta.annotation.Nullable;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * {@link S3Glacier} plugin storing its files on a {@link SimulatedS3Client}, to run it without any S3 server
+ */
+@Plugin(author = "REGARDS Team",
+        description = "Plugin storing on a simulated S3 Glacier server for load tests",
+        id = "SimulatedS3Glacier",
+        version = "1.0",
+        contact = "regards@c-s.fr",
+        license = "GPLv3",
+        owner = "CNES",
+        url = "https://regardsoss.github.io/")
+public class SimulatedS3Glacier extends S3Glacier {
+
+    private SimulatedS3Client simulatedClient;
+
+    public synchronized void simulate(S3MockSimulator simulator) {
+        simulatedClient = new SimulatedS3Client(Schedulers.newParallel("simulated-s3-client", 10), simulator);
+    }
+
+    public SimulatedS3Client getSimulatedClient() {
+        return simulatedClient;
+    }
+
+    @Override
+    protected S3HighLevelReactiveClient createS3Client() {
+        return simulatedClient;
+    }
+
+    @Override
+    public AbstractSmallFileFacade getSmallFilesFacade(S3HighLevelReactiveClient client) {
+        return new S3SmallFilesFacade(client) {
+
+            @Override
+            public boolean downloadFile(Path targetFilePath, String key, @Nullable String taskId) {
+                try {
+                    Optional<InputStream> content = simulatedClient.download(key);
+                    if (content.isEmpty()) {
+                        return false;
+                    }
+                    Files.createDirectories(targetFilePath.getParent());
+                    try (InputStream stream = content.get()) {
+                        Files.copy(stream, targetFilePath, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    return true;
+                } catch (IOException e) {
+                    return false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+
+            @Override
+            public boolean existsStorageUrl(Path path) {
+                return simulatedClient.isStored(path.toString());
+            }
+        };
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.plugin.s3;
+
+import fr.cnes.regards.framework.s3.domain.GlacierFileStatus;
+import fr.cnes.regards.framework.s3.domain.RestorationStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of the availability status of the files stored on the glacier, by entry key.
+ * <p>
+ * An available file is cached until its restoration expires, or during the given available duration if the
+ * expiration date is unknown. Other statuses change as soon as a restoration is requested or completed, so they are
+ * only cached during the given unavailable duration, to answer the repeated checks of the same files.
+ */
+public class GlacierFileStatusCache {
+
+    private final Duration availableTimeToLive;
+
+    private final Duration unavailableTimeToLive;
+
+    private final int maxEntries;
+
+    private final ConcurrentMap<String, CachedStatus> statuses = new ConcurrentHashMap<>();
+
+    public GlacierFileStatusCache(Duration availableTimeToLive, Duration unavailableTimeToLive, int maxEntries) {
+        this.availableTimeToLive = availableTimeToLive;
+        this.unavailableTimeToLive = unavailableTimeToLive;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the cached status of the given key, if not expired
+     */
+    public Optional<GlacierFileStatus> get(String key) {
+        CachedStatus cachedStatus = statuses.get(key);
+        if (cachedStatus == null) {
+            return Optional.empty();
+        }
+        if (cachedStatus.expirationDate().isBefore(Instant.now())) {
+            statuses.remove(key, cachedStatus);
+            return Optional.empty();
+        }
+        return Optional.of(cachedStatus.status());
+    }
+
+    public void put(String key, GlacierFileStatus status) {
+        Instant now = Instant.now();
+        Instant expirationDate;
+        if (status.getStatus() == RestorationStatus.AVAILABLE) {
+            expirationDate = now.plus(availableTimeToLive);
+            if (status.getExpirationDate() != null && status.getExpirationDate().toInstant().isBefore(expirationDate)) {
+                expirationDate = status.getExpirationDate().toInstant();
+            }
+        } else {
+            expirationDate = now.plus(unavailableTimeToLive);
+        }
+        if (!expirationDate.isAfter(now)) {
+            statuses.remove(key);
+            return;
+        }
+        if (statuses.size() >= maxEntries) {
+            evictExpired(now);
+            if (statuses.size() >= maxEntries) {
+                // Cache still full, start again from scratch rather than tracking the usage of each entry
+                statuses.clear();
+            }
+        }
+        statuses.put(key, new CachedStatus(status, expirationDate));
+    }
+
+    /**
+     * Remove the cached status of the given key, when the status of the file is about to change
+     */
+    public void invalidate(String key) {
+        statuses.remove(key);
+    }
+
+    public int size() {
+        return statuses.size();
+    }
+
+    private void evictExpired(Instant now) {
+        statuses.values().removeIf(cachedStatus -> cachedStatus.expirationDate().isBefore(now));
+    }
+
+    private record CachedStatus(GlacierFileStatus status,
+                                Instant expirationDate) {
+
+    }
+}
@@ -43,17 +43,23 @@ import fr.cnes.regards.modules.fileaccess.plugin.dto.FileDeletionRequestDto;
 import fr.cnes.regards.modules.storage.plugin.s3.dto.S3GlacierStorageConfigurationDto;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.AbstractSmallFileFacade;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.ISmallFilesStorage;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.SmallFilesExecutors;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.DeleteSmallFileTaskConfiguration;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.PeriodicActionSmallFileTaskConfiguration;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.RetrieveSmallFileTaskConfiguration;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.configuration.StoreSmallFileTaskConfiguration;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.ArchiveCacheAccessIndex;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.DirectoryOccupancyLedger;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.RestorationTracker;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.RestoreResponse;
 import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.SmallFilesUtils;
+import fr.cnes.regards.modules.storage.plugin.smallfiles.utils.StoredArchive;
 import fr.cnes.regards.modules.storage.s3.common.AbstractS3Storage;
+import fr.cnes.regards.modules.storage.s3.common.S3MultipartUploadOutputStream;
+import fr.cnes.regards.modules.storage.s3.common.S3RangedDownloader;
 import io.vavr.Tuple;
 import io.vavr.control.Option;
 import jakarta.annotation.Nullable;
-import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -65,6 +71,7 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.scheduling.support.PeriodicTrigger;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 
 import java.io.File;
 import java.io.IOException;
@@ -75,6 +82,10 @@ import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
@@ -104,6 +115,18 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
 
     public static final String GLACIER_PARALLEL_AVAILABILITY_TASK_NUMBER = "Glacier_Parallel_Availability_Number";
 
+    public static final String DOWNLOAD_WITH_RANGES_PART_SIZE_IN_MB_PARAM_NAME = "Download_With_Ranges_Part_Size_In_Mb";
+
+    public static final String DOWNLOAD_WITH_RANGES_PARALLEL_PARAM_NAME = "Download_With_Ranges_Parallel_Part_Number";
+
+    public static final String GLACIER_STREAMED_ARCHIVE_UPLOAD = "Glacier_Streamed_Archive_Upload";
+
+    public static final String GLACIER_ARCHIVE_COMPRESSION_THREAD_NUMBER = "Glacier_Archive_Compression_Thread_Number";
+
+    public static final String GLACIER_ARCHIVE_CACHE_MAX_SIZE_IN_MB = "Glacier_Archive_Cache_Max_Size_In_Mb";
+
+    public static final String ARCHIVE_CACHE_INDEX_FILE_NAME = "archive-cache-index";
+
     public static final String ZIP_DIR = "zip";
 
     public static final String TMP_DIR = "tmp";
@@ -199,6 +222,47 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
                      defaultValue = "false")
     private boolean useExternalCache;
 
+    @PluginParameter(name = DOWNLOAD_WITH_RANGES_PART_SIZE_IN_MB_PARAM_NAME,
+                     description = "Ranged download : Size in Mb of each part downloaded in parallel when a file is "
+                                   + "downloaded from the server to the local cache",
+                     label = "Ranged download : Size of a part in Mb",
+                     optional = true,
+                     defaultValue = "16")
+    private int downloadPartSizeMb = 16;
+
+    @PluginParameter(name = DOWNLOAD_WITH_RANGES_PARALLEL_PARAM_NAME,
+                     description = "Ranged download : Number of parts of a file downloaded in parallel",
+                     label = "Ranged download : Number of parts downloaded in parallel",
+                     optional = true,
+                     defaultValue = "4")
+    private int nbParallelPartsDownload = 4;
+
+    @PluginParameter(name = GLACIER_STREAMED_ARCHIVE_UPLOAD,
+                     description = "If enabled, the small files archives are compressed and sent to the server at the "
+                                   + "same time with a multipart upload, without creating the archive in the local "
+                                   + "workspace. The parts have the multipart upload size.",
+                     label = "Streamed archive upload",
+                     optional = true,
+                     defaultValue = "false")
+    private boolean streamedArchiveUpload;
+
+    @PluginParameter(name = GLACIER_ARCHIVE_COMPRESSION_THREAD_NUMBER,
+                     description = "Streamed archive upload : Number of files of an archive compressed in parallel",
+                     label = "Streamed archive upload : Number of files compressed in parallel",
+                     optional = true,
+                     defaultValue = "4")
+    private int archiveCompressionThreadNumber = 4;
+
+    @PluginParameter(name = GLACIER_ARCHIVE_CACHE_MAX_SIZE_IN_MB,
+                     description = "Maximum size in Mb of the restored small file archives and their content kept in "
+                                   + "the archive cache. When exceeded, the least recently used archives are removed "
+                                   + "from the cache, even if they are younger than the archive cache lifetime. "
+                                   + "0 means no size limit",
+                     label = "Small file archive cache maximum size in Mb",
+                     optional = true,
+                     defaultValue = "0")
+    private long archiveCacheMaxSizeInMb = 0;
+
     /**
      *
      */
@@ -223,6 +287,40 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
     @Value("${regards.glacier.scheduled.cache.clean.minutes:60}")
     private int scheduledCacheClean = 60;
 
+    /**
+     * Period in milliseconds of the checks of the pending restorations
+     */
+    @Value("${regards.glacier.restoration.check.period.ms:1000}")
+    private long restorationCheckPeriodInMs = 1000;
+
+    /**
+     * Maximum number of restorations checked in parallel at each period
+     */
+    @Value("${regards.glacier.restoration.check.batch.size:100}")
+    private int restorationCheckBatchSize = 100;
+
+    /**
+     * Duration in seconds during which an available file status is cached, if its restoration expiration date is
+     * unknown or later
+     */
+    @Value("${regards.glacier.availability.cache.available.ttl:300}")
+    private int availabilityCacheAvailableTtlInS = 300;
+
+    /**
+     * Duration in seconds during which an unavailable or pending file status is cached
+     */
+    @Value("${regards.glacier.availability.cache.unavailable.ttl:10}")
+    private int availabilityCacheUnavailableTtlInS = 10;
+
+    @Value("${regards.glacier.availability.cache.max.entries:100000}")
+    private int availabilityCacheMaxEntries = 100000;
+
+    /**
+     * Period in minutes after which the occupancy of a workspace directory is computed again by listing it
+     */
+    @Value("${regards.glacier.occupancy.reconciliation.period.minutes:60}")
+    private int occupancyReconciliationPeriodInMinutes = 60;
+
     private String workspacePath;
 
     private ThreadPoolTaskScheduler scheduler;
@@ -233,8 +331,40 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
      */
     private S3HighLevelReactiveClient checkAvailabilityClient;
 
-    private BasicThreadFactory factory = new BasicThreadFactory.Builder().namingPattern(
-        "s3-glacier-availability-thread-%d").priority(Thread.MAX_PRIORITY).build();
+    /**
+     * Executors shared by all the jobs running on this plugin instance, to bound the number of parallel tasks
+     */
+    private SmallFilesExecutors executors;
+
+    /**
+     * Occupancy of the workspace directories, to avoid listing them at each store and clean
+     */
+    private DirectoryOccupancyLedger occupancyLedger;
+
+    /**
+     * Last access dates of the archives of the cache, persisted in the workspace to survive restarts
+     */
+    private ArchiveCacheAccessIndex archiveCacheIndex;
+
+    /**
+     * Tracker of the restorations waited by the jobs running on this plugin instance
+     */
+    private RestorationTracker restorationTracker;
+
+    /**
+     * Cache of the availability statuses of the big files, to answer the repeated availability checks
+     */
+    private GlacierFileStatusCache availabilityCache;
+
+    /**
+     * Downloader of the files from the server to the local cache
+     */
+    private S3RangedDownloader rangedDownloader;
+
+    /**
+     * Client of the streamed archive uploads
+     */
+    private S3AsyncClient archiveUploadClient;
 
     @PluginInit(hasConfiguration = true)
     public void initGlacier(PluginConfigurationDto conf) {
@@ -263,7 +393,10 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
                 parallelTaskNumber,
                 archiveMaxAge,
                 archiveCacheLifetime,
-                cleanCacheTaskLockAcquireTimeout);
+                cleanCacheTaskLockAcquireTimeout,
+                streamedArchiveUpload,
+                archiveCompressionThreadNumber,
+                archiveCacheMaxSizeInMb * 1024L * 1024L);
             getSmallFilesFacade(null).cleanArchiveCache(configuration);
             LOGGER.info("End of scheduled workspace cleaning");
         };
@@ -275,6 +408,21 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
         LOGGER.warn("Shutdown of the plugin, this may cause errors as the currently running tasks will be "
                     + "terminated");
         scheduler.shutdown();
+        if (executors != null) {
+            executors.shutdown();
+        }
+        if (restorationTracker != null) {
+            restorationTracker.shutdown();
+        }
+        if (rangedDownloader != null) {
+            rangedDownloader.close();
+        }
+        if (archiveUploadClient != null) {
+            archiveUploadClient.close();
+        }
+        if (archiveCacheIndex != null) {
+            archiveCacheIndex.save();
+        }
         if (checkAvailabilityClient != null) {
             checkAvailabilityClient.close();
         }
@@ -337,7 +485,10 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
                 parallelTaskNumber,
                 archiveMaxAge,
                 archiveCacheLifetime,
-                cleanCacheTaskLockAcquireTimeout);
+                cleanCacheTaskLockAcquireTimeout,
+                streamedArchiveUpload,
+                archiveCompressionThreadNumber,
+                archiveCacheMaxSizeInMb * 1024L * 1024L);
             getSmallFilesFacade(client).runPeriodicAction(progressManager, configuration);
         }
     }
@@ -410,44 +561,78 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
 
     @Override
     public List<NearlineFileStatusDto> checkAvailability(List<FileReferenceWithoutOwnersDto> fileReferences) {
-        List<NearlineFileStatusDto> results = new ArrayList<>();
-        ExecutorService executorService = null;
-        try {
-            S3HighLevelReactiveClient client = getCheckAvailabilityClient();
-            executorService = Executors.newFixedThreadPool(availabilityParallelTaskNumber, factory);
-            List<Future<NearlineFileStatusDto>> availabilitiesResults = executorService.invokeAll(fileReferences.stream()
-                                                                                                                .map(
-                                                                                                                    fileReference -> doCheckAvailabilityCallable(
-                                                                                                                        fileReference,
-                                                                                                                        client))
-                                                                                                                .toList());
-            // Wait for all tasks to complete
-            for (Future<NearlineFileStatusDto> future : availabilitiesResults) {
-                results.add(future.get());
+        // Entry keys of the big files to check, each one is checked once even if referenced by several files
+        Map<FileReferenceWithoutOwnersDto, String> entryKeys = new HashMap<>();
+        Set<String> keysToCheck = new LinkedHashSet<>();
+        for (FileReferenceWithoutOwnersDto fileReference : fileReferences) {
+            if (!isSmallFile(fileReference)) {
+                try {
+                    String entryKey = getEntryKey(fileReference.getLocation().getUrl());
+                    entryKeys.put(fileReference, entryKey);
+                    if (getAvailabilityCache().get(entryKey).isEmpty()) {
+                        keysToCheck.add(entryKey);
+                    }
+                } catch (MalformedURLException e) {
+                    LOGGER.debug("Invalid url {}", fileReference.getLocation().getUrl(), e);
+                }
             }
-        } catch (InterruptedException e) {
-            LOGGER.error("Check availability process interrupted");
-            addNonAvailableResultsForUnprocessedFiles(results, fileReferences);
-        } catch (ExecutionException e) {
-            LOGGER.error("Error during check availability process", e);
-            addNonAvailableResultsForUnprocessedFiles(results, fileReferences);
-        } finally {
-            if (executorService != null) {
-                executorService.shutdown();
+        }
+        Map<String, GlacierFileStatus> checkedStatuses = checkAvailabilities(keysToCheck,
+                                                                             getCheckAvailabilityClient());
+
+        List<NearlineFileStatusDto> results = new ArrayList<>(fileReferences.size());
+        for (FileReferenceWithoutOwnersDto fileReference : fileReferences) {
+            String entryKey = entryKeys.get(fileReference);
+            if (entryKey == null) {
+                // Small file or invalid url
+                results.add(doCheckAvailability(fileReference, getCheckAvailabilityClient()));
+            } else {
+                GlacierFileStatus status = checkedStatuses.get(entryKey);
+                results.add(toNearlineFileStatus(fileReference,
+                                                 status != null ?
+                                                     status :
+                                                     getAvailabilityCache().get(entryKey).orElse(null)));
             }
         }
         return results;
     }
 
-    public Callable<NearlineFileStatusDto> doCheckAvailabilityCallable(FileReferenceWithoutOwnersDto fileReference,
-                                                                       S3HighLevelReactiveClient client) {
-        return () -> doCheckAvailability(fileReference, client);
+    /**
+     * Check the availability of the given keys in one batch of non-blocking requests, the statuses are cached.
+     *
+     * @return the status of each key, missing if its availability could not be checked
+     */
+    private Map<String, GlacierFileStatus> checkAvailabilities(Collection<String> keys,
+                                                               S3HighLevelReactiveClient client) {
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        long start = Instant.now().toEpochMilli();
+        Map<String, GlacierFileStatus> statuses = new ConcurrentHashMap<>();
+        try {
+            Flux.fromIterable(keys)
+                .flatMap(key -> client.isFileAvailable(storageConfiguration, key, standardStorageClassName)
+                                      .doOnNext(status -> {
+                                          statuses.put(key, status);
+                                          getAvailabilityCache().put(key, status);
+                                      })
+                                      .onErrorResume(e -> {
+                                          LOGGER.error("Error while checking availability of {}", key, e);
+                                          return Mono.empty();
+                                      }), availabilityParallelTaskNumber)
+                .then()
+                .block();
+        } catch (RuntimeException e) {
+            LOGGER.error("Check availability process interrupted", e);
+        }
+        LOGGER.debug("[S3 Monitoring] Checking availability of {} files took {} ms",
+                     keys.size(),
+                     Instant.now().toEpochMilli() - start);
+        return statuses;
     }
 
     public NearlineFileStatusDto doCheckAvailability(FileReferenceWithoutOwnersDto fileReference,
                                                      S3HighLevelReactiveClient client) {
-        boolean availability = false;
-        OffsetDateTime dateExpiration = null;
         // manage case of small files
         GlacierFileStatus fileAvailable;
         try {
@@ -475,21 +660,34 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
             }
 
             // case of big files
-            long start = Instant.now().toEpochMilli();
-
-            fileAvailable = client.isFileAvailable(storageConfiguration,
-                                                   getEntryKey(fileReference.getLocation().getUrl()),
-                                                   standardStorageClassName).block();
-            LOGGER.trace("[S3 Monitoring] Checking availability of {} took {} ms",
-                         getEntryKey(fileReference.getLocation().getUrl()),
-                         Instant.now().toEpochMilli() - start);
+            String entryKey = getEntryKey(fileReference.getLocation().getUrl());
+            Optional<GlacierFileStatus> cachedStatus = getAvailabilityCache().get(entryKey);
+            if (cachedStatus.isPresent()) {
+                fileAvailable = cachedStatus.get();
+            } else {
+                long start = Instant.now().toEpochMilli();
+                fileAvailable = client.isFileAvailable(storageConfiguration, entryKey, standardStorageClassName)
+                                      .block();
+                LOGGER.trace("[S3 Monitoring] Checking availability of {} took {} ms",
+                             entryKey,
+                             Instant.now().toEpochMilli() - start);
+                if (fileAvailable != null) {
+                    getAvailabilityCache().put(entryKey, fileAvailable);
+                }
+            }
         } catch (MalformedURLException e) {
             return new NearlineFileStatusDto(fileReference.getChecksum(),
                                              NearlineFileStatusDtoStatus.ERROR,
                                              null,
                                              "Unable to check file availability because the url is invalid ");
         }
+        return toNearlineFileStatus(fileReference, fileAvailable);
+    }
 
+    private NearlineFileStatusDto toNearlineFileStatus(FileReferenceWithoutOwnersDto fileReference,
+                                                       @Nullable GlacierFileStatus fileAvailable) {
+        boolean availability = false;
+        OffsetDateTime dateExpiration = null;
         String message;
         if (fileAvailable != null) {
             String fileName = fileReference.getMetaInfo().getFileName();
@@ -521,27 +719,6 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
                                          message);
     }
 
-    /**
-     * Consider files that couldn't be processed as unavailable
-     *
-     * @param results results of the check availability process, this list will be modified by this method
-     */
-    private void addNonAvailableResultsForUnprocessedFiles(List<NearlineFileStatusDto> results,
-                                                           List<FileReferenceWithoutOwnersDto> fileReferences) {
-        List<String> processedChecksums = results.stream().map(NearlineFileStatusDto::getChecksum).toList();
-        List<FileReferenceWithoutOwnersDto> unprocessedFiles = fileReferences.stream()
-                                                                             .filter(file -> !processedChecksums.contains(
-                                                                                 file.getChecksum()))
-                                                                             .toList();
-        results.addAll(unprocessedFiles.stream()
-                                       .map(file -> new NearlineFileStatusDto(file.getChecksum(),
-                                                                              NearlineFileStatusDtoStatus.ERROR,
-                                                                              null,
-                                                                              "Error during the check availability "
-                                                                              + "process"))
-                                       .toList());
-    }
-
     private Optional<Path> findSmallFilePathInWorkspace(FileReferenceWithoutOwnersDto fileReference)
         throws MalformedURLException {
         Path s3FilePath = Path.of(getEntryKey(fileReference.getLocation().getUrl()));
@@ -589,6 +766,83 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
         return checkAvailabilityClient;
     }
 
+    /**
+     * Executors are created at first use, as the plugin can be used without initialization in tests
+     */
+    protected synchronized SmallFilesExecutors getExecutors() {
+        if (executors == null) {
+            executors = new SmallFilesExecutors("s3-glacier");
+        }
+        return executors;
+    }
+
+    /**
+     * Restoration tracker is created at first use, as the plugin can be used without initialization in tests
+     */
+    protected synchronized RestorationTracker getRestorationTracker() {
+        if (restorationTracker == null) {
+            restorationTracker = new RestorationTracker(restorationCheckPeriodInMs, restorationCheckBatchSize);
+        }
+        return restorationTracker;
+    }
+
+    /**
+     * Availability cache is created at first use, as the plugin can be used without initialization in tests
+     */
+    protected synchronized GlacierFileStatusCache getAvailabilityCache() {
+        if (availabilityCache == null) {
+            availabilityCache = new GlacierFileStatusCache(Duration.ofSeconds(availabilityCacheAvailableTtlInS),
+                                                           Duration.ofSeconds(availabilityCacheUnavailableTtlInS),
+                                                           availabilityCacheMaxEntries);
+        }
+        return availabilityCache;
+    }
+
+    /**
+     * Occupancy ledger is created at first use, as the plugin can be used without initialization in tests
+     */
+    protected synchronized DirectoryOccupancyLedger getOccupancyLedger() {
+        if (occupancyLedger == null) {
+            occupancyLedger = new DirectoryOccupancyLedger(Duration.ofMinutes(occupancyReconciliationPeriodInMinutes));
+        }
+        return occupancyLedger;
+    }
+
+    /**
+     * Archive cache index is created at first use, as the plugin can be used without initialization in tests
+     */
+    protected synchronized ArchiveCacheAccessIndex getArchiveCacheIndex() {
+        if (archiveCacheIndex == null) {
+            archiveCacheIndex = new ArchiveCacheAccessIndex(workspacePath != null ?
+                                                                Path.of(workspacePath, ARCHIVE_CACHE_INDEX_FILE_NAME) :
+                                                                null);
+        }
+        return archiveCacheIndex;
+    }
+
+    /**
+     * Ranged downloader is created at first use, as the plugin can be used without initialization in tests
+     */
+    protected synchronized S3RangedDownloader getRangedDownloader() {
+        if (rangedDownloader == null) {
+            rangedDownloader = new S3RangedDownloader(createS3AsyncClient(),
+                                                      storageConfiguration,
+                                                      downloadPartSizeMb * 1024L * 1024L,
+                                                      nbParallelPartsDownload);
+        }
+        return rangedDownloader;
+    }
+
+    /**
+     * Archive upload client is created at first use, as the plugin can be used without initialization in tests
+     */
+    protected synchronized S3AsyncClient getArchiveUploadClient() {
+        if (archiveUploadClient == null) {
+            archiveUploadClient = createS3AsyncClient();
+        }
+        return archiveUploadClient;
+    }
+
     public AbstractSmallFileFacade getSmallFilesFacade(S3HighLevelReactiveClient client) {
         return new S3SmallFilesFacade(client);
     }
@@ -600,7 +854,11 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
         private final S3HighLevelReactiveClient client;
 
         public S3SmallFilesFacade(S3HighLevelReactiveClient s3Client) {
-            super(runtimeTenantResolver, lockService, "s3-glacier-threadpool-thread-%d");
+            super(runtimeTenantResolver,
+                  lockService,
+                  getExecutors(),
+                  getOccupancyLedger(),
+                  getArchiveCacheIndex());
             this.client = s3Client;
         }
 
@@ -609,14 +867,27 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
             handleDeleteRequest(request, client, progressManager);
         }
 
+        @Override
+        protected long getFileSize(URL sourceUrl, List<S3Server> storages) {
+            // Use the file size cache of the plugin for the files it stores
+            return S3Glacier.this.getFileSize(sourceUrl);
+        }
+
         @Override
         public RestoreResponse restore(String key, @Nullable Integer availabilityHours) {
+            getAvailabilityCache().invalidate(key);
             return SmallFilesUtils.restore(client, storageConfiguration, key, standardStorageClassName, null);
         }
 
         @Override
         public boolean downloadFile(Path targetFilePath, String key, @Nullable String taskId) {
-            return SmallFilesUtils.downloadFile(targetFilePath, key, storageConfiguration, null);
+            try {
+                getRangedDownloader().download(key, targetFilePath);
+                return true;
+            } catch (IOException e) {
+                LOGGER.error(String.format("Error downloading file %s from s3 server to local directory", key), e);
+                return false;
+            }
         }
 
         @Override
@@ -627,17 +898,20 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
                                                           int renewMaxIterationWaitingPeriodInS,
                                                           Long renewCallDurationInMs,
                                                           LockService lockService) {
-            return SmallFilesUtils.downloadAfterRestoreFile(targetFilePath,
-                                                            key,
-                                                            storageConfiguration,
-                                                            s3AccessTimeout,
-                                                            lockName,
-                                                            lockCreationDate,
-                                                            renewMaxIterationWaitingPeriodInS,
-                                                            renewCallDurationInMs,
-                                                            standardStorageClassName,
-                                                            lockService,
-                                                            client);
+            GlacierFileStatus glacierFileStatus = checkRestorationComplete(key,
+                                                                           lockName,
+                                                                           lockCreationDate,
+                                                                           renewMaxIterationWaitingPeriodInS,
+                                                                           renewCallDurationInMs,
+                                                                           lockService);
+            if (glacierFileStatus.getStatus() == RestorationStatus.AVAILABLE && !downloadFile(targetFilePath,
+                                                                                              key,
+                                                                                              null)) {
+                return new GlacierFileStatus(RestorationStatus.NOT_AVAILABLE,
+                                             glacierFileStatus.getFileSize(),
+                                             glacierFileStatus.getExpirationDate());
+            }
+            return glacierFileStatus;
         }
 
         @Override
@@ -656,7 +930,8 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
                                                             renewCallDurationInMs,
                                                             standardStorageClassName,
                                                             lockService,
-                                                            client);
+                                                            client,
+                                                            getRestorationTracker());
         }
 
         @Override
@@ -666,6 +941,7 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
 
         @Override
         public boolean deleteArchive(String taskId, String entryKey) {
+            getAvailabilityCache().invalidate(entryKey);
             StorageCommand.Delete deleteCmd = new StorageCommand.Delete.Impl(storageConfiguration,
                                                                              new StorageCommandID(taskId,
                                                                                                   UUID.randomUUID()),
@@ -743,6 +1019,35 @@ public class S3Glacier extends AbstractS3Storage implements INearlineStorageLoca
             return StorageConfigUtils.entryKeyUrl(storageConfiguration, filePathOnStorage).toString();
         }
 
+        @Override
+        public StoredArchive storeStreamedFile(StoredArchive.ContentWriter writer, String filePathOnStorage)
+            throws IOException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance(ISmallFilesStorage.MD5_CHECKSUM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+            int partSize = Math.max(S3MultipartUploadOutputStream.MIN_PART_SIZE, multipartThresholdMb * 1024 * 1024);
+            LOGGER.info("Glacier accessing S3 to send streamed small file archive {}", filePathOnStorage);
+            try (S3MultipartUploadOutputStream upload = new S3MultipartUploadOutputStream(getArchiveUploadClient(),
+                                                                                          bucket,
+                                                                                          filePathOnStorage,
+                                                                                          partSize,
+                                                                                          nbParallelPartsUpload)) {
+                DigestOutputStream out = new DigestOutputStream(upload, digest);
+                writer.writeTo(out);
+                out.flush();
+                // The upload is aborted when the stream is closed if the writer failed
+                upload.complete();
+                LOGGER.info("Glacier S3 access ended, {} bytes sent", upload.getSize());
+                return new StoredArchive(StorageConfigUtils.entryKeyUrl(storageConfiguration, filePathOnStorage)
+                                                           .toString(),
+                                         HexFormat.of().formatHex(digest.digest()),
+                                         upload.getSize());
+            }
+        }
+
         @Override
         public boolean existsStorageUrl(Path path) {
             return DownloadUtils.existsS3(path.toString(), storageConfiguration);
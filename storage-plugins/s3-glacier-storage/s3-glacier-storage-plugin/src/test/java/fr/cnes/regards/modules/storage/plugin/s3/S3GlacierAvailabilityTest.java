@@ -149,6 +149,47 @@ public class S3GlacierAvailabilityTest {
         test_file_availability();
     }
 
+    @Test
+    public void test_file_availability_checked_once_per_key_then_cached() {
+        // Given two references of the same file
+        ZonedDateTime dateExpiration = ZonedDateTime.now().plusDays(1);
+        Mockito.when(s3Client.isFileAvailable(Mockito.any(), Mockito.any(), Mockito.any()))
+               .thenReturn(Mono.just(new GlacierFileStatus(RestorationStatus.AVAILABLE, 10L, dateExpiration)));
+        List<FileReferenceWithoutOwnersDto> fileReferences = List.of(createFakeFileReference(),
+                                                                     createFakeFileReference());
+
+        // When availability is checked twice
+        List<NearlineFileStatusDto> firstCheck = s3Glacier.checkAvailability(fileReferences);
+        List<NearlineFileStatusDto> secondCheck = s3Glacier.checkAvailability(fileReferences);
+
+        // Then the file is checked only once on the server
+        Assert.assertEquals(2, firstCheck.size());
+        Assert.assertEquals(2, secondCheck.size());
+        for (NearlineFileStatusDto status : firstCheck) {
+            Assert.assertEquals(NearlineFileStatusDtoStatus.AVAILABLE, status.getAvailable());
+        }
+        for (NearlineFileStatusDto status : secondCheck) {
+            Assert.assertEquals(NearlineFileStatusDtoStatus.AVAILABLE, status.getAvailable());
+        }
+        Mockito.verify(s3Client, Mockito.times(1)).isFileAvailable(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void test_file_availability_pending_checked_again_after_cache_expiration() {
+        // Given a file not cached when unavailable
+        ReflectionTestUtils.setField(s3Glacier, "availabilityCacheUnavailableTtlInS", 0);
+        Mockito.when(s3Client.isFileAvailable(Mockito.any(), Mockito.any(), Mockito.any()))
+               .thenReturn(Mono.just(new GlacierFileStatus(RestorationStatus.RESTORE_PENDING, null, null)))
+               .thenReturn(Mono.just(new GlacierFileStatus(RestorationStatus.AVAILABLE, 10L, null)));
+
+        // When, then
+        test_file_availability();
+        NearlineFileStatusDto nearlineFileStatusDto = s3Glacier.checkAvailability(List.of(createFakeFileReference()))
+                                                               .get(0);
+        Assert.assertEquals(NearlineFileStatusDtoStatus.AVAILABLE, nearlineFileStatusDto.getAvailable());
+        Mockito.verify(s3Client, Mockito.times(2)).isFileAvailable(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
     public void test_file_availability() {
         // When
         NearlineFileStatusDto nearlineFileStatusDto = s3Glacier.checkAvailability(List.of(createFakeFileReference()))
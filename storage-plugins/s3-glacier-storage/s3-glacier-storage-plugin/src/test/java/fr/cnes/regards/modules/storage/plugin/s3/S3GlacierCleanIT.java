@@ -176,7 +176,10 @@ public class S3GlacierCleanIT extends AbstractS3GlacierIT {
                                                                               5,
                                                                               5,
                                                                               5,
-                                                                              5));
+                                                                              5,
+                                                                              false,
+                                                                              1,
+                                                                              0L));
 
         // Then
         Assertions.assertTrue(Files.exists(fileCachePath),
@@ -24,6 +24,8 @@ import fr.cnes.regards.framework.s3.client.S3HighLevelReactiveClient;
 import fr.cnes.regards.framework.s3.domain.S3Server;
 import fr.cnes.regards.modules.fileaccess.dto.*;
 import fr.cnes.regards.modules.fileaccess.dto.request.FileStorageRequestAggregationDto;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.FileDeletionWorkingSubset;
+import fr.cnes.regards.modules.fileaccess.plugin.domain.FileRestorationWorkingSubset;
 import fr.cnes.regards.modules.fileaccess.plugin.domain.IDeletionProgressManager;
 import fr.cnes.regards.modules.fileaccess.plugin.domain.IPeriodicActionProgressManager;
 import fr.cnes.regards.modules.fileaccess.plugin.domain.IRestorationProgressManager;
@@ -92,7 +94,10 @@ public class S3GlacierLockTest {
                                                                              5,
                                                                              5,
                                                                              5,
-                                                                             5);
+                                                                             5,
+                                                                             false,
+                                                                             1,
+                                                                             0L);
 
         glacier = new S3GlacierMock(lockServiceMock,
                                     s3settings,
@@ -588,6 +593,42 @@ public class S3GlacierLockTest {
                       " There should be 1 task waiting for lock");
     }
 
+    @Test
+    public void test_restore_remote_small_files_of_same_archive_with_one_lock() throws Exception {
+        // Given
+        FileCacheRequestDto request1 = createRestoreFileRequest("node1", true, false, Optional.of("archive1"));
+        FileCacheRequestDto request2 = createRestoreFileRequest("node1", true, false, Optional.of("archive1"));
+        FileCacheRequestDto request3 = createRestoreFileRequest("node1", true, false, Optional.of("archive1"));
+        // When
+        AbstractSmallFileFacade facade = glacier.getSmallFilesFacade(client);
+        facade.retrieve(new FileRestorationWorkingSubset(List.of(request1, request2, request3)),
+                        Mockito.mock(IRestorationProgressManager.class),
+                        retrieveConfiguration);
+        // Then
+        Assert.isTrue(lockServiceMock.getWaitingLock().isEmpty(), "No task should be waiting a lock");
+        Assert.isTrue(lockServiceMock.getLockAcquired().size() == 1, "Only one lock should be taken for the archive");
+        Assert.isTrue(lockServiceMock.getLockAcquired().containsValue(RetrieveCacheArchiveTask.class.getName()),
+                      "acquired locks must contain a RetrieveCacheArchiveTask one");
+    }
+
+    @Test
+    public void test_delete_remote_small_files_of_same_archive_with_one_lock() throws Exception {
+        // Given
+        FileDeletionRequestDto request1 = createDeletionRequest("node1", true, false, Optional.of("archive1"));
+        FileDeletionRequestDto request2 = createDeletionRequest("node1", true, false, Optional.of("archive1"));
+        FileDeletionRequestDto request3 = createDeletionRequest("node1", true, false, Optional.of("archive1"));
+        // When
+        AbstractSmallFileFacade facade = glacier.getSmallFilesFacade(client);
+        facade.delete(new FileDeletionWorkingSubset(List.of(request1, request2, request3)),
+                      Mockito.mock(IDeletionProgressManager.class),
+                      deleteConfiguration);
+        // Then
+        Assert.isTrue(lockServiceMock.getWaitingLock().isEmpty(), "No task should be waiting a lock");
+        Assert.isTrue(lockServiceMock.getLockAcquired().size() == 1, "Only one lock should be taken for the archive");
+        Assert.isTrue(lockServiceMock.getLockAcquired().containsValue(RestoreAndDeleteArchiveTask.class.getName()),
+                      "acquired locks must contain a RestoreAndDeleteArchiveTask one");
+    }
+
     private FileStorageRequestAggregationDto createStoreFileRequest(String node, boolean smallFile) {
         String checksum = "123456";
         String algorithm = "MD5";
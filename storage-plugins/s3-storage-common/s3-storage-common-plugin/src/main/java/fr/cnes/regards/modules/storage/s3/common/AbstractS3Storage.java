@@ -38,6 +38,7 @@ import fr.cnes.regards.modules.fileaccess.plugin.domain.*;
 import fr.cnes.regards.modules.fileaccess.plugin.dto.FileCacheRequestDto;
 import fr.cnes.regards.modules.fileaccess.plugin.dto.FileDeletionRequestDto;
 import fr.cnes.regards.modules.storage.s3.common.service.S3ClientCreatorService;
+import io.micrometer.core.instrument.Metrics;
 import io.vavr.Tuple;
 import io.vavr.Tuple2;
 import io.vavr.control.Option;
@@ -47,13 +48,13 @@ import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.utils.StringUtils;
 
 import java.io.File;
@@ -63,6 +64,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -91,6 +93,10 @@ public abstract class AbstractS3Storage implements IStorageLocation {
 
     public static final String MULTIPART_PARALLEL_PARAM_NAME = "Upload_With_Multipart_Parallel_Part_Number";
 
+    public static final String WORKING_SUBSET_MAX_REQUESTS_PARAM_NAME = "Working_Subset_Max_Requests";
+
+    public static final String WORKING_SUBSET_MAX_SIZE_IN_MB_PARAM_NAME = "Working_Subset_Max_Size_In_Mb";
+
     /**
      * Plugin parameter name of the can delete attribute
      */
@@ -103,6 +109,11 @@ public abstract class AbstractS3Storage implements IStorageLocation {
 
     private static final Logger LOGGER = getLogger(AbstractS3Storage.class);
 
+    /**
+     * Number of buffers read in advance when streaming the content of an entry
+     */
+    private static final int READ_PREFETCH = 16;
+
     @PluginParameter(name = S3_SERVER_ENDPOINT_PARAM_NAME,
                      description = "Endpoint of the S3 server (format: http://{ip or server name}:{port})",
                      label = "S3 server endpoint")
@@ -154,6 +165,20 @@ public abstract class AbstractS3Storage implements IStorageLocation {
                      defaultValue = "5")
     protected int nbParallelPartsUpload;
 
+    @PluginParameter(name = WORKING_SUBSET_MAX_REQUESTS_PARAM_NAME,
+                     description = "Maximum number of requests handled by a single job. The requests are split into "
+                                   + "several jobs that can run in parallel.",
+                     label = "Maximum number of requests per job",
+                     defaultValue = "1000")
+    protected int workingSubsetMaxRequests;
+
+    @PluginParameter(name = WORKING_SUBSET_MAX_SIZE_IN_MB_PARAM_NAME,
+                     description = "Maximum cumulated size in Mb of the files handled by a single job. A file larger "
+                                   + "than this size is handled alone by a job.",
+                     label = "Maximum size of files per job in Mb",
+                     defaultValue = "10240")
+    protected long workingSubsetMaxSizeMb;
+
     @PluginParameter(name = S3_ALLOW_DELETION,
                      label = "Enable effective deletion of files",
                      description = "If deletion is allowed, files are physically deleted else files are only removed from references",
@@ -173,6 +198,20 @@ public abstract class AbstractS3Storage implements IStorageLocation {
     @Value("${regards.s3.online.to.online.tmp.file.threshold.in.mb:150}")
     protected Long fileSizeThresholdStreamWithoutTmpFileInMb;
 
+    /**
+     * Duration in seconds during which the size of a file is cached
+     */
+    @Value("${regards.s3.file.size.cache.ttl:300}")
+    private int fileSizeCacheTtlInS = 300;
+
+    @Value("${regards.s3.file.size.cache.max.entries:100000}")
+    private int fileSizeCacheMaxEntries = 100000;
+
+    /**
+     * Cache of the size of the files stored by this plugin
+     */
+    private FileSizeCache fileSizeCache;
+
     /**
      * Configuration of S3 server
      */
@@ -207,6 +246,12 @@ public abstract class AbstractS3Storage implements IStorageLocation {
                       String.format("The parameter value %s must be at least 5. (actual : " + "%d)",
                                     UPLOAD_WITH_MULTIPART_THRESHOLD_IN_MB_PARAM_NAME,
                                     multipartThresholdMb));
+        Assert.isTrue(workingSubsetMaxRequests > 0 && workingSubsetMaxSizeMb > 0,
+                      String.format("The parameters %s and %s must be positive. (actual : %d and %d)",
+                                    WORKING_SUBSET_MAX_REQUESTS_PARAM_NAME,
+                                    WORKING_SUBSET_MAX_SIZE_IN_MB_PARAM_NAME,
+                                    workingSubsetMaxRequests,
+                                    workingSubsetMaxSizeMb));
         if (rawRootPath == null) {
             rootPath = "";
         } else {
@@ -234,79 +279,136 @@ public abstract class AbstractS3Storage implements IStorageLocation {
         return s3ClientService.createS3Client(storageName, multipartThresholdMb, nbParallelPartsUpload);
     }
 
+    /**
+     * Create a new low level S3 client, for the operations not provided by the high level client.
+     * The client must be closed after use.
+     */
+    protected S3AsyncClient createS3AsyncClient() {
+        return s3ClientService.createS3AsyncClient(endpoint, region, key, secret);
+    }
+
+    /**
+     * File size cache is created at first use, as the plugin can be used without initialization in tests
+     */
+    protected synchronized FileSizeCache getFileSizeCache() {
+        if (fileSizeCache == null) {
+            fileSizeCache = new FileSizeCache(Duration.ofSeconds(fileSizeCacheTtlInS),
+                                              fileSizeCacheMaxEntries,
+                                              Metrics.globalRegistry,
+                                              storageName != null ? storageName : "");
+        }
+        return fileSizeCache;
+    }
+
     public StorageConfigDto getStorageConfiguration() {
         return storageConfiguration;
     }
 
-    private Mono<InputStream> toInputStream(StorageCommandResult.ReadingPipe pipe) {
-        DataBufferFactory dbf = new DefaultDataBufferFactory();
-        return pipe.getEntry()
-                   .flatMap(entry -> DataBufferUtils.join(entry.getData().map(dbf::wrap)))
-                   .map(DataBuffer::asInputStream);
+    /**
+     * Stream the content of the read entry, only a few buffers of the entry are held in memory while it is read.
+     */
+    protected Mono<InputStream> toInputStream(StorageCommandResult.ReadingPipe pipe) {
+        return pipe.getEntry().map(entry -> new ByteBufferFluxInputStream(entry.getData(), READ_PREFETCH));
     }
 
     protected void handleDeleteRequest(FileDeletionRequestDto request,
                                        S3HighLevelReactiveClient client,
                                        IDeletionProgressManager progressManager) {
-        String tenant = runtimeTenantResolver.getTenant();
-        LOGGER.info("Start deleting {} with location {}",
-                    request.getFileReference().getMetaInfo().getFileName(),
-                    request.getFileReference().getLocation().getUrl());
-        StorageCommandID cmdId = new StorageCommandID(request.getJobId(), UUID.randomUUID());
+        deleteRequest(request, client, progressManager, runtimeTenantResolver.getTenant()).block();
+    }
 
-        StorageCommand.Delete deleteCmd = null;
-        try {
-            deleteCmd = new StorageCommand.Delete.Impl(storageConfiguration,
-                                                       cmdId,
-                                                       getEntryKey(request.getFileReference().getLocation().getUrl()));
-        } catch (MalformedURLException e) {
-            progressManager.deletionFailed(request,
-                                           "Impossible to delete the file because its url is invalid: "
-                                           + request.getFileReference().getLocation().getUrl());
-            return;
-        }
-        long start = Instant.now().toEpochMilli();
-        client.delete(deleteCmd)
-              .flatMap(deleteResult -> deleteResult.matchDeleteResult(Mono::just,
-                                                                      unreachable -> Mono.error(new RuntimeException(
-                                                                          "Unreachable endpoint")),
-                                                                      failure -> Mono.error(new RuntimeException(
-                                                                          "Deletion failure in S3 storage"))))
-              .doOnError(t -> {
-                  try {
-                      runtimeTenantResolver.forceTenant(tenant);
-                      LOGGER.error("End deleting {} with location {}",
-                                   request.getFileReference().getMetaInfo().getFileName(),
-                                   request.getFileReference().getLocation().getUrl(),
-                                   t);
-                      progressManager.deletionFailed(request, "Deletion failure in S3 storage");
-                  } finally {
-                      runtimeTenantResolver.clearTenant();
-                  }
-              })
-              .doOnSuccess(success -> {
-                  try {
-                      runtimeTenantResolver.forceTenant(tenant);
-                      LOGGER.info("End deleting {} with location {}",
-                                  request.getFileReference().getMetaInfo().getFileName(),
-                                  request.getFileReference().getLocation().getUrl());
-                      progressManager.deletionSucceed(request);
-                  } finally {
-                      runtimeTenantResolver.clearTenant();
-                  }
-              })
-              .block();
-        LOGGER.trace("[S3 Monitoring] Deletion of {} took {} ms", key, Instant.now().toEpochMilli() - start);
+    /**
+     * Delete the file of the given request, the progress manager is informed of the result once the deletion ends.
+     * The returned {@link Mono} never fails, so that many deletions can be merged.
+     *
+     * @param tenant tenant of the request, forced while informing the progress manager
+     */
+    protected Mono<Void> deleteRequest(FileDeletionRequestDto request,
+                                       S3HighLevelReactiveClient client,
+                                       IDeletionProgressManager progressManager,
+                                       String tenant) {
+        return Mono.defer(() -> {
+            LOGGER.info("Start deleting {} with location {}",
+                        request.getFileReference().getMetaInfo().getFileName(),
+                        request.getFileReference().getLocation().getUrl());
+            StorageCommandID cmdId = new StorageCommandID(request.getJobId(), UUID.randomUUID());
+            getFileSizeCache().invalidate(request.getFileReference().getLocation().getUrl());
+
+            String entryKey;
+            try {
+                entryKey = getEntryKey(request.getFileReference().getLocation().getUrl());
+            } catch (MalformedURLException e) {
+                runWithTenant(tenant,
+                              () -> progressManager.deletionFailed(request,
+                                                                   "Impossible to delete the file because its url "
+                                                                   + "is invalid: "
+                                                                   + request.getFileReference()
+                                                                            .getLocation()
+                                                                            .getUrl()));
+                return Mono.empty();
+            }
+            StorageCommand.Delete deleteCmd = new StorageCommand.Delete.Impl(storageConfiguration, cmdId, entryKey);
+            long start = Instant.now().toEpochMilli();
+            return client.delete(deleteCmd)
+                         .flatMap(deleteResult -> deleteResult.matchDeleteResult(Mono::just,
+                                                                                 unreachable -> Mono.error(new RuntimeException(
+                                                                                     "Unreachable endpoint")),
+                                                                                 failure -> Mono.error(new RuntimeException(
+                                                                                     "Deletion failure in S3 storage"))))
+                         .doOnSuccess(success -> runWithTenant(tenant, () -> {
+                             LOGGER.info("End deleting {} with location {}",
+                                         request.getFileReference().getMetaInfo().getFileName(),
+                                         request.getFileReference().getLocation().getUrl());
+                             progressManager.deletionSucceed(request);
+                         }))
+                         .doFinally(signal -> LOGGER.trace("[S3 Monitoring] Deletion of {} took {} ms",
+                                                           entryKey,
+                                                           Instant.now().toEpochMilli() - start))
+                         .then();
+        }).onErrorResume(t -> {
+            runWithTenant(tenant, () -> {
+                LOGGER.error("End deleting {} with location {}",
+                             request.getFileReference().getMetaInfo().getFileName(),
+                             request.getFileReference().getLocation().getUrl(),
+                             t);
+                progressManager.deletionFailed(request, "Deletion failure in S3 storage");
+            });
+            return Mono.empty();
+        });
     }
 
-    @SuppressWarnings("java:S2221") // Too many possible exceptions, must have a generic handler
     protected void handleStoreRequest(FileStorageRequestAggregationDto request,
                                       S3HighLevelReactiveClient client,
                                       IStorageProgressManager progressManager,
                                       String s3RootPath) {
-        try {
-            URL sourceUrl = new URL(request.getOriginUrl());
-            String tenant = runtimeTenantResolver.getTenant();
+        storeRequest(request, client, progressManager, s3RootPath, runtimeTenantResolver.getTenant()).block();
+    }
+
+    /**
+     * Store the file of the given request, the progress manager is informed of the result once the storage ends.
+     * The returned {@link Mono} never fails, so that many storages can be merged.
+     *
+     * @param tenant tenant of the request, forced while downloading the source file and informing the progress
+     *               manager
+     */
+    @SuppressWarnings("java:S2221") // Too many possible exceptions, must have a generic handler
+    protected Mono<Void> storeRequest(FileStorageRequestAggregationDto request,
+                                      S3HighLevelReactiveClient client,
+                                      IStorageProgressManager progressManager,
+                                      String s3RootPath,
+                                      String tenant) {
+        return Mono.defer(() -> {
+            URL sourceUrl;
+            try {
+                sourceUrl = new URL(request.getOriginUrl());
+            } catch (MalformedURLException e) {
+                runWithTenant(tenant, () -> {
+                    LOGGER.error(e.getMessage(), e);
+                    progressManager.storageFailed(request,
+                                                  String.format("Invalid source url %s", request.getOriginUrl()));
+                });
+                return Mono.empty();
+            }
 
             // Download the file from url (File system, S3 server)
             Flux<ByteBuffer> buffers = DataBufferUtils.readInputStream(() -> {
@@ -336,34 +438,46 @@ public abstract class AbstractS3Storage implements IStorageLocation {
                                                                           request.getMetaInfo().getChecksum());
 
             long start = Instant.now().toEpochMilli();
-            client.write(writeCmd)
-                  .flatMap(writeResult -> writeResult.matchWriteResult(Mono::just,
-                                                                       unreachable -> Mono.error(new RuntimeException(
-                                                                           "Unreachable endpoint")),
-                                                                       failure -> {
-                                                                           return handleWriteError(failure.getCause());
-                                                                       }))
-                  .doOnError(t -> {
-                      LOGGER.debug("[{}] End storing {}", request.getJobId(), request.getOriginUrl(), t);
-                      // Do not handle error here. Block method will throw the exception wrapped in a
-                      // RuntimeException. Error is handle in catch of this runtimeException here under.
-                  })
-                  .doOnSuccess(success -> {
-                      LOGGER.info("[{}] End storing {}", request.getJobId(), request.getOriginUrl());
-                      progressManager.storageSucceed(request,
-                                                     StorageConfigUtils.entryKeyUrl(storageConfiguration,
-                                                                                    entryKey.replaceFirst("^/*", "")),
-                                                     success.getSize());
-                  })
-                  .block();
-            LOGGER.trace("[S3 Monitoring] Writing of {} took {} ms", entryKey, Instant.now().toEpochMilli() - start);
-
-        } catch (MalformedURLException e) {
-            LOGGER.error(e.getMessage(), e);
-            progressManager.storageFailed(request, String.format("Invalid source url %s", request.getOriginUrl()));
-        } catch (Exception e) {
-            LOGGER.error(e.getMessage(), e);
-            progressManager.storageFailed(request, String.format("Store failed cause : %s", e.getMessage()));
+            return client.write(writeCmd)
+                         .flatMap(writeResult -> writeResult.matchWriteResult(Mono::just,
+                                                                              unreachable -> Mono.error(new RuntimeException(
+                                                                                  "Unreachable endpoint")),
+                                                                              failure -> handleWriteError(failure.getCause())))
+                         .doOnSuccess(success -> runWithTenant(tenant, () -> {
+                             LOGGER.info("[{}] End storing {}", request.getJobId(), request.getOriginUrl());
+                             URL storedUrl = StorageConfigUtils.entryKeyUrl(storageConfiguration,
+                                                                            entryKey.replaceFirst("^/*", ""));
+                             // The size of the stored file is known, no need to request it later
+                             getFileSizeCache().put(storedUrl.toString(), success.getSize());
+                             progressManager.storageSucceed(request, storedUrl, success.getSize());
+                         }))
+                         .doFinally(signal -> LOGGER.trace("[S3 Monitoring] Writing of {} took {} ms",
+                                                           entryKey,
+                                                           Instant.now().toEpochMilli() - start))
+                         .then();
+        }).onErrorResume(e -> {
+            runWithTenant(tenant, () -> {
+                LOGGER.error(e.getMessage(), e);
+                progressManager.storageFailed(request, String.format("Store failed cause : %s", e.getMessage()));
+            });
+            return Mono.empty();
+        });
+    }
+
+    /**
+     * Run the given action with the given tenant, the tenant of the current thread is restored afterward
+     */
+    protected void runWithTenant(String tenant, Runnable action) {
+        String currentTenant = runtimeTenantResolver.getTenant();
+        try {
+            runtimeTenantResolver.forceTenant(tenant);
+            action.run();
+        } finally {
+            if (currentTenant != null) {
+                runtimeTenantResolver.forceTenant(currentTenant);
+            } else {
+                runtimeTenantResolver.clearTenant();
+            }
         }
     }
 
@@ -464,37 +578,107 @@ public abstract class AbstractS3Storage implements IStorageLocation {
         return allowPhysicalDeletion;
     }
 
+    /**
+     * Split the requests into working subsets bounded by the {@link #WORKING_SUBSET_MAX_REQUESTS_PARAM_NAME} and
+     * {@link #WORKING_SUBSET_MAX_SIZE_IN_MB_PARAM_NAME} parameters, so that they are handled by parallel jobs.
+     */
     @Override
     public PreparationResponse<FileStorageWorkingSubset, FileStorageRequestAggregationDto> prepareForStorage(Collection<FileStorageRequestAggregationDto> fileReferenceRequests) {
-        List<FileStorageWorkingSubset> workingSubsets = new ArrayList<>();
-        workingSubsets.add(new FileStorageWorkingSubset(fileReferenceRequests));
+        List<FileStorageWorkingSubset> workingSubsets = WorkingSubsetSplitter.split(fileReferenceRequests,
+                                                                                    request -> sizeOf(request.getMetaInfo()
+                                                                                                             .getFileSize()),
+                                                                                    workingSubsetMaxRequests,
+                                                                                    getWorkingSubsetMaxSize())
+                                                                             .stream()
+                                                                             .map(FileStorageWorkingSubset::new)
+                                                                             .toList();
         return PreparationResponse.build(workingSubsets, Maps.newHashMap());
     }
 
+    /**
+     * Split the requests into working subsets as {@link #prepareForStorage(Collection)}, the small files of the same
+     * archive are kept in the same working subset.
+     */
     @Override
     public PreparationResponse<FileDeletionWorkingSubset, FileDeletionRequestDto> prepareForDeletion(Collection<FileDeletionRequestDto> fileDeletionRequests) {
-        List<FileDeletionWorkingSubset> workingSubsets = new ArrayList<>();
-        workingSubsets.add(new FileDeletionWorkingSubset(fileDeletionRequests));
+        List<FileDeletionWorkingSubset> workingSubsets = WorkingSubsetSplitter.split(fileDeletionRequests,
+                                                                                     request -> sizeOf(request.getFileReference()
+                                                                                                              .getMetaInfo()
+                                                                                                              .getFileSize()),
+                                                                                     request -> getWorkingSubsetGroup(
+                                                                                         request.getFileReference()
+                                                                                                .getLocation()
+                                                                                                .getUrl()),
+                                                                                     workingSubsetMaxRequests,
+                                                                                     getWorkingSubsetMaxSize())
+                                                                              .stream()
+                                                                              .map(FileDeletionWorkingSubset::new)
+                                                                              .toList();
         return PreparationResponse.build(workingSubsets, Maps.newHashMap());
     }
 
+    /**
+     * Split the requests into working subsets as {@link #prepareForStorage(Collection)}, the small files of the same
+     * archive are kept in the same working subset.
+     */
     @Override
     public PreparationResponse<FileRestorationWorkingSubset, FileCacheRequestDto> prepareForRestoration(Collection<FileCacheRequestDto> requests) {
-        List<FileRestorationWorkingSubset> workingSubsets = new ArrayList<>();
-        workingSubsets.add(new FileRestorationWorkingSubset(requests));
+        List<FileRestorationWorkingSubset> workingSubsets = WorkingSubsetSplitter.split(requests,
+                                                                                        request -> sizeOf(request.getFileReference()
+                                                                                                                 .getMetaInfo()
+                                                                                                                 .getFileSize()),
+                                                                                        request -> getWorkingSubsetGroup(
+                                                                                            request.getFileReference()
+                                                                                                   .getLocation()
+                                                                                                   .getUrl()),
+                                                                                        workingSubsetMaxRequests,
+                                                                                        getWorkingSubsetMaxSize())
+                                                                                 .stream()
+                                                                                 .map(FileRestorationWorkingSubset::new)
+                                                                                 .toList();
         return PreparationResponse.build(workingSubsets, Maps.newHashMap());
     }
 
     /**
-     * Get the file content length
+     * Group of the file with the given url in the working subsets : the url without its query, so that the small
+     * files of an archive (endpoint/bucket/path/to/archive.zip?fileName=smallFile.txt) are handled together.
+     */
+    protected String getWorkingSubsetGroup(String url) {
+        int queryIndex = url.indexOf('?');
+        return queryIndex < 0 ? url : url.substring(0, queryIndex);
+    }
+
+    private long getWorkingSubsetMaxSize() {
+        return workingSubsetMaxSizeMb * 1024 * 1024;
+    }
+
+    private static long sizeOf(Long fileSize) {
+        return fileSize != null ? fileSize : 0L;
+    }
+
+    /**
+     * Get the file content length, from the file size cache if the file is stored by this plugin and its size is
+     * known. The size of the files stored elsewhere is always requested, as they can change without this plugin
+     * being informed.
      *
      * @param sourceUrl the url of file
      * @return the size of file, 0 if the file does not exist
      */
     protected long getFileSize(URL sourceUrl) {
+        String url = sourceUrl.toString();
+        boolean storedFile = isValidUrl(url, new HashSet<>());
+        if (storedFile) {
+            Optional<FileSizeCache.CachedSize> cachedSize = getFileSizeCache().get(url);
+            if (cachedSize.isPresent()) {
+                return cachedSize.get().size();
+            }
+        }
         long fileSize = 0L;
         try {
             fileSize = DownloadUtils.getContentLength(sourceUrl, 0, s3StorageSettings.getStorages());
+            if (storedFile && fileSize > 0) {
+                getFileSizeCache().put(url, fileSize);
+            }
         } catch (IOException e) {
             LOGGER.error("Failure in the getting of file size : {}", sourceUrl, e);
         }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Blocking {@link InputStream} reading the buffers of a {@link Flux}.
+ * <p>
+ * The flux is subscribed at creation and buffers are requested as the stream is read, at most the given prefetch
+ * number of buffers being held in memory. The memory used is so bounded whatever the size of the content, contrary
+ * to joining all the buffers before reading them. Closing the stream cancels the flux.
+ * <p>
+ * The stream must be read from a thread allowed to block, not from a reactor non-blocking thread.
+ */
+public class ByteBufferFluxInputStream extends InputStream {
+
+    private final Stream<ByteBuffer> buffers;
+
+    private final Iterator<ByteBuffer> iterator;
+
+    private ByteBuffer current;
+
+    private boolean closed = false;
+
+    /**
+     * @param prefetch maximum number of buffers received from the flux and not read yet
+     */
+    public ByteBufferFluxInputStream(Flux<ByteBuffer> data, int prefetch) {
+        this.buffers = data.toStream(Math.max(1, prefetch));
+        this.iterator = buffers.iterator();
+    }
+
+    @Override
+    public int read() throws IOException {
+        ByteBuffer buffer = nextBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = nextBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+        int read = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.remaining();
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            current = null;
+            buffers.close();
+        }
+    }
+
+    /**
+     * @return the buffer to read from, waiting for the next one of the flux if the current one is fully read, or
+     * null at the end of the flux
+     */
+    private ByteBuffer nextBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        try {
+            while (current == null || !current.hasRemaining()) {
+                if (!iterator.hasNext()) {
+                    current = null;
+                    return null;
+                }
+                current = iterator.next();
+            }
+            return current;
+        } catch (RuntimeException e) {
+            Throwable cause = Exceptions.unwrap(e);
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Error reading data", cause);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache of the size of the files stored by a S3 plugin, by url, to avoid requesting the same file size again and
+ * again.
+ * <p>
+ * Only the files of the plugin storage must be cached : their size is known when they are stored, and it must be
+ * invalidated when they are deleted. As the files can also be stored or deleted by other instances of the
+ * microservice, a size is only kept until the given time to live since it was last checked. When the cache is full,
+ * the least recently used size is evicted. Hits and misses are counted in the given meter registry.
+ */
+public class FileSizeCache {
+
+    private static final String METRIC_NAME = "regards.s3.file.size.cache.gets";
+
+    private final Duration timeToLive;
+
+    private final Map<String, CachedSize> sizes;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    /**
+     * @param storageName name of the storage, used to tag the metrics of the cache
+     */
+    public FileSizeCache(Duration timeToLive, int maxEntries, MeterRegistry meterRegistry, String storageName) {
+        this.timeToLive = timeToLive;
+        // Access ordered, so that the eldest entry is the least recently used one
+        this.sizes = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSize> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = Counter.builder(METRIC_NAME)
+                           .description("Number of file sizes found in the cache")
+                           .tag("storage", storageName)
+                           .tag("result", "hit")
+                           .register(meterRegistry);
+        this.misses = Counter.builder(METRIC_NAME)
+                             .description("Number of file sizes not found in the cache")
+                             .tag("storage", storageName)
+                             .tag("result", "miss")
+                             .register(meterRegistry);
+    }
+
+    /**
+     * @return the cached size of the file with the given url, if not expired
+     */
+    public synchronized Optional<CachedSize> get(String url) {
+        CachedSize cachedSize = sizes.get(url);
+        if (cachedSize != null && cachedSize.lastChecked().plus(timeToLive).isBefore(Instant.now())) {
+            sizes.remove(url);
+            cachedSize = null;
+        }
+        if (cachedSize == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(cachedSize);
+    }
+
+    /**
+     * Cache the size of the file with the given url, checked now
+     */
+    public synchronized void put(String url, long size) {
+        sizes.put(url, new CachedSize(size, Instant.now()));
+    }
+
+    /**
+     * Remove the cached size of the file with the given url, when the file is deleted
+     */
+    public synchronized void invalidate(String url) {
+        sizes.remove(url);
+    }
+
+    public synchronized int size() {
+        return sizes.size();
+    }
+
+    public long getHits() {
+        return (long) hits.count();
+    }
+
+    public long getMisses() {
+        return (long) misses.count();
+    }
+
+    /**
+     * Size of a file
+     *
+     * @param size        size in bytes
+     * @param lastChecked date at which the size was known
+     */
+    public record CachedSize(long size,
+                             Instant lastChecked) {
+
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Output stream uploading its content to a S3 object with a multipart upload, while it is written.
+ * <p>
+ * The content is buffered in parts of the given size. Each full part is uploaded in the background while the next
+ * one is written. At most the given number of parts are uploaded at the same time, writing blocks while this limit
+ * is reached, so the memory used is bounded whatever the size of the object.
+ * <p>
+ * The upload is only completed by {@link #complete()}. Closing the stream without completing it, for instance when
+ * the writer failed, aborts the upload : no partial object is created and the parts already uploaded are released.
+ */
+public class S3MultipartUploadOutputStream extends OutputStream {
+
+    private static final Logger LOGGER = getLogger(S3MultipartUploadOutputStream.class);
+
+    /**
+     * Minimal size of the parts, except the last one, accepted by S3
+     */
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    @Nullable
+    private final S3AsyncClient client;
+
+    private final String bucket;
+
+    private final String key;
+
+    private final int partSize;
+
+    private final Semaphore uploadPermits;
+
+    private final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+
+    private byte[] buffer;
+
+    private int bufferPosition = 0;
+
+    private long size = 0;
+
+    @Nullable
+    private String uploadId;
+
+    private boolean completed = false;
+
+    private boolean closed = false;
+
+    /**
+     * @param partSize          size in bytes of the parts
+     * @param nbParallelUploads maximum number of parts uploaded at the same time
+     */
+    public S3MultipartUploadOutputStream(@Nullable S3AsyncClient client,
+                                         String bucket,
+                                         String key,
+                                         int partSize,
+                                         int nbParallelUploads) {
+        this.client = client;
+        this.bucket = bucket;
+        this.key = key;
+        this.partSize = partSize;
+        this.uploadPermits = new Semaphore(Math.max(1, nbParallelUploads));
+        this.buffer = new byte[partSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        checkOpen();
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            int copied = Math.min(remaining, partSize - bufferPosition);
+            System.arraycopy(bytes, position, buffer, bufferPosition, copied);
+            bufferPosition += copied;
+            position += copied;
+            remaining -= copied;
+            size += copied;
+            if (bufferPosition == partSize) {
+                uploadBuffer();
+            }
+        }
+    }
+
+    /**
+     * Upload the last part, then complete the upload once all the parts are uploaded.
+     *
+     * @return the ETag of the object
+     * @throws IOException if a part or the completion failed, the upload being then aborted
+     */
+    public String complete() throws IOException {
+        checkOpen();
+        try {
+            if (bufferPosition > 0 || parts.isEmpty()) {
+                // An empty object is uploaded as a single empty part
+                uploadBuffer();
+            }
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completedParts.add(join(part));
+            }
+            String eTag = join(completeUpload(uploadId, completedParts));
+            completed = true;
+            LOGGER.debug("Multipart upload of {} completed with {} parts for {} bytes", key, parts.size(), size);
+            return eTag;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Close the stream, aborting the upload if it is not completed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer = null;
+        if (!completed && uploadId != null) {
+            parts.forEach(part -> part.cancel(true));
+            try {
+                join(abortUpload(uploadId));
+                LOGGER.warn("Multipart upload of {} aborted", key);
+            } catch (IOException e) {
+                LOGGER.error("Unable to abort the multipart upload {} of {}", uploadId, key, e);
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes written
+     */
+    public long getSize() {
+        return size;
+    }
+
+    protected CompletableFuture<String> createUpload() {
+        return client.createMultipartUpload(builder -> builder.bucket(bucket).key(key))
+                     .thenApply(response -> response.uploadId());
+    }
+
+    /**
+     * @return the ETag of the uploaded part
+     */
+    protected CompletableFuture<String> uploadPart(String uploadId, int partNumber, byte[] data, int length) {
+        return client.uploadPart(builder -> builder.bucket(bucket)
+                                                   .key(key)
+                                                   .uploadId(uploadId)
+                                                   .partNumber(partNumber)
+                                                   .contentLength((long) length),
+                                 AsyncRequestBody.fromByteBuffer(ByteBuffer.wrap(data, 0, length)))
+                     .thenApply(UploadPartResponse::eTag);
+    }
+
+    /**
+     * @return the ETag of the object
+     */
+    protected CompletableFuture<String> completeUpload(String uploadId, List<CompletedPart> completedParts) {
+        return client.completeMultipartUpload(builder -> builder.bucket(bucket)
+                                                                .key(key)
+                                                                .uploadId(uploadId)
+                                                                .multipartUpload(upload -> upload.parts(
+                                                                    completedParts)))
+                     .thenApply(response -> response.eTag());
+    }
+
+    protected CompletableFuture<?> abortUpload(String uploadId) {
+        return client.abortMultipartUpload(builder -> builder.bucket(bucket).key(key).uploadId(uploadId));
+    }
+
+    /**
+     * Send the buffered part in the background, waiting while the maximum number of parts are being uploaded. The
+     * buffer is handed over to the upload and a new one is used for the next part.
+     */
+    private void uploadBuffer() throws IOException {
+        checkFailedParts();
+        if (uploadId == null) {
+            uploadId = join(createUpload());
+        }
+        try {
+            uploadPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while uploading %s", key));
+        }
+        int partNumber = parts.size() + 1;
+        CompletableFuture<CompletedPart> part;
+        try {
+            part = uploadPart(uploadId, partNumber, buffer, bufferPosition).thenApply(eTag -> CompletedPart.builder()
+                                                                                                           .partNumber(
+                                                                                                               partNumber)
+                                                                                                           .eTag(eTag)
+                                                                                                           .build());
+        } catch (RuntimeException e) {
+            uploadPermits.release();
+            throw new IOException(String.format("Error while uploading part %d of %s", partNumber, key), e);
+        }
+        part.whenComplete((completedPart, error) -> uploadPermits.release());
+        parts.add(part);
+        buffer = new byte[partSize];
+        bufferPosition = 0;
+    }
+
+    /**
+     * Fail as soon as a part failed, instead of writing the remaining content
+     */
+    private void checkFailedParts() throws IOException {
+        for (CompletableFuture<CompletedPart> part : parts) {
+            if (part.isCompletedExceptionally()) {
+                join(part);
+            }
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(String.format("Error during the multipart upload of %s", key), e.getCause());
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("Error during the multipart upload of %s", key), e);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import fr.cnes.regards.framework.s3.domain.StorageCommandID;
+import fr.cnes.regards.framework.s3.dto.StorageConfigDto;
+import fr.cnes.regards.framework.utils.file.DownloadUtils;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Download of S3 objects to local files with parallel ranged requests.
+ * <p>
+ * An object of a single part is downloaded with {@link DownloadUtils}, as the other downloads of the storage.
+ * A bigger object is split in parts of the given size, requested in parallel and written in order in the target
+ * file. A failed part is resumed from its last received byte. The MD5 of the file is updated with the data as it is
+ * written, then checked against the ETag of the object when it is a plain MD5 (single part upload).
+ * The file is downloaded to a temporary file in the same directory, then moved to the target path once complete.
+ */
+public class S3RangedDownloader implements AutoCloseable {
+
+    private static final Logger LOGGER = getLogger(S3RangedDownloader.class);
+
+    /**
+     * Number of attempts to download a part, each one resuming from the last byte received by the previous one
+     */
+    private static final int PART_MAX_ATTEMPT = 3;
+
+    /**
+     * Number of buffers received in advance for each part requested in parallel, while the previous parts are
+     * written
+     */
+    private static final int PART_PREFETCH = 32;
+
+    private static final String TMP_FILE_SUFFIX = ".download";
+
+    private static final Pattern MD5_ETAG_PATTERN = Pattern.compile("^\"?([0-9a-fA-F]{32})\"?$");
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @Nullable
+    private final S3AsyncClient client;
+
+    private final StorageConfigDto storageConfiguration;
+
+    private final long partSizeInBytes;
+
+    private final int nbParallelParts;
+
+    /**
+     * @param client               client used for the ranged requests, closed with the downloader
+     * @param storageConfiguration configuration of the S3 storage containing the objects to download
+     */
+    public S3RangedDownloader(@Nullable S3AsyncClient client,
+                              StorageConfigDto storageConfiguration,
+                              long partSizeInBytes,
+                              int nbParallelParts) {
+        this.client = client;
+        this.storageConfiguration = storageConfiguration;
+        this.partSizeInBytes = Math.max(1, partSizeInBytes);
+        this.nbParallelParts = Math.max(1, nbParallelParts);
+    }
+
+    /**
+     * Download the object of the given key to the given path.
+     *
+     * @throws IOException if the object cannot be downloaded, or if its checksum does not match its ETag
+     */
+    public void download(String key, Path targetFilePath) throws IOException {
+        long start = System.currentTimeMillis();
+        ObjectInfo objectInfo;
+        try {
+            objectInfo = getObjectInfo(key);
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("Unable to get size of %s", key), unwrap(e));
+        }
+        List<Part> parts = split(objectInfo.size());
+        Matcher md5Matcher = objectInfo.eTag() == null ? null : MD5_ETAG_PATTERN.matcher(objectInfo.eTag());
+        String expectedMd5 = md5Matcher != null && md5Matcher.matches() ? md5Matcher.group(1) : null;
+        if (expectedMd5 == null) {
+            LOGGER.debug("ETag {} of {} is not a MD5 checksum, downloaded file not checked", objectInfo.eTag(), key);
+        }
+
+        if (targetFilePath.getParent() != null) {
+            Files.createDirectories(targetFilePath.getParent());
+        }
+        Path tmpFilePath = targetFilePath.resolveSibling(targetFilePath.getFileName() + TMP_FILE_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmpFilePath,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE)) {
+            DigestWriter writer = new DigestWriter(channel, expectedMd5 != null);
+            if (parts.size() == 1) {
+                copyObject(key, writer);
+            } else {
+                Flux.fromIterable(parts)
+                    .flatMapSequential(part -> readPart(key, part), nbParallelParts, PART_PREFETCH)
+                    .publishOn(Schedulers.boundedElastic())
+                    .doOnNext(writer::write)
+                    .then()
+                    .block();
+            }
+            writer.verify(key, objectInfo.size(), expectedMd5);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpFilePath);
+            throw e;
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(tmpFilePath);
+            Throwable cause = unwrap(e);
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(String.format("Error downloading %s", key), cause);
+        }
+        Files.move(tmpFilePath, targetFilePath, StandardCopyOption.REPLACE_EXISTING);
+        LOGGER.debug("[S3 Monitoring] Download of {} ({} bytes in {} parts) took {} ms",
+                     key,
+                     objectInfo.size(),
+                     parts.size(),
+                     System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void close() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    /**
+     * @return the size and the ETag of the object
+     */
+    protected ObjectInfo getObjectInfo(String key) {
+        HeadObjectResponse response = client.headObject(HeadObjectRequest.builder()
+                                                                         .bucket(storageConfiguration.getBucket())
+                                                                         .key(key)
+                                                                         .build()).join();
+        return new ObjectInfo(response.contentLength(), response.eTag());
+    }
+
+    /**
+     * Read the whole object
+     */
+    protected InputStream readObject(String key) throws IOException {
+        return DownloadUtils.getInputStreamFromS3Source(key,
+                                                        storageConfiguration,
+                                                        new StorageCommandID("S3RangedDownload_" + key,
+                                                                             UUID.randomUUID()),
+                                                        10);
+    }
+
+    /**
+     * Read the given range of the object
+     *
+     * @param start first byte of the range
+     * @param end   last byte of the range, included
+     */
+    protected Flux<ByteBuffer> readRange(String key, long start, long end) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                                                   .bucket(storageConfiguration.getBucket())
+                                                   .key(key)
+                                                   .range(String.format("bytes=%d-%d", start, end))
+                                                   .build();
+        return Mono.fromFuture(() -> client.getObject(request, AsyncResponseTransformer.toPublisher()))
+                   .flatMapMany(Flux::from);
+    }
+
+    private List<Part> split(long size) {
+        List<Part> parts = new ArrayList<>();
+        for (long start = 0; start < size; start += partSizeInBytes) {
+            parts.add(new Part(parts.size(), start, Math.min(start + partSizeInBytes, size) - 1));
+        }
+        return parts;
+    }
+
+    private void copyObject(String key, DigestWriter writer) throws IOException {
+        try (InputStream stream = readObject(key)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                writer.write(ByteBuffer.wrap(buffer, 0, read));
+            }
+        }
+    }
+
+    /**
+     * Read the given part, resuming from the last received byte in case of error
+     */
+    private Flux<ByteBuffer> readPart(String key, Part part) {
+        return Flux.defer(() -> {
+                       if (part.received == part.size()) {
+                           // Error after the end of the part
+                           return Flux.<ByteBuffer>empty();
+                       }
+                       return readRange(key, part.start + part.received, part.end).doOnNext(buffer -> part.received +=
+                           buffer.remaining());
+                   })
+                   .concatWith(Mono.fromRunnable(() -> part.checkComplete(key)))
+                   .retryWhen(Retry.max(PART_MAX_ATTEMPT - 1)
+                                   .filter(e -> !(unwrap(e) instanceof NoSuchKeyException))
+                                   .doBeforeRetry(signal -> LOGGER.warn(
+                                       "Download of part {} of {} failed after {} bytes, resuming",
+                                       part.index,
+                                       key,
+                                       part.received,
+                                       signal.failure()))
+                                   .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        Throwable cause = Exceptions.unwrap(e);
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+               && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Size and ETag of an object
+     */
+    protected record ObjectInfo(long size,
+                                @Nullable String eTag) {
+
+    }
+
+    /**
+     * Range of the object, from start to end included
+     */
+    private static class Part {
+
+        private final int index;
+
+        private final long start;
+
+        private final long end;
+
+        /**
+         * Number of bytes of the part already received, written or waiting to be written in the file
+         */
+        private volatile long received = 0;
+
+        private Part(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        private long size() {
+            return end - start + 1;
+        }
+
+        private void checkComplete(String key) {
+            if (received != size()) {
+                throw new IllegalStateException(String.format("Part %d of %s incomplete : %d bytes received, %d "
+                                                              + "expected", index, key, received, size()));
+            }
+        }
+    }
+
+    /**
+     * Writer of the data of the object in order, updating the MD5 of the file with the written data
+     */
+    private static class DigestWriter {
+
+        private final FileChannel channel;
+
+        @Nullable
+        private final MessageDigest digest;
+
+        private long written = 0;
+
+        private DigestWriter(FileChannel channel, boolean computeDigest) {
+            this.channel = channel;
+            try {
+                this.digest = computeDigest ? MessageDigest.getInstance("MD5") : null;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void write(ByteBuffer buffer) {
+            if (digest != null) {
+                digest.update(buffer.duplicate());
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, written);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Check the size of the file, and its MD5 against the expected one if any
+         */
+        private void verify(String key, long size, @Nullable String expectedMd5) throws IOException {
+            if (written != size) {
+                throw new IOException(String.format("Download of %s incomplete : %d bytes written, %d expected",
+                                                    key,
+                                                    written,
+                                                    size));
+            }
+            if (digest != null && expectedMd5 != null) {
+                String checksum = HexFormat.of().formatHex(digest.digest());
+                if (!checksum.equalsIgnoreCase(expectedMd5)) {
+                    throw new IOException(String.format("Checksum of downloaded file %s does not match : %s expected, "
+                                                         + "%s computed", key, expectedMd5, checksum));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Split requests into working subsets bounded by a number of requests and a cumulated size, so that the requests
+ * can be handled by several jobs in parallel.
+ * <p>
+ * Working subsets are balanced by size, as the jobs last as long as their biggest working subset : groups are taken
+ * from the biggest to the smallest, each one being put in the least loaded working subset that can hold it (longest
+ * processing time first). The minimal number of working subsets allowed by the bounds is created first, another one
+ * is created only when a group fits in none of them.
+ * <p>
+ * Requests of the same group, for instance small files of the same archive, are always put in the same working
+ * subset, which may then exceed the bounds. A group exceeding the bounds, such as a request larger than the maximum
+ * size, is alone in its working subset. The order of the requests is kept inside a working subset.
+ */
+public final class WorkingSubsetSplitter {
+
+    private WorkingSubsetSplitter() {
+    }
+
+    /**
+     * @param requests    requests to split
+     * @param sizeOf      size in bytes of a request, unknown sizes must be given as 0
+     * @param groupOf     group of a request, requests of the same group are put in the same working subset
+     * @param maxRequests maximum number of requests of a working subset
+     * @param maxSize     maximum cumulated size in bytes of the requests of a working subset
+     * @return the requests of each working subset
+     */
+    public static <R> List<List<R>> split(Collection<R> requests,
+                                          ToLongFunction<R> sizeOf,
+                                          Function<R, ?> groupOf,
+                                          int maxRequests,
+                                          long maxSize) {
+        Map<Object, List<R>> groups = new LinkedHashMap<>();
+        for (R request : requests) {
+            groups.computeIfAbsent(groupOf.apply(request), group -> new ArrayList<>()).add(request);
+        }
+        return splitGroups(groups.values(), sizeOf, maxRequests, maxSize);
+    }
+
+    /**
+     * Split requests into working subsets, each request being its own group
+     *
+     * @see #split(Collection, ToLongFunction, Function, int, long)
+     */
+    public static <R> List<List<R>> split(Collection<R> requests,
+                                          ToLongFunction<R> sizeOf,
+                                          int maxRequests,
+                                          long maxSize) {
+        return splitGroups(requests.stream().map(List::of).toList(), sizeOf, maxRequests, maxSize);
+    }
+
+    private static <R> List<List<R>> splitGroups(Collection<List<R>> groups,
+                                                 ToLongFunction<R> sizeOf,
+                                                 int maxRequests,
+                                                 long maxSize) {
+        List<SizedGroup<R>> sizedGroups = new ArrayList<>(groups.size());
+        List<List<R>> subsets = new ArrayList<>();
+        long requestCount = 0;
+        long totalSize = 0;
+        for (List<R> group : groups) {
+            SizedGroup<R> sizedGroup = new SizedGroup<>(sizedGroups.size(),
+                                                        group,
+                                                        group.stream().mapToLong(sizeOf).sum());
+            if (group.size() > maxRequests || sizedGroup.size() > maxSize) {
+                subsets.add(group);
+            } else {
+                sizedGroups.add(sizedGroup);
+                requestCount += group.size();
+                totalSize += sizedGroup.size();
+            }
+        }
+        if (sizedGroups.isEmpty()) {
+            return subsets;
+        }
+        // Least loaded working subset first
+        PriorityQueue<Subset<R>> openSubsets = new PriorityQueue<>(Comparator.comparingLong(Subset<R>::size)
+                                                                             .thenComparingInt(Subset::requestCount)
+                                                                             .thenComparingInt(Subset::index));
+        List<Subset<R>> allSubsets = new ArrayList<>();
+        long minSubsetCount = Math.max(ceilDiv(requestCount, Math.max(maxRequests, 1)),
+                                       ceilDiv(totalSize, Math.max(maxSize, 1)));
+        for (int i = 0; i < Math.max(minSubsetCount, 1); i++) {
+            Subset<R> subset = new Subset<>(allSubsets.size());
+            allSubsets.add(subset);
+            openSubsets.add(subset);
+        }
+        sizedGroups.sort(Comparator.comparingLong(SizedGroup<R>::size).reversed());
+        List<Subset<R>> skippedSubsets = new ArrayList<>();
+        for (SizedGroup<R> group : sizedGroups) {
+            Subset<R> target = null;
+            // Subsets too full in number of requests are skipped. The least loaded subset not holding the group
+            // size, no other one can.
+            while (target == null && !openSubsets.isEmpty() && openSubsets.peek().size() + group.size() <= maxSize) {
+                Subset<R> subset = openSubsets.poll();
+                if (subset.requestCount() + group.requests().size() <= maxRequests) {
+                    target = subset;
+                } else {
+                    skippedSubsets.add(subset);
+                }
+            }
+            if (target == null) {
+                target = new Subset<>(allSubsets.size());
+                allSubsets.add(target);
+            }
+            target.add(group);
+            if (target.requestCount() < maxRequests) {
+                openSubsets.add(target);
+            }
+            openSubsets.addAll(skippedSubsets);
+            skippedSubsets.clear();
+        }
+        for (Subset<R> subset : allSubsets) {
+            if (!subset.groups.isEmpty()) {
+                subsets.add(subset.requests());
+            }
+        }
+        return subsets;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * Group of requests, with its rank in the requests to split and its cumulated size
+     */
+    private record SizedGroup<R>(int index,
+                                 List<R> requests,
+                                 long size) {
+
+    }
+
+    /**
+     * Working subset being built
+     */
+    private static final class Subset<R> {
+
+        private final int index;
+
+        private final List<SizedGroup<R>> groups = new ArrayList<>();
+
+        private int requestCount;
+
+        private long size;
+
+        private Subset(int index) {
+            this.index = index;
+        }
+
+        private void add(SizedGroup<R> group) {
+            groups.add(group);
+            requestCount += group.requests().size();
+            size += group.size();
+        }
+
+        private int index() {
+            return index;
+        }
+
+        private int requestCount() {
+            return requestCount;
+        }
+
+        private long size() {
+            return size;
+        }
+
+        /**
+         * @return the requests of the working subset, in the order of the requests to split
+         */
+        private List<R> requests() {
+            List<R> requests = new ArrayList<>(requestCount);
+            groups.stream()
+                  .sorted(Comparator.comparingInt(SizedGroup::index))
+                  .forEach(group -> requests.addAll(group.requests()));
+            return requests;
+        }
+    }
+}
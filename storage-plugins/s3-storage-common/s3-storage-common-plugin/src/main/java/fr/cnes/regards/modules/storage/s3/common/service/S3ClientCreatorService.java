@@ -23,6 +23,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.net.URI;
 
 /**
  * Service to create {@link S3HighLevelReactiveClient s3 clients}. The client reactor scheduler will be named
@@ -47,4 +54,18 @@ public class S3ClientCreatorService {
         int maxBytesPerPart = multipartThresholdMb * 1024 * 1024;
         return new S3HighLevelReactiveClient(scheduler, maxBytesPerPart, nbParallelPartsUpload);
     }
+
+    /**
+     * Create a new low level {@link S3AsyncClient s3 client}, for the operations not provided by the
+     * {@link S3HighLevelReactiveClient high level client}. The client must be closed after use.
+     */
+    public S3AsyncClient createS3AsyncClient(String endpoint, String region, String key, String secret) {
+        return S3AsyncClient.builder()
+                            .endpointOverride(URI.create(endpoint))
+                            .region(Region.of(region))
+                            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(key,
+                                                                                                             secret)))
+                            .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                            .build();
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test for {@link ByteBufferFluxInputStream}
+ */
+public class ByteBufferFluxInputStreamTest {
+
+    private static final int PREFETCH = 16;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Test
+    public void test_read_content() throws IOException {
+        byte[] content = new byte[10 * CHUNK_SIZE + 17];
+        new Random(0).nextBytes(content);
+        Flux<ByteBuffer> data = Flux.range(0, 11)
+                                    .map(i -> ByteBuffer.wrap(content,
+                                                              i * CHUNK_SIZE,
+                                                              Math.min(CHUNK_SIZE, content.length - i * CHUNK_SIZE)));
+
+        try (InputStream stream = new ByteBufferFluxInputStream(data, PREFETCH)) {
+            Assertions.assertArrayEquals(content, stream.readAllBytes());
+            Assertions.assertEquals(-1, stream.read());
+        }
+    }
+
+    @Test
+    public void test_read_large_content_with_bounded_memory() throws IOException {
+        // Given a 4 GB content, far over the heap given to the tests, made of the same chunk sent again and again
+        long nbChunks = 4L * 1024 * 1024 * 1024 / CHUNK_SIZE;
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        AtomicLong emittedChunks = new AtomicLong();
+        AtomicLong maxPendingChunks = new AtomicLong();
+        AtomicLong readBytes = new AtomicLong();
+        Flux<ByteBuffer> data = Flux.generate(() -> 0L, (index, sink) -> {
+            if (index < nbChunks) {
+                sink.next(chunk.duplicate());
+            } else {
+                sink.complete();
+            }
+            return index + 1;
+        });
+        data = data.doOnNext(buffer -> {
+            long pending = emittedChunks.incrementAndGet() - readBytes.get() / CHUNK_SIZE;
+            maxPendingChunks.accumulateAndGet(pending, Math::max);
+        });
+
+        // When the content is read
+        try (InputStream stream = new ByteBufferFluxInputStream(data, PREFETCH)) {
+            byte[] bytes = new byte[8192];
+            int read;
+            while ((read = stream.read(bytes)) >= 0) {
+                readBytes.addAndGet(read);
+            }
+        }
+
+        // Then the whole content is read while at most the prefetched chunks are held
+        Assertions.assertEquals(nbChunks * CHUNK_SIZE, readBytes.get());
+        Assertions.assertTrue(maxPendingChunks.get() <= PREFETCH + 1,
+                              "Too many chunks pending : " + maxPendingChunks.get());
+    }
+
+    @Test
+    public void test_error_thrown_as_io_exception() throws IOException {
+        Flux<ByteBuffer> data = Flux.just(ByteBuffer.wrap(new byte[] { 1, 2 }))
+                                    .concatWith(Flux.error(new IllegalStateException("Connection reset")));
+
+        try (InputStream stream = new ByteBufferFluxInputStream(data, PREFETCH)) {
+            Assertions.assertEquals(1, stream.read());
+            Assertions.assertEquals(2, stream.read());
+            IOException exception = Assertions.assertThrows(IOException.class, stream::read);
+            Assertions.assertInstanceOf(IllegalStateException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    public void test_close_cancels_flux() throws IOException {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<ByteBuffer> data = Flux.<ByteBuffer>generate(sink -> sink.next(ByteBuffer.wrap(new byte[CHUNK_SIZE])))
+                                    .doOnCancel(() -> cancelled.set(true));
+
+        InputStream stream = new ByteBufferFluxInputStream(data, PREFETCH);
+        Assertions.assertEquals(CHUNK_SIZE, stream.read(new byte[CHUNK_SIZE]));
+        stream.close();
+
+        Assertions.assertTrue(cancelled.get());
+        Assertions.assertThrows(IOException.class, stream::read);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Test for {@link FileSizeCache}
+ */
+public class FileSizeCacheTest {
+
+    private static final String URL = "http://s3server:9000/bucket/path/file.txt";
+
+    @Test
+    public void test_hits_and_misses() {
+        // Given
+        FileSizeCache cache = createCache(Duration.ofMinutes(5));
+
+        // When
+        Optional<FileSizeCache.CachedSize> beforePut = cache.get(URL);
+        cache.put(URL, 1234L);
+        Optional<FileSizeCache.CachedSize> afterPut = cache.get(URL);
+        cache.get(URL);
+
+        // Then
+        Assertions.assertTrue(beforePut.isEmpty());
+        Assertions.assertTrue(afterPut.isPresent());
+        Assertions.assertEquals(1234L, afterPut.get().size());
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void test_invalidate() {
+        // Given
+        FileSizeCache cache = createCache(Duration.ofMinutes(5));
+        cache.put(URL, 1234L);
+
+        // When
+        cache.invalidate(URL);
+
+        // Then
+        Assertions.assertTrue(cache.get(URL).isEmpty());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_expiration() throws InterruptedException {
+        // Given
+        FileSizeCache cache = createCache(Duration.ZERO);
+        cache.put(URL, 1234L);
+
+        // When
+        Thread.sleep(10);
+
+        // Then
+        Assertions.assertTrue(cache.get(URL).isEmpty());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_least_recently_used_size_is_evicted() {
+        // Given a full cache
+        FileSizeCache cache = createCache(Duration.ofMinutes(5));
+        for (int i = 0; i < 10; i++) {
+            cache.put(URL + i, i);
+        }
+
+        // When
+        cache.get(URL + 0);
+        cache.put(URL + 10, 10);
+
+        // Then
+        Assertions.assertEquals(10, cache.size());
+        Assertions.assertEquals(0L, cache.get(URL + 0).map(FileSizeCache.CachedSize::size).orElse(-1L));
+        Assertions.assertTrue(cache.get(URL + 1).isEmpty());
+        Assertions.assertEquals(10L, cache.get(URL + 10).map(FileSizeCache.CachedSize::size).orElse(-1L));
+    }
+
+    @Test
+    public void test_hits_and_misses_are_registered() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FileSizeCache cache = new FileSizeCache(Duration.ofMinutes(5), 10, meterRegistry, "theStorage");
+        cache.put(URL, 1234L);
+
+        // When
+        cache.get(URL);
+        cache.get(URL + "other");
+
+        // Then
+        Assertions.assertEquals(1.0,
+                                meterRegistry.get("regards.s3.file.size.cache.gets")
+                                             .tags("storage", "theStorage", "result", "hit")
+                                             .counter()
+                                             .count());
+        Assertions.assertEquals(1.0,
+                                meterRegistry.get("regards.s3.file.size.cache.gets")
+                                             .tags("storage", "theStorage", "result", "miss")
+                                             .counter()
+                                             .count());
+    }
+
+    private static FileSizeCache createCache(Duration timeToLive) {
+        return new FileSizeCache(timeToLive, 10, new SimpleMeterRegistry(), "test");
+    }
+}
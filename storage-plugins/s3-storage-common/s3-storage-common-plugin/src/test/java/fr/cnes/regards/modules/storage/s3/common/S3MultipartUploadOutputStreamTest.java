@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for {@link S3MultipartUploadOutputStream}
+ */
+public class S3MultipartUploadOutputStreamTest {
+
+    private static final int PART_SIZE = 1000;
+
+    private static final int PARALLEL_UPLOADS = 2;
+
+    private final ExecutorService uploadExecutor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    public void after() {
+        uploadExecutor.shutdownNow();
+    }
+
+    @Test
+    public void test_upload_in_parts() throws IOException {
+        // Given a content of several parts, the last one being smaller
+        byte[] content = new byte[10 * PART_SIZE + 123];
+        new Random(0).nextBytes(content);
+        InMemoryUpload upload = new InMemoryUpload(-1);
+
+        // When the content is written by chunks not aligned on the parts
+        for (int offset = 0; offset < content.length; offset += 333) {
+            upload.write(content, offset, Math.min(333, content.length - offset));
+        }
+        String eTag = upload.complete();
+
+        // Then the object is the whole content, never more parts than allowed being uploaded at the same time
+        Assertions.assertEquals("etag-11", eTag);
+        Assertions.assertArrayEquals(content, upload.object.toByteArray());
+        Assertions.assertEquals(content.length, upload.getSize());
+        Assertions.assertEquals(11, upload.uploadedParts.size());
+        Assertions.assertTrue(upload.maxParallelUploads.get() <= PARALLEL_UPLOADS,
+                              "Too many parts uploaded at the same time : " + upload.maxParallelUploads.get());
+        Assertions.assertFalse(upload.aborted.get());
+    }
+
+    @Test
+    public void test_empty_upload() throws IOException {
+        InMemoryUpload upload = new InMemoryUpload(-1);
+
+        upload.complete();
+
+        Assertions.assertEquals(0, upload.object.size());
+        Assertions.assertEquals(1, upload.uploadedParts.size());
+    }
+
+    @Test
+    public void test_failed_part_aborts_upload() {
+        InMemoryUpload upload = new InMemoryUpload(2);
+
+        Assertions.assertThrows(IOException.class, () -> {
+            try (upload) {
+                byte[] chunk = new byte[PART_SIZE];
+                for (int i = 0; i < 10; i++) {
+                    upload.write(chunk);
+                }
+                upload.complete();
+            }
+        });
+        Assertions.assertTrue(upload.aborted.get());
+        Assertions.assertFalse(upload.completed.get());
+    }
+
+    @Test
+    public void test_close_without_complete_aborts_upload() throws IOException {
+        InMemoryUpload upload = new InMemoryUpload(-1);
+        try (OutputStream out = upload) {
+            out.write(new byte[3 * PART_SIZE]);
+            // Writer fails before completing the upload
+        }
+
+        Assertions.assertTrue(upload.aborted.get());
+        Assertions.assertFalse(upload.completed.get());
+        Assertions.assertThrows(IOException.class, () -> upload.write(1));
+    }
+
+    /**
+     * Upload to memory, parts being uploaded asynchronously
+     */
+    private class InMemoryUpload extends S3MultipartUploadOutputStream {
+
+        private final int failingPart;
+
+        private final Map<Integer, byte[]> uploadedParts = new ConcurrentHashMap<>();
+
+        private final AtomicInteger parallelUploads = new AtomicInteger();
+
+        private final AtomicInteger maxParallelUploads = new AtomicInteger();
+
+        private final AtomicBoolean aborted = new AtomicBoolean();
+
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private final ByteArrayOutputStream object = new ByteArrayOutputStream();
+
+        /**
+         * @param failingPart number of the part whose upload fails, -1 for none
+         */
+        private InMemoryUpload(int failingPart) {
+            super(null, "bucket", "key", PART_SIZE, PARALLEL_UPLOADS);
+            this.failingPart = failingPart;
+        }
+
+        @Override
+        protected CompletableFuture<String> createUpload() {
+            return CompletableFuture.completedFuture("upload");
+        }
+
+        @Override
+        protected CompletableFuture<String> uploadPart(String uploadId, int partNumber, byte[] data, int length) {
+            return CompletableFuture.supplyAsync(() -> {
+                maxParallelUploads.accumulateAndGet(parallelUploads.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                    if (partNumber == failingPart) {
+                        throw new IllegalStateException("Connection reset");
+                    }
+                    byte[] part = new byte[length];
+                    System.arraycopy(data, 0, part, 0, length);
+                    uploadedParts.put(partNumber, part);
+                    return "part-" + partNumber;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } finally {
+                    parallelUploads.decrementAndGet();
+                }
+            }, uploadExecutor);
+        }
+
+        @Override
+        protected CompletableFuture<String> completeUpload(String uploadId, List<CompletedPart> completedParts) {
+            for (int i = 0; i < completedParts.size(); i++) {
+                CompletedPart part = completedParts.get(i);
+                Assertions.assertEquals(i + 1, part.partNumber());
+                Assertions.assertEquals("part-" + (i + 1), part.eTag());
+                object.writeBytes(uploadedParts.get(part.partNumber()));
+            }
+            completed.set(true);
+            return CompletableFuture.completedFuture("etag-" + completedParts.size());
+        }
+
+        @Override
+        protected CompletableFuture<?> abortUpload(String uploadId) {
+            aborted.set(true);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
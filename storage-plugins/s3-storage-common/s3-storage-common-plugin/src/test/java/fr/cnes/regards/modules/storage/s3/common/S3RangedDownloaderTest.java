@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import fr.cnes.regards.framework.s3.domain.StorageConfigBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for {@link S3RangedDownloader}
+ */
+public class S3RangedDownloaderTest {
+
+    private static final int PART_SIZE = 1000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void test_download_in_parts() throws Exception {
+        // Given an object of several parts, the last one being smaller
+        byte[] content = randomContent(10 * PART_SIZE + 123);
+        InMemoryDownloader downloader = new InMemoryDownloader(content, md5(content), -1);
+        Path target = tempDir.resolve("dir").resolve("file");
+
+        // When
+        downloader.download("key", target);
+
+        // Then
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(11, downloader.rangeRequests.get());
+        Assertions.assertFalse(Files.exists(tempDir.resolve("dir").resolve("file.download")));
+    }
+
+    @Test
+    public void test_download_single_part_object() throws Exception {
+        // Given an object smaller than a part
+        byte[] content = randomContent(PART_SIZE / 2);
+        InMemoryDownloader downloader = new InMemoryDownloader(content, md5(content), -1);
+        Path target = tempDir.resolve("file");
+
+        // When
+        downloader.download("key", target);
+
+        // Then the object is read at once, without ranged request
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(0, downloader.rangeRequests.get());
+        Assertions.assertEquals(1, downloader.objectRequests.get());
+    }
+
+    @Test
+    public void test_download_resumes_failed_part() throws Exception {
+        // Given an object whose first request fails in the middle of the part
+        byte[] content = randomContent(3 * PART_SIZE);
+        InMemoryDownloader downloader = new InMemoryDownloader(content, md5(content), PART_SIZE / 2);
+        Path target = tempDir.resolve("file");
+
+        // When
+        downloader.download("key", target);
+
+        // Then the part is resumed from the failure offset
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(4, downloader.rangeRequests.get());
+        Assertions.assertTrue(downloader.resumedFromFailureOffset);
+    }
+
+    @Test
+    public void test_download_fails_if_checksum_does_not_match() throws Exception {
+        byte[] content = randomContent(2 * PART_SIZE);
+        InMemoryDownloader downloader = new InMemoryDownloader(content, md5(new byte[] { 1 }), -1);
+        Path target = tempDir.resolve("file");
+
+        Assertions.assertThrows(IOException.class, () -> downloader.download("key", target));
+        Assertions.assertFalse(Files.exists(target));
+        Assertions.assertFalse(Files.exists(tempDir.resolve("file.download")));
+    }
+
+    @Test
+    public void test_download_multipart_etag_not_checked() throws Exception {
+        byte[] content = randomContent(PART_SIZE + 1);
+        InMemoryDownloader downloader = new InMemoryDownloader(content, "\"" + md5(new byte[] { 1 }) + "-2\"", -1);
+        Path target = tempDir.resolve("file");
+
+        downloader.download("key", target);
+
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void test_download_empty_object() throws Exception {
+        InMemoryDownloader downloader = new InMemoryDownloader(new byte[0], md5(new byte[0]), -1);
+        Path target = tempDir.resolve("file");
+
+        downloader.download("key", target);
+
+        Assertions.assertEquals(0, Files.size(target));
+        Assertions.assertEquals(0, downloader.rangeRequests.get());
+    }
+
+    private static byte[] randomContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    private static String md5(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+    }
+
+    /**
+     * Downloader of an object in memory, sent by chunks of 100 bytes
+     */
+    private static class InMemoryDownloader extends S3RangedDownloader {
+
+        private final byte[] content;
+
+        private final String eTag;
+
+        private final AtomicInteger rangeRequests = new AtomicInteger();
+
+        private final AtomicInteger objectRequests = new AtomicInteger();
+
+        /**
+         * Offset at which the first request fails, negative for no failure
+         */
+        private final int failureOffset;
+
+        private final AtomicBoolean failed = new AtomicBoolean();
+
+        private volatile boolean resumedFromFailureOffset = false;
+
+        private InMemoryDownloader(byte[] content, String eTag, int failureOffset) {
+            super(null,
+                  new StorageConfigBuilder("http://localhost", "region", "key", "secret").bucket("bucket").build(),
+                  PART_SIZE,
+                  4);
+            this.content = content;
+            this.eTag = eTag;
+            this.failureOffset = failureOffset;
+        }
+
+        @Override
+        protected ObjectInfo getObjectInfo(String key) {
+            return new ObjectInfo(content.length, eTag);
+        }
+
+        @Override
+        protected InputStream readObject(String key) {
+            objectRequests.incrementAndGet();
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        protected Flux<ByteBuffer> readRange(String key, long start, long end) {
+            rangeRequests.incrementAndGet();
+            if (start == failureOffset) {
+                resumedFromFailureOffset = true;
+            }
+            Flux<ByteBuffer> chunks = Flux.range(0, (int) ((end - start) / 100 + 1))
+                                          .map(i -> start + i * 100L)
+                                          .map(chunkStart -> ByteBuffer.wrap(content,
+                                                                             (int) chunkStart,
+                                                                             (int) Math.min(100,
+                                                                                            end - chunkStart + 1)));
+            if (failureOffset >= 0 && start == 0 && !failed.getAndSet(true)) {
+                return chunks.take(failureOffset / 100).concatWith(Flux.error(new IOException("Connection reset")));
+            }
+            return chunks;
+        }
+    }
+}
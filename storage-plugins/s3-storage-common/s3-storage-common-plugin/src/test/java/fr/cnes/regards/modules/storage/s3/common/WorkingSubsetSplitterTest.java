@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017-2025 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.storage.s3.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.stream.IntStream;
+
+/**
+ * Test for {@link WorkingSubsetSplitter}
+ */
+public class WorkingSubsetSplitterTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void test_split_by_number_of_requests() {
+        // Given 50 000 small files
+        List<Request> requests = IntStream.range(0, 50_000).mapToObj(i -> new Request("file" + i, 1024)).toList();
+
+        // When
+        List<List<Request>> subsets = WorkingSubsetSplitter.split(requests, Request::size, 1000, 10_240 * MB);
+
+        // Then
+        Assertions.assertEquals(50, subsets.size());
+        subsets.forEach(subset -> Assertions.assertEquals(1000, subset.size()));
+        assertAllRequestsSplit(requests, subsets);
+    }
+
+    @Test
+    public void test_split_by_size() {
+        // Given big and small files mixed
+        List<Request> requests = IntStream.range(0, 1000)
+                                          .mapToObj(i -> new Request("file" + i, i % 10 == 0 ? 300 * MB : MB))
+                                          .toList();
+
+        // When
+        List<List<Request>> subsets = WorkingSubsetSplitter.split(requests, Request::size, 100, 1024 * MB);
+
+        // Then no subset exceeds the bounds, and the big files are spread among the subsets
+        assertAllRequestsSplit(requests, subsets);
+        for (List<Request> subset : subsets) {
+            Assertions.assertTrue(subset.size() <= 100);
+            Assertions.assertTrue(size(subset) <= 1024 * MB);
+            Assertions.assertTrue(subset.stream().filter(request -> request.size() > MB).count() <= 3);
+        }
+        // 100 big files, 3 per subset at most, small files filling the subsets with fewer big files
+        Assertions.assertEquals(34, subsets.size());
+    }
+
+    @Test
+    public void test_split_balanced_by_size() {
+        // Given small files first, then big files
+        List<Request> requests = new ArrayList<>();
+        IntStream.range(0, 20).forEach(i -> requests.add(new Request("small" + i, 10 * MB)));
+        IntStream.range(0, 4).forEach(i -> requests.add(new Request("big" + i, 900 * MB)));
+
+        // When
+        List<List<Request>> subsets = WorkingSubsetSplitter.split(requests, Request::size, 100, 1024 * MB);
+
+        // Then each subset holds a big file and the same number of small files
+        assertAllRequestsSplit(requests, subsets);
+        Assertions.assertEquals(4, subsets.size());
+        for (List<Request> subset : subsets) {
+            Assertions.assertEquals(950 * MB, size(subset));
+            Assertions.assertEquals(6, subset.size());
+        }
+    }
+
+    @Test
+    public void test_split_skewed_sizes_balanced() {
+        // Given files with skewed sizes, from 1 MB to 1600 MB
+        List<Request> requests = IntStream.rangeClosed(1, 40)
+                                          .mapToObj(i -> new Request("file" + i, (long) i * i * MB))
+                                          .toList();
+
+        // When
+        List<List<Request>> subsets = WorkingSubsetSplitter.split(requests, Request::size, 100, 4096 * MB);
+
+        // Then subsets are within the bounds and their sizes differ by less than the smallest big file
+        assertAllRequestsSplit(requests, subsets);
+        LongSummaryStatistics sizes = subsets.stream()
+                                             .mapToLong(WorkingSubsetSplitterTest::size)
+                                             .summaryStatistics();
+        Assertions.assertTrue(sizes.getMax() <= 4096 * MB);
+        Assertions.assertTrue(sizes.getMax() - sizes.getMin() < 100 * MB,
+                              "Unbalanced subsets : " + sizes.getMin() / MB + "MB to " + sizes.getMax() / MB + "MB");
+    }
+
+    @Test
+    public void test_file_larger_than_max_size_is_alone() {
+        // Given
+        List<Request> requests = List.of(new Request("small1", MB),
+                                         new Request("huge", 5000 * MB),
+                                         new Request("small2", MB));
+
+        // When
+        List<List<Request>> subsets = WorkingSubsetSplitter.split(requests, Request::size, 100, 1024 * MB);
+
+        // Then
+        Assertions.assertEquals(2, subsets.size());
+        Assertions.assertTrue(subsets.contains(List.of(requests.get(1))));
+        Assertions.assertTrue(subsets.contains(List.of(requests.get(0), requests.get(2))));
+    }
+
+    @Test
+    public void test_files_of_same_group_are_not_split() {
+        // Given small files of 3 archives, interleaved
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            requests.add(new Request("archive" + (i % 3) + ".zip?fileName=file" + i, MB));
+        }
+
+        // When
+        List<List<Request>> subsets = WorkingSubsetSplitter.split(requests,
+                                                                  Request::size,
+                                                                  request -> request.url().split("\\?")[0],
+                                                                  15,
+                                                                  1024 * MB);
+
+        // Then each archive is in a single subset, no two of them fit together
+        Assertions.assertEquals(3, subsets.size());
+        for (List<Request> subset : subsets) {
+            Assertions.assertEquals(10, subset.size());
+            Assertions.assertEquals(1, subset.stream().map(request -> request.url().split("\\?")[0]).distinct().count());
+        }
+    }
+
+    @Test
+    public void test_split_no_request() {
+        Assertions.assertTrue(WorkingSubsetSplitter.split(List.<Request>of(), Request::size, 10, MB).isEmpty());
+    }
+
+    private static void assertAllRequestsSplit(List<Request> requests, List<List<Request>> subsets) {
+        List<Request> splitRequests = subsets.stream().flatMap(List::stream).toList();
+        Assertions.assertEquals(requests.size(), splitRequests.size());
+        Assertions.assertEquals(new HashSet<>(requests), new HashSet<>(splitRequests));
+    }
+
+    private static long size(List<Request> requests) {
+        return requests.stream().mapToLong(Request::size).sum();
+    }
+
+    private record Request(String url,
+                           long size) {
+
+    }
+}
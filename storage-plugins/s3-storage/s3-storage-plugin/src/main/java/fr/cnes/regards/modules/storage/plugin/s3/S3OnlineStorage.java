@@ -3,6 +3,8 @@ package fr.cnes.regards.modules.storage.plugin.s3;
 import fr.cnes.regards.framework.module.rest.exception.EntityInvalidException;
 import fr.cnes.regards.framework.module.rest.exception.ModuleException;
 import fr.cnes.regards.framework.modules.plugins.annotations.Plugin;
+import fr.cnes.regards.framework.modules.plugins.annotations.PluginDestroy;
+import fr.cnes.regards.framework.modules.plugins.annotations.PluginParameter;
 import fr.cnes.regards.framework.s3.client.S3HighLevelReactiveClient;
 import fr.cnes.regards.framework.s3.domain.StorageCommandID;
 import fr.cnes.regards.framework.utils.file.DownloadUtils;
@@ -12,11 +14,29 @@ import fr.cnes.regards.modules.fileaccess.plugin.domain.*;
 import fr.cnes.regards.modules.storage.plugin.s3.dto.S3StorageConfigurationDTO;
 import fr.cnes.regards.modules.storage.s3.common.AbstractS3Storage;
 import fr.cnes.regards.modules.storage.s3.common.dto.AbstractS3ConfigurationDto;
+import org.slf4j.Logger;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Main class of plugin of storage(online type) in S3 server
@@ -32,6 +52,40 @@ import java.util.UUID;
         url = "https://regardsoss.github.io/")
 public class S3OnlineStorage extends AbstractS3Storage implements IOnlineStorageLocation {
 
+    public static final String PARALLEL_REQUEST_NUMBER_PARAM_NAME = "S3_Parallel_Request_Number";
+
+    public static final String DELETE_BATCH_SIZE_PARAM_NAME = "S3_Delete_Batch_Size";
+
+    /**
+     * Maximum number of objects deleted by a single S3 request
+     */
+    private static final int MAX_DELETE_BATCH_SIZE = 1000;
+
+    private static final String NO_SUCH_KEY_ERROR_CODE = "NoSuchKey";
+
+    private static final Logger LOGGER = getLogger(S3OnlineStorage.class);
+
+    @PluginParameter(name = PARALLEL_REQUEST_NUMBER_PARAM_NAME,
+                     label = "Number of parallel requests",
+                     description = "Maximum number of files stored, or of deletion requests sent, in parallel to the "
+                                   + "S3 server.",
+                     defaultValue = "5",
+                     optional = true)
+    private int nbParallelRequests = 5;
+
+    @PluginParameter(name = DELETE_BATCH_SIZE_PARAM_NAME,
+                     label = "Number of files deleted per request",
+                     description = "Number of files deleted by a single S3 request (at most 1000). A value of 1 "
+                                   + "deletes each file with its own request.",
+                     defaultValue = "1000",
+                     optional = true)
+    private int deleteBatchSize = MAX_DELETE_BATCH_SIZE;
+
+    /**
+     * Low level client of the multi-objects deletion requests, shared by all the deletions of the plugin instance
+     */
+    private S3AsyncClient deleteClient;
+
     /**
      * Store a simple file workingsubsets in S3 server
      *
@@ -42,10 +96,16 @@ public class S3OnlineStorage extends AbstractS3Storage implements IOnlineStorage
     public void store(FileStorageWorkingSubset workingSet, IStorageProgressManager progressManager) {
         String tenant = runtimeTenantResolver.getTenant();
         try (S3HighLevelReactiveClient client = createS3Client()) {
-            workingSet.getFileReferenceRequests().forEach(request -> {
-                runtimeTenantResolver.forceTenant(tenant);
-                handleStoreRequest(request, client, progressManager, rootPath);
-            });
+            // Source files are read with blocking streams, so each storage is run on an elastic thread
+            Flux.fromIterable(workingSet.getFileReferenceRequests())
+                .flatMap(request -> storeRequest(request,
+                                                 client,
+                                                 progressManager,
+                                                 rootPath,
+                                                 tenant).subscribeOn(Schedulers.boundedElastic()),
+                         getNbParallelRequests())
+                .then()
+                .block();
         }
     }
 
@@ -78,11 +138,144 @@ public class S3OnlineStorage extends AbstractS3Storage implements IOnlineStorage
      */
     @Override
     public void delete(FileDeletionWorkingSubset workingSet, IDeletionProgressManager progressManager) {
-        try (S3HighLevelReactiveClient client = createS3Client()) {
-            workingSet.getFileDeletionRequests().forEach(r -> handleDeleteRequest(r, client, progressManager));
+        String tenant = runtimeTenantResolver.getTenant();
+        if (Math.min(deleteBatchSize, MAX_DELETE_BATCH_SIZE) <= 1) {
+            try (S3HighLevelReactiveClient client = createS3Client()) {
+                Flux.fromIterable(workingSet.getFileDeletionRequests())
+                    .flatMap(request -> deleteRequest(request, client, progressManager, tenant),
+                             getNbParallelRequests())
+                    .then()
+                    .block();
+            }
+        } else {
+            deleteByBatch(workingSet.getFileDeletionRequests(), progressManager, tenant);
+        }
+    }
+
+    /**
+     * Delete the files of the given requests with multi-objects deletion requests, each one deleting up to
+     * {@link #deleteBatchSize} objects. The progress manager is informed of the results of a batch as soon as its
+     * request ends.
+     */
+    private void deleteByBatch(Collection<FileDeletionRequestDto> requests,
+                               IDeletionProgressManager progressManager,
+                               String tenant) {
+        // Requests of the same file are deleted with a single key
+        Map<String, List<FileDeletionRequestDto>> requestsByKey = new LinkedHashMap<>();
+        for (FileDeletionRequestDto request : requests) {
+            getFileSizeCache().invalidate(request.getFileReference().getLocation().getUrl());
+            try {
+                requestsByKey.computeIfAbsent(getEntryKey(request.getFileReference().getLocation().getUrl()),
+                                              k -> new ArrayList<>()).add(request);
+            } catch (MalformedURLException e) {
+                runWithTenant(tenant,
+                              () -> progressManager.deletionFailed(request,
+                                                                   "Impossible to delete the file because its url "
+                                                                   + "is invalid: "
+                                                                   + request.getFileReference()
+                                                                            .getLocation()
+                                                                            .getUrl()));
+            }
+        }
+        if (requestsByKey.isEmpty()) {
+            return;
+        }
+        int batchSize = Math.min(deleteBatchSize, MAX_DELETE_BATCH_SIZE);
+        S3AsyncClient client = getDeleteClient();
+        Flux.fromIterable(requestsByKey.keySet())
+            .buffer(batchSize)
+            .flatMap(keys -> deleteBatch(client, keys, requestsByKey, progressManager, tenant), getNbParallelRequests())
+            .then()
+            .block();
+    }
+
+    /**
+     * Deletion client is created at first use, as the plugin can be used without initialization in tests
+     */
+    private synchronized S3AsyncClient getDeleteClient() {
+        if (deleteClient == null) {
+            deleteClient = createS3AsyncClient();
+        }
+        return deleteClient;
+    }
+
+    @PluginDestroy
+    public synchronized void onDestroy() {
+        if (deleteClient != null) {
+            deleteClient.close();
+            deleteClient = null;
         }
     }
 
+    private Mono<Void> deleteBatch(S3AsyncClient client,
+                                   List<String> keys,
+                                   Map<String, List<FileDeletionRequestDto>> requestsByKey,
+                                   IDeletionProgressManager progressManager,
+                                   String tenant) {
+        List<ObjectIdentifier> objects = keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList();
+        DeleteObjectsRequest deleteRequest = DeleteObjectsRequest.builder()
+                                                                 .bucket(bucket)
+                                                                 .delete(Delete.builder()
+                                                                               .objects(objects)
+                                                                               .quiet(true)
+                                                                               .build())
+                                                                 .build();
+        long start = System.currentTimeMillis();
+        return Mono.fromFuture(() -> client.deleteObjects(deleteRequest))
+                   .doOnNext(response -> runWithTenant(tenant,
+                                                       () -> handleDeleteBatchResponse(keys,
+                                                                                       response,
+                                                                                       requestsByKey,
+                                                                                       progressManager)))
+                   .doFinally(signal -> LOGGER.trace("[S3 Monitoring] Deletion of {} files took {} ms",
+                                                     keys.size(),
+                                                     System.currentTimeMillis() - start))
+                   .then()
+                   .onErrorResume(e -> {
+                       runWithTenant(tenant, () -> {
+                           LOGGER.error("Deletion of {} files failed", keys.size(), e);
+                           keys.stream()
+                               .flatMap(key -> requestsByKey.get(key).stream())
+                               .forEach(request -> progressManager.deletionFailed(request,
+                                                                                  "Deletion failure in S3 storage"));
+                       });
+                       return Mono.empty();
+                   });
+    }
+
+    private static void handleDeleteBatchResponse(List<String> keys,
+                                                  DeleteObjectsResponse response,
+                                                  Map<String, List<FileDeletionRequestDto>> requestsByKey,
+                                                  IDeletionProgressManager progressManager) {
+        // Deletion of a missing file is a success, as with single object deletion
+        Map<String, S3Error> errorsByKey = response.errors()
+                                                   .stream()
+                                                   .filter(error -> !NO_SUCH_KEY_ERROR_CODE.equals(error.code()))
+                                                   .collect(Collectors.toMap(S3Error::key,
+                                                                             error -> error,
+                                                                             (first, second) -> first));
+        for (String key : keys) {
+            S3Error error = errorsByKey.get(key);
+            for (FileDeletionRequestDto request : requestsByKey.get(key)) {
+                if (error == null) {
+                    LOGGER.info("End deleting {} with location {}",
+                                request.getFileReference().getMetaInfo().getFileName(),
+                                request.getFileReference().getLocation().getUrl());
+                    progressManager.deletionSucceed(request);
+                } else {
+                    LOGGER.error("Deletion of {} failed : {} {}", key, error.code(), error.message());
+                    progressManager.deletionFailed(request,
+                                                   String.format("Deletion failure in S3 storage : %s",
+                                                                 error.code()));
+                }
+            }
+        }
+    }
+
+    private int getNbParallelRequests() {
+        return Math.max(1, nbParallelRequests);
+    }
+
     @Override
     public AbstractS3ConfigurationDto createWorkerStoreConfiguration() {
         return new S3StorageConfigurationDTO(storageConfiguration,